@@ -80,7 +80,7 @@ public class RSRawDecoder extends RawErasureDecoder {
     for (int i = 0; i < getNumDataUnits(); i++) {
       realInputs[i] = decodingState.inputs[validIndexes[i]];
     }
-    RSUtil.encodeData(gfTables, realInputs, decodingState.outputs);
+    encodeData(gfTables, realInputs, decodingState.outputs);
   }
 
   @Override
@@ -96,10 +96,39 @@ public class RSRawDecoder extends RawErasureDecoder {
       realInputs[i] = decodingState.inputs[validIndexes[i]];
       realInputOffsets[i] = decodingState.inputOffsets[validIndexes[i]];
     }
-    RSUtil.encodeData(gfTables, dataLen, realInputs, realInputOffsets,
+    encodeData(gfTables, dataLen, realInputs, realInputOffsets,
         decodingState.outputs, decodingState.outputOffsets);
   }
 
+  /**
+   * Code the inputs into the reset outputs with the tables generated from
+   * the coding matrix.
+   *
+   * @param tables tables.
+   * @param inputs inputs.
+   * @param outputs outputs.
+   */
+  protected void encodeData(byte[] tables, ByteBuffer[] inputs,
+      ByteBuffer[] outputs) {
+    RSUtil.encodeData(tables, inputs, outputs);
+  }
+
+  /**
+   * See above.
+   *
+   * @param tables tables.
+   * @param dataLen dataLen.
+   * @param inputs inputs.
+   * @param inputOffsets inputOffsets.
+   * @param outputs outputs.
+   * @param outputOffsets outputOffsets.
+   */
+  protected void encodeData(byte[] tables, int dataLen, byte[][] inputs,
+      int[] inputOffsets, byte[][] outputs, int[] outputOffsets) {
+    RSUtil.encodeData(tables, dataLen, inputs, inputOffsets, outputs,
+        outputOffsets);
+  }
+
   private <T> void prepareDecoding(T[] inputs, int[] erasedIndexes) {
     int[] tmpValidIndexes = CoderUtil.getValidIndexes(inputs);
     if (Arrays.equals(this.cachedErasedIndexes, erasedIndexes) &&
@@ -23,6 +23,8 @@ import org.apache.hadoop.io.erasurecode.ErasureCoderOptions;
 import org.apache.hadoop.io.erasurecode.rawcoder.util.DumpUtil;
 import org.apache.hadoop.io.erasurecode.rawcoder.util.RSUtil;
 
+import java.nio.ByteBuffer;
+
 /**
  * A raw erasure encoder in RS code scheme in pure Java in case native one
  * isn't available in some environment. Please always use native implementations
@@ -64,7 +66,7 @@ public class RSRawEncoder extends RawErasureEncoder {
   protected void doEncode(ByteBufferEncodingState encodingState) {
     CoderUtil.resetOutputBuffers(encodingState.outputs,
         encodingState.encodeLength);
-    RSUtil.encodeData(gfTables, encodingState.inputs, encodingState.outputs);
+    encodeData(gfTables, encodingState.inputs, encodingState.outputs);
   }
 
   @Override
@@ -72,9 +74,38 @@ public class RSRawEncoder extends RawErasureEncoder {
     CoderUtil.resetOutputBuffers(encodingState.outputs,
         encodingState.outputOffsets,
         encodingState.encodeLength);
-    RSUtil.encodeData(gfTables, encodingState.encodeLength,
+    encodeData(gfTables, encodingState.encodeLength,
         encodingState.inputs,
         encodingState.inputOffsets, encodingState.outputs,
         encodingState.outputOffsets);
   }
+
+  /**
+   * Code the inputs into the reset outputs with the tables generated from
+   * the coding matrix.
+   *
+   * @param tables tables.
+   * @param inputs inputs.
+   * @param outputs outputs.
+   */
+  protected void encodeData(byte[] tables, ByteBuffer[] inputs,
+      ByteBuffer[] outputs) {
+    RSUtil.encodeData(tables, inputs, outputs);
+  }
+
+  /**
+   * See above.
+   *
+   * @param tables tables.
+   * @param dataLen dataLen.
+   * @param inputs inputs.
+   * @param inputOffsets inputOffsets.
+   * @param outputs outputs.
+   * @param outputOffsets outputOffsets.
+   */
+  protected void encodeData(byte[] tables, int dataLen, byte[][] inputs,
+      int[] inputOffsets, byte[][] outputs, int[] outputOffsets) {
+    RSUtil.encodeData(tables, dataLen, inputs, inputOffsets, outputs,
+        outputOffsets);
+  }
 }
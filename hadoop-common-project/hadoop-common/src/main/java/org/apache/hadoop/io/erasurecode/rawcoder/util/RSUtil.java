@@ -20,6 +20,7 @@ package org.apache.hadoop.io.erasurecode.rawcoder.util;
 import org.apache.hadoop.classification.InterfaceAudience;
 
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 /**
  * Utilities for implementing Reed-Solomon code, used by RS coder. Some of the
@@ -35,6 +36,15 @@ public final class RSUtil {
   public static GaloisField GF = GaloisField.getInstance();
   public static final int PRIMITIVE_ROOT = 2;
 
+  /**
+   * The number of bytes of each unit coded at a time by encodeDataInChunks,
+   * so that the chunks of all the units stay in the CPU caches while the
+   * outputs are computed.
+   */
+  private static final int CHUNK_SIZE = 4096;
+  /** The heap copies of the chunks of the direct buffers of each thread. */
+  private static final ThreadLocal<byte[]> CHUNK_BUFFERS = new ThreadLocal<>();
+
   public static int[] getPrimitivePower(int numDataUnits, int numParityUnits) {
     int[] primitivePower = new int[numDataUnits + numParityUnits];
     // compute powers of the primitive root
@@ -199,4 +209,139 @@ public final class RSUtil {
     }
   }
 
+  /**
+   * Same as {@link #encodeData(byte[], int, byte[][], int[], byte[][], int[])},
+   * but codes the units a chunk at a time, so that each chunk of an input is
+   * read from memory once rather than once per output.
+   *
+   * @param gfTables gfTables.
+   * @param dataLen dataLen.
+   * @param inputs inputs.
+   * @param inputOffsets inputOffsets.
+   * @param outputs outputs.
+   * @param outputOffsets outputOffsets.
+   */
+  public static void encodeDataInChunks(byte[] gfTables, int dataLen,
+      byte[][] inputs, int[] inputOffsets, byte[][] outputs,
+      int[] outputOffsets) {
+    final byte[][] tableLines =
+        getTableLines(gfTables, inputs.length, outputs.length);
+    for (int off = 0; off < dataLen; off += CHUNK_SIZE) {
+      encodeChunk(tableLines, off, Math.min(CHUNK_SIZE, dataLen - off),
+          inputs, inputOffsets, outputs, outputOffsets);
+    }
+  }
+
+  /**
+   * See above. The chunks of the buffers without an accessible array are
+   * copied to the heap, which is much faster than looking up their bytes one
+   * at a time. The outputs are expected to be reset.
+   *
+   * @param gfTables gfTables.
+   * @param inputs inputs.
+   * @param outputs outputs.
+   */
+  public static void encodeDataInChunks(byte[] gfTables, ByteBuffer[] inputs,
+      ByteBuffer[] outputs) {
+    final int numInputs = inputs.length;
+    final int numOutputs = outputs.length;
+    final int dataLen = inputs[0].remaining();
+    final byte[][] inputArrays = new byte[numInputs][];
+    final int[] inputOffsets = new int[numInputs];
+    final byte[][] outputArrays = new byte[numOutputs][];
+    final int[] outputOffsets = new int[numOutputs];
+
+    if (hasArrays(inputs) && hasArrays(outputs)) {
+      for (int j = 0; j < numInputs; j++) {
+        inputArrays[j] = inputs[j].array();
+        inputOffsets[j] = inputs[j].arrayOffset() + inputs[j].position();
+      }
+      for (int l = 0; l < numOutputs; l++) {
+        outputArrays[l] = outputs[l].array();
+        outputOffsets[l] = outputs[l].arrayOffset() + outputs[l].position();
+      }
+      encodeDataInChunks(gfTables, dataLen, inputArrays, inputOffsets,
+          outputArrays, outputOffsets);
+      return;
+    }
+
+    final int numUnits = numInputs + numOutputs;
+    byte[] chunks = CHUNK_BUFFERS.get();
+    if (chunks == null || chunks.length < numUnits * CHUNK_SIZE) {
+      chunks = new byte[numUnits * CHUNK_SIZE];
+      CHUNK_BUFFERS.set(chunks);
+    }
+    final ByteBuffer[] inputCopies = new ByteBuffer[numInputs];
+    for (int j = 0; j < numInputs; j++) {
+      inputArrays[j] = chunks;
+      inputOffsets[j] = j * CHUNK_SIZE;
+      inputCopies[j] = inputs[j].duplicate();
+    }
+    final ByteBuffer[] outputCopies = new ByteBuffer[numOutputs];
+    for (int l = 0; l < numOutputs; l++) {
+      outputArrays[l] = chunks;
+      outputOffsets[l] = (numInputs + l) * CHUNK_SIZE;
+      outputCopies[l] = outputs[l].duplicate();
+    }
+    final byte[][] tableLines =
+        getTableLines(gfTables, numInputs, numOutputs);
+
+    for (int off = 0; off < dataLen; off += CHUNK_SIZE) {
+      final int len = Math.min(CHUNK_SIZE, dataLen - off);
+      for (int j = 0; j < numInputs; j++) {
+        inputCopies[j].get(chunks, inputOffsets[j], len);
+      }
+      Arrays.fill(chunks, numInputs * CHUNK_SIZE, numUnits * CHUNK_SIZE,
+          (byte) 0);
+      encodeChunk(tableLines, 0, len, inputArrays, inputOffsets,
+          outputArrays, outputOffsets);
+      for (int l = 0; l < numOutputs; l++) {
+        outputCopies[l].put(chunks, outputOffsets[l], len);
+      }
+    }
+  }
+
+  private static boolean hasArrays(ByteBuffer[] buffers) {
+    for (ByteBuffer buffer : buffers) {
+      if (!buffer.hasArray()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return the multiplication tables of the coefficients of each output,
+   *         with the ones of the inputs of the first output first.
+   */
+  private static byte[][] getTableLines(byte[] gfTables, int numInputs,
+      int numOutputs) {
+    final byte[][] tableLines = new byte[numOutputs * numInputs][];
+    for (int l = 0; l < numOutputs; l++) {
+      for (int j = 0; j < numInputs; j++) {
+        final byte s = gfTables[j * 32 + l * numInputs * 32 + 1];
+        tableLines[l * numInputs + j] = GF256.gfMulTab()[s & 0xff];
+      }
+    }
+    return tableLines;
+  }
+
+  private static void encodeChunk(byte[][] tableLines, int off, int len,
+      byte[][] inputs, int[] inputOffsets, byte[][] outputs,
+      int[] outputOffsets) {
+    final int numInputs = inputs.length;
+
+    for (int l = 0; l < outputs.length; l++) {
+      final byte[] output = outputs[l];
+      for (int j = 0; j < numInputs; j++) {
+        final byte[] tableLine = tableLines[l * numInputs + j];
+        final byte[] input = inputs[j];
+        // a plain loop, which the JIT compiles better than an unrolled one
+        for (int iPos = inputOffsets[j] + off, oPos = outputOffsets[l] + off,
+             end = iPos + len; iPos < end; iPos++, oPos++) {
+          output[oPos] ^= tableLine[0xff & input[iPos]];
+        }
+      }
+    }
+  }
 }
@@ -438,9 +438,8 @@ public class DataChecksum implements Checksum {
     try {
       int i = 0;
       for(final int n = dataLength - bytesPerCrc + 1; i < n; i += bytesPerCrc) {
-        data.get(bytes);
         algorithm.reset();
-        algorithm.update(bytes, 0, bytesPerCrc);
+        update(algorithm, data, bytesPerCrc, bytes);
         final int computed = (int)algorithm.getValue();
         final int expected = crcs.getInt();
 
@@ -453,9 +452,8 @@ public class DataChecksum implements Checksum {
 
       final int remainder = dataLength - i;
       if (remainder > 0) {
-        data.get(bytes, 0, remainder);
         algorithm.reset();
-        algorithm.update(bytes, 0, remainder);
+        update(algorithm, data, remainder, bytes);
         final int computed = (int)algorithm.getValue();
         final int expected = crcs.getInt();
 
@@ -511,6 +509,32 @@ public class DataChecksum implements Checksum {
     }
   }
 
+  /**
+   * Update the checksum with the next bytes of the buffer. Since Java 9 the
+   * buffer is passed to the checksum, so that the JDK implementations read
+   * direct buffers in place instead of through a copy.
+   *
+   * @param algorithm the checksum to update.
+   * @param data the buffer, whose position is advanced by len.
+   * @param len the number of bytes.
+   * @param scratch an array of at least len bytes for the copy.
+   */
+  private static void update(Checksum algorithm, ByteBuffer data, int len,
+      byte[] scratch) {
+    if (!Java9ChecksumUpdater.isAvailable()) {
+      data.get(scratch, 0, len);
+      algorithm.update(scratch, 0, len);
+      return;
+    }
+    final int limit = data.limit();
+    data.limit(data.position() + len);
+    try {
+      Java9ChecksumUpdater.update(algorithm, data);
+    } finally {
+      data.limit(limit);
+    }
+  }
+
   private static void throwChecksumException(Type type, Checksum algorithm,
       String filename, long errPos, int expected, int computed)
           throws ChecksumException {
@@ -552,9 +576,8 @@ public class DataChecksum implements Checksum {
       byte[] buf = new byte[bytesPerChecksum];
       while (data.remaining() > 0) {
         int n = Math.min(data.remaining(), bytesPerChecksum);
-        data.get(buf, 0, n);
         summer.reset();
-        summer.update(buf, 0, n);
+        update(summer, data, n, buf);
         checksums.putInt((int)summer.getValue());
       }
     } finally {
@@ -640,6 +663,41 @@ public class DataChecksum implements Checksum {
     public void update(int b) {}
   };
 
+  /**
+   * Holds the handle of Checksum#update(ByteBuffer), which was added in
+   * Java 9, to let it be initialized on demand.
+   */
+  private static class Java9ChecksumUpdater {
+    private static final MethodHandle UPDATE_MH;
+
+    static {
+      MethodHandle update = null;
+      if (Shell.isJavaVersionAtLeast(9)) {
+        try {
+          update = MethodHandles.publicLookup()
+              .findVirtual(Checksum.class, "update",
+                  MethodType.methodType(void.class, ByteBuffer.class));
+        } catch (ReflectiveOperationException e) {
+          LOG.warn("Checksum#update(ByteBuffer) is not available", e);
+        }
+      }
+      UPDATE_MH = update;
+    }
+
+    static boolean isAvailable() {
+      return UPDATE_MH != null;
+    }
+
+    static void update(Checksum algorithm, ByteBuffer data) {
+      try {
+        UPDATE_MH.invokeExact(algorithm, data);
+      } catch (Throwable t) {
+        throw (t instanceof RuntimeException) ? (RuntimeException) t
+            : new RuntimeException(t);
+      }
+    }
+  }
+
   /**
    * Holds constructor handle to let it be initialized on demand.
    */
@@ -62,13 +62,15 @@ public final class RawErasureCoderBenchmark {
           Arrays.asList(new DummyRawErasureCoderFactory(),
               new RSLegacyRawErasureCoderFactory(),
               new RSRawErasureCoderFactory(),
-              new NativeRSRawErasureCoderFactory()));
+              new NativeRSRawErasureCoderFactory(),
+              new RSChunkedRawErasureCoderFactory()));
 
   enum CODER {
     DUMMY_CODER("Dummy coder"),
     LEGACY_RS_CODER("Legacy Reed-Solomon Java coder"),
     RS_CODER("Reed-Solomon Java coder"),
-    ISAL_CODER("ISA-L coder");
+    ISAL_CODER("ISA-L coder"),
+    RS_CHUNKED_CODER("Reed-Solomon Java coder in chunks");
 
     private final String name;
 
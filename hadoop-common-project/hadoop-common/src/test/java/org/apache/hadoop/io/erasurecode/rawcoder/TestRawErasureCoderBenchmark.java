@@ -53,6 +53,15 @@ public class TestRawErasureCoderBenchmark {
         RawErasureCoderBenchmark.CODER.RS_CODER, 4, 135, 20);
   }
 
+  @Test
+  public void testRSChunkedCoder() throws Exception {
+    // RS Java coder in chunks
+    RawErasureCoderBenchmark.performBench("encode",
+        RawErasureCoderBenchmark.CODER.RS_CHUNKED_CODER, 3, 200, 200);
+    RawErasureCoderBenchmark.performBench("decode",
+        RawErasureCoderBenchmark.CODER.RS_CHUNKED_CODER, 4, 135, 20);
+  }
+
   @Test
   public void testISALCoder() throws Exception {
     Assume.assumeTrue(ErasureCodeNative.isNativeCodeLoaded());
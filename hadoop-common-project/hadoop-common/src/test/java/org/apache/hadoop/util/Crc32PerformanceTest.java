@@ -17,9 +17,13 @@
  */
 package org.apache.hadoop.util;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.PrintStream;
+import java.io.RandomAccessFile;
 import java.lang.reflect.Constructor;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
@@ -44,7 +48,8 @@ import static org.slf4j.LoggerFactory.getLogger;
  *
  *  hadoop org.apache.hadoop.util.Crc32PerformanceTest
  *
- * If any argument is provided, this test will run with non-directly buffer.
+ * The buffer type may be given as argument: heap, direct or mapped. If any
+ * other argument is provided, this test will run with non-directly buffer.
  *
  * The output is in JIRA table format.
  */
@@ -168,17 +173,29 @@ public class Crc32PerformanceTest {
 
   final int dataLengthMB;
   final int trials;
+  final BufferType bufferType;
   final boolean direct;
 
   final PrintStream out = System.out;
 
   final List<Class<? extends Crc32>> crcs = new ArrayList<>();
 
+  /** The buffers the checksums are computed over. */
+  enum BufferType {
+    HEAP, DIRECT, MAPPED
+  }
+
   Crc32PerformanceTest(final int dataLengthMB, final int trials,
       final boolean direct) {
+    this(dataLengthMB, trials, direct ? BufferType.DIRECT : BufferType.HEAP);
+  }
+
+  Crc32PerformanceTest(final int dataLengthMB, final int trials,
+      final BufferType bufferType) {
     this.dataLengthMB = dataLengthMB;
     this.trials = trials;
-    this.direct = direct;
+    this.bufferType = bufferType;
+    this.direct = bufferType != BufferType.HEAP;
 
     crcs.add(Crc32.Zip.class);
     if (Shell.isJavaVersionAtLeast(9)) {
@@ -207,12 +224,16 @@ public class Crc32PerformanceTest {
   }
 
   public static void main(String[] args) throws Exception {
-    boolean isdirect = true;
+    BufferType bufferType = BufferType.DIRECT;
 
     if (args.length > 0) {
-      isdirect = false;
+      try {
+        bufferType = BufferType.valueOf(args[0].toUpperCase());
+      } catch (IllegalArgumentException e) {
+        bufferType = BufferType.HEAP;
+      }
     }
-    new Crc32PerformanceTest(64, 5, isdirect).run();
+    new Crc32PerformanceTest(64, 5, bufferType).run();
   }
 
   private static void printCell(String s, int width, PrintStream outCrc) {
@@ -220,12 +241,24 @@ public class Crc32PerformanceTest {
     outCrc.printf(" %" + w + "s |", s);
   }
 
-  private ByteBuffer allocateByteBuffer(int length) {
-    return direct? ByteBuffer.allocateDirect(length)
-      : ByteBuffer.allocate(length);
+  private ByteBuffer allocateByteBuffer(int length) throws IOException {
+    switch (bufferType) {
+    case HEAP:
+      return ByteBuffer.allocate(length);
+    case MAPPED:
+      final File file = File.createTempFile(getClass().getSimpleName(), null);
+      file.deleteOnExit();
+      // the mapping stays valid after the file is closed
+      try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+        return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0,
+            length);
+      }
+    default:
+      return ByteBuffer.allocateDirect(length);
+    }
   }
 
-  private ByteBuffer newData() {
+  private ByteBuffer newData() throws IOException {
     final byte[] bytes = new byte[dataLengthMB << 20];
     new Random().nextBytes(bytes);
     final ByteBuffer dataBufs = allocateByteBuffer(bytes.length);
@@ -236,7 +269,7 @@ public class Crc32PerformanceTest {
   }
 
   private ByteBuffer computeCrc(ByteBuffer dataBufs, int bytePerCrc,
-      DataChecksum.Type type) {
+      DataChecksum.Type type) throws IOException {
     final int size = 4 * (dataBufs.remaining() - 1) / bytePerCrc + 1;
     final ByteBuffer crcBufs = allocateByteBuffer(size);
     final DataChecksum checksum = DataChecksum.newDataChecksum(
@@ -265,7 +298,8 @@ public class Crc32PerformanceTest {
     }
 
     // Print header
-    out.printf("\n%s Buffer Performance Table", direct? "Direct": "Non-direct");
+    out.printf("\n%s Buffer Performance Table", bufferType == BufferType.MAPPED
+        ? "Mapped" : direct? "Direct": "Non-direct");
     out.printf(" (bpc: byte-per-crc in MB/sec; #T: #Theads)\n");
 
     // Warm up implementations to get jit going.
@@ -202,5 +202,7 @@ public class TestDataChecksum {
   public void testCrc32() throws Exception {
     new Crc32PerformanceTest(8, 3, true).run();
     new Crc32PerformanceTest(8, 3, false).run();
+    new Crc32PerformanceTest(8, 3,
+        Crc32PerformanceTest.BufferType.MAPPED).run();
   }
 }
@@ -135,6 +135,11 @@ public class ClientContext {
    */
   private volatile DeadNodeDetector deadNodeDetector = null;
 
+  /**
+   * Tracks the read latency of the datanodes, if hedged reads are adaptive.
+   */
+  private final DatanodeLatencyTracker datanodeLatencyTracker;
+
   /**
    * The switch for the {@link LocatedBlocksRefresher}.
    */
@@ -182,6 +187,8 @@ public class ClientContext {
         conf.getWriteByteArrayManagerConf());
     this.deadNodeDetectionEnabled = conf.isDeadNodeDetectionEnabled();
     this.locatedBlocksRefresherEnabled = conf.isLocatedBlocksRefresherEnabled();
+    this.datanodeLatencyTracker = conf.isHedgedReadAdaptive() ?
+        new DatanodeLatencyTracker() : null;
     initTopologyResolution(config);
   }
 
@@ -319,6 +326,14 @@ public class ClientContext {
     return deadNodeDetector;
   }
 
+  /**
+   * Obtain the read latency tracker of the datanodes, or null if hedged reads
+   * are not adaptive.
+   */
+  public DatanodeLatencyTracker getDatanodeLatencyTracker() {
+    return datanodeLatencyTracker;
+  }
+
   /**
    * If true, LocatedBlocksRefresher will be periodically refreshing LocatedBlocks
    * of registered DFSInputStreams.
@@ -47,6 +47,7 @@ import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -143,6 +144,7 @@ import org.apache.hadoop.hdfs.protocol.OpenFileEntry;
 import org.apache.hadoop.hdfs.protocol.OpenFilesIterator;
 import org.apache.hadoop.hdfs.protocol.OpenFilesIterator.OpenFilesType;
 import org.apache.hadoop.hdfs.protocol.QuotaByStorageTypeExceededException;
+import org.apache.hadoop.hdfs.protocol.RecursiveDirectoryListing;
 import org.apache.hadoop.hdfs.protocol.ReencryptionStatusIterator;
 import org.apache.hadoop.hdfs.protocol.RollingUpgradeInfo;
 import org.apache.hadoop.hdfs.protocol.SnapshotAccessControlException;
@@ -167,6 +169,7 @@ import org.apache.hadoop.hdfs.security.token.block.DataEncryptionKey;
 import org.apache.hadoop.hdfs.security.token.delegation.DelegationTokenIdentifier;
 import org.apache.hadoop.hdfs.server.datanode.CachingStrategy;
 import org.apache.hadoop.hdfs.server.namenode.SafeModeException;
+import org.apache.hadoop.hdfs.server.namenode.ha.ObserverReadProxyProvider;
 import org.apache.hadoop.hdfs.server.protocol.DatanodeStorageReport;
 import org.apache.hadoop.hdfs.util.IOUtilsClient;
 import org.apache.hadoop.io.EnumSetWritable;
@@ -220,6 +223,8 @@ public class DFSClient implements java.io.Closeable, RemotePeerFactory,
   private final Tracer tracer;
   private final DfsClientConf dfsClientConf;
   final ClientProtocol namenode;
+  /** The provider behind namenode if it reads from observers, or null. */
+  private final ObserverReadProxyProvider<?> observerReadProxyProvider;
   /* The service used for delegation tokens */
   private Text dtService;
 
@@ -246,6 +251,8 @@ public class DFSClient implements java.io.Closeable, RemotePeerFactory,
       new DFSHedgedReadMetrics();
   private static ThreadPoolExecutor HEDGED_READ_THREAD_POOL;
   private static volatile ThreadPoolExecutor STRIPED_READ_THREAD_POOL;
+  private static volatile ThreadPoolExecutor VECTORED_READ_THREAD_POOL;
+  private static volatile ThreadPoolExecutor ASYNC_FLUSH_THREAD_POOL;
   private final long serverDefaultsValidityPeriod;
 
   /**
@@ -372,6 +379,8 @@ public class DFSClient implements java.io.Closeable, RemotePeerFactory,
       this.dtService = proxyInfo.getDelegationTokenService();
       this.namenode = proxyInfo.getProxy();
     }
+    this.observerReadProxyProvider =
+        ObserverReadProxyProvider.getProxyProvider(namenode);
 
     String localInterfaces[] =
         conf.getTrimmedStrings(DFS_CLIENT_LOCAL_INTERFACES);
@@ -409,6 +418,12 @@ public class DFSClient implements java.io.Closeable, RemotePeerFactory,
 
     this.initThreadsNumForStripedReads(dfsClientConf.
         getStripedReadThreadpoolSize());
+    if (dfsClientConf.getVectoredReadThreadpoolSize() > 0) {
+      this.initThreadsNumForVectoredReads(dfsClientConf.
+          getVectoredReadThreadpoolSize());
+    }
+    this.initThreadsNumForAsyncFlushes(dfsClientConf.
+        getAsyncFlushThreadpoolSize());
     this.saslClient = new SaslDataTransferClient(
         conf, DataTransferSaslUtil.getSaslPropertiesResolver(conf),
         TrustedChannelResolver.getInstance(conf), nnFallbackToSimpleAuth);
@@ -1756,6 +1771,27 @@ public class DFSClient implements java.io.Closeable, RemotePeerFactory,
     }
   }
 
+  /**
+   * Get a partial recursive listing of the indicated directory
+   *
+   * Recommend to use HdfsFileStatus.EMPTY_NAME as cursor
+   * if the application wants to start the listing from the
+   * first entry in the directory
+   *
+   * @see ClientProtocol#getRecursiveListing(String, byte[], boolean)
+   */
+  public RecursiveDirectoryListing recursiveListPaths(String src,
+      byte[] cursor, boolean needLocation) throws IOException {
+    checkOpen();
+    try (TraceScope ignored = newPathTraceScope("recursiveListPaths", src)) {
+      return namenode.getRecursiveListing(src, cursor, needLocation);
+    } catch (RemoteException re) {
+      throw re.unwrapRemoteException(AccessControlException.class,
+          FileNotFoundException.class,
+          UnresolvedPathException.class);
+    }
+  }
+
   /**
    * Get the file info for a specific file or directory.
    * @param src The string representation of the path to the file
@@ -1767,6 +1803,13 @@ public class DFSClient implements java.io.Closeable, RemotePeerFactory,
   public HdfsFileStatus getFileInfo(String src) throws IOException {
     checkOpen();
     try (TraceScope ignored = newPathTraceScope("getFileInfo", src)) {
+      if (observerReadProxyProvider != null) {
+        HdfsFileStatus status =
+            observerReadProxyProvider.getCachedFileInfo(src);
+        if (status != null) {
+          return status;
+        }
+      }
       return namenode.getFileInfo(src);
     } catch (RemoteException re) {
       throw re.unwrapRemoteException(AccessControlException.class,
@@ -3159,6 +3202,51 @@ public class DFSClient implements java.io.Closeable, RemotePeerFactory,
     }
   }
 
+  /**
+   * Create thread pool for the ranges of vectored reads,
+   * VECTORED_READ_THREAD_POOL, if it does not already exist.
+   * @param numThreads Number of threads for vectored reads thread pool.
+   */
+  private void initThreadsNumForVectoredReads(int numThreads) {
+    assert numThreads > 0;
+    if (VECTORED_READ_THREAD_POOL != null) {
+      return;
+    }
+    synchronized (DFSClient.class) {
+      if (VECTORED_READ_THREAD_POOL == null) {
+        // Queue the ranges rather than reading them in the calling thread,
+        // since readVectored returns before the data arrives.
+        ThreadPoolExecutor threadPool = DFSUtilClient.getThreadPoolExecutor(
+            numThreads, numThreads, 60, new LinkedBlockingQueue<>(),
+            "VectoredRead-", false);
+        threadPool.allowCoreThreadTimeOut(true);
+        VECTORED_READ_THREAD_POOL = threadPool;
+      }
+    }
+  }
+
+  /**
+   * Create thread pool completing the asynchronous flushes of the output
+   * streams, ASYNC_FLUSH_THREAD_POOL, if it does not already exist.
+   * @param numThreads Number of threads for async flush thread pool.
+   */
+  private void initThreadsNumForAsyncFlushes(int numThreads) {
+    assert numThreads > 0;
+    if (ASYNC_FLUSH_THREAD_POOL != null) {
+      return;
+    }
+    synchronized (DFSClient.class) {
+      if (ASYNC_FLUSH_THREAD_POOL == null) {
+        // Queue the flushes, the threads acking the packets must not block.
+        ThreadPoolExecutor threadPool = DFSUtilClient.getThreadPoolExecutor(
+            numThreads, numThreads, 60, new LinkedBlockingQueue<>(),
+            "AsyncFlush-", false);
+        threadPool.allowCoreThreadTimeOut(true);
+        ASYNC_FLUSH_THREAD_POOL = threadPool;
+      }
+    }
+  }
+
   ThreadPoolExecutor getHedgedReadsThreadPool() {
     return HEDGED_READ_THREAD_POOL;
   }
@@ -3167,6 +3255,22 @@ public class DFSClient implements java.io.Closeable, RemotePeerFactory,
     return STRIPED_READ_THREAD_POOL;
   }
 
+  /**
+   * @return the pool reading the ranges of vectored reads, or null if they
+   *         are read in the calling thread.
+   */
+  ThreadPoolExecutor getVectoredReadsThreadPool() {
+    return VECTORED_READ_THREAD_POOL;
+  }
+
+  /**
+   * @return the pool completing the asynchronous flushes of the output
+   *         streams once their packets are acked.
+   */
+  ThreadPoolExecutor getAsyncFlushThreadPool() {
+    return ASYNC_FLUSH_THREAD_POOL;
+  }
+
   boolean isHedgedReadsEnabled() {
     return (HEDGED_READ_THREAD_POOL != null) &&
         HEDGED_READ_THREAD_POOL.getMaximumPoolSize() > 0;
@@ -67,6 +67,8 @@ public class DFSClientFaultInjector {
 
   public void delayWhenRenewLeaseTimeout() {}
 
+  public void delayBeforeFsync() {}
+
   public void onCreateBlockReader(LocatedBlock block, int chunkIndex, long offset, long length) {}
 
 }
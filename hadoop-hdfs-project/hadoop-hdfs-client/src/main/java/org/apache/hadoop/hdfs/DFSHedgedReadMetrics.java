@@ -18,7 +18,11 @@
 package org.apache.hadoop.hdfs;
 
 import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.LongAdder;
 
 /**
@@ -31,6 +35,12 @@ public class DFSHedgedReadMetrics {
   public final LongAdder hedgedReadOps = new LongAdder();
   public final LongAdder hedgedReadOpsWin = new LongAdder();
   public final LongAdder hedgedReadOpsInCurThread = new LongAdder();
+  /** The hedged reads won by each datanode, by transfer address. */
+  private final ConcurrentHashMap<String, LongAdder> hedgedReadWinsPerNode =
+      new ConcurrentHashMap<>();
+  /** The hedged reads lost by each datanode, by transfer address. */
+  private final ConcurrentHashMap<String, LongAdder> hedgedReadLossesPerNode =
+      new ConcurrentHashMap<>();
 
   public void incHedgedReadOps() {
     hedgedReadOps.increment();
@@ -44,6 +54,19 @@ public class DFSHedgedReadMetrics {
     hedgedReadOpsWin.increment();
   }
 
+  /** Count a hedged read won by the given datanode. */
+  public void incHedgedReadWins(DatanodeInfo node) {
+    incHedgedReadWins();
+    hedgedReadWinsPerNode.computeIfAbsent(node.getXferAddr(),
+        k -> new LongAdder()).increment();
+  }
+
+  /** Count a hedged read lost by the given datanode. */
+  public void incHedgedReadLosses(DatanodeInfo node) {
+    hedgedReadLossesPerNode.computeIfAbsent(node.getXferAddr(),
+        k -> new LongAdder()).increment();
+  }
+
   public long getHedgedReadOps() {
     return hedgedReadOps.longValue();
   }
@@ -55,4 +78,26 @@ public class DFSHedgedReadMetrics {
   public long getHedgedReadWins() {
     return hedgedReadOpsWin.longValue();
   }
+
+  /**
+   * @return the number of hedged reads won by each datanode, by transfer
+   *         address
+   */
+  public Map<String, Long> getHedgedReadWinsPerNode() {
+    return snapshot(hedgedReadWinsPerNode);
+  }
+
+  /**
+   * @return the number of hedged reads lost by each datanode, by transfer
+   *         address
+   */
+  public Map<String, Long> getHedgedReadLossesPerNode() {
+    return snapshot(hedgedReadLossesPerNode);
+  }
+
+  private static Map<String, Long> snapshot(Map<String, LongAdder> counters) {
+    final Map<String, Long> snapshot = new HashMap<>();
+    counters.forEach((node, count) -> snapshot.put(node, count.longValue()));
+    return snapshot;
+  }
 }
@@ -36,6 +36,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionService;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
@@ -43,7 +44,9 @@ import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.Future;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntFunction;
 
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.fs.ByteBufferPositionedReadable;
@@ -56,10 +59,13 @@ import org.apache.hadoop.fs.ChecksumException;
 import org.apache.hadoop.fs.FSExceptionMessages;
 import org.apache.hadoop.fs.FSInputStream;
 import org.apache.hadoop.fs.FileEncryptionInfo;
+import org.apache.hadoop.fs.FileRange;
 import org.apache.hadoop.fs.HasEnhancedByteBufferAccess;
 import org.apache.hadoop.fs.ReadOption;
 import org.apache.hadoop.fs.StorageType;
 import org.apache.hadoop.fs.StreamCapabilities;
+import org.apache.hadoop.fs.VectoredReadUtils;
+import org.apache.hadoop.fs.impl.CombinedFileRange;
 import org.apache.hadoop.hdfs.DFSUtilClient.CorruptedBlocks;
 import org.apache.hadoop.hdfs.client.impl.BlockReaderFactory;
 import org.apache.hadoop.hdfs.client.impl.DfsClientConf;
@@ -1052,15 +1058,13 @@ public class DFSInputStream extends FSInputStream
     }
 
     if (chosenNode == null && nodes != null) {
-      for (int i = 0; i < nodes.length; i++) {
-        if (isValidNode(nodes[i], ignoredNodes)) {
-          chosenNode = nodes[i];
-          // Storage types are ordered to correspond with nodes, so use the same
-          // index to get storage type.
-          if (storageTypes != null && i < storageTypes.length) {
-            storageType = storageTypes[i];
-          }
-          break;
+      int i = getFastestValidNode(nodes, ignoredNodes);
+      if (i >= 0) {
+        chosenNode = nodes[i];
+        // Storage types are ordered to correspond with nodes, so use the same
+        // index to get storage type.
+        if (storageTypes != null && i < storageTypes.length) {
+          storageType = storageTypes[i];
         }
       }
     }
@@ -1088,6 +1092,69 @@ public class DFSInputStream extends FSInputStream
         ", ignoredNodes = " + ignoredNodes);
   }
 
+  /**
+   * Choose among the valid nodes, which are sorted by network distance. If
+   * hedged reads are adaptive, the nodes whose median read latency is above
+   * the hedged read threshold are only chosen if all the valid nodes are
+   * that slow, the one with the lowest median latency first.
+   *
+   * @return the index of the chosen node, or -1 if no node is valid
+   */
+  private int getFastestValidNode(DatanodeInfo[] nodes,
+      Collection<DatanodeInfo> ignoredNodes) {
+    final DatanodeLatencyTracker tracker = getDatanodeLatencyTracker();
+    final long threshold =
+        tracker == null ? 0 : getHedgedReadThresholdMillis();
+    int slowest = -1;
+    long slowestLatency = Long.MAX_VALUE;
+    for (int i = 0; i < nodes.length; i++) {
+      if (!isValidNode(nodes[i], ignoredNodes)) {
+        continue;
+      }
+      if (tracker == null) {
+        return i;
+      }
+      final long latency = tracker.getPercentile(nodes[i], 50);
+      if (latency <= threshold) {
+        return i;
+      }
+      if (latency < slowestLatency) {
+        slowest = i;
+        slowestLatency = latency;
+      }
+    }
+    if (slowest >= 0) {
+      DFSClient.LOG.debug("All the valid datanodes of {} are slow, choosing {}"
+          + " with a median latency of {}ms", src, nodes[slowest],
+          slowestLatency);
+    }
+    return slowest;
+  }
+
+  private DatanodeLatencyTracker getDatanodeLatencyTracker() {
+    return dfsClient.getClientContext().getDatanodeLatencyTracker();
+  }
+
+  /**
+   * @return how long to wait for a read before starting a hedged one. If
+   *         hedged reads are adaptive, this is the configured percentile of
+   *         the recent read latencies, up to the configured threshold.
+   */
+  @VisibleForTesting
+  long getHedgedReadThresholdMillis() {
+    final DfsClientConf conf = dfsClient.getConf();
+    final DatanodeLatencyTracker tracker = getDatanodeLatencyTracker();
+    if (tracker != null) {
+      final long latency =
+          tracker.getPercentile(conf.getHedgedReadAdaptivePercentile());
+      if (latency >= 0) {
+        return Math.min(Math.max(latency, 1),
+            conf.getHedgedReadThresholdMillis());
+      }
+    }
+    return conf.getHedgedReadThresholdMillis();
+  }
+
   private boolean isValidNode(DatanodeInfo node,
       Collection<DatanodeInfo> ignoredNodes) {
     if (!dfsClient.getDeadNodes(this).containsKey(node)
@@ -1176,6 +1243,7 @@ public class DFSInputStream extends FSInputStream
     LocatedBlock block = datanode.block;
     while (true) {
       BlockReader reader = null;
+      final long beginMS = Time.monotonicNow();
       try {
         DFSClientFaultInjector.get().fetchFromDatanodeException();
         reader = getBlockReader(block, startInBlk, len, datanode.addr,
@@ -1209,6 +1277,10 @@ public class DFSInputStream extends FSInputStream
               "excpected " + len + ", got " + nread);
         }
         DFSClientFaultInjector.get().readFromDatanodeDelay();
+        final DatanodeLatencyTracker tracker = getDatanodeLatencyTracker();
+        if (tracker != null) {
+          tracker.addLatency(datanode.info, Time.monotonicNow() - beginMS);
+        }
         return;
       } catch (ChecksumException e) {
         String msg = "fetchBlockByteRange(). Got a checksum exception for "
@@ -1273,8 +1345,8 @@ public class DFSInputStream extends FSInputStream
   private void hedgedFetchBlockByteRange(LocatedBlock block, long start,
       long end, ByteBuffer buf, CorruptedBlocks corruptedBlocks)
       throws IOException {
-    final DfsClientConf conf = dfsClient.getConf();
-    ArrayList<Future<ByteBuffer>> futures = new ArrayList<>();
+    // the node read by each request
+    Map<Future<ByteBuffer>, DatanodeInfo> futures = new HashMap<>();
     CompletionService<ByteBuffer> hedgedService =
         new ExecutorCompletionService<>(dfsClient.getHedgedReadsThreadPool());
     ArrayList<DatanodeInfo> ignored = new ArrayList<>();
@@ -1298,11 +1370,11 @@ public class DFSInputStream extends FSInputStream
             corruptedBlocks, hedgedReadId++);
         Future<ByteBuffer> firstRequest = hedgedService
             .submit(getFromDataNodeCallable);
-        futures.add(firstRequest);
+        futures.put(firstRequest, chosenNode.info);
         Future<ByteBuffer> future = null;
+        final long threshold = getHedgedReadThresholdMillis();
         try {
-          future = hedgedService.poll(
-              conf.getHedgedReadThresholdMillis(), TimeUnit.MILLISECONDS);
+          future = hedgedService.poll(threshold, TimeUnit.MILLISECONDS);
           if (future != null) {
             ByteBuffer result = future.get();
             result.flip();
@@ -1310,7 +1382,7 @@ public class DFSInputStream extends FSInputStream
             return;
           }
           DFSClient.LOG.debug("Waited {}ms to read from {}; spawning hedged "
-              + "read", conf.getHedgedReadThresholdMillis(), chosenNode.info);
+              + "read", threshold, chosenNode.info);
           dfsClient.getHedgedReadMetrics().incHedgedReadOps();
           // continue; no need to refresh block locations
         } catch (ExecutionException e) {
@@ -1339,7 +1411,7 @@ public class DFSInputStream extends FSInputStream
                     corruptedBlocks, hedgedReadId++);
             Future<ByteBuffer> oneMoreRequest =
                 hedgedService.submit(getFromDataNodeCallable);
-            futures.add(oneMoreRequest);
+            futures.put(oneMoreRequest, chosenNode.info);
           } else {
             refetch = true;
           }
@@ -1353,7 +1425,6 @@ public class DFSInputStream extends FSInputStream
           ByteBuffer result = getFirstToComplete(hedgedService, futures);
           // cancel the rest.
           cancelAll(futures);
-          dfsClient.getHedgedReadMetrics().incHedgedReadWins();
           result.flip();
           buf.put(result);
           return;
@@ -1383,7 +1454,8 @@ public class DFSInputStream extends FSInputStream
 
   private ByteBuffer getFirstToComplete(
       CompletionService<ByteBuffer> hedgedService,
-      ArrayList<Future<ByteBuffer>> futures) throws InterruptedException {
+      Map<Future<ByteBuffer>, DatanodeInfo> futures)
+      throws InterruptedException {
     if (futures.isEmpty()) {
       throw new InterruptedException("let's retry");
     }
@@ -1391,7 +1463,8 @@ public class DFSInputStream extends FSInputStream
     try {
       future = hedgedService.take();
       ByteBuffer bb = future.get();
-      futures.remove(future);
+      dfsClient.getHedgedReadMetrics().incHedgedReadWins(
+          futures.remove(future));
       return bb;
     } catch (ExecutionException | CancellationException e) {
       // already logged in the Callable
@@ -1401,14 +1474,16 @@ public class DFSInputStream extends FSInputStream
     throw new InterruptedException("let's retry");
   }
 
-  private void cancelAll(List<Future<ByteBuffer>> futures) {
-    for (Future<ByteBuffer> future : futures) {
+  private void cancelAll(Map<Future<ByteBuffer>, DatanodeInfo> futures) {
+    for (Map.Entry<Future<ByteBuffer>, DatanodeInfo> entry :
+        futures.entrySet()) {
+      dfsClient.getHedgedReadMetrics().incHedgedReadLosses(entry.getValue());
       // Unfortunately, hdfs reads do not take kindly to interruption.
       // Threads return a variety of interrupted-type exceptions but
       // also complaints about invalid pbs -- likely because read
       // is interrupted before gets whole pb.  Also verbose WARN
       // logging.  So, for now, do not interrupt running read.
-      future.cancel(false);
+      entry.getKey().cancel(false);
     }
   }
 
@@ -1721,6 +1796,57 @@ public class DFSInputStream extends FSInputStream
     }
   }
 
+  /**
+   * Read the ranges concurrently, in the vectored reads thread pool. The
+   * ranges closer than {@link #minSeekForVectorReads()} are merged into a
+   * single positional read, which reads the blocks it spans like
+   * {@link #pread(long, ByteBuffer)}. The future of each range completes as
+   * soon as its merged range was read.
+   */
+  @Override
+  public void readVectored(List<? extends FileRange> ranges,
+      IntFunction<ByteBuffer> allocate) throws IOException {
+    final ThreadPoolExecutor pool = dfsClient.getVectoredReadsThreadPool();
+    if (pool == null) {
+      VectoredReadUtils.readVectored(this, ranges, allocate);
+      return;
+    }
+    VectoredReadUtils.validateVectoredReadRanges(ranges);
+    final long fileLength = getFileLength();
+    final List<FileRange> readableRanges = new ArrayList<>(ranges.size());
+    // overlapping ranges are merged too
+    for (FileRange range : VectoredReadUtils.sortRanges(ranges)) {
+      if (range.getOffset() + range.getLength() > fileLength) {
+        final CompletableFuture<ByteBuffer> result = new CompletableFuture<>();
+        result.completeExceptionally(new EOFException(
+            "Range " + range + " is past the end of " + src + " of length "
+                + fileLength));
+        range.setData(result);
+      } else {
+        readableRanges.add(range);
+      }
+    }
+    for (CombinedFileRange combined : VectoredReadUtils.mergeSortedRanges(
+        readableRanges, 1, minSeekForVectorReads(),
+        maxReadSizeForVectorReads())) {
+      final CompletableFuture<ByteBuffer> result = new CompletableFuture<>();
+      for (FileRange range : combined.getUnderlying()) {
+        range.setData(result.thenApply(buf ->
+            VectoredReadUtils.sliceTo(buf, combined.getOffset(), range)));
+      }
+      pool.execute(() -> {
+        try {
+          final ByteBuffer buf = allocate.apply(combined.getLength());
+          readFully(combined.getOffset(), buf);
+          buf.flip();
+          result.complete(buf);
+        } catch (Throwable t) {
+          result.completeExceptionally(t);
+        }
+      });
+    }
+  }
+
   /** Utility class to encapsulate data node info and its address. */
   static final class DNAddrPair {
     final DatanodeInfo info;
@@ -1942,6 +2068,8 @@ public class DFSInputStream extends FSInputStream
     case StreamCapabilities.READBYTEBUFFER:
     case StreamCapabilities.PREADBYTEBUFFER:
       return true;
+    case StreamCapabilities.VECTOREDIO:
+      return dfsClient.getVectoredReadsThreadPool() != null;
     default:
       return false;
     }
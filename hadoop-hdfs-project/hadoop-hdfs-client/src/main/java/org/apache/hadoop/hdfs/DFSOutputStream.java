@@ -23,6 +23,9 @@ import java.io.InterruptedIOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
 import java.util.EnumSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.hadoop.HadoopIllegalArgumentException;
@@ -123,6 +126,13 @@ public class DFSOutputStream extends FSOutputSummer
   protected int packetSize = 0; // write packet size, not including the header.
   protected int chunksPerPacket = 0;
   protected long lastFlushOffset = 0; // offset when flush was invoked
+  /**
+   * Completed once the last queued flush updated the NameNode, so that the
+   * flushes update it in order. Never completed exceptionally. Guarded by
+   * this.
+   */
+  private CompletableFuture<Void> lastFlush =
+      CompletableFuture.completedFuture(null);
   protected long initialFileSize = 0; // at time of file open
   private final short blockReplication; // replication factor of file
   protected boolean shouldSyncBlock = false; // force blocks to disk upon close
@@ -239,7 +249,9 @@ public class DFSOutputStream extends FSOutputSummer
           + " (=" + bytesPerChecksum + ") must divide block size (=" +
           blockSize + ").");
     }
-    this.byteArrayManager = dfsClient.getClientContext().getByteArrayManager();
+    this.byteArrayManager = ByteArrayManager.newStreamInstance(
+        dfsClient.getClientContext().getByteArrayManager(),
+        dfsClient.getConf().getWriteByteArrayStreamCacheSize());
   }
 
   /**
@@ -621,6 +633,44 @@ public class DFSOutputStream extends FSOutputSummer
     }
   }
 
+  /**
+   * Like {@link #hflush()}, but without waiting for the acks of the
+   * DataNodes. This still blocks while too many packets are in flight.
+   * Only the caller is spared a blocked thread per flush: the packets are
+   * still sent and acked by the {@link DataStreamer} and response processor
+   * threads of the stream. The flushes of a stream complete in the order
+   * they were requested.
+   *
+   * @return a future completed once the flushed data become visible to new
+   *         readers, or exceptionally with the IOException that
+   *         {@link #hflush()} would have thrown
+   */
+  public CompletableFuture<Void> hflushAsync() {
+    try (TraceScope ignored = dfsClient.newPathTraceScope("hflushAsync",
+        src)) {
+      return flushOrSyncAsync(false, EnumSet.noneOf(SyncFlag.class));
+    }
+  }
+
+  /**
+   * Like {@link #hsync(EnumSet)}, but without waiting for the acks of the
+   * DataNodes. The NameNode is updated by a thread of a pool shared by the
+   * clients, so many streams can be synced concurrently by a few threads.
+   *
+   * @param syncFlags
+   *          Indicate the semantic of the sync. Currently used to specify
+   *          whether or not to update the block length in NameNode.
+   * @return a future completed once the data are synced, or exceptionally
+   *         with the IOException that {@link #hsync(EnumSet)} would have
+   *         thrown
+   */
+  public CompletableFuture<Void> hsyncAsync(EnumSet<SyncFlag> syncFlags) {
+    try (TraceScope ignored = dfsClient.newPathTraceScope("hsyncAsync",
+        src)) {
+      return flushOrSyncAsync(true, syncFlags);
+    }
+  }
+
   /**
    * Flush/Sync buffered data to DataNodes.
    *
@@ -637,122 +687,241 @@ public class DFSOutputStream extends FSOutputSummer
       throws IOException {
     dfsClient.checkOpen();
     checkClosed();
+    final CompletableFuture<Void> flushed = new CompletableFuture<>();
     try {
-      long toWaitFor;
-      long lastBlockLength = -1L;
-      boolean updateLength = syncFlags.contains(SyncFlag.UPDATE_LENGTH);
-      boolean endBlock = syncFlags.contains(SyncFlag.END_BLOCK);
+      final long toWaitFor;
+      final CompletableFuture<Void> previous;
       synchronized (this) {
-        // flush checksum buffer, but keep checksum buffer intact if we do not
-        // need to end the current block
-        int numKept = flushBuffer(!endBlock, true);
-        // bytesCurBlock potentially incremented if there was buffered data
-
-        DFSClient.LOG.debug("DFSClient flush():  bytesCurBlock={}, "
-                + "lastFlushOffset={}, createNewBlock={}",
-            getStreamer().getBytesCurBlock(), lastFlushOffset, endBlock);
-        // Flush only if we haven't already flushed till this offset.
-        if (lastFlushOffset != getStreamer().getBytesCurBlock()) {
-          assert getStreamer().getBytesCurBlock() > lastFlushOffset;
-          // record the valid offset of this flush
-          lastFlushOffset = getStreamer().getBytesCurBlock();
-          if (isSync && currentPacket == null && !endBlock) {
-            // Nothing to send right now,
-            // but sync was requested.
-            // Send an empty packet if we do not end the block right now
-            currentPacket = createPacket(packetSize, chunksPerPacket,
-                getStreamer().getBytesCurBlock(), getStreamer()
-                    .getAndIncCurrentSeqno(), false);
-          }
-        } else {
-          if (isSync && getStreamer().getBytesCurBlock() > 0 && !endBlock) {
-            // Nothing to send right now,
-            // and the block was partially written,
-            // and sync was requested.
-            // So send an empty sync packet if we do not end the block right
-            // now
-            currentPacket = createPacket(packetSize, chunksPerPacket,
-                getStreamer().getBytesCurBlock(), getStreamer()
-                    .getAndIncCurrentSeqno(), false);
-          } else if (currentPacket != null) {
-            // just discard the current packet since it is already been sent.
-            currentPacket.releaseBuffer(byteArrayManager);
-            currentPacket = null;
-          }
-        }
-        if (currentPacket != null) {
-          currentPacket.setSyncBlock(isSync);
-          enqueueCurrentPacket();
-        }
-        if (endBlock && getStreamer().getBytesCurBlock() > 0) {
-          // Need to end the current block, thus send an empty packet to
-          // indicate this is the end of the block and reset bytesCurBlock
-          currentPacket = createPacket(0, 0, getStreamer().getBytesCurBlock(),
-              getStreamer().getAndIncCurrentSeqno(), true);
-          currentPacket.setSyncBlock(shouldSyncBlock || isSync);
-          enqueueCurrentPacket();
-          getStreamer().setBytesCurBlock(0);
-          lastFlushOffset = 0;
-        } else {
-          // Restore state of stream. Record the last flush offset
-          // of the last full chunk that was flushed.
-          getStreamer().setBytesCurBlock(
-              getStreamer().getBytesCurBlock() - numKept);
-        }
-
-        toWaitFor = getStreamer().getLastQueuedSeqno();
-      } // end synchronized
-
-      getStreamer().waitForAckedSeqno(toWaitFor);
-
-      // update the block length first time irrespective of flag
-      if (updateLength || getStreamer().getPersistBlocks().get()) {
-        synchronized (this) {
-          if (!getStreamer().streamerClosed()
-              && getStreamer().getBlock() != null) {
-            lastBlockLength = getStreamer().getBlock().getNumBytes();
-          }
-        }
-      }
-      // If 1) any new blocks were allocated since the last flush, or 2) to
-      // update length in NN is required, then persist block locations on
-      // namenode.
-      if (getStreamer().getPersistBlocks().getAndSet(false) || updateLength) {
-        try {
-          dfsClient.namenode.fsync(src, fileId, dfsClient.clientName,
-              lastBlockLength);
-        } catch (IOException ioe) {
-          DFSClient.LOG.warn("Unable to persist blocks in hflush for " + src,
-              ioe);
-          // If we got an error here, it might be because some other thread
-          // called close before our hflush completed. In that case, we should
-          // throw an exception that the stream is closed.
-          checkClosed();
-          // If we aren't closed but failed to sync, we should expose that to
-          // the caller.
-          throw ioe;
-        }
-      }
-
-      synchronized(this) {
-        if (!getStreamer().streamerClosed()) {
-          getStreamer().setHflush();
-        }
+        toWaitFor = queueFlush(isSync, syncFlags);
+        previous = lastFlush;
+        lastFlush = flushed;
       }
+      getStreamer().waitForAckedSeqno(toWaitFor);
+      waitForFlush(previous);
+      completeFlush(syncFlags);
     } catch (InterruptedIOException interrupt) {
       // This kind of error doesn't mean that the stream itself is broken - just
       // the flushing thread got interrupted. So, we shouldn't close down the
       // writer, but instead just propagate the error
       throw interrupt;
     } catch (IOException e) {
-      DFSClient.LOG.warn("Error while syncing", e);
+      failFlush(e);
+      throw e;
+    } finally {
+      flushed.complete(null);
+    }
+  }
+
+  /**
+   * Like {@link #flushOrSync(boolean, EnumSet)}, but the rest of the flush is
+   * done by the async flush thread pool of the client once the packets are
+   * acked and the previous flushes of the stream are complete.
+   */
+  private CompletableFuture<Void> flushOrSyncAsync(boolean isSync,
+      EnumSet<SyncFlag> syncFlags) {
+    final CompletableFuture<Void> result = new CompletableFuture<>();
+    final CompletableFuture<Void> flushed = new CompletableFuture<>();
+    final CompletableFuture<Void> acked;
+    final CompletableFuture<Void> previous;
+    try {
+      dfsClient.checkOpen();
+      checkClosed();
+    } catch (IOException e) {
+      result.completeExceptionally(e);
+      return result;
+    }
+    try {
       synchronized (this) {
-        if (!isClosed()) {
-          getStreamer().getLastException().set(e);
-          closeThreads(true);
+        final long toWaitFor = queueFlush(isSync, syncFlags);
+        acked = getStreamer().getAckedSeqnoFuture(toWaitFor);
+        previous = lastFlush;
+        lastFlush = flushed;
+      }
+    } catch (IOException e) {
+      if (e instanceof InterruptedIOException) {
+        result.completeExceptionally(e);
+      } else {
+        failFlush(e, result);
+      }
+      return result;
+    }
+    // A flush reads the block length before updating the NameNode, which
+    // keeps the last length it is sent: update it in the order of the flushes.
+    previous.thenCompose(ignored -> acked).whenCompleteAsync(
+        (ignored, t) -> {
+          try {
+            if (t instanceof CompletionException) {
+              t = t.getCause();
+            }
+            if (t != null) {
+              // the streamer only fails the futures with IOExceptions
+              throw (IOException) t;
+            }
+            completeFlush(syncFlags);
+            flushed.complete(null);
+            result.complete(null);
+          } catch (IOException e) {
+            flushed.complete(null);
+            failFlush(e, result);
+          } catch (RuntimeException e) {
+            flushed.complete(null);
+            result.completeExceptionally(e);
+          }
+        }, dfsClient.getAsyncFlushThreadPool());
+    return result;
+  }
+
+  /**
+   * Queue the buffered data, and the packets ending the block if needed.
+   *
+   * @return the seqno of the last packet to be acked for the flush
+   */
+  private synchronized long queueFlush(boolean isSync,
+      EnumSet<SyncFlag> syncFlags) throws IOException {
+    boolean endBlock = syncFlags.contains(SyncFlag.END_BLOCK);
+    // flush checksum buffer, but keep checksum buffer intact if we do not
+    // need to end the current block
+    int numKept = flushBuffer(!endBlock, true);
+    // bytesCurBlock potentially incremented if there was buffered data
+
+    DFSClient.LOG.debug("DFSClient flush():  bytesCurBlock={}, "
+            + "lastFlushOffset={}, createNewBlock={}",
+        getStreamer().getBytesCurBlock(), lastFlushOffset, endBlock);
+    // Flush only if we haven't already flushed till this offset.
+    if (lastFlushOffset != getStreamer().getBytesCurBlock()) {
+      assert getStreamer().getBytesCurBlock() > lastFlushOffset;
+      // record the valid offset of this flush
+      lastFlushOffset = getStreamer().getBytesCurBlock();
+      if (isSync && currentPacket == null && !endBlock) {
+        // Nothing to send right now,
+        // but sync was requested.
+        // Send an empty packet if we do not end the block right now
+        currentPacket = createPacket(packetSize, chunksPerPacket,
+            getStreamer().getBytesCurBlock(), getStreamer()
+                .getAndIncCurrentSeqno(), false);
+      }
+    } else {
+      if (isSync && getStreamer().getBytesCurBlock() > 0 && !endBlock) {
+        // Nothing to send right now,
+        // and the block was partially written,
+        // and sync was requested.
+        // So send an empty sync packet if we do not end the block right
+        // now
+        currentPacket = createPacket(packetSize, chunksPerPacket,
+            getStreamer().getBytesCurBlock(), getStreamer()
+                .getAndIncCurrentSeqno(), false);
+      } else if (currentPacket != null) {
+        // just discard the current packet since it is already been sent.
+        currentPacket.releaseBuffer(byteArrayManager);
+        currentPacket = null;
+      }
+    }
+    if (currentPacket != null) {
+      currentPacket.setSyncBlock(isSync);
+      enqueueCurrentPacket();
+    }
+    if (endBlock && getStreamer().getBytesCurBlock() > 0) {
+      // Need to end the current block, thus send an empty packet to
+      // indicate this is the end of the block and reset bytesCurBlock
+      currentPacket = createPacket(0, 0, getStreamer().getBytesCurBlock(),
+          getStreamer().getAndIncCurrentSeqno(), true);
+      currentPacket.setSyncBlock(shouldSyncBlock || isSync);
+      enqueueCurrentPacket();
+      getStreamer().setBytesCurBlock(0);
+      lastFlushOffset = 0;
+    } else {
+      // Restore state of stream. Record the last flush offset
+      // of the last full chunk that was flushed.
+      getStreamer().setBytesCurBlock(
+          getStreamer().getBytesCurBlock() - numKept);
+    }
+
+    return getStreamer().getLastQueuedSeqno();
+  }
+
+  /**
+   * Persist the block locations and length on the NameNode if needed, once
+   * the flushed packets are acked.
+   */
+  private void completeFlush(EnumSet<SyncFlag> syncFlags) throws IOException {
+    long lastBlockLength = -1L;
+    boolean updateLength = syncFlags.contains(SyncFlag.UPDATE_LENGTH);
+    // update the block length first time irrespective of flag
+    if (updateLength || getStreamer().getPersistBlocks().get()) {
+      synchronized (this) {
+        if (!getStreamer().streamerClosed()
+            && getStreamer().getBlock() != null) {
+          lastBlockLength = getStreamer().getBlock().getNumBytes();
         }
       }
-      throw e;
+    }
+    // If 1) any new blocks were allocated since the last flush, or 2) to
+    // update length in NN is required, then persist block locations on
+    // namenode.
+    if (getStreamer().getPersistBlocks().getAndSet(false) || updateLength) {
+      try {
+        DFSClientFaultInjector.get().delayBeforeFsync();
+        dfsClient.namenode.fsync(src, fileId, dfsClient.clientName,
+            lastBlockLength);
+      } catch (IOException ioe) {
+        DFSClient.LOG.warn("Unable to persist blocks in hflush for " + src,
+            ioe);
+        // If we got an error here, it might be because some other thread
+        // called close before our hflush completed. In that case, we should
+        // throw an exception that the stream is closed.
+        checkClosed();
+        // If we aren't closed but failed to sync, we should expose that to
+        // the caller.
+        throw ioe;
+      }
+    }
+
+    synchronized(this) {
+      if (!getStreamer().streamerClosed()) {
+        getStreamer().setHflush();
+      }
+    }
+  }
+
+  /**
+   * Wait until a previous flush of the stream updated the NameNode.
+   */
+  private static void waitForFlush(CompletableFuture<Void> previous)
+      throws InterruptedIOException {
+    try {
+      previous.get();
+    } catch (InterruptedException ie) {
+      final InterruptedIOException iioe = new InterruptedIOException(
+          "Interrupted while waiting for a previous flush");
+      iioe.initCause(ie);
+      throw iioe;
+    } catch (ExecutionException e) {
+      // the flushes are never completed exceptionally
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /** Close the stream after a failed flush. */
+  private void failFlush(IOException e) throws IOException {
+    DFSClient.LOG.warn("Error while syncing", e);
+    synchronized (this) {
+      if (!isClosed()) {
+        getStreamer().getLastException().set(e);
+        closeThreads(true);
+      }
+    }
+  }
+
+  /**
+   * Close the stream after a failed asynchronous flush, and complete its
+   * future.
+   */
+  private void failFlush(IOException e, CompletableFuture<Void> result) {
+    try {
+      failFlush(e);
+      result.completeExceptionally(e);
+    } catch (IOException closeError) {
+      result.completeExceptionally(closeError);
     }
   }
 
@@ -63,6 +63,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionService;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
@@ -1028,6 +1029,18 @@ public class DFSStripedOutputStream extends DFSOutputStream
         + "Caller should check StreamCapabilities before calling.", syncFlags);
   }
 
+  @Override
+  public CompletableFuture<Void> hflushAsync() {
+    hflush();
+    return CompletableFuture.completedFuture(null);
+  }
+
+  @Override
+  public CompletableFuture<Void> hsyncAsync(EnumSet<SyncFlag> syncFlags) {
+    hsync(syncFlags);
+    return CompletableFuture.completedFuture(null);
+  }
+
   @Override
   protected synchronized void start() {
     for (StripedDataStreamer streamer : streamers) {
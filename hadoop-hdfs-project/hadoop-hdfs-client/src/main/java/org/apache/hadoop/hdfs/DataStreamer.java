@@ -32,6 +32,7 @@ import java.net.Socket;
 import java.nio.channels.ClosedChannelException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.EnumSet;
 import java.util.HashSet;
@@ -39,6 +40,8 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
@@ -500,6 +503,12 @@ class DataStreamer extends Daemon {
   private long currentSeqno = 0;
   private long lastQueuedSeqno = -1;
   private long lastAckedSeqno = -1;
+  /**
+   * The futures waiting for the ack of a seqno, see
+   * {@link #getAckedSeqnoFuture(long)}. Guarded by dataQueue.
+   */
+  private final TreeMap<Long, List<CompletableFuture<Void>>> ackFutures =
+      new TreeMap<>();
   private long bytesCurBlock = 0; // bytes written in current block
   private final LastExceptionInStreamer lastException = new LastExceptionInStreamer();
   private Socket s;
@@ -890,9 +899,12 @@ class DataStreamer extends Daemon {
     closeStream();
     streamerClosed = true;
     release();
+    final List<CompletableFuture<Void>> futures;
     synchronized (dataQueue) {
       dataQueue.notifyAll();
+      futures = pollAckFutures(Long.MAX_VALUE);
     }
+    completeAckFutures(futures);
   }
 
   /**
@@ -958,6 +970,63 @@ class DataStreamer extends Daemon {
     }
   }
 
+  /**
+   * Get a future completed once the packet of the given seqno was acked, like
+   * {@link #waitForAckedSeqno(long)} but without blocking. The future is
+   * completed by the thread processing the acks, so its dependent actions
+   * must not block.
+   *
+   * @param seqno the sequence number to be acked
+   * @return a future completed exceptionally with the IOException
+   *         {@link #waitForAckedSeqno(long)} would have thrown
+   */
+  CompletableFuture<Void> getAckedSeqnoFuture(long seqno) {
+    final CompletableFuture<Void> future = new CompletableFuture<>();
+    synchronized (dataQueue) {
+      if (!streamerClosed && lastAckedSeqno < seqno) {
+        LOG.debug("{} waiting asynchronously for ack for: {}", this, seqno);
+        ackFutures.computeIfAbsent(seqno, k -> new ArrayList<>()).add(future);
+        return future;
+      }
+    }
+    completeAckFuture(future);
+    return future;
+  }
+
+  /**
+   * Remove the futures waiting for the ack of at most the given seqno. The
+   * caller must hold the dataQueue lock.
+   */
+  private List<CompletableFuture<Void>> pollAckFutures(long seqno) {
+    if (ackFutures.isEmpty()) {
+      return Collections.emptyList();
+    }
+    final List<CompletableFuture<Void>> futures = new ArrayList<>();
+    final Map<Long, List<CompletableFuture<Void>>> acked =
+        ackFutures.headMap(seqno, true);
+    acked.values().forEach(futures::addAll);
+    acked.clear();
+    return futures;
+  }
+
+  private void completeAckFutures(List<CompletableFuture<Void>> futures) {
+    for (CompletableFuture<Void> future : futures) {
+      completeAckFuture(future);
+    }
+  }
+
+  private void completeAckFuture(CompletableFuture<Void> future) {
+    try {
+      checkClosed();
+      future.complete(null);
+    } catch (ClosedChannelException cce) {
+      // as in waitForAckedSeqno
+      future.complete(null);
+    } catch (IOException e) {
+      future.completeExceptionally(e);
+    }
+  }
+
   /**
    * wait for space of dataQueue and queue the packet
    *
@@ -1017,9 +1086,12 @@ class DataStreamer extends Daemon {
    */
   void close(boolean force) {
     streamerClosed = true;
+    final List<CompletableFuture<Void>> futures;
     synchronized (dataQueue) {
       dataQueue.notifyAll();
+      futures = pollAckFutures(Long.MAX_VALUE);
     }
+    completeAckFutures(futures);
     if (force) {
       this.interrupt();
     }
@@ -1240,6 +1312,7 @@ class DataStreamer extends Daemon {
           // update bytesAcked
           block.setNumBytes(one.getLastByteOffsetBlock());
 
+          final List<CompletableFuture<Void>> acked;
           synchronized (dataQueue) {
             if (one.getSpan() != null) {
               scope = new TraceScope(new Span());
@@ -1251,9 +1324,11 @@ class DataStreamer extends Daemon {
             ackQueue.removeFirst();
             packetSendTime.remove(seqno);
             dataQueue.notifyAll();
+            acked = pollAckFutures(seqno);
 
             one.releaseBuffer(byteArrayManager);
           }
+          completeAckFutures(acked);
         } catch (Throwable e) {
           if (!responderClosed) {
             lastException.set(e);
@@ -1381,6 +1456,7 @@ class DataStreamer extends Daemon {
         //
         // We also need to set lastAckedSeqno to the end-of-block Packet's seqno, so that
         // a client waiting on close() will be aware that the flush finished.
+        final List<CompletableFuture<Void>> acked;
         synchronized (dataQueue) {
           DFSPacket endOfBlockPacket = dataQueue.remove();  // remove the end of block packet
           // Close any trace span associated with this Packet
@@ -1394,7 +1470,9 @@ class DataStreamer extends Daemon {
           lastAckedSeqno = endOfBlockPacket.getSeqno();
           pipelineRecoveryCount = 0;
           dataQueue.notifyAll();
+          acked = pollAckFutures(lastAckedSeqno);
         }
+        completeAckFutures(acked);
         endBlock();
       } else {
         initDataStreaming();
@@ -0,0 +1,160 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.VisibleForTesting;
+import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
+import org.apache.hadoop.util.Time;
+
+/**
+ * Tracks the recent latency of the reads from each datanode, so that the
+ * DFSInputStreams sharing a {@link ClientContext} can avoid the slow
+ * datanodes and hedge their reads based on the observed latencies.
+ *
+ * The latencies are kept in histograms whose counts are halved every
+ * {@link #DECAY_INTERVAL_MS}, so that a datanode which stopped being read
+ * because it was slow is eventually tried again.
+ *
+ * This class is thread safe.
+ */
+@InterfaceAudience.Private
+public class DatanodeLatencyTracker {
+  /** The period after which the older samples weigh half as much. */
+  static final long DECAY_INTERVAL_MS = 30000;
+  /** The number of samples below which a percentile is unknown. */
+  static final long MIN_SAMPLES = 8;
+
+  private final ConcurrentHashMap<DatanodeInfo, LatencyHistogram> nodes =
+      new ConcurrentHashMap<>();
+  /** The latencies of the reads from all the datanodes. */
+  private final LatencyHistogram all = new LatencyHistogram();
+
+  /** Record the latency of a successful read from a datanode. */
+  public void addLatency(DatanodeInfo node, long millis) {
+    nodes.computeIfAbsent(node, n -> new LatencyHistogram()).add(millis);
+    all.add(millis);
+  }
+
+  /**
+   * @param percentile the percentile, between 0 and 100
+   * @return the latency of the reads from the datanode at the percentile in
+   *         milliseconds, or -1 if there are too few recent reads.
+   */
+  public long getPercentile(DatanodeInfo node, double percentile) {
+    final LatencyHistogram histogram = nodes.get(node);
+    return histogram == null ? -1 : histogram.getPercentile(percentile);
+  }
+
+  /**
+   * @param percentile the percentile, between 0 and 100
+   * @return the latency of the reads from all the datanodes at the
+   *         percentile in milliseconds, or -1 if there are too few recent
+   *         reads.
+   */
+  public long getPercentile(double percentile) {
+    return all.getPercentile(percentile);
+  }
+
+  /** Forget the latencies of all the datanodes. */
+  @VisibleForTesting
+  public void clear() {
+    nodes.clear();
+    all.clear();
+  }
+
+  /**
+   * A histogram of latencies in milliseconds, with four buckets per power of
+   * two, so that a percentile is at most 25% higher than the actual one.
+   */
+  static class LatencyHistogram {
+    /** Latencies are capped at 2^MAX_EXPONENT milliseconds. */
+    private static final int MAX_EXPONENT = 20;
+    private static final int NUM_BUCKETS = 4 * (MAX_EXPONENT - 1);
+
+    private final long[] counts = new long[NUM_BUCKETS];
+    private long total;
+    private long lastDecay = Time.monotonicNow();
+
+    static int getBucket(long millis) {
+      if (millis < 4) {
+        return (int) Math.max(millis, 0);
+      }
+      final int exponent = Math.min(
+          63 - Long.numberOfLeadingZeros(millis), MAX_EXPONENT - 1);
+      final int sub = (int) (Math.min(millis, (2L << exponent) - 1)
+          >>> (exponent - 2)) & 3;
+      return 4 * (exponent - 1) + sub;
+    }
+
+    /** @return the highest latency of the bucket. */
+    static long getUpperBound(int bucket) {
+      if (bucket < 4) {
+        return bucket;
+      }
+      final int exponent = bucket / 4 + 1;
+      return ((5L + bucket % 4) << (exponent - 2)) - 1;
+    }
+
+    synchronized void add(long millis) {
+      decay();
+      counts[getBucket(millis)]++;
+      total++;
+    }
+
+    synchronized long getPercentile(double percentile) {
+      decay();
+      if (total < MIN_SAMPLES) {
+        return -1;
+      }
+      final long rank =
+          Math.max(1, (long) Math.ceil(total * percentile / 100));
+      long count = 0;
+      for (int i = 0; i < NUM_BUCKETS; i++) {
+        count += counts[i];
+        if (count >= rank) {
+          return getUpperBound(i);
+        }
+      }
+      return getUpperBound(NUM_BUCKETS - 1);
+    }
+
+    private void decay() {
+      final long now = Time.monotonicNow();
+      final long periods = (now - lastDecay) / DECAY_INTERVAL_MS;
+      if (periods == 0) {
+        return;
+      }
+      lastDecay += periods * DECAY_INTERVAL_MS;
+      final int shift = (int) Math.min(periods, 63);
+      total = 0;
+      for (int i = 0; i < NUM_BUCKETS; i++) {
+        counts[i] >>>= shift;
+        total += counts[i];
+      }
+    }
+
+    synchronized void clear() {
+      Arrays.fill(counts, 0);
+      total = 0;
+    }
+  }
+}
@@ -104,6 +104,7 @@ import org.apache.hadoop.hdfs.protocol.HdfsLocatedFileStatus;
 import org.apache.hadoop.hdfs.protocol.OpenFileEntry;
 import org.apache.hadoop.hdfs.protocol.OpenFilesIterator.OpenFilesType;
 import org.apache.hadoop.hdfs.protocol.ZoneReencryptionStatus;
+import org.apache.hadoop.hdfs.protocol.RecursiveDirectoryListing;
 import org.apache.hadoop.hdfs.protocol.RollingUpgradeInfo;
 import org.apache.hadoop.hdfs.protocol.SnapshotDiffReport;
 import org.apache.hadoop.hdfs.protocol.SnapshotDiffReportListing;
@@ -1371,6 +1372,102 @@ public class DistributedFileSystem extends FileSystem
     return new PartialListingIterator<>(absPaths, true);
   }
 
+  /**
+   * Returns a remote iterator over the status of every file, directory and
+   * symlink under the given path, in depth-first order. The namenode returns
+   * the entries of the whole subtree in large batches, so walking a tree
+   * takes far fewer calls than listing each directory separately. If the
+   * path is a file, the iterator only returns its status.
+   *
+   * Unlike {@link #listFiles(Path, boolean)}, the listing is not a snapshot:
+   * changes made to the tree while it is being listed may or may not be
+   * reflected in the entries not yet returned.
+   *
+   * @param p the path to list recursively
+   * @return an iterator over the statuses of the subtree
+   * @throws FileNotFoundException if the path does not exist
+   * @throws IOException if any I/O error occurred
+   */
+  public RemoteIterator<FileStatus> recursiveListStatusIterator(
+      final Path p) throws IOException {
+    return new RecursiveListingIterator<>(fixRelativePart(p), false);
+  }
+
+  /**
+   * Same as {@link #recursiveListStatusIterator(Path)}, with the block
+   * locations of the files included.
+   */
+  public RemoteIterator<LocatedFileStatus> recursiveListLocatedStatusIterator(
+      final Path p) throws IOException {
+    return new RecursiveListingIterator<>(fixRelativePart(p), true);
+  }
+
+  /**
+   * An iterator over the batches of a recursive listing. Each batch ends
+   * with a cursor, the path of its last entry relative to the listed path,
+   * from which the namenode continues the listing.
+   *
+   * @param <T> the type of the file status
+   */
+  private class RecursiveListingIterator<T extends FileStatus>
+      implements RemoteIterator<T> {
+    private final Path p;
+    private final String src;
+    private final boolean needLocation;
+    private RecursiveDirectoryListing thisListing;
+    private int i;
+
+    RecursiveListingIterator(Path p, boolean needLocation)
+        throws IOException {
+      this.p = p;
+      this.src = getPathName(p);
+      this.needLocation = needLocation;
+      thisListing = fetch(HdfsFileStatus.EMPTY_NAME);
+    }
+
+    private RecursiveDirectoryListing fetch(byte[] cursor)
+        throws IOException {
+      statistics.incrementReadOps(1);
+      if (needLocation) {
+        storageStatistics.incrementOpCounter(OpType.LIST_LOCATED_STATUS);
+      } else {
+        storageStatistics.incrementOpCounter(OpType.LIST_STATUS);
+      }
+      RecursiveDirectoryListing listing =
+          dfs.recursiveListPaths(src, cursor, needLocation);
+      if (listing == null) {
+        throw new FileNotFoundException("File " + p + " does not exist.");
+      }
+      i = 0;
+      return listing;
+    }
+
+    @Override
+    public boolean hasNext() throws IOException {
+      while (i >= thisListing.getPartialListing().length) {
+        if (!thisListing.hasMore()) {
+          return false;
+        }
+        thisListing = fetch(thisListing.getCursor());
+      }
+      return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T next() throws IOException {
+      if (!hasNext()) {
+        throw new NoSuchElementException("No more entry in " + p);
+      }
+      HdfsFileStatus fileStat = thisListing.getPartialListing()[i++];
+      if (needLocation) {
+        return (T)((HdfsLocatedFileStatus)fileStat)
+            .makeQualifiedLocated(getUri(), p);
+      }
+      return (T)fileStat.makeQualified(getUri(), p);
+    }
+  }
+
   private static final Logger LBI_LOG =
       LoggerFactory.getLogger(PartialListingIterator.class);
 
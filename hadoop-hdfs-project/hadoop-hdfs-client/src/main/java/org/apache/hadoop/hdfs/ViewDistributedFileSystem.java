@@ -665,6 +665,33 @@ public class ViewDistributedFileSystem extends DistributedFileSystem {
     return this.defaultDFS.batchedListLocatedStatusIterator(paths);
   }
 
+  @Override
+  public RemoteIterator<FileStatus> recursiveListStatusIterator(final Path p)
+      throws IOException {
+    if (this.vfs == null) {
+      return super.recursiveListStatusIterator(p);
+    }
+    ViewFileSystemOverloadScheme.MountPathInfo<FileSystem> mountPathInfo =
+        this.vfs.getMountPathInfo(p, getConf());
+    checkDFS(mountPathInfo.getTargetFs(), "recursiveListStatusIterator");
+    return ((DistributedFileSystem) mountPathInfo.getTargetFs())
+        .recursiveListStatusIterator(mountPathInfo.getPathOnTarget());
+  }
+
+  @Override
+  public RemoteIterator<LocatedFileStatus> recursiveListLocatedStatusIterator(
+      final Path p) throws IOException {
+    if (this.vfs == null) {
+      return super.recursiveListLocatedStatusIterator(p);
+    }
+    ViewFileSystemOverloadScheme.MountPathInfo<FileSystem> mountPathInfo =
+        this.vfs.getMountPathInfo(p, getConf());
+    checkDFS(mountPathInfo.getTargetFs(),
+        "recursiveListLocatedStatusIterator");
+    return ((DistributedFileSystem) mountPathInfo.getTargetFs())
+        .recursiveListLocatedStatusIterator(mountPathInfo.getPathOnTarget());
+  }
+
   public boolean mkdir(Path f, FsPermission permission) throws IOException {
     if (this.vfs == null) {
       return super.mkdir(f, permission);
@@ -388,6 +388,12 @@ public interface HdfsClientConfigKeys {
     String RESOLVE_SERVICE_KEY = PREFIX + "resolver.impl";
     String  RESOLVE_ADDRESS_TO_FQDN = PREFIX + "resolver.useFQDN";
     boolean RESOLVE_ADDRESS_TO_FQDN_DEFAULT = true;
+    String  OBSERVER_FILE_INFO_CACHE_STALENESS_KEY =
+        PREFIX + "observer.file-info-cache.staleness";
+    long    OBSERVER_FILE_INFO_CACHE_STALENESS_DEFAULT = 0;
+    String  OBSERVER_FILE_INFO_CACHE_SIZE_KEY =
+        PREFIX + "observer.file-info-cache.size";
+    int     OBSERVER_FILE_INFO_CACHE_SIZE_DEFAULT = 10000;
   }
 
   /** dfs.client.write configuration properties */
@@ -402,6 +408,9 @@ public interface HdfsClientConfigKeys {
     String RECOVER_LEASE_ON_CLOSE_EXCEPTION_KEY =
         PREFIX + "recover.lease.on.close.exception";
     boolean RECOVER_LEASE_ON_CLOSE_EXCEPTION_DEFAULT = false;
+    String  ASYNC_FLUSH_THREADPOOL_SIZE_KEY =
+        PREFIX + "async.flush.threadpool.size";
+    int     ASYNC_FLUSH_THREADPOOL_SIZE_DEFAULT = 4;
 
     interface ByteArrayManager {
       String PREFIX = Write.PREFIX + "byte-array-manager.";
@@ -415,6 +424,8 @@ public interface HdfsClientConfigKeys {
       String  COUNT_RESET_TIME_PERIOD_MS_KEY =
           PREFIX + "count-reset-time-period-ms";
       long    COUNT_RESET_TIME_PERIOD_MS_DEFAULT = 10*SECOND;
+      String  STREAM_CACHE_SIZE_KEY = PREFIX + "stream-cache-size";
+      int     STREAM_CACHE_SIZE_DEFAULT = 2;
     }
   }
 
@@ -509,6 +520,10 @@ public interface HdfsClientConfigKeys {
     long    THRESHOLD_MILLIS_DEFAULT = 500;
     String  THREADPOOL_SIZE_KEY = PREFIX + "threadpool.size";
     int     THREADPOOL_SIZE_DEFAULT = 0;
+    String  ADAPTIVE_ENABLED_KEY = PREFIX + "adaptive.enabled";
+    boolean ADAPTIVE_ENABLED_DEFAULT = false;
+    String  ADAPTIVE_PERCENTILE_KEY = PREFIX + "adaptive.percentile";
+    double  ADAPTIVE_PERCENTILE_DEFAULT = 95;
   }
 
   /** dfs.client.read.striped configuration properties */
@@ -523,6 +538,19 @@ public interface HdfsClientConfigKeys {
     int     THREADPOOL_SIZE_DEFAULT = 18;
   }
 
+  /** dfs.client.read.vectored configuration properties */
+  interface VectoredRead {
+    String PREFIX = Read.PREFIX + "vectored.";
+
+    String  THREADPOOL_SIZE_KEY = PREFIX + "threadpool.size";
+    /**
+     * Each range of a vectored read, once the close ranges are merged, is
+     * read by a thread of the pool. Zero reads the ranges one after the
+     * other, in the calling thread.
+     */
+    int     THREADPOOL_SIZE_DEFAULT = 16;
+  }
+
   /** dfs.http.client configuration properties */
   interface HttpClient {
     String  PREFIX = "dfs.http.client.";
@@ -20,6 +20,7 @@ package org.apache.hadoop.hdfs.client;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.EnumSet;
+import java.util.concurrent.CompletableFuture;
 
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.classification.InterfaceStability;
@@ -96,6 +97,51 @@ public class HdfsDataOutputStream extends FSDataOutputStream {
     ((DFSOutputStream) wrappedStream).hsync(syncFlags);
   }
 
+  /**
+   * Flush buffered data to DataNodes without waiting for their acks.
+   *
+   * @return a future completed once the flushed data become visible to new
+   *         readers
+   * @see DFSOutputStream#hflushAsync()
+   */
+  public CompletableFuture<Void> hflushAsync() {
+    try {
+      return flushToDFSOutputStream().hflushAsync();
+    } catch (IOException e) {
+      CompletableFuture<Void> future = new CompletableFuture<>();
+      future.completeExceptionally(e);
+      return future;
+    }
+  }
+
+  /**
+   * Sync buffered data to DataNodes without waiting for their acks.
+   *
+   * @param syncFlags
+   *          Indicate the detailed semantic and actions of the hsync.
+   * @return a future completed once the data are synced
+   * @see DFSOutputStream#hsyncAsync(EnumSet)
+   */
+  public CompletableFuture<Void> hsyncAsync(EnumSet<SyncFlag> syncFlags) {
+    try {
+      return flushToDFSOutputStream().hsyncAsync(syncFlags);
+    } catch (IOException e) {
+      CompletableFuture<Void> future = new CompletableFuture<>();
+      future.completeExceptionally(e);
+      return future;
+    }
+  }
+
+  /** Flush the encrypted data if any, and get the DFSOutputStream. */
+  private DFSOutputStream flushToDFSOutputStream() throws IOException {
+    OutputStream wrappedStream = getWrappedStream();
+    if (wrappedStream instanceof CryptoOutputStream) {
+      wrappedStream.flush();
+      wrappedStream = ((CryptoOutputStream) wrappedStream).getWrappedStream();
+    }
+    return (DFSOutputStream) wrappedStream;
+  }
+
   public enum SyncFlag {
 
     /**
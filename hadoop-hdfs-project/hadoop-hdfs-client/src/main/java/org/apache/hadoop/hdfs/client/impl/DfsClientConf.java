@@ -123,6 +123,7 @@ public class DfsClientConf {
   private final int writePacketSize;
   private final int writeMaxPackets;
   private final ByteArrayManager.Conf writeByteArrayManagerConf;
+  private final int writeByteArrayStreamCacheSize;
   private final int socketTimeout;
   private final int socketSendBufferSize;
   private final long excludedNodesCacheExpiry;
@@ -155,10 +156,14 @@ public class DfsClientConf {
 
   private final long hedgedReadThresholdMillis;
   private final int hedgedReadThreadpoolSize;
+  private final int asyncFlushThreadpoolSize;
+  private final boolean hedgedReadAdaptive;
+  private final double hedgedReadAdaptivePercentile;
   private final List<Class<? extends ReplicaAccessorBuilder>>
       replicaAccessorBuilderClasses;
 
   private final int stripedReadThreadpoolSize;
+  private final int vectoredReadThreadpoolSize;
 
   private final boolean dataTransferTcpNoDelay;
 
@@ -223,6 +228,9 @@ public class DfsClientConf {
         Write.MAX_PACKETS_IN_FLIGHT_DEFAULT);
 
     writeByteArrayManagerConf = loadWriteByteArrayManagerConf(conf);
+    writeByteArrayStreamCacheSize = conf.getInt(
+        Write.ByteArrayManager.STREAM_CACHE_SIZE_KEY,
+        Write.ByteArrayManager.STREAM_CACHE_SIZE_DEFAULT);
 
     defaultBlockSize = conf.getLongBytes(DFS_BLOCK_SIZE_KEY,
         DFS_BLOCK_SIZE_DEFAULT);
@@ -284,6 +292,15 @@ public class DfsClientConf {
     hedgedReadThreadpoolSize = conf.getInt(
         HdfsClientConfigKeys.HedgedRead.THREADPOOL_SIZE_KEY,
         HdfsClientConfigKeys.HedgedRead.THREADPOOL_SIZE_DEFAULT);
+    hedgedReadAdaptive = conf.getBoolean(
+        HedgedRead.ADAPTIVE_ENABLED_KEY,
+        HedgedRead.ADAPTIVE_ENABLED_DEFAULT);
+    hedgedReadAdaptivePercentile = conf.getDouble(
+        HedgedRead.ADAPTIVE_PERCENTILE_KEY,
+        HedgedRead.ADAPTIVE_PERCENTILE_DEFAULT);
+    Preconditions.checkArgument(hedgedReadAdaptivePercentile > 0
+        && hedgedReadAdaptivePercentile <= 100, "The value of "
+        + HedgedRead.ADAPTIVE_PERCENTILE_KEY + " must be in (0, 100].");
 
     deadNodeDetectionEnabled =
         conf.getBoolean(DFS_CLIENT_DEAD_NODE_DETECTION_ENABLED_KEY,
@@ -295,6 +312,14 @@ public class DfsClientConf {
     Preconditions.checkArgument(stripedReadThreadpoolSize > 0, "The value of " +
         HdfsClientConfigKeys.StripedRead.THREADPOOL_SIZE_KEY +
         " must be greater than 0.");
+    asyncFlushThreadpoolSize = conf.getInt(
+        Write.ASYNC_FLUSH_THREADPOOL_SIZE_KEY,
+        Write.ASYNC_FLUSH_THREADPOOL_SIZE_DEFAULT);
+    Preconditions.checkArgument(asyncFlushThreadpoolSize > 0, "The value of "
+        + Write.ASYNC_FLUSH_THREADPOOL_SIZE_KEY + " must be greater than 0.");
+    vectoredReadThreadpoolSize = conf.getInt(
+        HdfsClientConfigKeys.VectoredRead.THREADPOOL_SIZE_KEY,
+        HdfsClientConfigKeys.VectoredRead.THREADPOOL_SIZE_DEFAULT);
     replicaAccessorBuilderClasses = loadReplicaAccessorBuilderClasses(conf);
 
     leaseHardLimitPeriod =
@@ -522,6 +547,14 @@ public class DfsClientConf {
     return writeByteArrayManagerConf;
   }
 
+  /**
+   * @return the number of packet buffers kept by each output stream for
+   *         reuse when the byte array manager is disabled
+   */
+  public int getWriteByteArrayStreamCacheSize() {
+    return writeByteArrayStreamCacheSize;
+  }
+
   /**
    * @return whether TCP_NODELAY should be set on client sockets
    */
@@ -683,6 +716,29 @@ public class DfsClientConf {
     return hedgedReadThreadpoolSize;
   }
 
+  /**
+   * @return the size of the pool completing the asynchronous flushes
+   */
+  public int getAsyncFlushThreadpoolSize() {
+    return asyncFlushThreadpoolSize;
+  }
+
+  /**
+   * @return whether the hedged read threshold and the choice of datanodes
+   *         are based on the recent latency of the datanodes
+   */
+  public boolean isHedgedReadAdaptive() {
+    return hedgedReadAdaptive;
+  }
+
+  /**
+   * @return the percentile of the recent read latencies used as the hedged
+   *         read threshold
+   */
+  public double getHedgedReadAdaptivePercentile() {
+    return hedgedReadAdaptivePercentile;
+  }
+
   /**
    * @return the stripedReadThreadpoolSize
    */
@@ -690,6 +746,13 @@ public class DfsClientConf {
     return stripedReadThreadpoolSize;
   }
 
+  /**
+   * @return the vectoredReadThreadpoolSize
+   */
+  public int getVectoredReadThreadpoolSize() {
+    return vectoredReadThreadpoolSize;
+  }
+
   /**
    * @return the deadNodeDetectionEnabled
    */
@@ -715,6 +715,31 @@ public interface ClientProtocol {
       byte[] startAfter,
       boolean needLocation) throws IOException;
 
+  /**
+   * Get a partial recursive listing of the indicated directory. Entries are
+   * returned in depth-first order, and the name of each entry is its path
+   * relative to <code>src</code>. If <code>src</code> is a file, its status
+   * is returned with an empty name.
+   *
+   * @param src the directory name
+   * @param cursor the relative path of the last entry of the previous batch
+   *               encoded in Java UTF8, or empty to start the listing
+   * @param needLocation if the FileStatus should contain block locations
+   *
+   * @return a partial listing continuing after cursor. null if
+   *         <code>src</code> does not exist
+   *
+   * @throws org.apache.hadoop.security.AccessControlException permission denied
+   *           on <code>src</code> or one of its subdirectories
+   * @throws org.apache.hadoop.fs.UnresolvedLinkException If <code>src</code>
+   *           contains a symlink
+   * @throws IOException If an I/O error occurred
+   */
+  @Idempotent
+  @ReadOnly(isCoordinated = true)
+  RecursiveDirectoryListing getRecursiveListing(String src, byte[] cursor,
+      boolean needLocation) throws IOException;
+
   /**
    * Get the list of snapshottable directories that are owned
    * by the current user. Return all the snapshottable directories if the
@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.protocol;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.hdfs.DFSUtilClient;
+
+/**
+ * A struct-like class for holding one batch of a recursive listing. The
+ * entries are in depth-first order and the name of each entry is its path
+ * relative to the listed directory. The cursor is the relative path of the
+ * last entry, and is passed back to the namenode to continue the listing.
+ * This class is used internally by the HDFS client and namenode and is not
+ * meant for public consumption.
+ */
+@InterfaceAudience.Private
+public class RecursiveDirectoryListing {
+
+  private final HdfsFileStatus[] partialListing;
+  private final boolean hasMore;
+  private final byte[] cursor;
+
+  public RecursiveDirectoryListing(HdfsFileStatus[] partialListing,
+      boolean hasMore, byte[] cursor) {
+    this.partialListing = partialListing;
+    this.hasMore = hasMore;
+    this.cursor = cursor;
+  }
+
+  public HdfsFileStatus[] getPartialListing() {
+    return partialListing;
+  }
+
+  public boolean hasMore() {
+    return hasMore;
+  }
+
+  public byte[] getCursor() {
+    return cursor;
+  }
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this)
+        .append("partialListing", partialListing.length)
+        .append("hasMore", hasMore)
+        .append("cursor", DFSUtilClient.bytes2String(cursor))
+        .toString();
+  }
+}
@@ -29,7 +29,9 @@ import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hdfs.HdfsConfiguration;
 import org.apache.hadoop.hdfs.client.HdfsClientConfigKeys;
 import org.apache.hadoop.util.DirectBufferPool;
+import org.apache.hadoop.io.ByteBufferPool;
 import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.io.WeakReferencedElasticByteBufferPool;
 
 import org.apache.hadoop.util.Preconditions;
 import org.apache.hadoop.thirdparty.com.google.common.primitives.Ints;
@@ -53,6 +55,13 @@ public class PacketReceiver implements Closeable {
   static final Logger LOG = LoggerFactory.getLogger(PacketReceiver.class);
 
   private static final DirectBufferPool bufferPool = new DirectBufferPool();
+  /**
+   * Recycles the heap buffers, such as the ones of the BlockReceivers of a
+   * DataNode, which each receive the packets of a single block. The buffers
+   * are only recycled when the receiver is closed.
+   */
+  private static final ByteBufferPool heapBufferPool =
+      new WeakReferencedElasticByteBufferPool();
   private final boolean useDirectBuffers;
 
   /**
@@ -279,7 +288,7 @@ public class PacketReceiver implements Closeable {
       if (useDirectBuffers) {
         newBuf = bufferPool.getBuffer(atLeastCapacity);
       } else {
-        newBuf = ByteBuffer.allocate(atLeastCapacity);
+        newBuf = heapBufferPool.getBuffer(false, atLeastCapacity);
       }
       // If reallocing an existing buffer, copy the old packet length
       // prefixes over
@@ -288,21 +297,29 @@ public class PacketReceiver implements Closeable {
         newBuf.put(curPacketBuf);
       }
 
-      returnPacketBufToPool();
+      // the slices of the previous packet are no longer used
+      returnPacketBufToPool(true);
       curPacketBuf = newBuf;
     }
   }
 
-  private void returnPacketBufToPool() {
+  /**
+   * @param recycleHeap whether the heap buffer may be reused, i.e. whether
+   *          none of its slices is used anymore
+   */
+  private void returnPacketBufToPool(boolean recycleHeap) {
     if (curPacketBuf != null && curPacketBuf.isDirect()) {
       bufferPool.returnBuffer(curPacketBuf);
       curPacketBuf = null;
+    } else if (curPacketBuf != null && recycleHeap) {
+      heapBufferPool.putBuffer(curPacketBuf);
+      curPacketBuf = null;
     }
   }
 
   @Override // Closeable
   public void close() {
-    returnPacketBufToPool();
+    returnPacketBufToPool(true);
   }
 
   @Override
@@ -310,7 +327,7 @@ public class PacketReceiver implements Closeable {
     try {
       // just in case it didn't get closed, we
       // may as well still try to return the buffer
-      returnPacketBufToPool();
+      returnPacketBufToPool(false);
     } finally {
       super.finalize();
     }
@@ -100,6 +100,7 @@ import org.apache.hadoop.hdfs.protocol.LocatedBlock;
 import org.apache.hadoop.hdfs.protocol.LocatedBlocks;
 import org.apache.hadoop.hdfs.protocol.LocatedStripedBlock;
 import org.apache.hadoop.hdfs.protocol.OpenFilesIterator.OpenFilesType;
+import org.apache.hadoop.hdfs.protocol.RecursiveDirectoryListing;
 import org.apache.hadoop.hdfs.protocol.ReplicatedBlockStats;
 import org.apache.hadoop.hdfs.protocol.OpenFileEntry;
 import org.apache.hadoop.hdfs.protocol.ProvidedStorageLocation;
@@ -176,6 +177,7 @@ import org.apache.hadoop.hdfs.protocol.proto.HdfsProtos.LocatedBlockProto;
 import org.apache.hadoop.hdfs.protocol.proto.HdfsProtos.LocatedBlockProto.Builder;
 import org.apache.hadoop.hdfs.protocol.proto.HdfsProtos.LocatedBlocksProto;
 import org.apache.hadoop.hdfs.protocol.proto.HdfsProtos.QuotaUsageProto;
+import org.apache.hadoop.hdfs.protocol.proto.HdfsProtos.RecursiveDirectoryListingProto;
 import org.apache.hadoop.hdfs.protocol.proto.HdfsProtos.ReencryptionInfoProto;
 import org.apache.hadoop.hdfs.protocol.proto.HdfsProtos.RollingUpgradeStatusProto;
 import org.apache.hadoop.hdfs.protocol.proto.HdfsProtos.SnapshotDiffReportListingEntryProto;
@@ -2079,6 +2081,18 @@ public class PBHelperClient {
                   dl.getRemainingEntries());
   }
 
+  public static RecursiveDirectoryListing convert(
+      RecursiveDirectoryListingProto dl) {
+    if (dl == null) {
+      return null;
+    }
+    List<HdfsFileStatusProto> partList = dl.getPartialListingList();
+    return new RecursiveDirectoryListing(partList.isEmpty()
+        ? new HdfsFileStatus[0]
+        : convert(partList.toArray(new HdfsFileStatusProto[partList.size()])),
+        dl.getHasMore(), dl.getCursor().toByteArray());
+  }
+
   public static HdfsFileStatus[] convert(HdfsFileStatusProto[] fs) {
     if (fs == null) return null;
     final int len = fs.length;
@@ -2468,6 +2482,18 @@ public class PBHelperClient {
         build();
   }
 
+  public static RecursiveDirectoryListingProto convert(
+      RecursiveDirectoryListing d) {
+    if (d == null) {
+      return null;
+    }
+    return RecursiveDirectoryListingProto.newBuilder()
+        .addAllPartialListing(Arrays.asList(convert(d.getPartialListing())))
+        .setHasMore(d.hasMore())
+        .setCursor(getByteString(d.getCursor()))
+        .build();
+  }
+
   public static GetFsStatsResponseProto convert(long[] fsStats) {
     GetFsStatsResponseProto.Builder result = GetFsStatsResponseProto
         .newBuilder();
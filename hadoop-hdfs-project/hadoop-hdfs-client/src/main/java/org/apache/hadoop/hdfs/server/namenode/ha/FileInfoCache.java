@@ -0,0 +1,110 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode.ha;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.hdfs.protocol.HdfsFileStatus;
+import org.apache.hadoop.hdfs.protocol.proto.HdfsProtos.HdfsFileStatusProto;
+import org.apache.hadoop.hdfs.protocolPB.PBHelperClient;
+import org.apache.hadoop.thirdparty.com.google.common.cache.Cache;
+import org.apache.hadoop.thirdparty.com.google.common.cache.CacheBuilder;
+
+/**
+ * A cache of the file statuses returned by
+ * {@link org.apache.hadoop.hdfs.protocol.ClientProtocol#getFileInfo}, used
+ * by {@link ObserverReadProxyProvider}.
+ *
+ * Observer reads may already return a state of the namespace that is behind
+ * the active NameNode, but they never return a state older than the client's
+ * own writes. The cache keeps the same guarantee: each entry remembers the
+ * last state id the client had seen before fetching it, and every write or
+ * msync made by the client drops the cached entries and rejects entries
+ * fetched at an older state. Otherwise an entry is served for at most the
+ * configured staleness, and the least recently used entries are evicted
+ * beyond the configured size.
+ */
+@InterfaceAudience.Private
+class FileInfoCache {
+
+  /** A cached status, stored in its wire form so callers cannot alter it. */
+  private static final class Entry {
+    private final HdfsFileStatusProto status;
+    private final long stateId;
+
+    Entry(HdfsFileStatusProto status, long stateId) {
+      this.status = status;
+      this.stateId = stateId;
+    }
+  }
+
+  private final Cache<String, Entry> cache;
+  /** Entries fetched at an older state than this are invalid. */
+  private final LongAccumulator minStateId =
+      new LongAccumulator(Math::max, Long.MIN_VALUE);
+
+  FileInfoCache(long stalenessMs, int maxSize) {
+    this.cache = CacheBuilder.newBuilder()
+        .expireAfterWrite(stalenessMs, TimeUnit.MILLISECONDS)
+        .maximumSize(maxSize)
+        .build();
+  }
+
+  /**
+   * @return the cached status of the path, or null if it is not cached.
+   */
+  HdfsFileStatus get(String src) {
+    Entry entry = cache.getIfPresent(src);
+    if (entry == null) {
+      return null;
+    }
+    if (entry.stateId < minStateId.get()) {
+      cache.asMap().remove(src, entry);
+      return null;
+    }
+    return PBHelperClient.convert(entry.status);
+  }
+
+  /**
+   * Cache the status of a path.
+   * @param stateId the last state id seen by the client before the status
+   *                was requested
+   */
+  void put(String src, HdfsFileStatus status, long stateId) {
+    if (status == null || stateId < minStateId.get()) {
+      return;
+    }
+    cache.put(src, new Entry(PBHelperClient.convert(status), stateId));
+  }
+
+  /**
+   * Invalidate the cache after the client changed the namespace or synced
+   * with the active NameNode.
+   * @param stateId the last state id seen by the client after the call
+   */
+  void invalidate(long stateId) {
+    minStateId.accumulate(stateId);
+    cache.invalidateAll();
+  }
+
+  long size() {
+    return cache.size();
+  }
+}
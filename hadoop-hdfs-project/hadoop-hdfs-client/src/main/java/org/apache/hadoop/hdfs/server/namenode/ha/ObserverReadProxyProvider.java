@@ -20,10 +20,15 @@ package org.apache.hadoop.hdfs.server.namenode.ha;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InterruptedIOException;
+import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.RejectedExecutionException;
@@ -39,8 +44,10 @@ import org.apache.hadoop.ha.HAServiceProtocol.HAServiceState;
 import org.apache.hadoop.hdfs.ClientGSIContext;
 import org.apache.hadoop.hdfs.client.HdfsClientConfigKeys;
 import org.apache.hadoop.hdfs.protocol.ClientProtocol;
+import org.apache.hadoop.hdfs.protocol.HdfsFileStatus;
 import org.apache.hadoop.io.retry.AtMostOnce;
 import org.apache.hadoop.io.retry.Idempotent;
+import org.apache.hadoop.io.retry.RetryInvocationHandler;
 import org.apache.hadoop.io.retry.RetryPolicies;
 import org.apache.hadoop.io.retry.RetryPolicy;
 import org.apache.hadoop.io.retry.RetryPolicy.RetryAction;
@@ -105,6 +112,25 @@ public class ObserverReadProxyProvider<T>
    */
   static final long NAMENODE_HA_STATE_PROBE_TIMEOUT_DEFAULT = 0;
 
+  /**
+   * The {@link ClientProtocol} calls, other than reads, which never change the
+   * status of a file and so keep the file status cache.
+   */
+  private static final Set<String> FILE_INFO_PRESERVING_METHODS =
+      Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+          "renewLease", "reportBadBlocks", "getAdditionalDatanode",
+          "updateBlockForPipeline", "getDelegationToken",
+          "renewDelegationToken", "cancelDelegationToken", "setSafeMode",
+          "saveNamespace", "rollEdits", "restoreFailedStorage",
+          "refreshNodes", "finalizeUpgrade", "upgradeStatus",
+          "rollingUpgrade", "metaSave", "setBalancerBandwidth",
+          "addCacheDirective", "modifyCacheDirective",
+          "removeCacheDirective", "addCachePool", "modifyCachePool",
+          "removeCachePool", "addErasureCodingPolicies",
+          "removeErasureCodingPolicy", "enableErasureCodingPolicy",
+          "disableErasureCodingPolicy", "reencryptEncryptionZone",
+          "satisfyStoragePolicy")));
+
   /** The inner proxy provider used for active/standby failover. */
   private final AbstractNNFailoverProxyProvider<T> failoverProxy;
   /** List of all NameNode proxies. */
@@ -188,6 +214,12 @@ public class ObserverReadProxyProvider<T>
    */
   private final BlockingThreadPoolExecutorService nnProbingThreadPool;
 
+  /**
+   * Cache of the file statuses read through this proxy provider, or null if
+   * it is disabled.
+   */
+  private final FileInfoCache fileInfoCache;
+
   /**
    * By default ObserverReadProxyProvider uses
    * {@link ConfiguredFailoverProxyProvider} for failover.
@@ -243,9 +275,22 @@ public class ObserverReadProxyProvider<T>
     namenodeHAStateProbeTimeoutMs = conf.getTimeDuration(NAMENODE_HA_STATE_PROBE_TIMEOUT,
         NAMENODE_HA_STATE_PROBE_TIMEOUT_DEFAULT, TimeUnit.MILLISECONDS);
 
+    long fileInfoCacheStalenessMs = conf.getTimeDuration(
+        HdfsClientConfigKeys.Failover.OBSERVER_FILE_INFO_CACHE_STALENESS_KEY,
+        HdfsClientConfigKeys.Failover
+            .OBSERVER_FILE_INFO_CACHE_STALENESS_DEFAULT,
+        TimeUnit.MILLISECONDS);
+
     if (wrappedProxy instanceof ClientProtocol) {
       this.observerReadEnabled = true;
+      this.fileInfoCache = fileInfoCacheStalenessMs > 0
+          ? new FileInfoCache(fileInfoCacheStalenessMs, conf.getInt(
+              HdfsClientConfigKeys.Failover.OBSERVER_FILE_INFO_CACHE_SIZE_KEY,
+              HdfsClientConfigKeys.Failover
+                  .OBSERVER_FILE_INFO_CACHE_SIZE_DEFAULT))
+          : null;
     } else {
+      this.fileInfoCache = null;
       LOG.info("Disabling observer reads for {} because the requested proxy "
           + "class does not implement {}", uri, ClientProtocol.class.getName());
       this.observerReadEnabled = false;
@@ -297,6 +342,62 @@ public class ObserverReadProxyProvider<T>
     return lastProxy;
   }
 
+  @VisibleForTesting
+  FileInfoCache getFileInfoCache() {
+    return fileInfoCache;
+  }
+
+  /**
+   * Return the observer read proxy provider behind a proxy created by
+   * {@link org.apache.hadoop.io.retry.RetryProxy}.
+   *
+   * @return the proxy provider, or null if proxy does not use one
+   */
+  public static ObserverReadProxyProvider<?> getProxyProvider(Object proxy) {
+    if (proxy == null || !Proxy.isProxyClass(proxy.getClass())) {
+      return null;
+    }
+    InvocationHandler handler = Proxy.getInvocationHandler(proxy);
+    if (!(handler instanceof RetryInvocationHandler)) {
+      return null;
+    }
+    Object provider =
+        ((RetryInvocationHandler<?>) handler).getProxyProvider();
+    return provider instanceof ObserverReadProxyProvider
+        ? (ObserverReadProxyProvider<?>) provider : null;
+  }
+
+  /**
+   * Serve {@link ClientProtocol#getFileInfo} from the file status cache.
+   * Callers look up the cache before invoking the retry proxy, so that a hit
+   * does not take an RPC call id; misses are cached by the proxy itself.
+   *
+   * @return the cached status of src, or null if it must be fetched
+   */
+  public HdfsFileStatus getCachedFileInfo(String src) {
+    if (fileInfoCache == null || !observerReadEnabled) {
+      return null;
+    }
+    HdfsFileStatus status = fileInfoCache.get(src);
+    if (status != null) {
+      lastProxy = null;
+    }
+    return status;
+  }
+
+  /**
+   * Whether a call may change the status of a file, so that it must drop the
+   * file status cache. msync drops it as well, since the client asks to see
+   * the namespace as of the sync.
+   */
+  private static boolean invalidatesFileInfo(Method method) {
+    if (method.getName().equals("msync")) {
+      return true;
+    }
+    return !method.isAnnotationPresent(ReadOnly.class) &&
+        !FILE_INFO_PRESERVING_METHODS.contains(method.getName());
+  }
+
   /**
    * Return the currently used proxy. If there is none, first calls
    * {@link #changeProxy(NNProxyInfo)} to initialize one.
@@ -498,12 +599,40 @@ public class ObserverReadProxyProvider<T>
    * without success, the request is forwarded to the active.
    *
    * Write requests are always forwarded to the active.
+   *
+   * If the file status cache is enabled, the statuses returned by getFileInfo
+   * are cached, and calls which may change the namespace invalidate it. Hits
+   * are served by {@link #getCachedFileInfo(String)} before the retry proxy.
    */
   private class ObserverReadInvocationHandler implements RpcInvocationHandler {
 
     @Override
     public Object invoke(Object proxy, final Method method, final Object[] args)
         throws Throwable {
+      if (fileInfoCache == null || !observerReadEnabled) {
+        return invokeMethod(method, args);
+      }
+      if (invalidatesFileInfo(method)) {
+        try {
+          return invokeMethod(method, args);
+        } finally {
+          // the write may have changed any cached status, e.g. all the
+          // files under a renamed directory, so drop all of them
+          fileInfoCache.invalidate(alignmentContext.getLastSeenStateId());
+        }
+      }
+      if (!method.getName().equals("getFileInfo")) {
+        return invokeMethod(method, args);
+      }
+      final long stateId = alignmentContext.getLastSeenStateId();
+      final HdfsFileStatus status =
+          (HdfsFileStatus) invokeMethod(method, args);
+      fileInfoCache.put((String) args[0], status, stateId);
+      return status;
+    }
+
+    private Object invokeMethod(final Method method, final Object[] args)
+        throws Throwable {
       lastProxy = null;
       Object retVal;
 
@@ -17,7 +17,9 @@
  */
 package org.apache.hadoop.hdfs.util;
 
+import java.util.ArrayDeque;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Map;
 import java.util.Queue;
@@ -297,6 +299,19 @@ public abstract class ByteArrayManager {
     return conf == null? new NewByteArrayWithoutLimit(): new Impl(conf);
   }
 
+  /**
+   * Get a manager for the arrays of a single stream.
+   *
+   * @param shared the manager shared by the streams
+   * @param cacheSize the maximum number of released arrays kept by the stream
+   *          if the shared manager does not recycle them
+   */
+  public static ByteArrayManager newStreamInstance(ByteArrayManager shared,
+      int cacheSize) {
+    return shared instanceof NewByteArrayWithoutLimit && cacheSize > 0?
+        new StreamCache(cacheSize): shared;
+  }
+
   /**
    * A dummy implementation which simply calls new byte[].
    */
@@ -312,6 +327,47 @@ public abstract class ByteArrayManager {
     }
   }
 
+  /**
+   * Keep the last arrays released by a single stream for its next
+   * allocations. The packets of a stream are allocated by the writer and
+   * released once acked at about the same rate, so that a few arrays are
+   * enough to avoid most allocations, without limiting the writers like
+   * {@link Impl}.
+   */
+  static class StreamCache extends ByteArrayManager {
+    private final int capacity;
+    private final ArrayDeque<byte[]> freeQueue;
+
+    StreamCache(int capacity) {
+      this.capacity = capacity;
+      this.freeQueue = new ArrayDeque<>(capacity);
+    }
+
+    @Override
+    public byte[] newByteArray(int size) throws InterruptedException {
+      synchronized (this) {
+        for (Iterator<byte[]> it = freeQueue.iterator(); it.hasNext();) {
+          final byte[] array = it.next();
+          if (array.length >= size) {
+            it.remove();
+            return array;
+          }
+        }
+      }
+      return new byte[size];
+    }
+
+    @Override
+    public synchronized int release(byte[] array) {
+      Preconditions.checkNotNull(array);
+      if (array.length > 0 && freeQueue.size() < capacity) {
+        // the most recently released arrays are the most likely to be cached
+        freeQueue.addFirst(array);
+      }
+      return freeQueue.size();
+    }
+  }
+
   /**
    * Manage byte array allocation and provide a mechanism for recycling the byte
    * array objects.
@@ -0,0 +1,90 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.hadoop.hdfs.DatanodeLatencyTracker.LatencyHistogram;
+import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
+import org.junit.Test;
+
+public class TestDatanodeLatencyTracker {
+
+  private static DatanodeInfo newNode(int port) {
+    return new DatanodeInfo.DatanodeInfoBuilder()
+        .setIpAddr("127.0.0.1")
+        .setHostName("localhost")
+        .setDatanodeUuid("dn-" + port)
+        .setXferPort(port)
+        .build();
+  }
+
+  @Test
+  public void testBuckets() {
+    int previous = -1;
+    for (long millis = 0; millis < 1L << 20; millis++) {
+      int bucket = LatencyHistogram.getBucket(millis);
+      assertTrue("bucket of " + millis, bucket == previous
+          || bucket == previous + 1);
+      assertTrue("bucket of " + millis,
+          millis <= LatencyHistogram.getUpperBound(bucket));
+      assertTrue("bucket of " + millis, bucket == 0
+          || millis > LatencyHistogram.getUpperBound(bucket - 1));
+      // a percentile is at most 25% higher than the actual one
+      assertTrue("bucket of " + millis, LatencyHistogram.getUpperBound(bucket)
+          <= Math.max(3, millis * 5 / 4));
+      previous = bucket;
+    }
+    // longer latencies are capped
+    assertEquals(previous, LatencyHistogram.getBucket(Long.MAX_VALUE));
+  }
+
+  @Test
+  public void testPercentiles() {
+    DatanodeLatencyTracker tracker = new DatanodeLatencyTracker();
+    DatanodeInfo fast = newNode(1);
+    DatanodeInfo slow = newNode(2);
+    assertEquals(-1, tracker.getPercentile(fast, 50));
+    assertEquals(-1, tracker.getPercentile(50));
+
+    for (int i = 1; i < DatanodeLatencyTracker.MIN_SAMPLES; i++) {
+      tracker.addLatency(fast, 2);
+    }
+    // too few samples
+    assertEquals(-1, tracker.getPercentile(fast, 50));
+    tracker.addLatency(fast, 2);
+    assertEquals(2, tracker.getPercentile(fast, 50));
+    assertEquals(2, tracker.getPercentile(fast, 100));
+
+    for (int i = 0; i < 2 * DatanodeLatencyTracker.MIN_SAMPLES; i++) {
+      tracker.addLatency(slow, 1000);
+    }
+    assertEquals(2, tracker.getPercentile(fast, 99));
+    long slowLatency = tracker.getPercentile(slow, 50);
+    assertTrue("Unexpected latency " + slowLatency,
+        slowLatency >= 1000 && slowLatency <= 1250);
+    // a third of the reads were from the fast datanode
+    assertEquals(2, tracker.getPercentile(33));
+    assertEquals(slowLatency, tracker.getPercentile(34));
+
+    tracker.clear();
+    assertEquals(-1, tracker.getPercentile(slow, 50));
+    assertEquals(-1, tracker.getPercentile(50));
+  }
+}
@@ -304,6 +304,31 @@ public class TestByteArrayManager {
   }
 
 
+  @Test
+  public void testStreamCache() throws Exception {
+    final ByteArrayManager shared = ByteArrayManager.newInstance(null);
+    Assert.assertSame(shared, ByteArrayManager.newStreamInstance(shared, 0));
+    final ByteArrayManager.Impl impl = new ByteArrayManager.Impl(
+        new ByteArrayManager.Conf(4, 8, 200L));
+    Assert.assertSame(impl, ByteArrayManager.newStreamInstance(impl, 2));
+
+    final ByteArrayManager cache =
+        ByteArrayManager.newStreamInstance(shared, 2);
+    final byte[] first = cache.newByteArray(100);
+    final byte[] second = cache.newByteArray(200);
+    final byte[] third = cache.newByteArray(100);
+    Assert.assertEquals(1, cache.release(first));
+    Assert.assertEquals(2, cache.release(second));
+    // the cache is full
+    Assert.assertEquals(2, cache.release(third));
+
+    // the most recently released array which is large enough is reused
+    Assert.assertSame(second, cache.newByteArray(150));
+    Assert.assertSame(first, cache.newByteArray(100));
+    // no array left
+    Assert.assertEquals(50, cache.newByteArray(50).length);
+  }
+
   @Test
   public void testByteArrayManager() throws Exception {
     final int countThreshold = 32;
@@ -69,6 +69,7 @@ import org.apache.hadoop.hdfs.protocol.LocatedBlock;
 import org.apache.hadoop.hdfs.protocol.LocatedBlocks;
 import org.apache.hadoop.hdfs.protocol.OpenFileEntry;
 import org.apache.hadoop.hdfs.protocol.OpenFilesIterator;
+import org.apache.hadoop.hdfs.protocol.RecursiveDirectoryListing;
 import org.apache.hadoop.hdfs.protocol.ReplicatedBlockStats;
 import org.apache.hadoop.hdfs.protocol.RollingUpgradeInfo;
 import org.apache.hadoop.hdfs.protocol.SnapshotDiffReport;
@@ -956,6 +957,29 @@ public class RouterClientProtocol implements ClientProtocol {
     throw new UnsupportedOperationException("Not implemented");
   }
 
+  @Override
+  public RecursiveDirectoryListing getRecursiveListing(String src,
+      byte[] cursor, boolean needLocation) throws IOException {
+    rpcServer.checkOperation(NameNode.OperationCategory.READ);
+
+    // The cursor is a path in the namespace of one subcluster, so the
+    // listing cannot be merged across mount points like getListing.
+    final List<String> children = subclusterResolver.getMountPoints(src);
+    if ((children != null && !children.isEmpty())
+        || rpcServer.isPathAll(src)) {
+      throw new IOException("Recursive listing of " + src + " is not"
+          + " allowed. The path spans more than one mount point or"
+          + " subcluster.");
+    }
+    final List<RemoteLocation> locations =
+        rpcServer.getLocationsForPath(src, false, false);
+    RemoteMethod method = new RemoteMethod("getRecursiveListing",
+        new Class<?>[] {String.class, byte[].class, boolean.class},
+        new RemoteParam(), cursor, needLocation);
+    return rpcClient.invokeSequential(locations, method,
+        RecursiveDirectoryListing.class, null);
+  }
+
   @Override
   public HdfsFileStatus getFileInfo(String src) throws IOException {
     rpcServer.checkOperation(NameNode.OperationCategory.READ);
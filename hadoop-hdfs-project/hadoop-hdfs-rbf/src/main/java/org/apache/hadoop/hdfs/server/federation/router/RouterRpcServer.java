@@ -115,6 +115,7 @@ import org.apache.hadoop.hdfs.protocol.LocatedBlock;
 import org.apache.hadoop.hdfs.protocol.LocatedBlocks;
 import org.apache.hadoop.hdfs.protocol.OpenFileEntry;
 import org.apache.hadoop.hdfs.protocol.OpenFilesIterator.OpenFilesType;
+import org.apache.hadoop.hdfs.protocol.RecursiveDirectoryListing;
 import org.apache.hadoop.hdfs.protocol.ReplicatedBlockStats;
 import org.apache.hadoop.hdfs.protocol.RollingUpgradeInfo;
 import org.apache.hadoop.hdfs.protocol.SnapshotDiffReport;
@@ -1042,6 +1043,12 @@ public class RouterRpcServer extends AbstractService implements ClientProtocol,
     throw new UnsupportedOperationException();
   }
 
+  @Override // ClientProtocol
+  public RecursiveDirectoryListing getRecursiveListing(String src,
+      byte[] cursor, boolean needLocation) throws IOException {
+    return clientProto.getRecursiveListing(src, cursor, needLocation);
+  }
+
   @Override // ClientProtocol
   public HdfsFileStatus getFileInfo(String src) throws IOException {
     return clientProto.getFileInfo(src);
@@ -25,6 +25,8 @@ import static org.junit.Assert.fail;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -36,6 +38,7 @@ import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
 import org.apache.hadoop.fs.permission.FsPermission;
 import org.apache.hadoop.hdfs.DistributedFileSystem;
 import org.apache.hadoop.hdfs.protocol.ClientProtocol;
@@ -763,4 +766,48 @@ public class TestRouterMountTable {
       nnFs0.delete(new Path("/testLsMountEntryDest"), true);
     }
   }
+
+  @Test
+  public void testRecursiveListing() throws Exception {
+    try {
+      MountTable addEntry = MountTable.newInstance("/testRecursiveLs",
+          Collections.singletonMap("ns0", "/testRecursiveLsDest"));
+      assertTrue(addMountTable(addEntry));
+      nnFs0.mkdirs(new Path("/testRecursiveLsDest/a"));
+      nnFs0.create(new Path("/testRecursiveLsDest/a/f")).close();
+      nnFs0.create(new Path("/testRecursiveLsDest/b")).close();
+      DistributedFileSystem routerDfs = (DistributedFileSystem) routerFs;
+
+      List<String> paths = new ArrayList<>();
+      RemoteIterator<FileStatus> it =
+          routerDfs.recursiveListStatusIterator(new Path("/testRecursiveLs"));
+      while (it.hasNext()) {
+        paths.add(Path.getPathWithoutSchemeAndAuthority(
+            it.next().getPath()).toString());
+      }
+      assertEquals(Arrays.asList("/testRecursiveLs/a",
+          "/testRecursiveLs/a/f", "/testRecursiveLs/b"), paths);
+
+      // Fail: the listing would span a mount point to another subcluster
+      addEntry = MountTable.newInstance("/testRecursiveLs/a/sub",
+          Collections.singletonMap("ns1", "/testRecursiveLsSub"));
+      assertTrue(addMountTable(addEntry));
+      LambdaTestUtils.intercept(IOException.class,
+          "Recursive listing of /testRecursiveLs is not allowed",
+          () -> routerDfs.recursiveListStatusIterator(
+              new Path("/testRecursiveLs")).hasNext());
+      // The mount point below the subtree is fine
+      nnFs1.create(new Path("/testRecursiveLsSub/g")).close();
+      it = routerDfs.recursiveListStatusIterator(
+          new Path("/testRecursiveLs/a/sub"));
+      assertTrue(it.hasNext());
+      assertEquals("/testRecursiveLs/a/sub/g",
+          Path.getPathWithoutSchemeAndAuthority(it.next().getPath())
+              .toString());
+      assertFalse(it.hasNext());
+    } finally {
+      nnFs0.delete(new Path("/testRecursiveLsDest"), true);
+      nnFs1.delete(new Path("/testRecursiveLsSub"), true);
+    }
+  }
 }
@@ -149,6 +149,8 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final boolean DFS_DATANODE_USE_DN_HOSTNAME_DEFAULT = false;
   public static final String  DFS_DATANODE_MAX_LOCKED_MEMORY_KEY = "dfs.datanode.max.locked.memory";
   public static final long    DFS_DATANODE_MAX_LOCKED_MEMORY_DEFAULT = 0;
+  public static final String  DFS_DATANODE_HOT_BLOCK_CACHE_CAPACITY_KEY = "dfs.datanode.hot.block.cache.capacity";
+  public static final long    DFS_DATANODE_HOT_BLOCK_CACHE_CAPACITY_DEFAULT = 0;
   public static final String  DFS_DATANODE_FSDATASETCACHE_MAX_THREADS_PER_VOLUME_KEY = "dfs.datanode.fsdatasetcache.max.threads.per.volume";
   public static final int     DFS_DATANODE_FSDATASETCACHE_MAX_THREADS_PER_VOLUME_DEFAULT = 4;
   public static final String  DFS_DATANODE_FSDATASETASYNCDISK_MAX_THREADS_PER_VOLUME_KEY =
@@ -173,6 +175,11 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
       "dfs.datanode.replica.cache.expiry.time";
   public static final long DFS_DATANODE_REPLICA_CACHE_EXPIRY_TIME_DEFAULT =
       300000;
+  public static final String
+      DFS_DATANODE_REPLICA_INDEX_CHECKPOINT_INTERVAL_KEY =
+      "dfs.datanode.replica.index.checkpoint.interval";
+  public static final long
+      DFS_DATANODE_REPLICA_INDEX_CHECKPOINT_INTERVAL_DEFAULT = 0;
 
   // This setting is for testing/internal use only.
   public static final String  DFS_DATANODE_DUPLICATE_REPLICA_DELETION = "dfs.datanode.duplicate.replica.deletion";
@@ -186,6 +193,14 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final String  DFS_NAMENODE_PATH_BASED_CACHE_BLOCK_MAP_ALLOCATION_PERCENT =
       "dfs.namenode.path.based.cache.block.map.allocation.percent";
   public static final float    DFS_NAMENODE_PATH_BASED_CACHE_BLOCK_MAP_ALLOCATION_PERCENT_DEFAULT = 0.25f;
+  public static final String  DFS_NAMENODE_INODE_MAP_ALLOCATION_PERCENT =
+      "dfs.namenode.inode.map.allocation.percent";
+  public static final float   DFS_NAMENODE_INODE_MAP_ALLOCATION_PERCENT_DEFAULT =
+      1.0f;
+  public static final String  DFS_NAMENODE_BLOCKS_MAP_ALLOCATION_PERCENT =
+      "dfs.namenode.blocks.map.allocation.percent";
+  public static final float   DFS_NAMENODE_BLOCKS_MAP_ALLOCATION_PERCENT_DEFAULT =
+      2.0f;
 
   public static final int     DFS_NAMENODE_HTTP_PORT_DEFAULT =
       HdfsClientConfigKeys.DFS_NAMENODE_HTTP_PORT_DEFAULT;
@@ -283,6 +298,10 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
       "dfs.namenode.redundancy.queue.restart.iterations";
   public static final int
       DFS_NAMENODE_REDUNDANCY_QUEUE_RESTART_ITERATIONS_DEFAULT = 2400;
+  public static final String DFS_NAMENODE_REDUNDANCY_QUEUE_BITMAP_ENABLED_KEY =
+      "dfs.namenode.redundancy.queue.bitmap.enabled";
+  public static final boolean
+      DFS_NAMENODE_REDUNDANCY_QUEUE_BITMAP_ENABLED_DEFAULT = false;
   public static final String  DFS_NAMENODE_REPLICATION_MIN_KEY =
       HdfsClientConfigKeys.DeprecatedKeys.DFS_NAMENODE_REPLICATION_MIN_KEY;
   public static final int     DFS_NAMENODE_REPLICATION_MIN_DEFAULT = 1;
@@ -319,6 +338,9 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
       = "dfs.namenode.blockreport.max.lock.hold.time";
   public static final long
       DFS_NAMENODE_BLOCKREPORT_MAX_LOCK_HOLD_TIME_DEFAULT = 4;
+  public static final String DFS_NAMENODE_BLOCKREPORT_DIFF_THREADS_KEY
+      = "dfs.namenode.blockreport.diff.threads";
+  public static final int DFS_NAMENODE_BLOCKREPORT_DIFF_THREADS_DEFAULT = 0;
 
   public static final String
       DFS_NAMENODE_CORRUPT_BLOCK_DELETE_IMMEDIATELY_ENABLED =
@@ -404,6 +426,11 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
       "dfs.namenode.edits.asynclogging.pending.queue.size";
   public static final int
       DFS_NAMENODE_EDITS_ASYNC_LOGGING_PENDING_QUEUE_SIZE_DEFAULT = 4096;
+  public static final String
+      DFS_NAMENODE_EDITS_ASYNC_LOGGING_GROUP_COMMIT_MAX_WAIT_MS =
+      "dfs.namenode.edits.asynclogging.group.commit.max.wait.ms";
+  public static final long
+      DFS_NAMENODE_EDITS_ASYNC_LOGGING_GROUP_COMMIT_MAX_WAIT_MS_DEFAULT = 0;
 
   public static final String DFS_NAMENODE_PROVIDED_ENABLED = "dfs.namenode.provided.enabled";
   public static final boolean DFS_NAMENODE_PROVIDED_ENABLED_DEFAULT = false;
@@ -432,10 +459,17 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final int     DFS_LIST_LIMIT_DEFAULT = 1000;
   public static final String  DFS_NAMENODE_BATCHED_LISTING_LIMIT = "dfs.batched.ls.limit";
   public static final int     DFS_NAMENODE_BATCHED_LISTING_LIMIT_DEFAULT = 100;
+  public static final String  DFS_NAMENODE_RECURSIVE_LISTING_LIMIT =
+      "dfs.recursive.ls.limit";
+  public static final int     DFS_NAMENODE_RECURSIVE_LISTING_LIMIT_DEFAULT =
+      10000;
   public static final String  DFS_CONTENT_SUMMARY_LIMIT_KEY = "dfs.content-summary.limit";
   public static final int     DFS_CONTENT_SUMMARY_LIMIT_DEFAULT = 5000;
   public static final String  DFS_CONTENT_SUMMARY_SLEEP_MICROSEC_KEY = "dfs.content-summary.sleep-microsec";
   public static final long    DFS_CONTENT_SUMMARY_SLEEP_MICROSEC_DEFAULT = 500;
+  public static final String  DFS_CONTENT_SUMMARY_CACHE_TTL_MS_KEY =
+      "dfs.content-summary.cache.ttl.ms";
+  public static final long    DFS_CONTENT_SUMMARY_CACHE_TTL_MS_DEFAULT = 0;
   public static final String  DFS_DATANODE_FAILED_VOLUMES_TOLERATED_KEY = "dfs.datanode.failed.volumes.tolerated";
   public static final int     DFS_DATANODE_FAILED_VOLUMES_TOLERATED_DEFAULT = 0;
   public static final String
@@ -445,6 +479,10 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final boolean DFS_DATANODE_SYNCONCLOSE_DEFAULT = false;
   public static final String  DFS_DATANODE_SOCKET_REUSE_KEEPALIVE_KEY = "dfs.datanode.socket.reuse.keepalive";
   public static final int     DFS_DATANODE_SOCKET_REUSE_KEEPALIVE_DEFAULT = 4000;
+  public static final String  DFS_DATANODE_SOCKET_REUSE_KEEPALIVE_SELECTOR_ENABLED_KEY =
+      "dfs.datanode.socket.reuse.keepalive.selector.enabled";
+  public static final boolean DFS_DATANODE_SOCKET_REUSE_KEEPALIVE_SELECTOR_ENABLED_DEFAULT =
+      false;
   public static final String  DFS_DATANODE_OOB_TIMEOUT_KEY = "dfs.datanode.oob.timeout-ms";
   public static final String  DFS_DATANODE_OOB_TIMEOUT_DEFAULT = "1500,0,0,0"; // OOB_TYPE1, OOB_TYPE2, OOB_TYPE3, OOB_TYPE4
 
@@ -519,6 +557,11 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
       "dfs.namenode.snapshotdiff.listing.limit";
   public static final int
       DFS_NAMENODE_SNAPSHOT_DIFF_LISTING_LIMIT_DEFAULT = 1000;
+  public static final String
+      DFS_NAMENODE_SNAPSHOT_DIFF_LISTING_INODE_LIMIT =
+      "dfs.namenode.snapshotdiff.listing.inode.limit";
+  public static final int
+      DFS_NAMENODE_SNAPSHOT_DIFF_LISTING_INODE_LIMIT_DEFAULT = 0;
 
   public static final String DFS_NAMENODE_SNAPSHOT_MAX_LIMIT =
       "dfs.namenode.snapshot.max.limit";
@@ -619,6 +662,16 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final String DFS_NAMENODE_FSLOCK_FAIR_KEY =
       "dfs.namenode.fslock.fair";
   public static final boolean DFS_NAMENODE_FSLOCK_FAIR_DEFAULT = true;
+  public static final String DFS_NAMENODE_FSLOCK_PARTITIONED_ENABLED_KEY =
+      "dfs.namenode.fslock.partitioned.enabled";
+  public static final boolean DFS_NAMENODE_FSLOCK_PARTITIONED_ENABLED_DEFAULT =
+      false;
+  public static final String DFS_NAMENODE_FSLOCK_PARTITIONED_NUM_KEY =
+      "dfs.namenode.fslock.partitioned.num-partitions";
+  public static final int DFS_NAMENODE_FSLOCK_PARTITIONED_NUM_DEFAULT = 16;
+  public static final String DFS_NAMENODE_FSLOCK_PARTITIONED_DEPTH_KEY =
+      "dfs.namenode.fslock.partitioned.depth";
+  public static final int DFS_NAMENODE_FSLOCK_PARTITIONED_DEPTH_DEFAULT = 2;
 
   public static final String  DFS_NAMENODE_LOCK_DETAILED_METRICS_KEY =
       "dfs.namenode.lock.detailed-metrics.enabled";
@@ -637,6 +690,14 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
       = "dfs.namenode.access-control-enforcer-reporting-threshold-ms";
   public static final long   DFS_NAMENODE_ACCESS_CONTROL_ENFORCER_REPORTING_THRESHOLD_MS_DEFAULT
       = 1000L;
+  public static final String DFS_NAMENODE_TRAVERSE_PERMISSION_CACHE_USERS_KEY
+      = "dfs.namenode.traverse-permission-cache.users";
+  public static final int    DFS_NAMENODE_TRAVERSE_PERMISSION_CACHE_USERS_DEFAULT
+      = 0;
+  public static final String DFS_NAMENODE_TRAVERSE_PERMISSION_CACHE_DIRECTORIES_KEY
+      = "dfs.namenode.traverse-permission-cache.directories-per-user";
+  public static final int    DFS_NAMENODE_TRAVERSE_PERMISSION_CACHE_DIRECTORIES_DEFAULT
+      = 4096;
 
   // Threshold for how long the lock warnings must be suppressed
   public static final String DFS_LOCK_SUPPRESS_WARNING_INTERVAL_KEY =
@@ -646,6 +707,9 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final String DFS_DATANODE_LOCK_FAIR_KEY =
       "dfs.datanode.lock.fair";
   public static final boolean DFS_DATANODE_LOCK_FAIR_DEFAULT = true;
+  public static final String DFS_DATANODE_REPLICA_MAP_STRIPES_KEY =
+      "dfs.datanode.replica.map.stripes";
+  public static final int DFS_DATANODE_REPLICA_MAP_STRIPES_DEFAULT = 16;
 
   public static final String  DFS_UPGRADE_DOMAIN_FACTOR = "dfs.namenode.upgrade.domain.factor";
   public static final int DFS_UPGRADE_DOMAIN_FACTOR_DEFAULT = DFS_REPLICATION_DEFAULT;
@@ -738,6 +802,8 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final String  DFS_NAMENODE_AUDIT_LOG_TOKEN_TRACKING_ID_KEY = "dfs.namenode.audit.log.token.tracking.id";
   public static final boolean DFS_NAMENODE_AUDIT_LOG_TOKEN_TRACKING_ID_DEFAULT = false;
   public static final String  DFS_NAMENODE_AUDIT_LOG_DEBUG_CMDLIST = "dfs.namenode.audit.log.debug.cmdlist";
+  public static final String  DFS_NAMENODE_AUDIT_LOG_QUEUE_SIZE_KEY = "dfs.namenode.audit.log.queue.size";
+  public static final int     DFS_NAMENODE_AUDIT_LOG_QUEUE_SIZE_DEFAULT = 0;
   public static final String  DFS_NAMENODE_METRICS_LOGGER_PERIOD_SECONDS_KEY =
       "dfs.namenode.metrics.logger.period.seconds";
   public static final int     DFS_NAMENODE_METRICS_LOGGER_PERIOD_SECONDS_DEFAULT =
@@ -928,6 +994,16 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
       "dfs.datanode.directoryscan.max.notify.count";
   public static final long
       DFS_DATANODE_DIRECTORYSCAN_MAX_NOTIFY_COUNT_DEFAULT = 5;
+  public static final String
+      DFS_DATANODE_DIRECTORYSCAN_INCREMENTAL_ENABLED_KEY =
+      "dfs.datanode.directoryscan.incremental.enabled";
+  public static final boolean
+      DFS_DATANODE_DIRECTORYSCAN_INCREMENTAL_ENABLED_DEFAULT = false;
+  public static final String
+      DFS_DATANODE_DIRECTORYSCAN_FULL_SWEEP_INTERVAL_KEY =
+      "dfs.datanode.directoryscan.full.sweep.interval";
+  public static final long
+      DFS_DATANODE_DIRECTORYSCAN_FULL_SWEEP_INTERVAL_DEFAULT = 604800;
   public static final String  DFS_DATANODE_DNS_INTERFACE_KEY = "dfs.datanode.dns.interface";
   public static final String  DFS_DATANODE_DNS_INTERFACE_DEFAULT = "default";
   public static final String  DFS_DATANODE_DNS_NAMESERVER_KEY = "dfs.datanode.dns.nameserver";
@@ -968,6 +1044,13 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
       "dfs.block.scanner.skip.recent.accessed";
   public static final boolean DFS_BLOCK_SCANNER_SKIP_RECENT_ACCESSED_DEFAULT =
       false;
+  public static final String  DFS_BLOCK_SCANNER_VOLUME_THREADS_KEY =
+      "dfs.block.scanner.volume.threads";
+  public static final int     DFS_BLOCK_SCANNER_VOLUME_THREADS_DEFAULT = 1;
+  public static final String  DFS_BLOCK_SCANNER_VOLUME_ADAPTIVE_RATE_KEY =
+      "dfs.block.scanner.volume.adaptive.rate";
+  public static final boolean DFS_BLOCK_SCANNER_VOLUME_ADAPTIVE_RATE_DEFAULT =
+      false;
   public static final String  DFS_DATANODE_TRANSFERTO_ALLOWED_KEY = "dfs.datanode.transferTo.allowed";
   public static final boolean DFS_DATANODE_TRANSFERTO_ALLOWED_DEFAULT = true;
   public static final String  DFS_HEARTBEAT_INTERVAL_KEY = "dfs.heartbeat.interval";
@@ -24,6 +24,7 @@ import static org.apache.hadoop.util.ExitUtil.terminate;
 import static org.apache.hadoop.util.Time.now;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -44,6 +45,9 @@ import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
@@ -108,6 +112,7 @@ import org.apache.hadoop.hdfs.server.protocol.DatanodeStorage;
 import org.apache.hadoop.hdfs.server.protocol.DatanodeStorage.State;
 import org.apache.hadoop.hdfs.server.protocol.KeyUpdateCommand;
 import org.apache.hadoop.hdfs.server.protocol.ReceivedDeletedBlockInfo;
+import org.apache.hadoop.hdfs.server.protocol.StorageBlockReport;
 import org.apache.hadoop.hdfs.server.protocol.StorageReceivedDeletedBlocks;
 import org.apache.hadoop.hdfs.server.protocol.StorageReport;
 import org.apache.hadoop.hdfs.server.protocol.VolumeFailureSummary;
@@ -128,6 +133,7 @@ import org.apache.hadoop.util.Time;
 
 import org.apache.hadoop.classification.VisibleForTesting;
 import org.apache.hadoop.util.Preconditions;
+import org.apache.hadoop.thirdparty.com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -345,6 +351,12 @@ public class BlockManager implements BlockStatsMXBean {
   /** Block report thread for handling async reports. */
   private final BlockReportProcessingThread blockReportThread;
 
+  /**
+   * Threads diffing the storage reports of a full block report in parallel,
+   * or null if storage reports are processed one at a time.
+   */
+  private final ExecutorService blockReportDiffExecutor;
+
   /**
    * Store blocks {@literal ->} datanodedescriptor(s) map of corrupt replicas.
    */
@@ -380,8 +392,7 @@ public class BlockManager implements BlockStatsMXBean {
    * Store set of Blocks that need to be replicated 1 or more times.
    * We also store pending reconstruction-orders.
    */
-  public final LowRedundancyBlocks neededReconstruction =
-      new LowRedundancyBlocks();
+  public final LowRedundancyBlocks neededReconstruction;
 
   @VisibleForTesting
   final PendingReconstructionBlocks pendingReconstruction;
@@ -485,6 +496,11 @@ public class BlockManager implements BlockStatsMXBean {
   public BlockManager(final Namesystem namesystem, boolean haEnabled,
       final Configuration conf) throws IOException {
     this.namesystem = namesystem;
+    this.neededReconstruction = conf.getBoolean(
+        DFSConfigKeys.DFS_NAMENODE_REDUNDANCY_QUEUE_BITMAP_ENABLED_KEY,
+        DFSConfigKeys.DFS_NAMENODE_REDUNDANCY_QUEUE_BITMAP_ENABLED_DEFAULT)
+        ? new LowRedundancyBlocks(id -> getStoredBlock(new Block(id)))
+        : new LowRedundancyBlocks();
     this.datanodeManager = new DatanodeManager(this, namesystem, conf);
     this.heartbeatManager = datanodeManager.getHeartbeatManager();
     this.blockIdManager = new BlockIdManager(this);
@@ -507,9 +523,11 @@ public class BlockManager implements BlockStatsMXBean {
         startupDelayBlockDeletionInMs,
         blockIdManager);
     this.markedDeleteQueue = new ConcurrentLinkedQueue<>();
-    // Compute the map capacity by allocating 2% of total memory
-    this.blocksMap = new BlocksMap(
-        LightWeightGSet.computeCapacity(2.0, "BlocksMap"));
+    // Compute the map capacity by allocating 2% of total memory by default
+    this.blocksMap = new BlocksMap(LightWeightGSet.computeCapacity(
+        conf.getFloat(DFSConfigKeys.DFS_NAMENODE_BLOCKS_MAP_ALLOCATION_PERCENT,
+            DFSConfigKeys.DFS_NAMENODE_BLOCKS_MAP_ALLOCATION_PERCENT_DEFAULT),
+        "BlocksMap"));
     this.placementPolicies = new BlockPlacementPolicies(
         conf, datanodeManager.getFSClusterStats(),
         datanodeManager.getNetworkTopology(),
@@ -584,6 +602,13 @@ public class BlockManager implements BlockStatsMXBean {
         DFSConfigKeys.DFS_NAMENODE_BLOCKREPORT_QUEUE_SIZE_KEY,
         DFSConfigKeys.DFS_NAMENODE_BLOCKREPORT_QUEUE_SIZE_DEFAULT);
     this.blockReportThread = new BlockReportProcessingThread(queueSize);
+    int diffThreads = conf.getInt(
+        DFSConfigKeys.DFS_NAMENODE_BLOCKREPORT_DIFF_THREADS_KEY,
+        DFSConfigKeys.DFS_NAMENODE_BLOCKREPORT_DIFF_THREADS_DEFAULT);
+    this.blockReportDiffExecutor = diffThreads > 0
+        ? Executors.newFixedThreadPool(diffThreads, new ThreadFactoryBuilder()
+            .setDaemon(true).setNameFormat("BlockReportDiff-%d").build())
+        : null;
 
     this.deleteCorruptReplicaImmediately =
         conf.getBoolean(DFS_NAMENODE_CORRUPT_BLOCK_DELETE_IMMEDIATELY_ENABLED,
@@ -805,6 +830,9 @@ public class BlockManager implements BlockStatsMXBean {
       markedDeleteBlockScrubberThread.join(3000);
     } catch (InterruptedException ie) {
     }
+    if (blockReportDiffExecutor != null) {
+      blockReportDiffExecutor.shutdownNow();
+    }
     datanodeManager.close();
     pendingReconstruction.stop();
     blocksMap.close();
@@ -2957,6 +2985,137 @@ public class BlockManager implements BlockStatsMXBean {
     return !node.hasStaleStorages();
   }
 
+  /**
+   * @return true if the storage reports of a full block report are diffed in
+   * parallel by {@link #processReports}.
+   */
+  public boolean isParallelBlockReportDiffEnabled() {
+    return blockReportDiffExecutor != null;
+  }
+
+  /**
+   * The given datanode is reporting all the blocks of some of its storages.
+   *
+   * The reports of storages which already sent a block report are diffed
+   * against the (storage{@literal -->}block list) map in parallel, holding
+   * only the read lock. The replicas found to need an update are then
+   * processed again under a single write lock, so that changes made in
+   * between are taken into account. The remaining reports are processed
+   * one at a time by {@link #processReport(DatanodeID, DatanodeStorage,
+   * BlockListAsLongs, BlockReportContext)}.
+   *
+   * @return true if all known storages of the given DN have finished reporting.
+   * @throws IOException
+   */
+  public boolean processReports(final DatanodeID nodeID,
+      final StorageBlockReport[] reports,
+      final BlockReportContext context) throws IOException {
+    Preconditions.checkState(blockReportDiffExecutor != null,
+        "Parallel block report diff is disabled");
+    String strBlockReportId =
+        context != null ? Long.toHexString(context.getReportId()) : "";
+    List<StorageBlockReport> serialReports = new ArrayList<>();
+    List<StorageReportDiff> diffs = new ArrayList<>();
+
+    namesystem.readLock();
+    try {
+      DatanodeDescriptor node = datanodeManager.getDatanode(nodeID);
+      if (node == null || !node.isRegistered()) {
+        throw new IOException(
+            "ProcessReport from dead or unregistered node: " + nodeID);
+      }
+      List<Callable<Void>> tasks = new ArrayList<>();
+      for (StorageBlockReport report : reports) {
+        DatanodeStorage storage = report.getStorage();
+        DatanodeStorageInfo storageInfo =
+            node.getStorageInfo(storage.getStorageID());
+        // Initial reports, provided storages, reports discarded in startup
+        // safe mode and reports queued by the standby take the usual path.
+        if (storageInfo == null
+            || !storageInfo.hasReceivedBlockReport()
+            || StorageType.PROVIDED.equals(storage.getStorageType())
+            || StorageType.PROVIDED.equals(storageInfo.getStorageType())
+            || shouldPostponeBlocksFromFuture
+            || namesystem.isInStartupSafeMode()) {
+          serialReports.add(report);
+          continue;
+        }
+        final StorageReportDiff diff =
+            new StorageReportDiff(storageInfo, report);
+        diffs.add(diff);
+        tasks.add(() -> {
+          diffReport(diff);
+          return null;
+        });
+      }
+      for (Future<Void> f : blockReportDiffExecutor.invokeAll(tasks)) {
+        f.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException(
+          "Interrupted while diffing block report from " + nodeID);
+    } catch (ExecutionException e) {
+      throw new IOException(
+          "Failed to diff block report from " + nodeID, e.getCause());
+    } finally {
+      namesystem.readUnlock("processReports");
+    }
+
+    boolean noStaleStorages = false;
+    if (!diffs.isEmpty()) {
+      final NameNodeMetrics metrics = NameNode.getNameNodeMetrics();
+      namesystem.writeLock();
+      try {
+        DatanodeDescriptor node = datanodeManager.getDatanode(nodeID);
+        if (node == null || !node.isRegistered()) {
+          throw new IOException(
+              "ProcessReport from dead or unregistered node: " + nodeID);
+        }
+        for (StorageReportDiff diff : diffs) {
+          DatanodeStorageInfo storageInfo = diff.storageInfo;
+          if (node.getStorageInfo(storageInfo.getStorageID()) != storageInfo) {
+            // the storage was removed since it was diffed
+            serialReports.add(diff.report);
+            continue;
+          }
+          final long startTime = Time.monotonicNow();
+          Collection<Block> invalidatedBlocks = applyReportDiff(diff);
+          storageInfo.receivedBlockReport();
+          final long applyTime = Time.monotonicNow() - startTime;
+
+          if (blockLog.isDebugEnabled()) {
+            for (Block b : invalidatedBlocks) {
+              blockLog.debug("BLOCK* processReports 0x{}: {} on node {} "
+                  + "size {} does not belong to any file.",
+                  strBlockReportId, b, node, b.getNumBytes());
+            }
+          }
+          if (metrics != null) {
+            metrics.addStorageBlockReport(diff.diffTime + applyTime);
+            metrics.addStorageBlockReportDiff(diff.diffTime);
+            metrics.addStorageBlockReportApply(applyTime);
+          }
+          blockLog.info("BLOCK* processReports 0x{}: from storage {} node {}, "
+              + "blocks: {}, diff time: {} msecs, apply time: {} msecs, "
+              + "invalidatedBlocks: {}", strBlockReportId,
+              storageInfo.getStorageID(), nodeID,
+              diff.blocks.getNumberOfBlocks(), diff.diffTime, applyTime,
+              invalidatedBlocks.size());
+        }
+        noStaleStorages = !node.hasStaleStorages();
+      } finally {
+        namesystem.writeUnlock("processReports");
+      }
+    }
+
+    for (StorageBlockReport report : serialReports) {
+      noStaleStorages = processReport(nodeID, report.getStorage(),
+          report.getBlocks(), context);
+    }
+    return noStaleStorages;
+  }
+
   public void removeBRLeaseIfNeeded(final DatanodeID nodeID,
       final BlockReportContext context) throws IOException {
     namesystem.writeLock();
@@ -3038,7 +3197,20 @@ public class BlockManager implements BlockStatsMXBean {
     Collection<StatefulBlockInfo> toUC = new ArrayList<>();
     reportDiff(storageInfo, report,
                  toAdd, toRemove, toInvalidate, toCorrupt, toUC);
+    applyReportDiff(storageInfo, toAdd, toRemove, toInvalidate, toCorrupt,
+        toUC);
+    return toInvalidate;
+  }
 
+  /**
+   * Apply the result of diffing a storage report to the block manager state.
+   */
+  private void applyReportDiff(DatanodeStorageInfo storageInfo,
+      Collection<BlockInfoToAdd> toAdd,
+      Collection<BlockInfo> toRemove,
+      Collection<Block> toInvalidate,
+      Collection<BlockToMarkCorrupt> toCorrupt,
+      Collection<StatefulBlockInfo> toUC) throws IOException {
     DatanodeDescriptor node = storageInfo.getDatanodeDescriptor();
     // Process the blocks on each queue
     for (StatefulBlockInfo b : toUC) { 
@@ -3063,8 +3235,6 @@ public class BlockManager implements BlockStatsMXBean {
     for (BlockToMarkCorrupt b : toCorrupt) {
       markBlockAsCorrupt(b, storageInfo, node);
     }
-
-    return toInvalidate;
   }
 
   /**
@@ -3241,6 +3411,107 @@ public class BlockManager implements BlockStatsMXBean {
     storageInfo.removeBlock(delimiter);
   }
 
+  /**
+   * The replicas of a storage report which need an update, as found by
+   * {@link #diffReport(StorageReportDiff)}.
+   */
+  private static class StorageReportDiff {
+    private final DatanodeStorageInfo storageInfo;
+    private final StorageBlockReport report;
+    private final BlockListAsLongs blocks;
+    /** Reported replicas which would be added, corrupt, UC or invalid. */
+    private final List<ReportedBlockInfo> changed = new ArrayList<>();
+    /** Blocks of the storage missing from the report. */
+    private final List<BlockInfo> unreported = new ArrayList<>();
+    private long diffTime;
+
+    StorageReportDiff(DatanodeStorageInfo storageInfo,
+        StorageBlockReport report) {
+      this.storageInfo = storageInfo;
+      this.report = report;
+      this.blocks = report.getBlocks() == null
+          ? BlockListAsLongs.EMPTY : report.getBlocks();
+    }
+  }
+
+  /**
+   * Diff a storage report against the block manager state like
+   * {@link #reportDiff}, but without modifying any state, so that the
+   * reports of several storages may be diffed at once by different threads.
+   * The caller must hold the read lock.
+   */
+  private void diffReport(StorageReportDiff diff) {
+    final long startTime = Time.monotonicNow();
+    final DatanodeStorageInfo storageInfo = diff.storageInfo;
+    Collection<BlockInfoToAdd> toAdd = new ArrayList<>(1);
+    Collection<Block> toInvalidate = new ArrayList<>(1);
+    Collection<BlockToMarkCorrupt> toCorrupt = new ArrayList<>(1);
+    Collection<StatefulBlockInfo> toUC = new ArrayList<>(1);
+    Set<BlockInfo> reported = new HashSet<>(
+        Math.max(16, diff.blocks.getNumberOfBlocks() * 4 / 3));
+
+    for (BlockReportReplica iblk : diff.blocks) {
+      ReplicaState iState = iblk.getState();
+      BlockInfo storedBlock = processReportedBlock(storageInfo,
+          iblk, iState, toAdd, toInvalidate, toCorrupt, toUC);
+      if (storedBlock != null) {
+        reported.add(storedBlock);
+      }
+      if (!toAdd.isEmpty() || !toInvalidate.isEmpty()
+          || !toCorrupt.isEmpty() || !toUC.isEmpty()) {
+        // the report reuses its replica object, so copy it
+        diff.changed.add(
+            new ReportedBlockInfo(storageInfo, new Block(iblk), iState));
+        toAdd.clear();
+        toInvalidate.clear();
+        toCorrupt.clear();
+        toUC.clear();
+      }
+    }
+
+    Iterator<BlockInfo> it = storageInfo.getBlockIterator();
+    while (it.hasNext()) {
+      BlockInfo storedBlock = it.next();
+      if (!reported.contains(storedBlock)) {
+        diff.unreported.add(storedBlock);
+      }
+    }
+    diff.diffTime = Time.monotonicNow() - startTime;
+  }
+
+  /**
+   * Apply a storage report diffed by {@link #diffReport(StorageReportDiff)}.
+   * The namespace may have changed since then, so the changed replicas are
+   * processed again; replicas which did not need an update are assumed to
+   * still be up to date, as if the report had been processed at diff time.
+   *
+   * @return the blocks to invalidate on the datanode.
+   */
+  private Collection<Block> applyReportDiff(StorageReportDiff diff)
+      throws IOException {
+    assert namesystem.hasWriteLock();
+    final DatanodeStorageInfo storageInfo = diff.storageInfo;
+    Collection<BlockInfoToAdd> toAdd = new ArrayList<>();
+    Collection<BlockInfo> toRemove = new ArrayList<>();
+    Collection<Block> toInvalidate = new ArrayList<>();
+    Collection<BlockToMarkCorrupt> toCorrupt = new ArrayList<>();
+    Collection<StatefulBlockInfo> toUC = new ArrayList<>();
+
+    for (ReportedBlockInfo rbi : diff.changed) {
+      processReportedBlock(storageInfo, rbi.getBlock(),
+          rbi.getReportedState(), toAdd, toInvalidate, toCorrupt, toUC);
+    }
+    for (BlockInfo storedBlock : diff.unreported) {
+      // skip blocks deleted or moved off the storage since the diff
+      if (storedBlock.findStorageInfo(storageInfo) >= 0) {
+        toRemove.add(storedBlock);
+      }
+    }
+    applyReportDiff(storageInfo, toAdd, toRemove, toInvalidate, toCorrupt,
+        toUC);
+    return toInvalidate;
+  }
+
   /**
    * Process a block replica reported by the data-node.
    * No side effects except adding to the passed-in Collections.
@@ -18,14 +18,20 @@
 package org.apache.hadoop.hdfs.server.blockmanagement;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
 import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongFunction;
+import java.util.stream.LongStream;
 
 import org.apache.hadoop.hdfs.server.namenode.NameNode;
 import org.apache.hadoop.hdfs.util.LightWeightLinkedSet;
+import org.apache.hadoop.hdfs.util.LongBitmap;
 
 /**
  * Keep prioritized queues of low redundant blocks.
@@ -64,6 +70,12 @@ import org.apache.hadoop.hdfs.util.LightWeightLinkedSet;
  *   The policy here is to keep those corrupt blocks replicated, but give
  *   blocks that are not corrupt higher priority.</li>
  * </ol>
+ *
+ * <p>By default each queue is a linked set of blocks, iterated in insertion
+ * order. Alternatively the queues may only keep the ids of the blocks in a
+ * {@link LongBitmap}, iterated in block id order, which takes a lot less
+ * memory when many blocks lose redundancy at once, e.g. on a rack failure.
+ * </p>
  */
 class LowRedundancyBlocks implements Iterable<BlockInfo> {
   /** The total number of queues : {@value} */
@@ -82,9 +94,9 @@ class LowRedundancyBlocks implements Iterable<BlockInfo> {
   static final int QUEUE_REPLICAS_BADLY_DISTRIBUTED = 3;
   /** The queue for corrupt blocks: {@value} */
   static final int QUEUE_WITH_CORRUPT_BLOCKS = 4;
+  private static final long[] EMPTY_IDS = new long[0];
   /** the queues themselves */
-  private final List<LightWeightLinkedSet<BlockInfo>> priorityQueues
-      = new ArrayList<>(LEVEL);
+  private final List<BlockQueue> priorityQueues = new ArrayList<>(LEVEL);
 
 
   private final LongAdder lowRedundancyBlocks = new LongAdder();
@@ -97,12 +109,31 @@ class LowRedundancyBlocks implements Iterable<BlockInfo> {
       = new LongAdder();
   private final LongAdder highestPriorityLowRedundancyECBlocks
       = new LongAdder();
+  /**
+   * The ids of the blocks counted in corruptReplicationOneBlocks, so that
+   * the count can be updated when a block id no longer resolves to a block.
+   * Null unless the queues only keep block ids.
+   */
+  private final LongBitmap corruptReplicationOneIds;
 
   /** Create an object. */
   LowRedundancyBlocks() {
     for (int i = 0; i < LEVEL; i++) {
-      priorityQueues.add(new LightWeightLinkedSet<BlockInfo>());
+      priorityQueues.add(new LinkedBlockQueue());
+    }
+    corruptReplicationOneIds = null;
+  }
+
+  /**
+   * Create an object whose queues only keep block ids.
+   * @param blockResolver returns the block with the given id, or null if
+   *          there is no such block anymore.
+   */
+  LowRedundancyBlocks(LongFunction<BlockInfo> blockResolver) {
+    for (int i = 0; i < LEVEL; i++) {
+      priorityQueues.add(new BitmapBlockQueue(blockResolver));
     }
+    corruptReplicationOneIds = new LongBitmap();
   }
 
   /**
@@ -115,6 +146,9 @@ class LowRedundancyBlocks implements Iterable<BlockInfo> {
     lowRedundancyBlocks.reset();
     corruptBlocks.reset();
     corruptReplicationOneBlocks.reset();
+    if (corruptReplicationOneIds != null) {
+      corruptReplicationOneIds.clear();
+    }
     lowRedundancyECBlockGroups.reset();
     corruptECBlockGroups.reset();
     highestPriorityLowRedundancyReplicatedBlocks.reset();
@@ -195,7 +229,7 @@ class LowRedundancyBlocks implements Iterable<BlockInfo> {
 
   /** Check if a block is in the neededReconstruction queue. */
   synchronized boolean contains(BlockInfo block) {
-    for(LightWeightLinkedSet<BlockInfo> set : priorityQueues) {
+    for(BlockQueue set : priorityQueues) {
       if (set.contains(block)) {
         return true;
       }
@@ -328,6 +362,9 @@ class LowRedundancyBlocks implements Iterable<BlockInfo> {
         corruptBlocks.increment();
         if (expectedReplicas == 1) {
           corruptReplicationOneBlocks.increment();
+          if (corruptReplicationOneIds != null) {
+            corruptReplicationOneIds.add(blockInfo.getBlockId());
+          }
         }
       }
       if (priLevel == QUEUE_HIGHEST_PRIORITY) {
@@ -401,7 +438,23 @@ class LowRedundancyBlocks implements Iterable<BlockInfo> {
 
   private void decrementBlockStat(BlockInfo blockInfo, int priLevel,
       int oldExpectedReplicas) {
-    if (blockInfo.isStriped()) {
+    decrementBlockStat(blockInfo.isStriped(), blockInfo.getBlockId(),
+        priLevel, oldExpectedReplicas == 1);
+  }
+
+  /**
+   * Update the counters for a block id removed from a queue after it no
+   * longer resolved to a block.
+   */
+  private void decrementBlockStat(long blockId, int priLevel) {
+    // the block is gone, so its id is all that tells whether it was striped
+    decrementBlockStat(BlockIdManager.isStripedBlockID(blockId), blockId,
+        priLevel, corruptReplicationOneIds.contains(blockId));
+  }
+
+  private void decrementBlockStat(boolean isStriped, long blockId,
+      int priLevel, boolean replicationOne) {
+    if (isStriped) {
       lowRedundancyECBlockGroups.decrement();
       if (priLevel == QUEUE_WITH_CORRUPT_BLOCKS) {
         corruptECBlockGroups.decrement();
@@ -413,8 +466,11 @@ class LowRedundancyBlocks implements Iterable<BlockInfo> {
       lowRedundancyBlocks.decrement();
       if (priLevel == QUEUE_WITH_CORRUPT_BLOCKS) {
         corruptBlocks.decrement();
-        if (oldExpectedReplicas == 1) {
+        if (replicationOne) {
           corruptReplicationOneBlocks.decrement();
+          if (corruptReplicationOneIds != null) {
+            corruptReplicationOneIds.remove(blockId);
+          }
           assert corruptReplicationOneBlocks.longValue() >= 0 :
               "Number of corrupt blocks with replication factor 1 " +
                   "should be non-negative";
@@ -546,11 +602,18 @@ class LowRedundancyBlocks implements Iterable<BlockInfo> {
         remove(bInfo, priority);
       }
       toRemove.clear();
+      for (long blockId : priorityQueues.get(priority).removeUnresolved()) {
+        NameNode.blockStateChangeLog.debug(
+            "BLOCK* NameSystem.LowRedundancyBlock.remove: Removing block id"
+                + " {} without a block from priority queue {}",
+            blockId, priority);
+        decrementBlockStat(blockId, priority);
+      }
     }
 
     if (priority == LEVEL || resetIterators) {
       // Reset all bookmarks because there were no recently added blocks.
-      for (LightWeightLinkedSet<BlockInfo> q : priorityQueues) {
+      for (BlockQueue q : priorityQueues) {
         q.resetBookmark();
       }
     }
@@ -566,7 +629,7 @@ class LowRedundancyBlocks implements Iterable<BlockInfo> {
   /** Return an iterator of all the low redundancy blocks. */
   @Override
   public synchronized Iterator<BlockInfo> iterator() {
-    final Iterator<LightWeightLinkedSet<BlockInfo>> q = priorityQueues.iterator();
+    final Iterator<BlockQueue> q = priorityQueues.iterator();
     return new Iterator<BlockInfo>() {
       private Iterator<BlockInfo> b = q.next().iterator();
 
@@ -590,4 +653,209 @@ class LowRedundancyBlocks implements Iterable<BlockInfo> {
       }
     };
   }
-}
\ No newline at end of file
+
+  /**
+   * The blocks of one priority level. The bookmark is where the next
+   * iteration of {@link #chooseLowRedundancyBlocks} resumes.
+   */
+  private interface BlockQueue extends Iterable<BlockInfo> {
+    boolean add(BlockInfo block);
+
+    boolean remove(BlockInfo block);
+
+    boolean contains(BlockInfo block);
+
+    int size();
+
+    void clear();
+
+    /** @return an iterator starting at the bookmark, and advancing it. */
+    Iterator<BlockInfo> getBookmark();
+
+    /** Move the bookmark back to the start of the queue. */
+    void resetBookmark();
+
+    /**
+     * Remove the entries which the bookmark iterations found not to resolve
+     * to a block anymore.
+     * @return the ids of the removed entries
+     */
+    long[] removeUnresolved();
+  }
+
+  /** A queue of blocks iterated in insertion order. */
+  private static final class LinkedBlockQueue implements BlockQueue {
+    private final LightWeightLinkedSet<BlockInfo> blocks =
+        new LightWeightLinkedSet<>();
+
+    @Override
+    public boolean add(BlockInfo block) {
+      return blocks.add(block);
+    }
+
+    @Override
+    public boolean remove(BlockInfo block) {
+      return blocks.remove(block);
+    }
+
+    @Override
+    public boolean contains(BlockInfo block) {
+      return blocks.contains(block);
+    }
+
+    @Override
+    public int size() {
+      return blocks.size();
+    }
+
+    @Override
+    public void clear() {
+      blocks.clear();
+    }
+
+    @Override
+    public Iterator<BlockInfo> iterator() {
+      return blocks.iterator();
+    }
+
+    @Override
+    public Iterator<BlockInfo> getBookmark() {
+      return blocks.getBookmark();
+    }
+
+    @Override
+    public void resetBookmark() {
+      blocks.resetBookmark();
+    }
+
+    @Override
+    public long[] removeUnresolved() {
+      // the queue holds the blocks themselves, deleted blocks are removed
+      // by chooseLowRedundancyBlocks
+      return EMPTY_IDS;
+    }
+  }
+
+  /**
+   * A queue keeping only the ids of its blocks, iterated in block id order.
+   * The blocks are looked up by id when iterating; ids of blocks which no
+   * longer exist are skipped.
+   */
+  private static final class BitmapBlockQueue implements BlockQueue {
+    private final LongBitmap ids = new LongBitmap();
+    /** The ids the bookmark iterations could not resolve. */
+    private final LongBitmap unresolved = new LongBitmap();
+    private final LongFunction<BlockInfo> blockResolver;
+    /** The smallest id the next bookmark iteration may return. */
+    private long bookmark = Long.MIN_VALUE;
+    /** Whether the bookmark is past the largest possible id. */
+    private boolean bookmarkAtEnd;
+
+    BitmapBlockQueue(LongFunction<BlockInfo> blockResolver) {
+      this.blockResolver = blockResolver;
+    }
+
+    @Override
+    public boolean add(BlockInfo block) {
+      return ids.add(block.getBlockId());
+    }
+
+    @Override
+    public boolean remove(BlockInfo block) {
+      return ids.remove(block.getBlockId());
+    }
+
+    @Override
+    public boolean contains(BlockInfo block) {
+      return ids.contains(block.getBlockId());
+    }
+
+    @Override
+    public int size() {
+      return (int) ids.size();
+    }
+
+    @Override
+    public void clear() {
+      ids.clear();
+      unresolved.clear();
+      resetBookmark();
+    }
+
+    @Override
+    public Iterator<BlockInfo> iterator() {
+      return new BlockIterator(ids.iterator(), false);
+    }
+
+    @Override
+    public Iterator<BlockInfo> getBookmark() {
+      return new BlockIterator(bookmarkAtEnd
+          ? LongStream.empty().iterator() : ids.iterator(bookmark), true);
+    }
+
+    @Override
+    public void resetBookmark() {
+      bookmark = Long.MIN_VALUE;
+      bookmarkAtEnd = false;
+    }
+
+    @Override
+    public long[] removeUnresolved() {
+      if (unresolved.isEmpty()) {
+        return EMPTY_IDS;
+      }
+      final long[] removed = new long[(int) unresolved.size()];
+      int n = 0;
+      for (PrimitiveIterator.OfLong i = unresolved.iterator(); i.hasNext();) {
+        final long id = i.nextLong();
+        if (ids.remove(id)) {
+          removed[n++] = id;
+        }
+      }
+      unresolved.clear();
+      return n == removed.length ? removed : Arrays.copyOf(removed, n);
+    }
+
+    /** Iterates the blocks of some ids, optionally moving the bookmark. */
+    private final class BlockIterator implements Iterator<BlockInfo> {
+      private final PrimitiveIterator.OfLong idIterator;
+      private final boolean moveBookmark;
+      private BlockInfo next;
+
+      BlockIterator(PrimitiveIterator.OfLong idIterator,
+          boolean moveBookmark) {
+        this.idIterator = idIterator;
+        this.moveBookmark = moveBookmark;
+      }
+
+      @Override
+      public boolean hasNext() {
+        while (next == null && idIterator.hasNext()) {
+          final long id = idIterator.nextLong();
+          next = blockResolver.apply(id);
+          if (next == null && moveBookmark) {
+            unresolved.add(id);
+          }
+        }
+        return next != null;
+      }
+
+      @Override
+      public BlockInfo next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        BlockInfo block = next;
+        next = null;
+        if (moveBookmark) {
+          if (block.getBlockId() == Long.MAX_VALUE) {
+            bookmarkAtEnd = true;
+          } else {
+            bookmark = block.getBlockId() + 1;
+          }
+        }
+        return block;
+      }
+    }
+  }
+}
@@ -21,6 +21,7 @@ package org.apache.hadoop.hdfs.server.common;
 import org.apache.hadoop.util.AutoCloseableLock;
 import org.apache.hadoop.util.StringUtils;
 
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 
 import static org.apache.hadoop.hdfs.server.datanode.DataSetLockManager.LOG;
@@ -66,6 +67,26 @@ public class AutoCloseDataSetLock extends AutoCloseableLock {
         StringUtils.getStackTrace(Thread.currentThread()));
   }
 
+  /**
+   * Acquire the lock only if it is available without waiting. Unlike
+   * {@link Lock#tryLock()}, this does not barge ahead of the threads already
+   * waiting for a fair lock.
+   *
+   * @return true if the lock was acquired.
+   */
+  @Override
+  public boolean tryLock() {
+    if (lock == null) {
+      return false;
+    }
+    try {
+      return lock.tryLock(0, TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
   public void setParentLock(AutoCloseDataSetLock parent) {
     if (parentLock == null) {
       this.parentLock = parent;
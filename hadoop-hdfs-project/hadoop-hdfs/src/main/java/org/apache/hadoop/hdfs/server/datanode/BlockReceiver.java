@@ -101,6 +101,8 @@ class BlockReceiver implements Closeable {
   private Daemon responder = null;
   private DataTransferThrottler throttler;
   private ReplicaOutputStreams streams;
+  /** Reused for the checksums of the packets received without checksums. */
+  private ByteBuffer computedChecksumBuf;
   private DatanodeInfo srcDataNode = null;
   private DatanodeInfo[] downstreamDNs = DatanodeInfo.EMPTY_ARRAY;
   private final DataNode datanode;
@@ -676,7 +678,12 @@ class BlockReceiver implements Closeable {
 
       if (checksumReceivedLen == 0 && !streams.isTransientStorage()) {
         // checksum is missing, need to calculate it
-        checksumBuf = ByteBuffer.allocate(checksumLen);
+        if (computedChecksumBuf == null
+            || computedChecksumBuf.capacity() < checksumLen) {
+          computedChecksumBuf = ByteBuffer.allocate(checksumLen);
+        }
+        computedChecksumBuf.clear().limit(checksumLen);
+        checksumBuf = computedChecksumBuf;
         diskChecksum.calculateChunkedSums(dataBuf, checksumBuf);
       }
       
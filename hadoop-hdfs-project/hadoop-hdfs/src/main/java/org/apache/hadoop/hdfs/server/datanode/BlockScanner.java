@@ -20,10 +20,14 @@ package org.apache.hadoop.hdfs.server.datanode;
 
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_BLOCK_SCANNER_SKIP_RECENT_ACCESSED;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_BLOCK_SCANNER_SKIP_RECENT_ACCESSED_DEFAULT;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_BLOCK_SCANNER_VOLUME_ADAPTIVE_RATE_DEFAULT;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_BLOCK_SCANNER_VOLUME_ADAPTIVE_RATE_KEY;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_BLOCK_SCANNER_VOLUME_BYTES_PER_SECOND;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_BLOCK_SCANNER_VOLUME_BYTES_PER_SECOND_DEFAULT;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_BLOCK_SCANNER_VOLUME_JOIN_TIMEOUT_MSEC_DEFAULT;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_BLOCK_SCANNER_VOLUME_JOIN_TIMEOUT_MSEC_KEY;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_BLOCK_SCANNER_VOLUME_THREADS_DEFAULT;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_BLOCK_SCANNER_VOLUME_THREADS_KEY;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_DATANODE_SCAN_PERIOD_HOURS_KEY;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_DATANODE_SCAN_PERIOD_HOURS_DEFAULT;
 
@@ -65,6 +69,12 @@ public class BlockScanner {
   private final TreeMap<String, VolumeScanner> scanners =
       new TreeMap<String, VolumeScanner>();
 
+  /**
+   * The number of volume scanners, which the scanners read without taking
+   * the lock of this object.
+   */
+  private volatile int numVolumeScanners = 0;
+
   /**
    * The scanner configuration.
    */
@@ -123,6 +133,8 @@ public class BlockScanner {
     final long scanPeriodMs;
     final long cursorSaveMs;
     final boolean skipRecentAccessed;
+    final int numThreads;
+    final boolean adaptiveRate;
     final Class<? extends ScanResultHandler> resultHandler;
 
     private static long getUnitTestLong(Configuration conf, String key,
@@ -177,6 +189,12 @@ public class BlockScanner {
       this.skipRecentAccessed = conf.getBoolean(
           DFS_BLOCK_SCANNER_SKIP_RECENT_ACCESSED,
           DFS_BLOCK_SCANNER_SKIP_RECENT_ACCESSED_DEFAULT);
+      this.numThreads = Math.max(1, conf.getInt(
+          DFS_BLOCK_SCANNER_VOLUME_THREADS_KEY,
+          DFS_BLOCK_SCANNER_VOLUME_THREADS_DEFAULT));
+      this.adaptiveRate = conf.getBoolean(
+          DFS_BLOCK_SCANNER_VOLUME_ADAPTIVE_RATE_KEY,
+          DFS_BLOCK_SCANNER_VOLUME_ADAPTIVE_RATE_DEFAULT);
       if (allowUnitTestSettings) {
         this.resultHandler = (Class<? extends ScanResultHandler>)
             conf.getClass(INTERNAL_VOLUME_SCANNER_SCAN_RESULT_HANDLER,
@@ -247,6 +265,7 @@ public class BlockScanner {
       scanner = new VolumeScanner(conf, datanode, ref);
       scanner.start();
       scanners.put(volume.getStorageID(), scanner);
+      numVolumeScanners = scanners.size();
       success = true;
     } finally {
       if (!success) {
@@ -280,6 +299,7 @@ public class BlockScanner {
         volume, volume.getStorageID());
     scanner.shutdown();
     scanners.remove(volume.getStorageID());
+    numVolumeScanners = scanners.size();
     Uninterruptibles.joinUninterruptibly(scanner, 5, TimeUnit.MINUTES);
   }
 
@@ -300,6 +320,14 @@ public class BlockScanner {
           getJoinVolumeScannersTimeOutMs(), TimeUnit.MILLISECONDS);
     }
     scanners.clear();
+    numVolumeScanners = 0;
+  }
+
+  /**
+   * @return the number of volumes being scanned.
+   */
+  int getNumVolumeScanners() {
+    return numVolumeScanners;
   }
 
   /**
@@ -87,6 +87,7 @@ public class DNConf {
   final int socketTimeout;
   final int socketWriteTimeout;
   final int socketKeepaliveTimeout;
+  final boolean socketKeepaliveSelectorEnabled;
   final int ecChecksumSocketTimeout;
   private final int transferSocketSendBufferSize;
   private final int transferSocketRecvBufferSize;
@@ -149,6 +150,9 @@ public class DNConf {
     socketKeepaliveTimeout = getConf().getInt(
         DFSConfigKeys.DFS_DATANODE_SOCKET_REUSE_KEEPALIVE_KEY,
         DFSConfigKeys.DFS_DATANODE_SOCKET_REUSE_KEEPALIVE_DEFAULT);
+    socketKeepaliveSelectorEnabled = getConf().getBoolean(
+        DFSConfigKeys.DFS_DATANODE_SOCKET_REUSE_KEEPALIVE_SELECTOR_ENABLED_KEY,
+        DFSConfigKeys.DFS_DATANODE_SOCKET_REUSE_KEEPALIVE_SELECTOR_ENABLED_DEFAULT);
     ecChecksumSocketTimeout = getConf().getInt(
         DFS_CHECKSUM_EC_SOCKET_TIMEOUT_KEY,
         DFS_CHECKSUM_EC_SOCKET_TIMEOUT_DEFAULT);
@@ -22,6 +22,8 @@ import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hdfs.DFSConfigKeys;
 import org.apache.hadoop.hdfs.server.common.AutoCloseDataSetLock;
 import org.apache.hadoop.hdfs.server.common.DataNodeLockManager;
+import org.apache.hadoop.hdfs.server.datanode.metrics.DataNodeMetrics;
+import org.apache.hadoop.util.Time;
 
 import java.util.HashMap;
 import java.util.Stack;
@@ -40,6 +42,7 @@ public class DataSetLockManager implements DataNodeLockManager<AutoCloseDataSetL
   private boolean isFair = true;
   private final boolean openLockTrace;
   private Exception lastException;
+  private volatile DataNodeMetrics metrics;
 
   /**
    * Class for maintain lockMap and is thread safe.
@@ -193,7 +196,7 @@ public class DataSetLockManager implements DataNodeLockManager<AutoCloseDataSetL
       lockMap.addLock(lockName, new ReentrantReadWriteLock(isFair));
       lock = lockMap.getReadLock(lockName);
     }
-    lock.lock();
+    acquire(level, lock);
     if (openLockTrace) {
       putThreadName(getThreadName());
     }
@@ -212,13 +215,35 @@ public class DataSetLockManager implements DataNodeLockManager<AutoCloseDataSetL
       lockMap.addLock(lockName, new ReentrantReadWriteLock(isFair));
       lock = lockMap.getWriteLock(lockName);
     }
-    lock.lock();
+    acquire(level, lock);
     if (openLockTrace) {
       putThreadName(getThreadName());
     }
     return lock;
   }
 
+  /**
+   * Acquire a lock, recording how long it was waited for if it was not
+   * available right away.
+   */
+  private void acquire(LockLevel level, AutoCloseDataSetLock lock) {
+    final DataNodeMetrics m = metrics;
+    if (m == null) {
+      lock.lock();
+    } else if (!lock.tryLock()) {
+      final long start = Time.monotonicNowNanos();
+      lock.lock();
+      m.addLockWaitNanos(level, Time.monotonicNowNanos() - start);
+    }
+  }
+
+  /**
+   * Set the metrics to record the time waited for contended locks into.
+   */
+  public void setMetrics(DataNodeMetrics metrics) {
+    this.metrics = metrics;
+  }
+
   @Override
   public void addLock(LockLevel level, String... resources) {
     String lockName = generateLockName(level, resources);
@@ -62,6 +62,7 @@ import org.apache.hadoop.hdfs.server.protocol.DatanodeRegistration;
 import org.apache.hadoop.hdfs.shortcircuit.ShortCircuitShm.SlotId;
 import org.apache.hadoop.io.IOUtils;
 import org.apache.hadoop.net.NetUtils;
+import org.apache.hadoop.net.SocketInputStream;
 import org.apache.hadoop.net.unix.DomainSocket;
 import org.apache.hadoop.security.token.SecretManager.InvalidToken;
 import org.apache.hadoop.security.token.Token;
@@ -86,6 +87,8 @@ import java.net.Socket;
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
 import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectableChannel;
 import java.util.Arrays;
 import java.util.concurrent.TimeUnit;
 
@@ -122,6 +125,12 @@ class DataXceiver extends Receiver implements Runnable {
   private final int ioFileBufferSize;
   private final int smallBufferSize;
   private Thread xceiver = null;
+  private int opsProcessed = 0;
+  /**
+   * The unwrapped input of the socket, null if the socket was not set up yet
+   * or data transfer is encrypted or integrity-protected.
+   */
+  private OpInputStream opInput;
 
   /**
    * Client Name used in previous operation. Not available on first request
@@ -216,46 +225,37 @@ class DataXceiver extends Receiver implements Runnable {
     return blockReceiver;
   }
   
+  /**
+   * A buffered input which tells whether bytes of the next op were already
+   * read.
+   */
+  private static final class OpInputStream extends BufferedInputStream {
+    private OpInputStream(InputStream in, int size) {
+      super(in, size);
+    }
+
+    private synchronized boolean hasBuffered() {
+      return count > pos;
+    }
+  }
+
   /**
    * Read/write data from/to the DataXceiverServer.
    */
   @Override
   public void run() {
-    int opsProcessed = 0;
     Op op = null;
+    boolean parked = false;
 
     try {
       synchronized(this) {
         xceiver = Thread.currentThread();
       }
       dataXceiverServer.addPeer(peer, Thread.currentThread(), this);
-      peer.setWriteTimeout(datanode.getDnConf().socketWriteTimeout);
-      InputStream input = socketIn;
-      try {
-        IOStreamPair saslStreams = datanode.saslServer.receive(peer, socketOut,
-          socketIn, datanode.getXferAddress().getPort(),
-          datanode.getDatanodeId());
-        input = new BufferedInputStream(saslStreams.in,
-            smallBufferSize);
-        socketOut = saslStreams.out;
-      } catch (InvalidMagicNumberException imne) {
-        if (imne.isHandshake4Encryption()) {
-          LOG.info("Failed to read expected encryption handshake from client " +
-              "at {}. Perhaps the client " +
-              "is running an older version of Hadoop which does not support " +
-              "encryption", peer.getRemoteAddressString(), imne);
-        } else {
-          LOG.info("Failed to read expected SASL data transfer protection " +
-              "handshake from client at {}" +
-              ". Perhaps the client is running an older version of Hadoop " +
-              "which does not support SASL data transfer protection",
-              peer.getRemoteAddressString(), imne);
-        }
+      if (opsProcessed == 0 && !setUpStreams()) {
         return;
       }
-      
-      super.initialize(new DataInputStream(input));
-      
+
       // We process requests in a loop, and stay around for a short timeout.
       // This optimistic behaviour allows the other end to reuse connections.
       // Setting keepalive timeout to 0 disable this behavior.
@@ -293,7 +293,8 @@ class DataXceiver extends Receiver implements Runnable {
         processOp(op);
         ++opsProcessed;
       } while ((peer != null) &&
-          (!peer.isClosed() && dnConf.socketKeepaliveTimeout > 0));
+          (!peer.isClosed() && dnConf.socketKeepaliveTimeout > 0) &&
+          !(parked = park()));
     } catch (Throwable t) {
       String s = datanode.getDisplayName() + ":DataXceiver error processing "
           + ((op == null) ? "unknown" : op.name()) + " operation "
@@ -328,12 +329,87 @@ class DataXceiver extends Receiver implements Runnable {
       collectThreadLocalStates();
       LOG.debug("{}:Number of active connections is: {}",
           datanode.getDisplayName(), datanode.getXceiverCount());
-      updateCurrentThreadName("Cleaning up");
-      if (peer != null) {
-        dataXceiverServer.closePeer(peer);
-        IOUtils.closeStream(in);
+      // once parked, another thread may already be running this xceiver
+      if (!parked) {
+        updateCurrentThreadName("Cleaning up");
+        if (peer != null) {
+          dataXceiverServer.closePeer(peer);
+          IOUtils.closeStream(in);
+        }
+      }
+    }
+  }
+
+  /**
+   * Set up the streams of a new connection.
+   *
+   * @return false if the handshake with the client failed.
+   */
+  private boolean setUpStreams() throws IOException {
+    peer.setWriteTimeout(datanode.getDnConf().socketWriteTimeout);
+    InputStream input = socketIn;
+    try {
+      IOStreamPair saslStreams = datanode.saslServer.receive(peer, socketOut,
+        socketIn, datanode.getXferAddress().getPort(),
+        datanode.getDatanodeId());
+      input = new OpInputStream(saslStreams.in, smallBufferSize);
+      if (saslStreams.in == socketIn) {
+        opInput = (OpInputStream) input;
       }
+      socketOut = saslStreams.out;
+    } catch (InvalidMagicNumberException imne) {
+      if (imne.isHandshake4Encryption()) {
+        LOG.info("Failed to read expected encryption handshake from client " +
+            "at {}. Perhaps the client " +
+            "is running an older version of Hadoop which does not support " +
+            "encryption", peer.getRemoteAddressString(), imne);
+      } else {
+        LOG.info("Failed to read expected SASL data transfer protection " +
+            "handshake from client at {}" +
+            ". Perhaps the client is running an older version of Hadoop " +
+            "which does not support SASL data transfer protection",
+            peer.getRemoteAddressString(), imne);
+      }
+      return false;
+    }
+
+    super.initialize(new DataInputStream(input));
+    return true;
+  }
+
+  /**
+   * Wait for the next operation without holding the thread, if the server
+   * watches idle sockets and no byte of the operation was read yet.
+   *
+   * @return true if the xceiver was handed over to the selector, in which
+   * case the current thread must exit without touching the connection.
+   */
+  private boolean park() {
+    final IdlePeerSelector selector = dataXceiverServer.getIdlePeerSelector();
+    if (selector == null || opInput == null || opInput.hasBuffered()) {
+      return false;
+    }
+    final ReadableByteChannel channel = peer.getInputStreamChannel();
+    if (!(channel instanceof SocketInputStream) ||
+        !(((SocketInputStream) channel).getChannel()
+            instanceof SelectableChannel)) {
+      return false;
     }
+    synchronized(this) {
+      xceiver = null;
+    }
+    dataXceiverServer.parkPeer(peer);
+    selector.park(this, (SelectableChannel)
+        ((SocketInputStream) channel).getChannel());
+    return true;
+  }
+
+  /** Close the connection of a parked xceiver. */
+  void closeIdle() {
+    LOG.debug("Cached {} closing after {} ops while parked.", peer,
+        opsProcessed);
+    IOUtils.closeStream(in);
+    dataXceiverServer.closeParkedPeer(peer);
   }
 
   /**
@@ -375,6 +451,7 @@ class DataXceiver extends Receiver implements Runnable {
         }
         fis = datanode.requestShortCircuitFdsForRead(blk, token, maxVersion);
         Preconditions.checkState(fis != null);
+        datanode.data.recordBlockRead(blk);
         bld.setStatus(SUCCESS);
         bld.setShortCircuitAccessVersion(DataNode.CURRENT_BLOCK_FORMAT_VERSION);
       } catch (ShortCircuitFdsVersionException e) {
@@ -603,6 +680,7 @@ class DataXceiver extends Receiver implements Runnable {
         sendResponse(ERROR, msg);
         throw e;
       }
+      datanode.data.recordBlockRead(block);
       
       // send op status
       writeSuccessWithChecksumInfo(blockSender, new DataOutputStream(getOutputStream()));
@@ -21,6 +21,7 @@ import java.io.IOException;
 import java.net.SocketTimeoutException;
 import java.nio.channels.AsynchronousCloseException;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
@@ -31,6 +32,7 @@ import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hdfs.DFSConfigKeys;
 import org.apache.hadoop.hdfs.net.Peer;
 import org.apache.hadoop.hdfs.net.PeerServer;
+import org.apache.hadoop.hdfs.net.TcpPeerServer;
 import org.apache.hadoop.hdfs.util.DataTransferThrottler;
 import org.apache.hadoop.io.IOUtils;
 import org.apache.hadoop.util.Daemon;
@@ -58,6 +60,11 @@ class DataXceiverServer implements Runnable {
   private final DataNode datanode;
   private final HashMap<Peer, Thread> peers = new HashMap<>();
   private final HashMap<Peer, DataXceiver> peersXceiver = new HashMap<>();
+  /**
+   * Peers waiting in the {@link IdlePeerSelector} for their next operation.
+   * They have no thread, but their DataXceivers stay in peersXceiver.
+   */
+  private final HashSet<Peer> parkedPeers = new HashSet<>();
   private final Lock lock = new ReentrantLock();
   private final Condition noPeers = lock.newCondition();
   private boolean closed = false;
@@ -179,8 +186,14 @@ class DataXceiverServer implements Runnable {
    */
   final long estimateBlockSize;
 
+  /**
+   * Watches the sockets of the DataXceivers waiting for the next operation,
+   * null if these wait in their own thread.
+   */
+  private final IdlePeerSelector idlePeerSelector;
+
   DataXceiverServer(PeerServer peerServer, Configuration conf,
-      DataNode datanode) {
+      DataNode datanode) throws IOException {
     this.peerServer = peerServer;
     this.datanode = datanode;
 
@@ -201,6 +214,16 @@ class DataXceiverServer implements Runnable {
         conf.getInt(DFSConfigKeys.DFS_DATANODE_BALANCE_MAX_NUM_CONCURRENT_MOVES_KEY,
             DFSConfigKeys.DFS_DATANODE_BALANCE_MAX_NUM_CONCURRENT_MOVES_DEFAULT));
     initBandwidthPerSec(conf);
+
+    final DNConf dnConf = datanode.getDnConf();
+    if (dnConf.socketKeepaliveSelectorEnabled
+        && dnConf.socketKeepaliveTimeout > 0
+        && peerServer instanceof TcpPeerServer) {
+      this.idlePeerSelector = new IdlePeerSelector(
+          dnConf.socketKeepaliveTimeout, this::resume);
+    } else {
+      this.idlePeerSelector = null;
+    }
   }
 
   private void initBandwidthPerSec(Configuration conf) {
@@ -225,6 +248,9 @@ class DataXceiverServer implements Runnable {
 
   @Override
   public void run() {
+    if (idlePeerSelector != null) {
+      idlePeerSelector.start();
+    }
     Peer peer = null;
     while (datanode.shouldRun && !datanode.shutdownForUpgrade) {
       try {
@@ -296,6 +322,9 @@ class DataXceiverServer implements Runnable {
     }
 
     closeAllPeers();
+    if (idlePeerSelector != null) {
+      idlePeerSelector.close();
+    }
   }
 
   void kill() {
@@ -322,6 +351,7 @@ class DataXceiverServer implements Runnable {
       if (closed) {
         throw new IOException("Server closed.");
       }
+      parkedPeers.remove(peer);
       peers.put(peer, t);
       peersXceiver.put(peer, xceiver);
       datanode.metrics.incrDataNodeActiveXceiversCount();
@@ -345,14 +375,72 @@ class DataXceiverServer implements Runnable {
     }
   }
 
-  // Sending OOB to all peers
+  /**
+   * @return the selector to wait for the next operation with, null if a
+   * DataXceiver should wait in its own thread.
+   */
+  IdlePeerSelector getIdlePeerSelector() {
+    return idlePeerSelector;
+  }
+
+  /**
+   * Resume a DataXceiver once its next operation arrived, unless the xceiver
+   * count is exceeded, in which case its connection is closed.
+   */
+  private void resume(DataXceiver xceiver) {
+    int curXceiverCount = datanode.getXceiverCount();
+    if (curXceiverCount > maxXceiverCount) {
+      LOG.warn("{}:DataXceiverServer", datanode.getDisplayName(),
+          new IOException("Xceiver count " + curXceiverCount
+              + " exceeds the limit of concurrent xceivers: "
+              + maxXceiverCount));
+      xceiver.closeIdle();
+      return;
+    }
+    new Daemon(datanode.threadGroup, xceiver).start();
+  }
+
+  /**
+   * Release the thread of a peer which waits for its next operation in the
+   * {@link IdlePeerSelector}. The peer stays tracked until it is resumed by
+   * {@link #addPeer(Peer, Thread, DataXceiver)} or closed by
+   * {@link #closeParkedPeer(Peer)}.
+   */
+  void parkPeer(Peer peer) {
+    lock.lock();
+    try {
+      peers.remove(peer);
+      parkedPeers.add(peer);
+      datanode.metrics.decrDataNodeActiveXceiversCount();
+      if (peers.isEmpty()) {
+        this.noPeers.signalAll();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Close a peer parked by {@link #parkPeer(Peer)}. */
+  void closeParkedPeer(Peer peer) {
+    lock.lock();
+    try {
+      if (parkedPeers.remove(peer)) {
+        peersXceiver.remove(peer);
+      }
+      IOUtils.closeStream(peer);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  // Sending OOB to all peers, including the parked ones
   public void sendOOBToPeers() {
     lock.lock();
     try {
       if (!datanode.shutdownForUpgrade) {
         return;
       }
-      for (Peer p : peers.keySet()) {
+      for (Peer p : peersXceiver.keySet()) {
         try {
           peersXceiver.get(p).sendOOB();
         } catch (IOException e) {
@@ -399,7 +487,9 @@ class DataXceiverServer implements Runnable {
     lock.lock();
     try {
       peers.keySet().forEach(IOUtils::closeStream);
+      parkedPeers.forEach(IOUtils::closeStream);
       peers.clear();
+      parkedPeers.clear();
       peersXceiver.clear();
       datanode.metrics.setDataNodeActiveXceiversCount(0);
       this.noPeers.signalAll();
@@ -465,6 +555,22 @@ class DataXceiverServer implements Runnable {
     }
   }
 
+  /**
+   * Return the number of peers waiting for their next operation without a
+   * thread.
+   *
+   * @return the number of parked peers.
+   */
+  @VisibleForTesting
+  int getNumParkedPeers() {
+    lock.lock();
+    try {
+      return parkedPeers.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
   @VisibleForTesting
   PeerServer getPeerServer() {
     return peerServer;
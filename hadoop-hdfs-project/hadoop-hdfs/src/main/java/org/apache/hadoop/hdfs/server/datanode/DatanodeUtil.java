@@ -38,6 +38,9 @@ public class DatanodeUtil {
 
   private static final String SEP = System.getProperty("file.separator");
 
+  /** The number of directories finalized blocks are spread over. */
+  public static final int NUM_BLOCK_DIRS = 32 * 32;
+
   /** Get the cause of an I/O exception if caused by a possible disk error
    * @param ioe an I/O exception
    * @return cause if the I/O exception is caused by a possible disk error;
@@ -120,10 +123,28 @@ public class DatanodeUtil {
    * @return
    */
   public static File idToBlockDir(File root, long blockId) {
+    return blockDirIndexToDir(root, idToBlockDirIndex(blockId));
+  }
+
+  /**
+   * Get the index, between 0 and {@link #NUM_BLOCK_DIRS} - 1, of the
+   * directory where a finalized block with this ID should be stored.
+   */
+  public static int idToBlockDirIndex(long blockId) {
     int d1 = (int) ((blockId >> 16) & 0x1F);
     int d2 = (int) ((blockId >> 8) & 0x1F);
-    String path = DataStorage.BLOCK_SUBDIR_PREFIX + d1 + SEP +
-        DataStorage.BLOCK_SUBDIR_PREFIX + d2;
+    return (d1 << 5) | d2;
+  }
+
+  /**
+   * Get the directory with this index where finalized blocks are stored.
+   * Do not attempt to create the directory.
+   * @param root the root directory where finalized blocks are stored
+   * @param index the index returned by {@link #idToBlockDirIndex(long)}
+   */
+  public static File blockDirIndexToDir(File root, int index) {
+    String path = DataStorage.BLOCK_SUBDIR_PREFIX + (index >> 5) + SEP +
+        DataStorage.BLOCK_SUBDIR_PREFIX + (index & 0x1F);
     return new File(root, path);
   }
 
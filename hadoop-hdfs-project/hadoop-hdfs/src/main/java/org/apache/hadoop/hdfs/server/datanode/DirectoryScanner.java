@@ -17,9 +17,13 @@
  */
 package org.apache.hadoop.hdfs.server.datanode;
 
+import static org.apache.hadoop.hdfs.server.datanode.DatanodeUtil.NUM_BLOCK_DIRS;
+import static org.apache.hadoop.hdfs.server.datanode.DatanodeUtil.idToBlockDirIndex;
+
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -75,6 +79,24 @@ public class DirectoryScanner implements Runnable {
   private final long throttleLimitMsPerSec;
   private final AtomicBoolean shouldRun = new AtomicBoolean();
 
+  /**
+   * Whether each scan only lists the block directories modified since the
+   * last scan, plus {@link #sweepBlockDirsPerScan} other ones.
+   */
+  private final boolean incremental;
+  private final int sweepBlockDirsPerScan;
+  /** The next block directory to sweep. */
+  @VisibleForTesting
+  int sweepCursor;
+  /**
+   * The modified block directories of each block pool which have not been
+   * reconciled yet.
+   */
+  private final Map<String, BitSet> pendingBlockDirs = new HashMap<>();
+  /** The volumes and block pools polled for the ongoing scan. */
+  private final ListMultimap<FsVolumeSpi, String> polledBlockDirs =
+      ArrayListMultimap.create();
+
   private boolean retainDiffs = false;
 
   /**
@@ -353,6 +375,23 @@ public class DirectoryScanner implements Runnable {
     }
 
     reconcileBlocksBatchInterval = reconcileBatchInterval;
+
+    incremental = conf.getBoolean(
+        DFSConfigKeys.DFS_DATANODE_DIRECTORYSCAN_INCREMENTAL_ENABLED_KEY,
+        DFSConfigKeys.DFS_DATANODE_DIRECTORYSCAN_INCREMENTAL_ENABLED_DEFAULT);
+    long fullSweepMsecs = conf.getTimeDuration(
+        DFSConfigKeys.DFS_DATANODE_DIRECTORYSCAN_FULL_SWEEP_INTERVAL_KEY,
+        DFSConfigKeys.DFS_DATANODE_DIRECTORYSCAN_FULL_SWEEP_INTERVAL_DEFAULT,
+        TimeUnit.SECONDS, TimeUnit.MILLISECONDS);
+    if (fullSweepMsecs <= scanPeriodMsecs) {
+      sweepBlockDirsPerScan = NUM_BLOCK_DIRS;
+    } else {
+      // round up, so that the sweep never takes longer than configured
+      sweepBlockDirsPerScan = (int) Math.max(1,
+          (NUM_BLOCK_DIRS * scanPeriodMsecs + fullSweepMsecs - 1)
+              / fullSweepMsecs);
+    }
+    sweepCursor = ThreadLocalRandom.current().nextInt(NUM_BLOCK_DIRS);
   }
 
   /**
@@ -367,6 +406,10 @@ public class DirectoryScanner implements Runnable {
     LOG.info(
         "Periodic Directory Tree Verification scan starting in {}ms with interval of {}ms and throttle limit of {}ms/s",
         firstScanTime, scanPeriodMsecs, throttleLimitMsPerSec);
+    if (incremental) {
+      LOG.info("Scans are incremental and sweep {} of the {} block "
+          + "directories each", sweepBlockDirsPerScan, NUM_BLOCK_DIRS);
+    }
 
     masterThread.scheduleAtFixedRate(this, firstScanTime, scanPeriodMsecs,
         TimeUnit.MILLISECONDS);
@@ -465,7 +508,7 @@ public class DirectoryScanner implements Runnable {
   @VisibleForTesting
   public void reconcile() throws IOException {
     LOG.debug("reconcile start DirectoryScanning");
-    scan();
+    final boolean scannedAllVolumes = scan();
 
     // HDFS-14476: run checkAndUpdate with batch to avoid holding the lock too
     // long
@@ -485,22 +528,109 @@ public class DirectoryScanner implements Runnable {
       }
     }
 
+    if (incremental) {
+      commitBlockDirs(scannedAllVolumes);
+    }
+
     if (!retainDiffs) {
       clear();
     }
   }
 
+  /**
+   * Get the block directories of each block pool to scan incrementally: the
+   * ones modified since they were last reconciled, plus the next ones of the
+   * sweep.
+   *
+   * @param volumes the volumes to scan
+   * @return the indexes of the directories, by block pool
+   */
+  private Map<String, BitSet> pollBlockDirs(
+      FsDatasetSpi.FsVolumeReferences volumes) {
+    polledBlockDirs.clear();
+    for (FsVolumeSpi volume : volumes) {
+      if (volume.getStorageType() == StorageType.PROVIDED) {
+        continue;
+      }
+      for (String bpid : volume.getBlockPoolList()) {
+        BitSet modified;
+        try {
+          modified = volume.pollModifiedBlockDirs(bpid);
+        } catch (IOException e) {
+          LOG.warn("Failed to get the modified block directories of {} on {}",
+              bpid, volume, e);
+          modified = null;
+        }
+        BitSet pending = pendingBlockDirs.computeIfAbsent(bpid,
+            k -> new BitSet(NUM_BLOCK_DIRS));
+        if (modified == null) {
+          pending.set(0, NUM_BLOCK_DIRS);
+        } else {
+          pending.or(modified);
+        }
+        polledBlockDirs.put(volume, bpid);
+      }
+    }
+
+    BitSet sweep = new BitSet(NUM_BLOCK_DIRS);
+    for (int i = 0; i < sweepBlockDirsPerScan; i++) {
+      sweep.set((sweepCursor + i) % NUM_BLOCK_DIRS);
+    }
+    sweepCursor = (sweepCursor + sweepBlockDirsPerScan) % NUM_BLOCK_DIRS;
+
+    Map<String, BitSet> blockDirs = new HashMap<>();
+    for (Map.Entry<String, BitSet> entry : pendingBlockDirs.entrySet()) {
+      BitSet dirs = (BitSet) sweep.clone();
+      dirs.or(entry.getValue());
+      blockDirs.put(entry.getKey(), dirs);
+      LOG.info("Scanning {} of the {} block directories of {}",
+          dirs.cardinality(), NUM_BLOCK_DIRS, entry.getKey());
+    }
+    return blockDirs;
+  }
+
+  /**
+   * Let the volumes forget the block directories polled for the scan, once
+   * these are reconciled. Nothing is forgotten unless all the polled volumes
+   * were scanned, the directories are scanned again next time instead.
+   *
+   * @param scannedAllVolumes whether all the polled volumes were scanned
+   */
+  private void commitBlockDirs(boolean scannedAllVolumes) {
+    if (!scannedAllVolumes) {
+      polledBlockDirs.clear();
+      return;
+    }
+    for (Map.Entry<FsVolumeSpi, String> entry : polledBlockDirs.entries()) {
+      try {
+        entry.getKey().commitModifiedBlockDirs(entry.getValue());
+      } catch (IOException e) {
+        LOG.warn("Failed to commit the modified block directories of {} on {}",
+            entry.getValue(), entry.getKey(), e);
+      }
+    }
+    polledBlockDirs.clear();
+    pendingBlockDirs.clear();
+  }
+
   /**
    * Scan for the differences between disk and in-memory blocks Scan only the
    * "finalized blocks" lists of both disk and memory.
+   *
+   * @return whether all the volumes polled for modified block directories
+   *         were scanned
    */
-  private void scan() {
+  private boolean scan() {
     BlockPoolReport blockPoolReport = new BlockPoolReport();
 
     clear();
 
-    Collection<ScanInfoVolumeReport> volumeReports = getVolumeReports();
+    final Map<String, BitSet> blockDirs = incremental ? new HashMap<>() : null;
+    Collection<ScanInfoVolumeReport> volumeReports =
+        getVolumeReports(blockDirs);
+    final Set<FsVolumeSpi> scannedVolumes = new HashSet<>();
     for (ScanInfoVolumeReport volumeReport : volumeReports) {
+      scannedVolumes.add(volumeReport.getVolume());
       for (String blockPoolId : volumeReport.getBlockPoolIds()) {
         List<ScanInfo> scanInfos = volumeReport.getScanInfo(blockPoolId);
         blockPoolReport.addAll(blockPoolId, scanInfos);
@@ -519,6 +649,11 @@ public class DirectoryScanner implements Runnable {
 
       statsRecord.totalBlocks = blockpoolReport.size();
       final List<ReplicaInfo> bl = dataset.getFinalizedBlocks(bpid);
+      final BitSet dirs = blockDirs == null ? null : blockDirs.get(bpid);
+      if (dirs != null) {
+        // the disk report only covers these directories
+        bl.removeIf(b -> !dirs.get(idToBlockDirIndex(b.getBlockId())));
+      }
       Collections.sort(bl); // Sort based on blockId
 
       int d = 0; // index for blockpoolReport
@@ -598,6 +733,7 @@ public class DirectoryScanner implements Runnable {
       }
       LOG.info("Scan Results: {}", statsRecord);
     }
+    return scannedVolumes.containsAll(polledBlockDirs.keySet());
   }
 
   /**
@@ -638,17 +774,32 @@ public class DirectoryScanner implements Runnable {
    */
   @VisibleForTesting
   public Collection<ScanInfoVolumeReport> getVolumeReports() {
+    return getVolumeReports(null);
+  }
+
+  /**
+   * Get the lists of blocks on the disks in the data set.
+   *
+   * @param blockDirs if not null, scan incrementally and fill it with the
+   *                  block directories scanned for each block pool
+   */
+  private Collection<ScanInfoVolumeReport> getVolumeReports(
+      Map<String, BitSet> blockDirs) {
     List<ScanInfoVolumeReport> volReports = new ArrayList<>();
     List<Future<ScanInfoVolumeReport>> compilersInProgress = new ArrayList<>();
 
     // First get list of data directories
     try (FsDatasetSpi.FsVolumeReferences volumes =
         dataset.getFsVolumeReferences()) {
+      if (blockDirs != null) {
+        blockDirs.putAll(pollBlockDirs(volumes));
+      }
 
       for (final FsVolumeSpi volume : volumes) {
         // Disable scanning PROVIDED volumes to keep overhead low
         if (volume.getStorageType() != StorageType.PROVIDED) {
-          ReportCompiler reportCompiler = new ReportCompiler(volume);
+          ReportCompiler reportCompiler =
+              new ReportCompiler(volume, blockDirs);
           Future<ScanInfoVolumeReport> result =
               reportCompileThreadPool.submit(reportCompiler);
           compilersInProgress.add(result);
@@ -685,6 +836,8 @@ public class DirectoryScanner implements Runnable {
    */
   public class ReportCompiler implements Callable<ScanInfoVolumeReport> {
     private final FsVolumeSpi volume;
+    // The block directories to scan by block pool, null to scan them all
+    private final Map<String, BitSet> blockDirs;
     // Variable for tracking time spent running for throttling purposes
     private final StopWatch throttleTimer = new StopWatch();
     // Variable for tracking time spent running and waiting for testing
@@ -697,7 +850,19 @@ public class DirectoryScanner implements Runnable {
      * @param volume the target volume
      */
     public ReportCompiler(FsVolumeSpi volume) {
+      this(volume, null);
+    }
+
+    /**
+     * Create a report compiler for the given block directories of a volume.
+     *
+     * @param volume the target volume
+     * @param blockDirs the indexes of the block directories to scan by block
+     *                  pool, or null to scan all of them
+     */
+    ReportCompiler(FsVolumeSpi volume, Map<String, BitSet> blockDirs) {
       this.volume = volume;
+      this.blockDirs = blockDirs;
     }
 
     /**
@@ -721,7 +886,15 @@ public class DirectoryScanner implements Runnable {
 
         try {
           // ScanInfos are added directly to 'report' list
-          volume.compileReport(bpid, report, this);
+          final BitSet dirs = blockDirs == null ? null : blockDirs.get(bpid);
+          if (dirs == null) {
+            volume.compileReport(bpid, report, this);
+          } else {
+            volume.compileReport(bpid, dirs, report, this);
+            // misplaced blocks are only reconciled by full scans
+            report.removeIf(
+                info -> !dirs.get(idToBlockDirIndex(info.getBlockId())));
+          }
           result.addAll(bpid, report);
         } catch (InterruptedException ex) {
           // Exit quickly and flag the scanner to do the same
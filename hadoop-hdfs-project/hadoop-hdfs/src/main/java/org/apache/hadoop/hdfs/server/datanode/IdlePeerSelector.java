@@ -0,0 +1,191 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.datanode;
+
+import static org.apache.hadoop.util.Time.monotonicNow;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+import org.apache.hadoop.classification.VisibleForTesting;
+import org.apache.hadoop.io.IOUtils;
+import org.slf4j.Logger;
+
+/**
+ * Watches the sockets of the DataXceivers waiting for the next operation on a
+ * reused connection, so that these do not hold a thread while idle.
+ *
+ * A parked DataXceiver is handed to the dispatcher as soon as its socket is
+ * readable, and closed if nothing arrives within the keepalive timeout. All
+ * the sockets are watched by a single thread.
+ */
+class IdlePeerSelector implements Runnable {
+  static final Logger LOG = DataNode.LOG;
+
+  /** The maximum time between two checks for expired sockets. */
+  private static final long EXPIRY_CHECK_INTERVAL_MS = 100;
+
+  private final Selector selector;
+  private final Consumer<DataXceiver> dispatcher;
+  private final long keepaliveTimeoutMs;
+  /** DataXceivers to register, only the selector thread registers them. */
+  private final Queue<Parked> pending = new ConcurrentLinkedQueue<>();
+  private final Thread thread;
+  private volatile boolean running = true;
+
+  /** A DataXceiver waiting for its socket to become readable. */
+  private static final class Parked {
+    private final DataXceiver xceiver;
+    private final SelectableChannel channel;
+    private final long deadline;
+
+    private Parked(DataXceiver xceiver, SelectableChannel channel,
+        long deadline) {
+      this.xceiver = xceiver;
+      this.channel = channel;
+      this.deadline = deadline;
+    }
+  }
+
+  IdlePeerSelector(long keepaliveTimeoutMs, Consumer<DataXceiver> dispatcher)
+      throws IOException {
+    this.selector = Selector.open();
+    this.dispatcher = dispatcher;
+    this.keepaliveTimeoutMs = keepaliveTimeoutMs;
+    this.thread = new Thread(this, getClass().getSimpleName());
+    thread.setDaemon(true);
+  }
+
+  void start() {
+    thread.start();
+  }
+
+  /**
+   * Wait for the next operation of a DataXceiver without a thread. The
+   * channel must be in non-blocking mode.
+   */
+  void park(DataXceiver xceiver, SelectableChannel channel) {
+    pending.add(new Parked(xceiver, channel,
+        monotonicNow() + keepaliveTimeoutMs));
+    if (!running) {
+      // raced with close()
+      closeParked();
+      return;
+    }
+    selector.wakeup();
+  }
+
+  /** @return the number of DataXceivers waiting for an operation. */
+  @VisibleForTesting
+  int getNumParked() {
+    return pending.size() + selector.keys().size();
+  }
+
+  @Override
+  public void run() {
+    long lastExpiryCheck = monotonicNow();
+    try {
+      while (running) {
+        selector.select(EXPIRY_CHECK_INTERVAL_MS);
+        // cancelled keys were deregistered by select, so that their channels
+        // may be parked again
+        register();
+        Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+        while (it.hasNext()) {
+          SelectionKey key = it.next();
+          it.remove();
+          key.cancel();
+          dispatch((Parked) key.attachment());
+        }
+        final long now = monotonicNow();
+        if (now - lastExpiryCheck >= EXPIRY_CHECK_INTERVAL_MS) {
+          lastExpiryCheck = now;
+          expire(now);
+        }
+      }
+    } catch (Throwable t) {
+      LOG.error("{} exiting", thread.getName(), t);
+    } finally {
+      running = false;
+      closeParked();
+      IOUtils.cleanupWithLogger(LOG, selector);
+    }
+  }
+
+  private void register() {
+    for (Parked p; (p = pending.poll()) != null;) {
+      try {
+        p.channel.register(selector, SelectionKey.OP_READ, p);
+      } catch (ClosedChannelException | RuntimeException e) {
+        LOG.debug("Failed to park {}", p.xceiver, e);
+        p.xceiver.closeIdle();
+      }
+    }
+  }
+
+  private void dispatch(Parked p) {
+    try {
+      dispatcher.accept(p.xceiver);
+    } catch (Throwable t) {
+      LOG.warn("Failed to resume {}", p.xceiver, t);
+      p.xceiver.closeIdle();
+    }
+  }
+
+  private void expire(long now) {
+    for (SelectionKey key : selector.keys()) {
+      Parked p = (Parked) key.attachment();
+      if (key.isValid() && p.deadline <= now) {
+        key.cancel();
+        p.xceiver.closeIdle();
+      }
+    }
+  }
+
+  private void closeParked() {
+    for (Parked p; (p = pending.poll()) != null;) {
+      p.xceiver.closeIdle();
+    }
+    if (!selector.isOpen() || Thread.currentThread() != thread) {
+      return;
+    }
+    for (SelectionKey key : selector.keys()) {
+      key.cancel();
+      ((Parked) key.attachment()).xceiver.closeIdle();
+    }
+  }
+
+  /** Close all the parked DataXceivers and stop the thread. */
+  void close() {
+    running = false;
+    selector.wakeup();
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    closeParked();
+  }
+}
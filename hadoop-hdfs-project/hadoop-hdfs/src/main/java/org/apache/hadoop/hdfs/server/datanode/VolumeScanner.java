@@ -28,12 +28,17 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.hadoop.classification.VisibleForTesting;
 import org.apache.hadoop.util.Preconditions;
 import org.apache.hadoop.thirdparty.com.google.common.cache.Cache;
 import org.apache.hadoop.thirdparty.com.google.common.cache.CacheBuilder;
+import org.apache.hadoop.thirdparty.com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.hadoop.thirdparty.com.google.common.util.concurrent.Uninterruptibles;
 import org.apache.hadoop.hdfs.protocol.Block;
 import org.apache.hadoop.hdfs.protocol.BlockLocalPathInfo;
 import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
@@ -71,6 +76,12 @@ public class VolumeScanner extends Thread {
    */
   private final static String BLOCK_ITERATOR_NAME = "scanner";
 
+  /**
+   * The largest factor by which the scan rate is lowered when it adapts to
+   * the load of the DataNode.
+   */
+  private final static int MAX_RATE_DIVISOR = 16;
+
   /**
    * The configuration.
    */
@@ -123,6 +134,17 @@ public class VolumeScanner extends Thread {
   private final DataOutputStream nullStream =
       new DataOutputStream(new IOUtils.NullOutputStream());
 
+  /**
+   * The threads verifying blocks concurrently, or null if the scanner thread
+   * verifies them itself.
+   */
+  private final ExecutorService verifiers;
+
+  /**
+   * Bounds the number of blocks being verified to the number of verifiers.
+   */
+  private final Semaphore verifierPermits;
+
   /**
    * The block iterators associated with this VolumeScanner.<p/>
    *
@@ -167,6 +189,9 @@ public class VolumeScanner extends Thread {
    */
   private long curMinute = 0;
 
+  // scannedBytes, scannedBytesSum and curMinute are protected by the stats
+  // lock, since the verifiers update them.
+
   /**
    * Handles scan results.
    */
@@ -177,6 +202,9 @@ public class VolumeScanner extends Thread {
   static class Statistics {
     long bytesScannedInPastHour = 0;
     long blocksScannedInCurrentPeriod = 0;
+    long bytesScannedInCurrentPeriod = 0;
+    long bytesInCurrentPeriod = -1;
+    long bytesPerSecInPastHour = 0;
     long blocksScannedSinceRestart = 0;
     long scansSinceRestart = 0;
     long scanErrorsSinceRestart = 0;
@@ -191,6 +219,9 @@ public class VolumeScanner extends Thread {
     Statistics(Statistics other) {
       this.bytesScannedInPastHour = other.bytesScannedInPastHour;
       this.blocksScannedInCurrentPeriod = other.blocksScannedInCurrentPeriod;
+      this.bytesScannedInCurrentPeriod = other.bytesScannedInCurrentPeriod;
+      this.bytesInCurrentPeriod = other.bytesInCurrentPeriod;
+      this.bytesPerSecInPastHour = other.bytesPerSecInPastHour;
       this.blocksScannedSinceRestart = other.blocksScannedSinceRestart;
       this.scansSinceRestart = other.scansSinceRestart;
       this.scanErrorsSinceRestart = other.scanErrorsSinceRestart;
@@ -200,6 +231,18 @@ public class VolumeScanner extends Thread {
       this.eof = other.eof;
     }
 
+    /**
+     * @return the estimated time until the scan of the current block pool
+     *         ends, at the rate of the past hour, or -1 if it is unknown.
+     */
+    long getEstimatedMsToEndOfPeriod() {
+      if (eof || bytesInCurrentPeriod < 0 || bytesPerSecInPastHour <= 0) {
+        return -1;
+      }
+      return Math.max(0, bytesInCurrentPeriod - bytesScannedInCurrentPeriod)
+          * 1000 / bytesPerSecInPastHour;
+    }
+
     @Override
     public String toString() {
       return new StringBuilder().
@@ -207,6 +250,10 @@ public class VolumeScanner extends Thread {
           append("bytesScannedInPastHour=").append(bytesScannedInPastHour).
           append(", blocksScannedInCurrentPeriod=").
               append(blocksScannedInCurrentPeriod).
+          append(", bytesScannedInCurrentPeriod=").
+              append(bytesScannedInCurrentPeriod).
+          append(", bytesInCurrentPeriod=").append(bytesInCurrentPeriod).
+          append(", bytesPerSecInPastHour=").append(bytesPerSecInPastHour).
           append(", blocksScannedSinceRestart=").
               append(blocksScannedSinceRestart).
           append(", scansSinceRestart=").append(scansSinceRestart).
@@ -235,6 +282,8 @@ public class VolumeScanner extends Thread {
           stats.bytesScannedInPastHour))
           .append(String.format("Blocks scanned in current period  : %57d%n",
               stats.blocksScannedInCurrentPeriod))
+          .append(String.format("Bytes scanned in current period   : %57d%n",
+              stats.bytesScannedInCurrentPeriod))
           .append(String.format("Blocks scanned since restart      : %57d%n",
               stats.blocksScannedSinceRestart))
           .append(String.format("Block pool scans since restart    : %57d%n",
@@ -246,6 +295,15 @@ public class VolumeScanner extends Thread {
             positiveMsToHours(stats.nextBlockPoolScanStartMs -
                 Time.monotonicNow())));
       }
+      if (stats.bytesInCurrentPeriod >= 0) {
+        p.append(String.format("Bytes in current block pool       : %57d%n",
+            stats.bytesInCurrentPeriod));
+      }
+      long msToEndOfPeriod = stats.getEstimatedMsToEndOfPeriod();
+      if (msToEndOfPeriod >= 0) {
+        p.append(String.format("Est. hours until pool scan ends   : %57.3f%n",
+            msToEndOfPeriod / (double) TimeUnit.HOURS.toMillis(1)));
+      }
       if (stats.blockPoolPeriodEndsMs > 0) {
         p.append(String.format("Hours until possible pool rescan  : %57.3f%n",
             positiveMsToHours(stats.blockPoolPeriodEndsMs -
@@ -312,6 +370,16 @@ public class VolumeScanner extends Thread {
       handler = new ScanResultHandler();
     }
     this.resultHandler = handler;
+    if (conf.numThreads > 1) {
+      this.verifiers = Executors.newFixedThreadPool(conf.numThreads,
+          new ThreadFactoryBuilder().setDaemon(true)
+              .setNameFormat("VolumeScannerVerifier(" + volume + ")-%d")
+              .build());
+      this.verifierPermits = new Semaphore(conf.numThreads);
+    } else {
+      this.verifiers = null;
+      this.verifierPermits = null;
+    }
     setName("VolumeScannerThread(" + volume + ")");
     setDaemon(true);
   }
@@ -457,6 +525,53 @@ public class VolumeScanner extends Thread {
     return -1;
   }
 
+  /**
+   * Calculate the rate to scan at.
+   *
+   * @param targetBytesPerSec    The configured rate.
+   * @param activeXceivers       The number of active data transfer threads.
+   * @param numVolumes           The number of volumes of the DataNode.
+   *
+   * @return                     The configured rate, divided by one plus the
+   *                               number of active transfers per volume, but
+   *                               by {@link #MAX_RATE_DIVISOR} at most.
+   */
+  @VisibleForTesting
+  static long calculateBytesPerSec(long targetBytesPerSec, int activeXceivers,
+      int numVolumes) {
+    numVolumes = Math.max(1, numVolumes);
+    long bytesPerSec = targetBytesPerSec * numVolumes /
+        (numVolumes + Math.max(0, activeXceivers));
+    return Math.max(1, Math.max(bytesPerSec,
+        targetBytesPerSec / MAX_RATE_DIVISOR));
+  }
+
+  /**
+   * @return the rate to scan at, which is lower while the DataNode is busy if
+   *         the rate adapts to its load.
+   */
+  private long getBytesPerSec() {
+    if (!conf.adaptiveRate) {
+      return conf.targetBytesPerSec;
+    }
+    BlockScanner blockScanner = datanode.getBlockScanner();
+    return calculateBytesPerSec(conf.targetBytesPerSec,
+        datanode.getXceiverCount(),
+        blockScanner == null ? 1 : blockScanner.getNumVolumeScanners());
+  }
+
+  /**
+   * @return the average number of bytes scanned per second in the past hour.
+   */
+  private static long getEffectiveBytesPerSec(long scannedBytesSum,
+      long runMinutes) {
+    if (runMinutes > MINUTES_PER_HOUR) {
+      // we only keep an hour's worth of rate information
+      runMinutes = MINUTES_PER_HOUR;
+    }
+    return scannedBytesSum / (SECONDS_PER_MINUTE * runMinutes);
+  }
+
   @VisibleForTesting
   static boolean calculateShouldScan(String storageId, long targetBytesPerSec,
                    long scannedBytesSum, long startMinute, long curMinute) {
@@ -466,12 +581,8 @@ public class VolumeScanner extends Thread {
       // avoid division by zero
       effectiveBytesPerSec = scannedBytesSum;
     } else {
-      if (runMinutes > MINUTES_PER_HOUR) {
-        // we only keep an hour's worth of rate information
-        runMinutes = MINUTES_PER_HOUR;
-      }
-      effectiveBytesPerSec = scannedBytesSum /
-          (SECONDS_PER_MINUTE * runMinutes);
+      effectiveBytesPerSec =
+          getEffectiveBytesPerSec(scannedBytesSum, runMinutes);
     }
 
     boolean shouldScan = effectiveBytesPerSec <= targetBytesPerSec;
@@ -536,16 +647,18 @@ public class VolumeScanner extends Thread {
    * @return     The number of milliseconds to delay before running the loop
    *               again, or 0 to re-run the loop immediately.
    */
-  private long runLoop(ExtendedBlock suspectBlock) {
-    long bytesScanned = -1;
-    boolean scanError = false;
+  private long runLoop(ExtendedBlock suspectBlock)
+      throws InterruptedException {
     ExtendedBlock block = null;
     try {
       long monotonicMs = Time.monotonicNow();
-      expireOldScannedBytesRecords(monotonicMs);
-
-      if (!calculateShouldScan(volume.getStorageID(), conf.targetBytesPerSec,
-          scannedBytesSum, startMinute, curMinute)) {
+      boolean shouldScan;
+      synchronized (stats) {
+        expireOldScannedBytesRecords(monotonicMs);
+        shouldScan = calculateShouldScan(volume.getStorageID(),
+            conf.targetBytesPerSec, scannedBytesSum, startMinute, curMinute);
+      }
+      if (!shouldScan) {
         // If neededBytesPerSec is too low, then wait few seconds for some old
         // scannedBytes records to expire.
         return 30000L;
@@ -565,9 +678,12 @@ public class VolumeScanner extends Thread {
             }
             return timeout;
           }
+          long bytesInBlockPool = getBlockPoolUsed(curBlockIter);
           synchronized (stats) {
             stats.scansSinceRestart++;
             stats.blocksScannedInCurrentPeriod = 0;
+            stats.bytesScannedInCurrentPeriod = 0;
+            stats.bytesInCurrentPeriod = bytesInBlockPool;
             stats.nextBlockPoolScanStartMs = -1;
           }
           return 0L;
@@ -585,27 +701,29 @@ public class VolumeScanner extends Thread {
           saveBlockIterator(curBlockIter);
         }
       }
-      bytesScanned = scanBlock(block, conf.targetBytesPerSec);
-      if (bytesScanned >= 0) {
-        scannedBytesSum += bytesScanned;
-        scannedBytes[(int)(curMinute % MINUTES_PER_HOUR)] += bytesScanned;
+      if (verifiers == null) {
+        recordScan(block, scanBlock(block, getBytesPerSec()));
       } else {
-        scanError = true;
+        // wait for a verifier, so that the cursor does not run ahead of the
+        // blocks being verified
+        verifierPermits.acquire();
+        final ExtendedBlock verifiedBlock = block;
+        verifiers.execute(() -> {
+          try {
+            recordScan(verifiedBlock,
+                scanBlock(verifiedBlock, getBytesPerSec()));
+          } finally {
+            verifierPermits.release();
+          }
+        });
       }
       return 0L;
     } finally {
       synchronized (stats) {
         stats.bytesScannedInPastHour = scannedBytesSum;
-        if (bytesScanned > 0) {
-          stats.blocksScannedInCurrentPeriod++;
-          stats.blocksScannedSinceRestart++;
-        }
-        if (scanError) {
-          stats.scanErrorsSinceRestart++;
-        }
-        if (block != null) {
-          stats.lastBlockScanned = block;
-        }
+        long runMinutes = curMinute - startMinute;
+        stats.bytesPerSecInPastHour = runMinutes <= 0 ? 0 :
+            getEffectiveBytesPerSec(scannedBytesSum, runMinutes);
         if (curBlockIter == null) {
           stats.eof = true;
           stats.blockPoolPeriodEndsMs = -1;
@@ -618,6 +736,45 @@ public class VolumeScanner extends Thread {
     }
   }
 
+  /**
+   * Record the result of scanning a block.
+   *
+   * @param block          The scanned block.
+   * @param bytesScanned   The length of the block, or -1 if the block could
+   *                       not be scanned.
+   */
+  private void recordScan(ExtendedBlock block, long bytesScanned) {
+    synchronized (stats) {
+      if (bytesScanned >= 0) {
+        scannedBytesSum += bytesScanned;
+        scannedBytes[(int)(curMinute % MINUTES_PER_HOUR)] += bytesScanned;
+        stats.bytesScannedInCurrentPeriod += bytesScanned;
+      } else {
+        stats.scanErrorsSinceRestart++;
+      }
+      if (bytesScanned > 0) {
+        stats.blocksScannedInCurrentPeriod++;
+        stats.blocksScannedSinceRestart++;
+      }
+      stats.bytesScannedInPastHour = scannedBytesSum;
+      stats.lastBlockScanned = block;
+    }
+  }
+
+  /**
+   * @return the number of bytes used by the block pool of the iterator on the
+   *         volume, or -1 if it is unknown.
+   */
+  private long getBlockPoolUsed(BlockIterator iter) {
+    try {
+      return volume.getBlockPoolUsed(iter.getBlockPoolId());
+    } catch (IOException e) {
+      LOG.debug("{}: failed to get the space used by block pool {}",
+          this, iter.getBlockPoolId(), e);
+      return -1;
+    }
+  }
+
   /**
    * If there are elements in the suspectBlocks list, removes
    * and returns the first one.  Otherwise, returns null.
@@ -670,6 +827,13 @@ public class VolumeScanner extends Thread {
         LOG.error("{} exiting because of exception ", this, e);
       }
       LOG.info("{} exiting.", this);
+      if (verifiers != null) {
+        verifiers.shutdownNow();
+        if (!Uninterruptibles.awaitTerminationUninterruptibly(verifiers,
+            1, TimeUnit.MINUTES)) {
+          LOG.warn("{}: verifiers did not stop in time.", this);
+        }
+      }
       VolumeScannerCBInjector.get().preSavingBlockIteratorTask(this);
       // Save the current position of all block iterators and close them.
       for (BlockIterator iter : blockIters) {
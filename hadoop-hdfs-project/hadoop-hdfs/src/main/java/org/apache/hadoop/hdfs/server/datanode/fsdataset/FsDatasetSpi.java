@@ -504,6 +504,14 @@ public interface FsDatasetSpi<V extends FsVolumeSpi> extends FSDatasetMBean {
    */
   boolean isCached(String bpid, long blockId);
 
+  /**
+   * Record that a client is reading the specified block, so that the
+   * dataset may cache it if it is read often.
+   * @param block the block
+   */
+  default void recordBlockRead(ExtendedBlock block) {
+  }
+
     /**
      * Check if all the data directories are healthy
      * @param failedVolumes
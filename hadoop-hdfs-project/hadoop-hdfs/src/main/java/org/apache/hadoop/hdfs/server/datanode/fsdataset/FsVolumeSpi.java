@@ -22,6 +22,7 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.nio.channels.ClosedChannelException;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -33,6 +34,7 @@ import org.apache.hadoop.hdfs.protocol.Block;
 import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
 import org.apache.hadoop.hdfs.protocol.HdfsConstants;
 import org.apache.hadoop.hdfs.server.common.FileRegion;
+import org.apache.hadoop.hdfs.server.datanode.DatanodeUtil;
 import org.apache.hadoop.hdfs.server.datanode.DirectoryScanner.ReportCompiler;
 import org.apache.hadoop.hdfs.server.datanode.FileIoProvider;
 import org.apache.hadoop.hdfs.server.datanode.StorageLocation;
@@ -439,6 +441,60 @@ public interface FsVolumeSpi
       Collection<ScanInfo> report, ReportCompiler reportCompiler)
       throws InterruptedException, IOException;
 
+  /**
+   * Compile a list of {@link ScanInfo} for the blocks in the given block
+   * directories of the block pool with id {@code bpid}. The list may contain
+   * blocks from other directories too.
+   *
+   * @param bpid block pool id to scan
+   * @param blockDirs the indexes of the directories to scan, as returned by
+   *                  {@link DatanodeUtil#idToBlockDirIndex(long)}
+   * @param report the list onto which blocks reports are placed
+   * @param reportCompiler
+   * @throws InterruptedException
+   * @throws IOException
+   */
+  default void compileReport(String bpid, BitSet blockDirs,
+      Collection<ScanInfo> report, ReportCompiler reportCompiler)
+      throws InterruptedException, IOException {
+    compileReport(bpid, report, reportCompiler);
+  }
+
+  /**
+   * Get the block directories of the block pool with id {@code bpid} whose
+   * replicas were modified since the last call. The directories are kept
+   * across restarts until {@link #commitModifiedBlockDirs(String)}.
+   *
+   * @param bpid block pool id
+   * @return the indexes of the directories, or null if the volume does not
+   *         track them and all the directories must be scanned
+   * @throws IOException
+   */
+  default BitSet pollModifiedBlockDirs(String bpid) throws IOException {
+    return null;
+  }
+
+  /**
+   * Forget the block directories returned by
+   * {@link #pollModifiedBlockDirs(String)} so far, once the directory scanner
+   * has reconciled them.
+   *
+   * @param bpid block pool id
+   * @throws IOException
+   */
+  default void commitModifiedBlockDirs(String bpid) throws IOException {
+  }
+
+  /**
+   * @param bpid block pool id
+   * @return the number of bytes used by the block pool on the volume, or -1
+   *         if it is unknown
+   * @throws IOException
+   */
+  default long getBlockPoolUsed(String bpid) throws IOException {
+    return -1;
+  }
+
   /**
    * Context for the {@link #check} call.
    */
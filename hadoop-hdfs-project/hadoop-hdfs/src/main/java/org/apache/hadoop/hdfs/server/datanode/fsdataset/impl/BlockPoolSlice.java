@@ -31,6 +31,8 @@ import java.io.Writer;
 import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
@@ -113,6 +115,12 @@ public class BlockPoolSlice {
    */
   private boolean deleteDuplicateReplicas;
   private static final String REPLICA_CACHE_FILE = "replicas";
+  @VisibleForTesting
+  static final String REPLICA_JOURNAL_FILE = "replicaJournal";
+  @VisibleForTesting
+  static final String REPLICA_INDEX_FILE = "replicaIndex";
+  @VisibleForTesting
+  static final String REPLICA_INDEX_JOURNAL_FILE = "replicaIndexJournal";
   private final long replicaCacheExpiry;
   private final File replicaCacheDir;
   private AtomicLong numOfBlocks = new AtomicLong();
@@ -122,6 +130,10 @@ public class BlockPoolSlice {
   private final FileIoProvider fileIoProvider;
   private final Configuration config;
   private final File bpDir;
+  /** Null unless the directory scanner is incremental. */
+  private final ReplicaJournal replicaJournal;
+  /** Null unless the replica index is checkpointed. */
+  private final ReplicaJournal replicaIndexJournal;
 
   private static ForkJoinPool addReplicaThreadPool = null;
   private static final int VOLUMES_REPLICA_ADD_THREADPOOL_SIZE = Runtime
@@ -195,6 +207,31 @@ public class BlockPoolSlice {
     fileIoProvider.mkdirs(volume, rbwDir);
     fileIoProvider.mkdirs(volume, tmpDir);
 
+    if (conf.getBoolean(
+        DFSConfigKeys.DFS_DATANODE_DIRECTORYSCAN_INCREMENTAL_ENABLED_KEY,
+        DFSConfigKeys.DFS_DATANODE_DIRECTORYSCAN_INCREMENTAL_ENABLED_DEFAULT)) {
+      this.replicaJournal = new ReplicaJournal(volume,
+          new File(currentDir, REPLICA_JOURNAL_FILE));
+    } else {
+      // A journal left by an earlier run would miss the changes made since.
+      this.replicaJournal = null;
+      fileIoProvider.deleteWithExistsCheck(volume,
+          new File(currentDir, REPLICA_JOURNAL_FILE));
+    }
+    if (conf.getTimeDuration(
+        DFSConfigKeys.DFS_DATANODE_REPLICA_INDEX_CHECKPOINT_INTERVAL_KEY,
+        DFSConfigKeys.DFS_DATANODE_REPLICA_INDEX_CHECKPOINT_INTERVAL_DEFAULT,
+        TimeUnit.SECONDS) > 0) {
+      this.replicaIndexJournal = new ReplicaJournal(volume,
+          new File(currentDir, REPLICA_INDEX_JOURNAL_FILE));
+    } else {
+      this.replicaIndexJournal = null;
+      fileIoProvider.deleteWithExistsCheck(volume,
+          new File(currentDir, REPLICA_INDEX_JOURNAL_FILE));
+      fileIoProvider.deleteWithExistsCheck(volume,
+          new File(currentDir, REPLICA_INDEX_FILE));
+    }
+
     String cacheDirRoot = conf.get(
         DFSConfigKeys.DFS_DATANODE_REPLICA_CACHE_ROOT_DIR_KEY);
     if (cacheDirRoot != null && !cacheDirRoot.isEmpty()) {
@@ -443,6 +480,7 @@ public class BlockPoolSlice {
   }
 
   File addFinalizedBlock(Block b, ReplicaInfo replicaInfo) throws IOException {
+    markModified(b.getBlockId());
     File blockDir = DatanodeUtil.idToBlockDir(finalizedDir, b.getBlockId());
     fileIoProvider.mkdirsWithExistsCheck(volume, blockDir);
     File blockFile = FsDatasetImpl.moveBlockFiles(b, replicaInfo, blockDir);
@@ -454,6 +492,100 @@ public class BlockPoolSlice {
     return blockFile;
   }
 
+  /**
+   * Record that the files of a finalized replica may change, if the
+   * directory scanner is incremental or the replica index is checkpointed.
+   */
+  void markModified(long blockId) {
+    if (replicaJournal != null) {
+      replicaJournal.markModified(blockId);
+    }
+    if (replicaIndexJournal != null) {
+      replicaIndexJournal.markModified(blockId);
+    }
+  }
+
+  /**
+   * @return the block directories modified since the last call, or null if
+   *         they are not tracked.
+   */
+  BitSet pollModifiedBlockDirs() {
+    return replicaJournal == null ? null : replicaJournal.poll();
+  }
+
+  /** Forget the block directories polled so far. */
+  void commitModifiedBlockDirs() throws IOException {
+    if (replicaJournal != null) {
+      replicaJournal.commit();
+    }
+  }
+
+  /**
+   * Start a checkpoint of the replica index. The finalized replicas must be
+   * collected after this call.
+   *
+   * @return the block directories modified since the last checkpoint, or
+   *         null if the replica index is not checkpointed.
+   */
+  BitSet startReplicaIndexCheckpoint() {
+    return replicaIndexJournal == null ? null : replicaIndexJournal.poll();
+  }
+
+  /**
+   * Replace the replica index with the given finalized replicas.
+   *
+   * @param replicas the finalized replicas of this slice
+   * @param polled the directories returned by
+   *          {@link #startReplicaIndexCheckpoint()}, which stay in the
+   *          journal since their changes may not be in the replicas
+   * @throws IOException
+   */
+  void saveReplicaIndex(Collection<? extends Block> replicas, BitSet polled)
+      throws IOException {
+    ReplicaIndex.write(volume, new File(currentDir, REPLICA_INDEX_FILE),
+        replicas);
+    replicaIndexJournal.commit(polled);
+  }
+
+  /**
+   * Load the finalized replicas of the directories not modified since the
+   * replica index was checkpointed.
+   *
+   * @return the modified directories, which must be listed, or null if the
+   *         index cannot be used.
+   */
+  private BitSet readReplicaIndex(ReplicaMap volumeMap,
+      final RamDiskReplicaTracker lazyWriteReplicaMap) throws IOException {
+    if (replicaIndexJournal == null) {
+      return null;
+    }
+    final BitSet modified = replicaIndexJournal.getModified();
+    if (modified.cardinality() == DatanodeUtil.NUM_BLOCK_DIRS) {
+      return null;
+    }
+    final List<Block> replicas = ReplicaIndex.read(volume,
+        new File(currentDir, REPLICA_INDEX_FILE));
+    if (replicas == null) {
+      return null;
+    }
+    int numLoaded = 0;
+    for (Block b : replicas) {
+      if (!modified.get(DatanodeUtil.idToBlockDirIndex(b.getBlockId()))) {
+        addReplicaToReplicasMap(b, volumeMap, lazyWriteReplicaMap, true);
+        numLoaded++;
+      }
+    }
+    LOG.info("Loaded {} replicas from replica index, listing {} modified"
+        + " block directories of {}", numLoaded, modified.cardinality(),
+        finalizedDir);
+    if (replicaJournal != null) {
+      // the index is not verified against the disk, let the directory
+      // scanner do it
+      replicaJournal.markAllModified();
+    }
+    return modified;
+  }
+
   /**
    * Move a persisted replica from lazypersist directory to a subdirectory
    * under finalized.
@@ -466,6 +598,7 @@ public class BlockPoolSlice {
     final File blockDir = DatanodeUtil.idToBlockDir(finalizedDir, blockId);
     final File targetBlockFile = new File(blockDir, blockFile.getName());
     final File targetMetaFile = new File(blockDir, metaFile.getName());
+    markModified(blockId);
     fileIoProvider.moveFile(volume, blockFile, targetBlockFile);
     FsDatasetImpl.LOG.info("Moved " + blockFile + " to " + targetBlockFile);
     fileIoProvider.moveFile(volume, metaFile, targetMetaFile);
@@ -509,18 +642,33 @@ public class BlockPoolSlice {
           new ConcurrentLinkedQueue<RecursiveAction>();
 
       // add finalized replicas
-      AddReplicaProcessor task = new AddReplicaProcessor(volumeMap,
-          finalizedDir, lazyWriteReplicaMap, true, exceptions, subTaskQueue);
-      ForkJoinTask<Void> finalizedTask = addReplicaThreadPool.submit(task);
+      List<ForkJoinTask<Void>> tasks = new ArrayList<>();
+      BitSet modified = readReplicaIndex(volumeMap, lazyWriteReplicaMap);
+      if (modified == null) {
+        tasks.add(addReplicaThreadPool.submit(new AddReplicaProcessor(
+            volumeMap, finalizedDir, lazyWriteReplicaMap, true, exceptions,
+            subTaskQueue)));
+      } else {
+        for (int i = modified.nextSetBit(0); i >= 0;
+             i = modified.nextSetBit(i + 1)) {
+          File dir = DatanodeUtil.blockDirIndexToDir(finalizedDir, i);
+          if (dir.isDirectory()) {
+            tasks.add(addReplicaThreadPool.submit(new AddReplicaProcessor(
+                volumeMap, dir, lazyWriteReplicaMap, true, exceptions,
+                subTaskQueue)));
+          }
+        }
+      }
 
       // add rbw replicas
-      task = new AddReplicaProcessor(volumeMap, rbwDir, lazyWriteReplicaMap,
-          false, exceptions, subTaskQueue);
-      ForkJoinTask<Void> rbwTask = addReplicaThreadPool.submit(task);
+      tasks.add(addReplicaThreadPool.submit(new AddReplicaProcessor(
+          volumeMap, rbwDir, lazyWriteReplicaMap, false, exceptions,
+          subTaskQueue)));
 
       try {
-        finalizedTask.get();
-        rbwTask.get();
+        for (ForkJoinTask<Void> task : tasks) {
+          task.get();
+        }
       } catch (InterruptedException | ExecutionException e) {
         exceptions.add(new IOException(
             "Failed to start sub tasks to add replica in replica map :"
@@ -598,6 +746,7 @@ public class BlockPoolSlice {
         File targetDir = DatanodeUtil.idToBlockDir(finalizedDir, blockId);
 
         if (blockFile.exists()) {
+          markModified(blockId);
 
           try {
             fileIoProvider.mkdirsWithExistsCheck(volume, targetDir);
@@ -943,6 +1092,8 @@ public class BlockPoolSlice {
     saveReplicas(blocksListToPersist);
     saveDfsUsed();
     dfsUsedSaved = true;
+    IOUtils.cleanupWithLogger(LOG, replicaJournal);
+    IOUtils.cleanupWithLogger(LOG, replicaIndexJournal);
 
     // Remove the shutdown hook to avoid any memory leak
     if (shutdownHook != null) {
@@ -0,0 +1,107 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.datanode.fsdataset.impl;
+
+/**
+ * An estimate of how often each key was seen recently, as used by the TinyLFU
+ * admission policy. This is a count-min sketch of 4-bit counters, so the
+ * estimate may be too high but never too low, and is at most
+ * {@link #MAX_FREQUENCY}. Once the number of increments reaches the sample
+ * size, all the counters are halved, so that older events weigh less.
+ *
+ * This class is not thread safe.
+ */
+class FrequencySketch {
+  static final int MAX_FREQUENCY = 15;
+
+  /** A seed per hash function. */
+  private static final long[] SEEDS = {
+      0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L,
+      0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+  private static final long RESET_MASK = 0x7777777777777777L;
+
+  /** Each long holds 16 counters. */
+  private final long[] table;
+  private final int tableMask;
+  private final int sampleSize;
+  private int size;
+
+  /**
+   * @param expectedKeys the number of keys whose frequency matters, such as
+   *          the number of entries of a cache
+   */
+  FrequencySketch(int expectedKeys) {
+    final int length = Integer.highestOneBit(
+        Math.max(Math.min(expectedKeys, 1 << 24), 16) * 2 - 1);
+    this.table = new long[length];
+    this.tableMask = length - 1;
+    this.sampleSize = 10 * length;
+  }
+
+  /** @return the estimated number of recent occurrences of the key. */
+  int frequency(long key) {
+    int frequency = MAX_FREQUENCY;
+    for (int i = 0; i < SEEDS.length; i++) {
+      final long h = hash(key, i);
+      frequency = Math.min(frequency,
+          (int) (table[index(h)] >>> offset(h)) & MAX_FREQUENCY);
+    }
+    return frequency;
+  }
+
+  /** Record an occurrence of the key. */
+  void increment(long key) {
+    boolean incremented = false;
+    for (int i = 0; i < SEEDS.length; i++) {
+      final long h = hash(key, i);
+      final int index = index(h);
+      final int offset = offset(h);
+      if (((table[index] >>> offset) & MAX_FREQUENCY) != MAX_FREQUENCY) {
+        table[index] += 1L << offset;
+        incremented = true;
+      }
+    }
+    if (incremented && ++size == sampleSize) {
+      reset();
+    }
+  }
+
+  /** Halve all the counters. */
+  private void reset() {
+    for (int i = 0; i < table.length; i++) {
+      table[i] = (table[i] >>> 1) & RESET_MASK;
+    }
+    size /= 2;
+  }
+
+  private static long hash(long key, int i) {
+    long h = (key + SEEDS[i]) * SEEDS[i];
+    h ^= h >>> 29;
+    h *= 0xbf58476d1ce4e5b9L;
+    return h ^ (h >>> 32);
+  }
+
+  private int index(long hash) {
+    return (int) (hash >>> 32) & tableMask;
+  }
+
+  /** @return the position of the counter in the long. */
+  private static int offset(long hash) {
+    return ((int) hash & 15) << 2;
+  }
+}
@@ -346,6 +346,7 @@ class FsDatasetAsyncDiskService {
         final long metaLength = replicaToDelete.getMetadataLength();
         boolean result;
 
+        volume.markModified(block.getBlockPoolId(), block.getBlockId());
         result = (trashDirectory == null) ? deleteFiles() : moveFiles();
 
         if (!result) {
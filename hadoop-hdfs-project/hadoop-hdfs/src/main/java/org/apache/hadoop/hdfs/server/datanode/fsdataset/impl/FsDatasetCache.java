@@ -18,10 +18,14 @@
 
 package org.apache.hadoop.hdfs.server.datanode.fsdataset.impl;
 
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_BLOCK_SIZE_DEFAULT;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_BLOCK_SIZE_KEY;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_DATANODE_CACHE_REVOCATION_TIMEOUT_MS;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_DATANODE_CACHE_REVOCATION_TIMEOUT_MS_DEFAULT;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_DATANODE_CACHE_REVOCATION_POLLING_MS;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_DATANODE_CACHE_REVOCATION_POLLING_MS_DEFAULT;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_DATANODE_HOT_BLOCK_CACHE_CAPACITY_DEFAULT;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_DATANODE_HOT_BLOCK_CACHE_CAPACITY_KEY;
 
 import org.apache.hadoop.io.IOUtils;
 import org.apache.hadoop.util.Preconditions;
@@ -72,10 +76,17 @@ public class FsDatasetCache {
   private static final class Value {
     final State state;
     final MappableBlock mappableBlock;
+    /** Whether the block is cached by the {@link HotBlockCache}. */
+    final boolean hot;
 
     Value(MappableBlock mappableBlock, State state) {
+      this(mappableBlock, state, false);
+    }
+
+    Value(MappableBlock mappableBlock, State state, boolean hot) {
       this.mappableBlock = mappableBlock;
       this.state = state;
+      this.hot = hot;
     }
   }
 
@@ -140,6 +151,9 @@ public class FsDatasetCache {
 
   private final CacheStats memCacheStats;
 
+  /** Null unless hot blocks are cached. */
+  private final HotBlockCache hotBlockCache;
+
   /**
    * Number of cache commands that could not be completed successfully
    */
@@ -184,6 +198,36 @@ public class FsDatasetCache {
         this.getDnConf());
     // Both lazy writer and read cache are sharing this statistics.
     this.memCacheStats = cacheLoader.initialize(this.getDnConf());
+
+    final long hotBlockCacheCapacity = dataset.datanode.getConf().getLongBytes(
+        DFS_DATANODE_HOT_BLOCK_CACHE_CAPACITY_KEY,
+        DFS_DATANODE_HOT_BLOCK_CACHE_CAPACITY_DEFAULT);
+    if (hotBlockCacheCapacity > 0) {
+      this.hotBlockCache = new HotBlockCache(dataset, hotBlockCacheCapacity,
+          dataset.datanode.getConf().getLongBytes(DFS_BLOCK_SIZE_KEY,
+              DFS_BLOCK_SIZE_DEFAULT));
+    } else {
+      this.hotBlockCache = null;
+    }
+  }
+
+  /**
+   * @return the cache of the blocks read most often, or null if it is
+   *         disabled.
+   */
+  HotBlockCache getHotBlockCache() {
+    return hotBlockCache;
+  }
+
+  /**
+   * Remove a block from the map, and from the {@link HotBlockCache} if it
+   * was cached as a hot block.
+   */
+  private void removeMappableBlock(ExtendedBlockId key) {
+    final Value value = mappableBlockMap.remove(key);
+    if (value != null && value.hot) {
+      hotBlockCache.remove(key);
+    }
   }
 
   /**
@@ -258,7 +302,9 @@ public class FsDatasetCache {
         mappableBlockMap.entrySet().iterator(); iter.hasNext(); ) {
       Entry<ExtendedBlockId, Value> entry = iter.next();
       if (entry.getKey().getBlockPoolId().equals(bpid)) {
-        if (entry.getValue().state.shouldAdvertise()) {
+        // the NameNode did not ask to cache hot blocks
+        if (entry.getValue().state.shouldAdvertise() &&
+            !entry.getValue().hot) {
           blocks.add(entry.getKey().getBlockId());
         }
       }
@@ -268,20 +314,36 @@ public class FsDatasetCache {
 
   /**
    * Attempt to begin caching a block.
+   *
+   * @param hot whether the {@link HotBlockCache} caches the block, rather
+   *            than the NameNode
    */
   synchronized void cacheBlock(long blockId, String bpid,
       String blockFileName, long length, long genstamp,
-      Executor volumeExecutor) {
+      Executor volumeExecutor, boolean hot) {
     ExtendedBlockId key = new ExtendedBlockId(blockId, bpid);
     Value prevValue = mappableBlockMap.get(key);
     if (prevValue != null) {
+      if (hot) {
+        hotBlockCache.remove(key);
+        return;
+      }
+      if (prevValue.hot && (prevValue.state == State.CACHING ||
+          prevValue.state == State.CACHED)) {
+        LOG.debug("Block with id {}, pool {} is now cached for the NameNode",
+            blockId, bpid);
+        mappableBlockMap.put(key,
+            new Value(prevValue.mappableBlock, prevValue.state));
+        hotBlockCache.remove(key);
+        return;
+      }
       LOG.debug("Block with id {}, pool {} already exists in the "
               + "FsDatasetCache with state {}", blockId, bpid, prevValue.state
       );
       numBlocksFailedToCache.increment();
       return;
     }
-    mappableBlockMap.put(key, new Value(null, State.CACHING));
+    mappableBlockMap.put(key, new Value(null, State.CACHING, hot));
     volumeExecutor.execute(
         new CachingTask(key, blockFileName, length, genstamp));
     LOG.debug("Initiating caching for Block with id {}, pool {}", blockId,
@@ -308,12 +370,12 @@ public class FsDatasetCache {
     case CACHING:
       LOG.debug("Cancelling caching for block with id {}, pool {}.", blockId,
           bpid);
-      mappableBlockMap.put(key,
-          new Value(prevValue.mappableBlock, State.CACHING_CANCELLED));
+      mappableBlockMap.put(key, new Value(prevValue.mappableBlock,
+          State.CACHING_CANCELLED, prevValue.hot));
       break;
     case CACHED:
-      mappableBlockMap.put(key,
-          new Value(prevValue.mappableBlock, State.UNCACHING));
+      mappableBlockMap.put(key, new Value(prevValue.mappableBlock,
+          State.UNCACHING, prevValue.hot));
       if (deferred) {
         if (LOG.isDebugEnabled()) {
           LOG.debug("{} is anchored, and can't be uncached now.  Scheduling it " +
@@ -336,6 +398,17 @@ public class FsDatasetCache {
     }
   }
 
+  /**
+   * Uncache a block evicted by the {@link HotBlockCache}, unless the NameNode
+   * asked to cache it since.
+   */
+  synchronized void uncacheHotBlock(ExtendedBlockId key) {
+    Value value = mappableBlockMap.get(key);
+    if (value != null && value.hot) {
+      uncacheBlock(key.getBlockPoolId(), key.getBlockId());
+    }
+  }
+
   /**
    * Try to reserve more bytes.
    *
@@ -456,11 +529,12 @@ public class FsDatasetCache {
           Preconditions.checkState(value.state == State.CACHING ||
                                    value.state == State.CACHING_CANCELLED);
           if (value.state == State.CACHING_CANCELLED) {
-            mappableBlockMap.remove(key);
+            removeMappableBlock(key);
             LOG.warn("Caching of " + key + " was cancelled.");
             return;
           }
-          mappableBlockMap.put(key, new Value(mappableBlock, State.CACHED));
+          mappableBlockMap.put(key,
+              new Value(mappableBlock, State.CACHED, value.hot));
         }
         LOG.debug("Successfully cached {}.  We are now caching {} bytes in"
             + " total.", key, newUsedBytes);
@@ -485,7 +559,7 @@ public class FsDatasetCache {
           numBlocksFailedToCache.increment();
 
           synchronized (FsDatasetCache.this) {
-            mappableBlockMap.remove(key);
+            removeMappableBlock(key);
           }
         }
       }
@@ -557,7 +631,7 @@ public class FsDatasetCache {
 
       IOUtils.closeStream(value.mappableBlock);
       synchronized (FsDatasetCache.this) {
-        mappableBlockMap.remove(key);
+        removeMappableBlock(key);
       }
       long newUsedBytes = cacheLoader.
           release(key, value.mappableBlock.getLength());
@@ -624,6 +698,15 @@ public class FsDatasetCache {
     return (val != null) && val.state.shouldAdvertise();
   }
 
+  /**
+   * @return true if the NameNode asked to cache the block, whether or not it
+   *         is cached yet.
+   */
+  synchronized boolean isCachedForNameNode(String bpid, long blockId) {
+    Value val = mappableBlockMap.get(new ExtendedBlockId(blockId, bpid));
+    return val != null && !val.hot;
+  }
+
   /**
    * This method can be executed during DataNode shutdown.
    */
@@ -31,6 +31,7 @@ import java.nio.channels.ClosedChannelException;
 import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -40,6 +41,9 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import javax.management.NotCompliantMBeanException;
 import javax.management.ObjectName;
@@ -211,7 +215,7 @@ class FsDatasetImpl implements FsDatasetSpi<FsVolumeImpl> {
   public Set<? extends Replica> deepCopyReplica(String bpid)
       throws IOException {
     Set<ReplicaInfo> replicas = new HashSet<>();
-    volumeMap.replicas(bpid, (iterator) -> {
+    volumeMap.replicasByStripe(bpid, (iterator) -> {
       while (iterator.hasNext()) {
         ReplicaInfo b = iterator.next();
         replicas.add(b);
@@ -220,6 +224,51 @@ class FsDatasetImpl implements FsDatasetSpi<FsVolumeImpl> {
     return replicas;
   }
 
+  /**
+   * Checkpoint the finalized replicas of each block pool slice to its replica
+   * index.
+   */
+  @VisibleForTesting
+  void saveReplicaIndexes() {
+    for (String bpid : volumeMap.getBlockPoolList()) {
+      final Map<FsVolumeImpl, BitSet> polled = new HashMap<>();
+      for (FsVolumeImpl volume : volumes.getVolumes()) {
+        final BitSet dirs = volume.startReplicaIndexCheckpoint(bpid);
+        if (dirs != null) {
+          polled.put(volume, dirs);
+        }
+      }
+      if (polled.isEmpty()) {
+        continue;
+      }
+
+      final Map<FsVolumeImpl, List<Block>> replicas = new HashMap<>();
+      for (FsVolumeImpl volume : polled.keySet()) {
+        replicas.put(volume, new ArrayList<>());
+      }
+      volumeMap.replicasByStripe(bpid, (iterator) -> {
+        while (iterator.hasNext()) {
+          ReplicaInfo r = iterator.next();
+          final List<Block> list = replicas.get(r.getVolume());
+          if (r.getState() == ReplicaState.FINALIZED && list != null) {
+            list.add(new Block(r.getBlockId(), r.getNumBytes(),
+                r.getGenerationStamp()));
+          }
+        }
+      });
+
+      for (Map.Entry<FsVolumeImpl, BitSet> e : polled.entrySet()) {
+        final FsVolumeImpl volume = e.getKey();
+        try {
+          volume.saveReplicaIndex(bpid, replicas.get(volume), e.getValue());
+        } catch (IOException ioe) {
+          LOG.warn("Failed to save the replica index of {} on {}", bpid,
+              volume, ioe);
+        }
+      }
+    }
+  }
+
   /**
    * This should be primarily used for testing.
    * @return clone of replica store in datanode memory
@@ -257,6 +306,8 @@ class FsDatasetImpl implements FsDatasetSpi<FsVolumeImpl> {
   final Map<String, DatanodeStorage> storageMap;
   final FsDatasetAsyncDiskService asyncDiskService;
   final Daemon lazyWriter;
+  /** Null unless the replica index is checkpointed. */
+  private final ScheduledExecutorService replicaIndexCheckpointer;
   final FsDatasetCache cacheManager;
   private final Configuration conf;
   private final int volFailuresTolerated;
@@ -336,7 +387,9 @@ class FsDatasetImpl implements FsDatasetSpi<FsVolumeImpl> {
     }
 
     storageMap = new ConcurrentHashMap<String, DatanodeStorage>();
-    volumeMap = new ReplicaMap(lockManager);
+    volumeMap = new ReplicaMap(lockManager, conf.getInt(
+        DFSConfigKeys.DFS_DATANODE_REPLICA_MAP_STRIPES_KEY,
+        DFSConfigKeys.DFS_DATANODE_REPLICA_MAP_STRIPES_DEFAULT));
     ramDiskReplicaTracker = RamDiskReplicaTracker.getInstance(conf, this);
 
     @SuppressWarnings("unchecked")
@@ -390,6 +443,20 @@ class FsDatasetImpl implements FsDatasetSpi<FsVolumeImpl> {
         DFSConfigKeys.DFS_DATANODE_DIRECTORYSCAN_MAX_NOTIFY_COUNT_KEY,
         DFSConfigKeys.DFS_DATANODE_DIRECTORYSCAN_MAX_NOTIFY_COUNT_DEFAULT);
     lastDirScannerNotifyTime = System.currentTimeMillis();
+
+    final long checkpointInterval = conf.getTimeDuration(
+        DFSConfigKeys.DFS_DATANODE_REPLICA_INDEX_CHECKPOINT_INTERVAL_KEY,
+        DFSConfigKeys.DFS_DATANODE_REPLICA_INDEX_CHECKPOINT_INTERVAL_DEFAULT,
+        TimeUnit.SECONDS);
+    if (checkpointInterval > 0) {
+      replicaIndexCheckpointer = Executors.newSingleThreadScheduledExecutor(
+          new Daemon.DaemonFactory());
+      replicaIndexCheckpointer.scheduleWithFixedDelay(
+          this::saveReplicaIndexes, checkpointInterval, checkpointInterval,
+          TimeUnit.SECONDS);
+    } else {
+      replicaIndexCheckpointer = null;
+    }
   }
 
   /**
@@ -1185,8 +1252,9 @@ class FsDatasetImpl implements FsDatasetSpi<FsVolumeImpl> {
    * @param replicaInfo    - ReplicaInfo
    */
   private void cleanupReplica(String bpid, ReplicaInfo replicaInfo) {
+    FsVolumeImpl volume = (FsVolumeImpl) replicaInfo.getVolume();
+    volume.markModified(bpid, replicaInfo.getBlockId());
     if (replicaInfo.deleteBlockData() || !replicaInfo.blockDataExists()) {
-      FsVolumeImpl volume = (FsVolumeImpl) replicaInfo.getVolume();
       volume.onBlockFileDeletion(bpid, replicaInfo.getBytesOnDisk());
       if (replicaInfo.deleteMetadata() || !replicaInfo.metadataExists()) {
         volume.onMetaFileDeletion(bpid, replicaInfo.getMetadataLength());
@@ -1566,6 +1634,11 @@ class FsDatasetImpl implements FsDatasetSpi<FsVolumeImpl> {
             b.getBlockPoolId(), getStorageUuidForLock(b))) {
           // check replica's state
           ReplicaInfo replicaInfo = recoverCheck(b, newGS, expectedBlockLen);
+          if (replicaInfo.getState() == ReplicaState.FINALIZED) {
+            // the meta file of the finalized replica is renamed in place
+            ((FsVolumeImpl) replicaInfo.getVolume()).markModified(
+                b.getBlockPoolId(), replicaInfo.getBlockId());
+          }
           // bump the replica's GS
           replicaInfo.bumpReplicaGS(newGS);
           // finalize the replica if RBW
@@ -2170,7 +2243,7 @@ class FsDatasetImpl implements FsDatasetSpi<FsVolumeImpl> {
   @Override
   public List<ReplicaInfo> getFinalizedBlocks(String bpid) {
     ArrayList<ReplicaInfo> finalized = new ArrayList<>();
-    volumeMap.replicas(bpid, (iterator) -> {
+    volumeMap.replicasByStripe(bpid, (iterator) -> {
       while (iterator.hasNext()) {
         ReplicaInfo b = iterator.next();
         if (b.getState() == ReplicaState.FINALIZED) {
@@ -2509,7 +2582,13 @@ class FsDatasetImpl implements FsDatasetSpi<FsVolumeImpl> {
   /**
    * Asynchronously attempts to cache a single block via {@link FsDatasetCache}.
    */
-  private void cacheBlock(String bpid, long blockId) {
+  /**
+   * Attempt to cache a block.
+   *
+   * @param hot whether the {@link HotBlockCache} caches the block, rather
+   *            than the NameNode
+   */
+  void cacheBlock(String bpid, long blockId, boolean hot) {
     FsVolumeImpl volume;
     String blockFileName;
     long length, genstamp;
@@ -2519,6 +2598,10 @@ class FsDatasetImpl implements FsDatasetSpi<FsVolumeImpl> {
     if (info == null) {
       LOG.warn("Failed to cache block with id " + blockId + ", pool " +
           bpid + ": ReplicaInfo not found.");
+      if (hot) {
+        cacheManager.getHotBlockCache().remove(
+            new ExtendedBlockId(blockId, bpid));
+      }
       return;
     }
     try (AutoCloseableLock lock = lockManager.writeLock(LockLevel.VOLUME, bpid,
@@ -2557,7 +2640,12 @@ class FsDatasetImpl implements FsDatasetSpi<FsVolumeImpl> {
         success = true;
       } finally {
         if (!success) {
-          cacheManager.numBlocksFailedToCache.increment();
+          if (hot) {
+            cacheManager.getHotBlockCache().remove(
+                new ExtendedBlockId(blockId, bpid));
+          } else {
+            cacheManager.numBlocksFailedToCache.increment();
+          }
         }
       }
       blockFileName = info.getBlockURI().toString();
@@ -2566,16 +2654,39 @@ class FsDatasetImpl implements FsDatasetSpi<FsVolumeImpl> {
       volumeExecutor = volume.getCacheExecutor();
     }
     cacheManager.cacheBlock(blockId, bpid, 
-        blockFileName, length, genstamp, volumeExecutor);
+        blockFileName, length, genstamp, volumeExecutor, hot);
   }
 
   @Override // FsDatasetSpi
   public void cache(String bpid, long[] blockIds) {
     for (int i=0; i < blockIds.length; i++) {
-      cacheBlock(bpid, blockIds[i]);
+      cacheBlock(bpid, blockIds[i], false);
     }
   }
 
+  @Override // FsDatasetSpi
+  public void recordBlockRead(ExtendedBlock block) {
+    final HotBlockCache hotBlockCache = cacheManager.getHotBlockCache();
+    if (hotBlockCache == null) {
+      return;
+    }
+    final ReplicaInfo info = volumeMap.get(block.getBlockPoolId(),
+        block.getBlockId());
+    if (info == null || info.getState() != ReplicaState.FINALIZED ||
+        !(info.getVolume() instanceof FsVolumeImpl) ||
+        info.getVolume().isTransientStorage() ||
+        ((FsVolumeImpl) info.getVolume()).isRAMStorage()) {
+      return;
+    }
+    // Blocks cached for the NameNode must not evict hot blocks to be admitted
+    if (cacheManager.isCachedForNameNode(block.getBlockPoolId(),
+        block.getBlockId())) {
+      return;
+    }
+    hotBlockCache.recordRead(block.getBlockPoolId(), block.getBlockId(),
+        info.getVisibleLength());
+  }
+
   @Override // FsDatasetSpi
   public void uncache(String bpid, long[] blockIds) {
     for (int i=0; i < blockIds.length; i++) {
@@ -2646,6 +2757,10 @@ class FsDatasetImpl implements FsDatasetSpi<FsVolumeImpl> {
       lazyWriter.interrupt();
     }
 
+    if (replicaIndexCheckpointer != null) {
+      replicaIndexCheckpointer.shutdownNow();
+    }
+
     if (mbeanName != null) {
       MBeans.unregister(mbeanName);
       mbeanName = null;
@@ -3156,6 +3271,9 @@ class FsDatasetImpl implements FsDatasetSpi<FsVolumeImpl> {
     boolean copyOnTruncate = newBlockId > 0L && rur.getBlockId() != newBlockId;
     // bump rur's GS to be recovery id
     if(!copyOnTruncate) {
+      // a finalized original replica is updated in place rather than through
+      // addFinalizedBlock
+      ((FsVolumeImpl) rur.getVolume()).markModified(bpid, rur.getBlockId());
       rur.bumpReplicaGS(recoveryId);
     }
 
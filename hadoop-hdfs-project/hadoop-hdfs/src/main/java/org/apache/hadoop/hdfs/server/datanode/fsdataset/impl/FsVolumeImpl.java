@@ -29,6 +29,7 @@ import java.net.URI;
 import java.nio.channels.ClosedChannelException;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -399,6 +400,17 @@ public class FsVolumeImpl implements FsVolumeSpi {
     }
   }
 
+  /**
+   * Record that the files of a finalized replica may change, so that the
+   * incremental directory scanner and the replica index list its directory.
+   */
+  void markModified(String bpid, long blockId) {
+    BlockPoolSlice bp = bpSlices.get(bpid);
+    if (bp != null) {
+      bp.markModified(blockId);
+    }
+  }
+
   void incDfsUsed(String bpid, long value) {
     BlockPoolSlice bp = bpSlices.get(bpid);
     if (bp != null) {
@@ -415,7 +427,8 @@ public class FsVolumeImpl implements FsVolumeSpi {
     return dfsUsed;
   }
 
-  long getBlockPoolUsed(String bpid) throws IOException {
+  @Override
+  public long getBlockPoolUsed(String bpid) throws IOException {
     return getBlockPoolSlice(bpid).getDfsUsed();
   }
 
@@ -1289,6 +1302,7 @@ public class FsVolumeImpl implements FsVolumeSpi {
 
     // rename meta file to rbw directory
     // rename block file to rbw directory
+    markModified(bpid, replicaInfo.getBlockId());
     newReplicaInfo.moveReplicaFrom(replicaInfo, newBlkFile);
 
     reserveSpaceForReplica(bytesReserved);
@@ -1399,6 +1413,45 @@ public class FsVolumeImpl implements FsVolumeSpi {
         reportCompiler);
   }
 
+  @Override
+  public void compileReport(String bpid, BitSet blockDirs,
+      Collection<ScanInfo> report, ReportCompiler reportCompiler)
+      throws InterruptedException, IOException {
+    File finalizedDir = getFinalizedDir(bpid);
+    for (int i = blockDirs.nextSetBit(0); i >= 0;
+         i = blockDirs.nextSetBit(i + 1)) {
+      File dir = DatanodeUtil.blockDirIndexToDir(finalizedDir, i);
+      if (fileIoProvider.exists(this, dir)) {
+        compileReport(finalizedDir, dir, report, reportCompiler);
+      }
+    }
+  }
+
+  @Override
+  public BitSet pollModifiedBlockDirs(String bpid) {
+    BlockPoolSlice bp = bpSlices.get(bpid);
+    return bp == null ? null : bp.pollModifiedBlockDirs();
+  }
+
+  @Override
+  public void commitModifiedBlockDirs(String bpid) throws IOException {
+    BlockPoolSlice bp = bpSlices.get(bpid);
+    if (bp != null) {
+      bp.commitModifiedBlockDirs();
+    }
+  }
+
+  BitSet startReplicaIndexCheckpoint(String bpid) {
+    BlockPoolSlice bp = bpSlices.get(bpid);
+    return bp == null ? null : bp.startReplicaIndexCheckpoint();
+  }
+
+  void saveReplicaIndex(String bpid, Collection<? extends Block> replicas,
+      BitSet polled) throws IOException {
+    BlockPoolSlice bp = getBlockPoolSlice(bpid);
+    bp.saveReplicaIndex(replicas, polled);
+  }
+
   @Override
   public FileIoProvider getFileIoProvider() {
     return fileIoProvider;
@@ -0,0 +1,142 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.datanode.fsdataset.impl;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.classification.VisibleForTesting;
+import org.apache.hadoop.hdfs.ExtendedBlockId;
+import org.apache.hadoop.hdfs.server.datanode.metrics.DataNodeMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Caches the blocks read most often by clients, without cache directives from
+ * the NameNode, in a bounded part of the memory of the {@link FsDatasetCache}.
+ * These blocks are not reported to the NameNode.
+ *
+ * A block is admitted once it was read {@link #MIN_ADMISSION_FREQUENCY} times
+ * recently, according to a {@link FrequencySketch}, if there is room for it
+ * or if it was read more often than all the least recently read blocks it
+ * would evict.
+ *
+ * This class is synchronized by itself. It does not call the
+ * {@link FsDatasetCache} while synchronized, since the cache calls it while
+ * synchronized.
+ */
+class HotBlockCache {
+  static final Logger LOG = LoggerFactory.getLogger(HotBlockCache.class);
+
+  static final int MIN_ADMISSION_FREQUENCY = 2;
+
+  private final FsDatasetImpl dataset;
+  private final DataNodeMetrics metrics;
+  private final long capacity;
+  private final FrequencySketch sketch;
+  /** The lengths of the admitted blocks, least recently read first. */
+  private final LinkedHashMap<ExtendedBlockId, Long> blocks =
+      new LinkedHashMap<>(16, 0.75f, true);
+  private long used;
+
+  /**
+   * @param capacity the maximum number of bytes of the admitted blocks
+   * @param blockSize the typical length of a block
+   */
+  HotBlockCache(FsDatasetImpl dataset, long capacity, long blockSize) {
+    this.dataset = dataset;
+    this.metrics = dataset.datanode.getMetrics();
+    this.capacity = capacity;
+    // blocks are only worth tracking if they may become hot enough to evict
+    // another one
+    this.sketch = new FrequencySketch(
+        (int) Math.min(Integer.MAX_VALUE, 16 * capacity / blockSize));
+  }
+
+  private static long hash(ExtendedBlockId key) {
+    return key.getBlockId() * 31 + key.getBlockPoolId().hashCode();
+  }
+
+  /**
+   * Record that a client read a finalized replica, and start caching it if
+   * it is hot.
+   *
+   * @param length the length of the replica
+   */
+  void recordRead(String bpid, long blockId, long length) {
+    final ExtendedBlockId key = new ExtendedBlockId(blockId, bpid);
+    final List<ExtendedBlockId> victims = new ArrayList<>();
+    synchronized (this) {
+      final long hash = hash(key);
+      sketch.increment(hash);
+      if (blocks.get(key) != null) {
+        metrics.incrHotBlockCacheHits();
+        return;
+      }
+      metrics.incrHotBlockCacheMisses();
+      final int frequency = sketch.frequency(hash);
+      if (frequency < MIN_ADMISSION_FREQUENCY || length > capacity) {
+        return;
+      }
+      long free = capacity - used;
+      for (Iterator<Map.Entry<ExtendedBlockId, Long>> it =
+           blocks.entrySet().iterator(); free < length && it.hasNext();) {
+        final Map.Entry<ExtendedBlockId, Long> victim = it.next();
+        if (sketch.frequency(hash(victim.getKey())) >= frequency) {
+          return;
+        }
+        victims.add(victim.getKey());
+        free += victim.getValue();
+      }
+      for (ExtendedBlockId victim : victims) {
+        used -= blocks.remove(victim);
+      }
+      blocks.put(key, length);
+      used += length;
+    }
+
+    for (ExtendedBlockId victim : victims) {
+      LOG.debug("Evicting {} from the hot block cache for {}", victim, key);
+      metrics.incrHotBlockCacheEvictions();
+      dataset.cacheManager.uncacheHotBlock(victim);
+    }
+    LOG.debug("Admitting {} to the hot block cache", key);
+    dataset.cacheBlock(bpid, blockId, true);
+  }
+
+  /** Forget a block which is no longer cached as a hot block. */
+  synchronized void remove(ExtendedBlockId key) {
+    final Long length = blocks.remove(key);
+    if (length != null) {
+      used -= length;
+    }
+  }
+
+  @VisibleForTesting
+  synchronized long getUsed() {
+    return used;
+  }
+
+  @VisibleForTesting
+  synchronized boolean contains(ExtendedBlockId key) {
+    return blocks.containsKey(key);
+  }
+}
@@ -23,6 +23,7 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.nio.ByteBuffer;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.Map;
@@ -305,7 +306,7 @@ class ProvidedVolumeImpl extends FsVolumeImpl {
   }
 
   @Override
-  long getBlockPoolUsed(String bpid) throws IOException {
+  public long getBlockPoolUsed(String bpid) throws IOException {
     return getProvidedBlockPoolSlice(bpid).getDfsUsed();
   }
 
@@ -610,6 +611,14 @@ class ProvidedVolumeImpl extends FsVolumeImpl {
     }
   }
 
+  @Override
+  public void compileReport(String bpid, BitSet blockDirs,
+      Collection<ScanInfo> report, ReportCompiler reportCompiler)
+      throws InterruptedException, IOException {
+    // provided blocks are not stored in block directories
+    compileReport(bpid, report, reportCompiler);
+  }
+
   @Override
   public ReplicaInPipeline append(String bpid, ReplicaInfo replicaInfo,
       long newGS, long estimateBlockLen) throws IOException {
@@ -0,0 +1,162 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.datanode.fsdataset.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Checksum;
+
+import org.apache.hadoop.hdfs.protocol.Block;
+import org.apache.hadoop.hdfs.server.datanode.FileIoProvider;
+import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.util.PureJavaCrc32C;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A checkpoint of the finalized replicas of a block pool slice. When the
+ * datanode did not shut down cleanly, and so did not save the replica cache
+ * file, the slice loads its replicas from the index instead of listing all
+ * the finalized directories. Only the block directories modified since the
+ * checkpoint, as recorded by a {@link ReplicaJournal}, are listed.
+ *
+ * The index starts with a magic number, a version and the number of replicas,
+ * followed by the block id, generation stamp and length of each replica. It
+ * ends with the CRC32C of all the previous bytes.
+ */
+final class ReplicaIndex {
+  static final Logger LOG = LoggerFactory.getLogger(ReplicaIndex.class);
+
+  private static final int MAGIC = 0x52494458;
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 16;
+  private static final int ENTRY_SIZE = 24;
+  private static final int CHECKSUM_SIZE = 4;
+  /** The number of entries read at once. */
+  private static final int READ_BATCH = 4096;
+
+  private ReplicaIndex() {
+  }
+
+  /**
+   * Atomically replace the index file.
+   *
+   * @param volume the volume of the index
+   * @param file the index file
+   * @param replicas the finalized replicas
+   * @throws IOException
+   */
+  static void write(FsVolumeImpl volume, File file,
+      Collection<? extends Block> replicas) throws IOException {
+    final FileIoProvider fileIoProvider = volume.getFileIoProvider();
+    final File tmpFile = new File(file.getParentFile(),
+        file.getName() + ".tmp");
+    final Checksum checksum = new PureJavaCrc32C();
+    try (FileOutputStream fos =
+             fileIoProvider.getFileOutputStream(volume, tmpFile);
+         DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+             new CheckedOutputStream(fos, checksum),
+             READ_BATCH * ENTRY_SIZE))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeLong(replicas.size());
+      for (Block b : replicas) {
+        out.writeLong(b.getBlockId());
+        out.writeLong(b.getGenerationStamp());
+        out.writeLong(b.getNumBytes());
+      }
+      out.flush();
+      out.writeInt((int) checksum.getValue());
+      out.flush();
+      fileIoProvider.sync(volume, fos);
+    } catch (IOException e) {
+      fileIoProvider.deleteWithExistsCheck(volume, tmpFile);
+      throw e;
+    }
+    fileIoProvider.replaceFile(volume, tmpFile, file);
+    fileIoProvider.dirSync(volume, file.getParentFile());
+  }
+
+  /**
+   * Read the index file.
+   *
+   * @param volume the volume of the index
+   * @param file the index file
+   * @return the replicas in the index, or null if it is missing or corrupt
+   */
+  static List<Block> read(FsVolumeImpl volume, File file) {
+    final FileIoProvider fileIoProvider = volume.getFileIoProvider();
+    if (!fileIoProvider.exists(volume, file)) {
+      LOG.info("Replica index {} doesn't exist", file);
+      return null;
+    }
+    final long length = file.length();
+    final Checksum checksum = new PureJavaCrc32C();
+    try (FileInputStream in = fileIoProvider.getFileInputStream(volume, file)) {
+      final byte[] header = new byte[HEADER_SIZE];
+      IOUtils.readFully(in, header, 0, header.length);
+      checksum.update(header, 0, header.length);
+      final ByteBuffer headerBuf = ByteBuffer.wrap(header);
+      final int magic = headerBuf.getInt();
+      final int version = headerBuf.getInt();
+      final long numReplicas = headerBuf.getLong();
+      if (magic != MAGIC || version != VERSION || numReplicas < 0
+          || length != HEADER_SIZE + numReplicas * ENTRY_SIZE + CHECKSUM_SIZE
+          || numReplicas > Integer.MAX_VALUE) {
+        LOG.warn("Replica index {} is corrupt", file);
+        return null;
+      }
+
+      final List<Block> replicas = new ArrayList<>((int) numReplicas);
+      final byte[] buf = new byte[READ_BATCH * ENTRY_SIZE];
+      for (long remaining = numReplicas; remaining > 0;) {
+        final int n = (int) Math.min(remaining, READ_BATCH);
+        IOUtils.readFully(in, buf, 0, n * ENTRY_SIZE);
+        checksum.update(buf, 0, n * ENTRY_SIZE);
+        final ByteBuffer entries = ByteBuffer.wrap(buf, 0, n * ENTRY_SIZE);
+        for (int i = 0; i < n; i++) {
+          final long blockId = entries.getLong();
+          final long genStamp = entries.getLong();
+          final long numBytes = entries.getLong();
+          replicas.add(new Block(blockId, numBytes, genStamp));
+        }
+        remaining -= n;
+      }
+
+      final byte[] trailer = new byte[CHECKSUM_SIZE];
+      IOUtils.readFully(in, trailer, 0, trailer.length);
+      if (ByteBuffer.wrap(trailer).getInt() != (int) checksum.getValue()) {
+        LOG.warn("Replica index {} has a checksum mismatch", file);
+        return null;
+      }
+      return replicas;
+    } catch (IOException e) {
+      LOG.warn("Failed to read replica index {}", file, e);
+      return null;
+    }
+  }
+}
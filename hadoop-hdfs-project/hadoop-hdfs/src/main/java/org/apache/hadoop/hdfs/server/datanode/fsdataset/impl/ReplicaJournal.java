@@ -0,0 +1,216 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.datanode.fsdataset.impl;
+
+import static org.apache.hadoop.hdfs.server.datanode.DatanodeUtil.NUM_BLOCK_DIRS;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.BitSet;
+
+import org.apache.hadoop.classification.VisibleForTesting;
+import org.apache.hadoop.hdfs.server.datanode.DatanodeUtil;
+import org.apache.hadoop.hdfs.server.datanode.FileIoProvider;
+import org.apache.hadoop.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An append-only journal of the block directories, under the finalized
+ * directory of a block pool slice, whose replicas were added, moved or
+ * deleted since the last commit: since the directory scanner last reconciled
+ * them, or since a checkpoint of the {@link ReplicaIndex}.
+ *
+ * The journal starts with a version, followed by the index of each modified
+ * directory as two bytes. A directory is appended before the first change to
+ * its replicas after the last commit, and synced before the change is made.
+ * The journal is replaced atomically by a synced temporary file. A journal
+ * which is missing or cannot be read marks all the directories as modified.
+ *
+ * This class is synchronized by itself.
+ */
+class ReplicaJournal implements Closeable {
+  static final Logger LOG = LoggerFactory.getLogger(ReplicaJournal.class);
+
+  private static final int VERSION = 1;
+
+  private final FsVolumeImpl volume;
+  private final FileIoProvider fileIoProvider;
+  private final File file;
+  /** The directories modified since the last poll. */
+  private final BitSet modified = new BitSet(NUM_BLOCK_DIRS);
+  /** The directories in the journal file. */
+  private final BitSet journaled = new BitSet(NUM_BLOCK_DIRS);
+  private final byte[] entry = new byte[2];
+  private FileOutputStream out;
+  private boolean closed;
+
+  ReplicaJournal(FsVolumeImpl volume, File file) throws IOException {
+    this.volume = volume;
+    this.fileIoProvider = volume.getFileIoProvider();
+    this.file = file;
+    if (!load()) {
+      modified.set(0, NUM_BLOCK_DIRS);
+    }
+    rewrite(modified);
+  }
+
+  /** @return whether the journal file could be read. */
+  private boolean load() {
+    if (!fileIoProvider.exists(volume, file)) {
+      LOG.info("Replica journal {} doesn't exist", file);
+      return false;
+    }
+    try (DataInputStream in = new DataInputStream(
+        fileIoProvider.getFileInputStream(volume, file))) {
+      final int version = in.readInt();
+      if (version != VERSION) {
+        LOG.warn("Replica journal {} has unknown version {}", file, version);
+        return false;
+      }
+      while (true) {
+        final int index;
+        try {
+          index = in.readUnsignedShort();
+        } catch (EOFException e) {
+          // a torn entry is never followed by another one
+          break;
+        }
+        if (index >= NUM_BLOCK_DIRS) {
+          LOG.warn("Replica journal {} is corrupt", file);
+          return false;
+        }
+        modified.set(index);
+      }
+      return true;
+    } catch (IOException e) {
+      LOG.warn("Failed to read replica journal {}", file, e);
+      return false;
+    }
+  }
+
+  /**
+   * Durably replace the journal file with the given directories, so that a
+   * checkpoint of the index relying on it never outlives the journal.
+   */
+  private void rewrite(BitSet dirs) throws IOException {
+    IOUtils.cleanupWithLogger(LOG, out);
+    out = null;
+    final File tmpFile = new File(file.getParentFile(),
+        file.getName() + ".tmp");
+    try (FileOutputStream tmp =
+             fileIoProvider.getFileOutputStream(volume, tmpFile)) {
+      final byte[] buf = new byte[4 + 2 * dirs.cardinality()];
+      buf[3] = VERSION;
+      int off = 4;
+      for (int i = dirs.nextSetBit(0); i >= 0; i = dirs.nextSetBit(i + 1)) {
+        buf[off++] = (byte) (i >>> 8);
+        buf[off++] = (byte) i;
+      }
+      tmp.write(buf);
+      fileIoProvider.sync(volume, tmp);
+    }
+    fileIoProvider.replaceFile(volume, tmpFile, file);
+    fileIoProvider.dirSync(volume, file.getParentFile());
+    journaled.clear();
+    journaled.or(dirs);
+    out = fileIoProvider.getFileOutputStream(volume, file, true);
+  }
+
+  /**
+   * Record that the replica files of a block may change. Must be called
+   * before the change, so that the journal covers it if the datanode stops
+   * in the middle.
+   */
+  synchronized void markModified(long blockId) {
+    final int index = DatanodeUtil.idToBlockDirIndex(blockId);
+    modified.set(index);
+    if (journaled.get(index) || out == null) {
+      return;
+    }
+    journaled.set(index);
+    entry[0] = (byte) (index >>> 8);
+    entry[1] = (byte) index;
+    try {
+      out.write(entry);
+      // the change may reach the disk before a later append does
+      fileIoProvider.sync(volume, out);
+    } catch (IOException e) {
+      // the directory is still scanned unless the datanode restarts first,
+      // and the next commit rewrites the journal anyway
+      LOG.warn("Failed to append to replica journal {}", file, e);
+      IOUtils.cleanupWithLogger(LOG, out);
+      out = null;
+    }
+  }
+
+  /** Mark all the directories as modified. */
+  synchronized void markAllModified() throws IOException {
+    modified.set(0, NUM_BLOCK_DIRS);
+    rewrite(modified);
+  }
+
+  /** @return the directories modified since the last poll. */
+  synchronized BitSet getModified() {
+    return (BitSet) modified.clone();
+  }
+
+  /**
+   * @return the directories modified since the last poll. These stay in the
+   *         journal file until {@link #commit()}.
+   */
+  synchronized BitSet poll() {
+    final BitSet polled = getModified();
+    modified.clear();
+    return polled;
+  }
+
+  /** Drop all the polled directories from the journal file. */
+  synchronized void commit() throws IOException {
+    commit(new BitSet());
+  }
+
+  /**
+   * Drop the polled directories from the journal file, except the given
+   * ones.
+   */
+  synchronized void commit(BitSet retained) throws IOException {
+    if (closed) {
+      return;
+    }
+    final BitSet dirs = getModified();
+    dirs.or(retained);
+    rewrite(dirs);
+  }
+
+  @VisibleForTesting
+  File getFile() {
+    return file;
+  }
+
+  @Override
+  public synchronized void close() {
+    closed = true;
+    IOUtils.cleanupWithLogger(LOG, out);
+    out = null;
+  }
+}
@@ -17,10 +17,12 @@
  */
 package org.apache.hadoop.hdfs.server.datanode.fsdataset.impl;
 
+import java.util.AbstractCollection;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
@@ -41,21 +43,163 @@ class ReplicaMap {
   // Lock object to synchronize this instance.
   private DataNodeLockManager<AutoCloseDataSetLock> lockManager;
 
-  // Map of block pool Id to another map of block Id to ReplicaInfo.
-  private final Map<String, LightWeightResizableGSet<Block, ReplicaInfo>> map =
-      new ConcurrentHashMap<>();
+  // Map of block pool Id to the replicas of the block pool.
+  private final Map<String, BlockPoolReplicas> map = new ConcurrentHashMap<>();
+
+  // Number of independently synchronized sets per block pool.
+  private final int numStripes;
+
+  /**
+   * The replicas of a block pool, split by block id into sets which are
+   * synchronized independently, so that lookups and updates of different
+   * blocks do not serialize on a single monitor.
+   */
+  private static final class BlockPoolReplicas {
+    private final LightWeightResizableGSet<Block, ReplicaInfo>[] stripes;
+
+    @SuppressWarnings("unchecked")
+    private BlockPoolReplicas(int numStripes) {
+      stripes = new LightWeightResizableGSet[numStripes];
+      for (int i = 0; i < numStripes; i++) {
+        stripes[i] = new LightWeightResizableGSet<>();
+      }
+    }
+
+    private LightWeightResizableGSet<Block, ReplicaInfo> stripe(long blockId) {
+      return stripes[(int) Math.floorMod(blockId, (long) stripes.length)];
+    }
+
+    ReplicaInfo get(Block block) {
+      return stripe(block.getBlockId()).get(block);
+    }
+
+    ReplicaInfo put(ReplicaInfo replicaInfo) {
+      return stripe(replicaInfo.getBlockId()).put(replicaInfo);
+    }
+
+    ReplicaInfo remove(Block block) {
+      return stripe(block.getBlockId()).remove(block);
+    }
+
+    int size() {
+      int size = 0;
+      for (LightWeightResizableGSet<Block, ReplicaInfo> stripe : stripes) {
+        size += stripe.size();
+      }
+      return size;
+    }
+
+    /**
+     * Run the consumer with all the stripes locked, so that it sees a
+     * consistent view of the block pool.
+     */
+    void getIterator(Consumer<Iterator<ReplicaInfo>> consumer) {
+      getIterator(0, new Iterator[stripes.length], consumer);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void getIterator(int i, Iterator<?>[] iterators,
+        Consumer<Iterator<ReplicaInfo>> consumer) {
+      if (i == stripes.length) {
+        consumer.accept(new StripesIterator(
+            (Iterator<ReplicaInfo>[]) iterators));
+        return;
+      }
+      stripes[i].getIterator(it -> {
+        iterators[i] = it;
+        getIterator(i + 1, iterators, consumer);
+      });
+    }
+
+    /**
+     * Run the consumer once per stripe, with only that stripe locked. The
+     * consumer does not see a consistent view of the block pool, but each
+     * replica at most once.
+     */
+    void forEachStripe(Consumer<Iterator<ReplicaInfo>> consumer) {
+      for (LightWeightResizableGSet<Block, ReplicaInfo> stripe : stripes) {
+        stripe.getIterator(consumer);
+      }
+    }
+
+    Collection<ReplicaInfo> values() {
+      if (stripes.length == 1) {
+        return stripes[0].values();
+      }
+      return new AbstractCollection<ReplicaInfo>() {
+        @Override
+        @SuppressWarnings("unchecked")
+        public Iterator<ReplicaInfo> iterator() {
+          Iterator<ReplicaInfo>[] iterators = new Iterator[stripes.length];
+          for (int i = 0; i < stripes.length; i++) {
+            iterators[i] = stripes[i].values().iterator();
+          }
+          return new StripesIterator(iterators);
+        }
+
+        @Override
+        public int size() {
+          return BlockPoolReplicas.this.size();
+        }
+      };
+    }
+  }
+
+  /** Iterates the stripes of a block pool one after the other. */
+  private static final class StripesIterator implements Iterator<ReplicaInfo> {
+    private final Iterator<ReplicaInfo>[] iterators;
+    private int current = 0;
+
+    private StripesIterator(Iterator<ReplicaInfo>[] iterators) {
+      this.iterators = iterators;
+    }
+
+    @Override
+    public boolean hasNext() {
+      for (; current < iterators.length; current++) {
+        if (iterators[current].hasNext()) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public ReplicaInfo next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      return iterators[current].next();
+    }
+
+    @Override
+    public void remove() {
+      iterators[current].remove();
+    }
+  }
 
   ReplicaMap(DataNodeLockManager<AutoCloseDataSetLock> manager) {
+    this(manager, 1);
+  }
+
+  ReplicaMap(DataNodeLockManager<AutoCloseDataSetLock> manager,
+      int numStripes) {
     if (manager == null) {
       throw new HadoopIllegalArgumentException(
           "Object to synchronize on cannot be null");
     }
+    if (numStripes < 1) {
+      throw new HadoopIllegalArgumentException(
+          "The number of stripes must be positive: " + numStripes);
+    }
     this.lockManager = manager;
+    this.numStripes = numStripes;
   }
 
   // Used for ut or temp replicaMap that no need to protected by lock.
   ReplicaMap() {
     this.lockManager = new NoLockManager();
+    this.numStripes = 1;
   }
   
   String[] getBlockPoolList() {
@@ -104,7 +248,7 @@ class ReplicaMap {
   ReplicaInfo get(String bpid, long blockId) {
     checkBlockPool(bpid);
     try (AutoCloseDataSetLock l = lockManager.readLock(LockLevel.BLOCK_POOl, bpid)) {
-      LightWeightResizableGSet<Block, ReplicaInfo> m = map.get(bpid);
+      BlockPoolReplicas m = map.get(bpid);
       return m != null ? m.get(new Block(blockId)) : null;
     }
   }
@@ -121,10 +265,10 @@ class ReplicaMap {
     checkBlockPool(bpid);
     checkBlock(replicaInfo);
     try (AutoCloseDataSetLock l = lockManager.readLock(LockLevel.BLOCK_POOl, bpid)) {
-      LightWeightResizableGSet<Block, ReplicaInfo> m = map.get(bpid);
+      BlockPoolReplicas m = map.get(bpid);
       if (m == null) {
         // Add an entry for block pool if it does not exist already
-        map.putIfAbsent(bpid, new LightWeightResizableGSet<Block, ReplicaInfo>());
+        map.putIfAbsent(bpid, new BlockPoolReplicas(numStripes));
         m = map.get(bpid);
       }
       return  m.put(replicaInfo);
@@ -139,10 +283,10 @@ class ReplicaMap {
     checkBlockPool(bpid);
     checkBlock(replicaInfo);
     try (AutoCloseDataSetLock l = lockManager.readLock(LockLevel.BLOCK_POOl, bpid)) {
-      LightWeightResizableGSet<Block, ReplicaInfo> m = map.get(bpid);
+      BlockPoolReplicas m = map.get(bpid);
       if (m == null) {
         // Add an entry for block pool if it does not exist already
-        map.putIfAbsent(bpid, new LightWeightResizableGSet<Block, ReplicaInfo>());
+        map.putIfAbsent(bpid, new BlockPoolReplicas(numStripes));
         m = map.get(bpid);
       }
       ReplicaInfo oldReplicaInfo = m.get(replicaInfo);
@@ -171,16 +315,16 @@ class ReplicaMap {
     for (String bp : bplist) {
       checkBlockPool(bp);
       try (AutoCloseDataSetLock l = lockManager.writeLock(LockLevel.BLOCK_POOl, bp)) {
-        LightWeightResizableGSet<Block, ReplicaInfo> replicaInfos = other.map.get(bp);
-        LightWeightResizableGSet<Block, ReplicaInfo> curSet = map.get(bp);
+        BlockPoolReplicas replicaInfos = other.map.get(bp);
+        BlockPoolReplicas curSet = map.get(bp);
         HashSet<ReplicaInfo> replicaSet = new HashSet<>();
         //Can't add to GSet while in another GSet iterator may cause endlessLoop
-        for (ReplicaInfo replicaInfo : replicaInfos) {
+        for (ReplicaInfo replicaInfo : replicaInfos.values()) {
           replicaSet.add(replicaInfo);
         }
         if (curSet == null && !replicaSet.isEmpty()) {
           // Add an entry for block pool if it does not exist already
-          curSet = new LightWeightResizableGSet<>();
+          curSet = new BlockPoolReplicas(numStripes);
           map.put(bp, curSet);
         }
         for (ReplicaInfo replicaInfo : replicaSet) {
@@ -203,7 +347,7 @@ class ReplicaMap {
     checkBlockPool(bpid);
     checkBlock(block);
     try (AutoCloseDataSetLock l = lockManager.readLock(LockLevel.BLOCK_POOl, bpid)) {
-      LightWeightResizableGSet<Block, ReplicaInfo> m = map.get(bpid);
+      BlockPoolReplicas m = map.get(bpid);
       if (m != null) {
         ReplicaInfo replicaInfo = m.get(block);
         if (replicaInfo != null &&
@@ -225,7 +369,7 @@ class ReplicaMap {
   ReplicaInfo remove(String bpid, long blockId) {
     checkBlockPool(bpid);
     try (AutoCloseDataSetLock l = lockManager.readLock(LockLevel.BLOCK_POOl, bpid)) {
-      LightWeightResizableGSet<Block, ReplicaInfo> m = map.get(bpid);
+      BlockPoolReplicas m = map.get(bpid);
       if (m != null) {
         return m.remove(new Block(blockId));
       }
@@ -240,7 +384,7 @@ class ReplicaMap {
    */
   int size(String bpid) {
     try (AutoCloseDataSetLock l = lockManager.readLock(LockLevel.BLOCK_POOl, bpid)) {
-      LightWeightResizableGSet<Block, ReplicaInfo> m = map.get(bpid);
+      BlockPoolReplicas m = map.get(bpid);
       return m != null ? m.size() : 0;
     }
   }
@@ -254,8 +398,7 @@ class ReplicaMap {
    * @return a collection of the replicas belonging to the block pool
    */
   Collection<ReplicaInfo> replicas(String bpid) {
-    LightWeightResizableGSet<Block, ReplicaInfo> m = null;
-    m = map.get(bpid);
+    BlockPoolReplicas m = map.get(bpid);
     return m != null ? m.values() : null;
   }
 
@@ -266,7 +409,7 @@ class ReplicaMap {
    * @param bpid block pool id
    */
   void replicas(String bpid, Consumer<Iterator<ReplicaInfo>> consumer) {
-    LightWeightResizableGSet<Block, ReplicaInfo> m = null;
+    BlockPoolReplicas m = null;
     try (AutoCloseDataSetLock l = lockManager.readLock(LockLevel.BLOCK_POOl, bpid)) {
       m = map.get(bpid);
       if (m !=null) {
@@ -275,13 +418,32 @@ class ReplicaMap {
     }
   }
 
+  /**
+   * Execute function for one block pool and protect by LockManager, calling
+   * it once per stripe of the replica map. Unlike
+   * {@link #replicas(String, Consumer)}, this only blocks updates of one
+   * stripe at a time, so the function does not see a consistent view of the
+   * block pool. It does see each replica at most once.
+   *
+   * @param bpid block pool id
+   */
+  void replicasByStripe(String bpid,
+      Consumer<Iterator<ReplicaInfo>> consumer) {
+    try (AutoCloseDataSetLock l = lockManager.readLock(LockLevel.BLOCK_POOl, bpid)) {
+      BlockPoolReplicas m = map.get(bpid);
+      if (m != null) {
+        m.forEachStripe(consumer);
+      }
+    }
+  }
+
   void initBlockPool(String bpid) {
     checkBlockPool(bpid);
     try (AutoCloseDataSetLock l = lockManager.writeLock(LockLevel.BLOCK_POOl, bpid)) {
-      LightWeightResizableGSet<Block, ReplicaInfo> m = map.get(bpid);
+      BlockPoolReplicas m = map.get(bpid);
       if (m == null) {
         // Add an entry for block pool if it does not exist already
-        m = new LightWeightResizableGSet<Block, ReplicaInfo>();
+        m = new BlockPoolReplicas(numStripes);
         map.put(bpid, m);
       }
     }
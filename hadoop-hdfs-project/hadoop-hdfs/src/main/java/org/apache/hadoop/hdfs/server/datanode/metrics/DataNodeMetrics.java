@@ -22,6 +22,7 @@ import static org.apache.hadoop.metrics2.impl.MsInfo.SessionId;
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.server.common.DataNodeLockManager.LockLevel;
 import org.apache.hadoop.hdfs.server.protocol.DataNodeUsageReport;
 import org.apache.hadoop.hdfs.server.protocol.DataNodeUsageReportUtil;
 import org.apache.hadoop.metrics2.MetricsSystem;
@@ -71,6 +72,12 @@ public class DataNodeMetrics {
   @Metric MutableCounterLong blockVerificationFailures;
   @Metric MutableCounterLong blocksCached;
   @Metric MutableCounterLong blocksUncached;
+  @Metric("Number of reads of blocks in the hot block cache")
+  MutableCounterLong hotBlockCacheHits;
+  @Metric("Number of reads of blocks not in the hot block cache")
+  MutableCounterLong hotBlockCacheMisses;
+  @Metric("Number of blocks evicted from the hot block cache")
+  MutableCounterLong hotBlockCacheEvictions;
   @Metric MutableCounterLong readsFromLocalClient;
   @Metric MutableCounterLong readsFromRemoteClient;
   @Metric MutableCounterLong writesFromLocalClient;
@@ -136,6 +143,13 @@ public class DataNodeMetrics {
   
   @Metric MutableRate fsyncNanos;
   final MutableQuantiles[] fsyncNanosQuantiles;
+
+  @Metric("Time waited for a contended block pool lock in ns")
+  MutableRate blockPoolLockWaitNanos;
+  final MutableQuantiles[] blockPoolLockWaitNanosQuantiles;
+  @Metric("Time waited for a contended volume lock in ns")
+  MutableRate volumeLockWaitNanos;
+  final MutableQuantiles[] volumeLockWaitNanosQuantiles;
   
   @Metric MutableRate sendDataPacketBlockedOnNetworkNanos;
   final MutableQuantiles[] sendDataPacketBlockedOnNetworkNanosQuantiles;
@@ -225,6 +239,8 @@ public class DataNodeMetrics {
     packetAckRoundTripTimeNanosQuantiles = new MutableQuantiles[len];
     flushNanosQuantiles = new MutableQuantiles[len];
     fsyncNanosQuantiles = new MutableQuantiles[len];
+    blockPoolLockWaitNanosQuantiles = new MutableQuantiles[len];
+    volumeLockWaitNanosQuantiles = new MutableQuantiles[len];
     sendDataPacketBlockedOnNetworkNanosQuantiles = new MutableQuantiles[len];
     sendDataPacketTransferNanosQuantiles = new MutableQuantiles[len];
     ramDiskBlocksEvictionWindowMsQuantiles = new MutableQuantiles[len];
@@ -242,6 +258,14 @@ public class DataNodeMetrics {
       fsyncNanosQuantiles[i] = registry.newQuantiles(
           "fsyncNanos" + interval + "s", "Disk fsync latency in ns", 
           "ops", "latency", interval);
+      blockPoolLockWaitNanosQuantiles[i] = registry.newQuantiles(
+          "blockPoolLockWaitNanos" + interval + "s",
+          "Time waited for a contended block pool lock in ns",
+          "ops", "latency", interval);
+      volumeLockWaitNanosQuantiles[i] = registry.newQuantiles(
+          "volumeLockWaitNanos" + interval + "s",
+          "Time waited for a contended volume lock in ns",
+          "ops", "latency", interval);
       sendDataPacketBlockedOnNetworkNanosQuantiles[i] = registry.newQuantiles(
           "sendDataPacketBlockedOnNetworkNanos" + interval + "s", 
           "Time blocked on network while sending a packet in ns",
@@ -371,6 +395,18 @@ public class DataNodeMetrics {
     blocksUncached.incr(delta);
   }
 
+  public void incrHotBlockCacheHits() {
+    hotBlockCacheHits.incr();
+  }
+
+  public void incrHotBlockCacheMisses() {
+    hotBlockCacheMisses.incr();
+  }
+
+  public void incrHotBlockCacheEvictions() {
+    hotBlockCacheEvictions.incr();
+  }
+
   public void addReadBlockOp(long latency) {
     readBlockOp.add(latency);
   }
@@ -433,6 +469,20 @@ public class DataNodeMetrics {
     }
   }
 
+  public void addLockWaitNanos(LockLevel level, long waitNanos) {
+    if (level == LockLevel.BLOCK_POOl) {
+      blockPoolLockWaitNanos.add(waitNanos);
+      for (MutableQuantiles q : blockPoolLockWaitNanosQuantiles) {
+        q.add(waitNanos);
+      }
+    } else {
+      volumeLockWaitNanos.add(waitNanos);
+      for (MutableQuantiles q : volumeLockWaitNanosQuantiles) {
+        q.add(waitNanos);
+      }
+    }
+  }
+
   public void shutdown() {
     DefaultMetricsSystem.shutdown();
   }
@@ -22,6 +22,7 @@ import java.util.Arrays;
 
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.fs.permission.AclEntry;
+import org.apache.hadoop.fs.permission.AclEntryScope;
 import org.apache.hadoop.hdfs.util.ReferenceCountMap.ReferenceCounter;
 
 import org.apache.hadoop.thirdparty.com.google.common.collect.ImmutableList;
@@ -33,9 +34,17 @@ import org.apache.hadoop.thirdparty.com.google.common.collect.ImmutableList;
 public class AclFeature implements INode.Feature, ReferenceCounter {
   public static final ImmutableList<AclEntry> EMPTY_ENTRY_LIST =
     ImmutableList.of();
+  private static final AclEntry[] NO_ACCESS_ENTRIES = new AclEntry[0];
   private int refCount = 0;
 
   private final int [] entries;
+  /**
+   * The access entries decoded from {@link #entries}, built on first use.
+   * Features are shared by all the inodes with the same ACL, so permission
+   * checks decode the names of the entries once per distinct ACL instead of
+   * once per check.
+   */
+  private volatile AclEntry[] accessEntries;
 
   public AclFeature(int[] entries) {
     this.entries = entries;
@@ -61,6 +70,28 @@ public class AclFeature implements INode.Feature, ReferenceCounter {
     return entries[pos];
   }
 
+  /**
+   * Get the access entries, in sorted order. The returned array must not be
+   * modified.
+   * @return the access entries, empty if there is only a default ACL
+   */
+  AclEntry[] getAccessEntries() {
+    AclEntry[] decoded = accessEntries;
+    if (decoded == null) {
+      int n = 0;
+      while (n < entries.length && AclEntryStatusFormat.getScope(
+          entries[n]) == AclEntryScope.ACCESS) {
+        n++;
+      }
+      decoded = n == 0 ? NO_ACCESS_ENTRIES : new AclEntry[n];
+      for (int i = 0; i < n; i++) {
+        decoded[i] = AclEntryStatusFormat.toAclEntry(entries[i]);
+      }
+      accessEntries = decoded;
+    }
+    return decoded;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (o == null) {
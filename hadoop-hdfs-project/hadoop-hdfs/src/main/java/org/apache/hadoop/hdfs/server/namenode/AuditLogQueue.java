@@ -0,0 +1,152 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hands audit events over from the RPC handlers to a single thread, which
+ * formats and writes them in batches. Handlers thus only pay for queuing an
+ * event, not for escaping paths, building the message and appending it to
+ * the log.
+ *
+ * No event is dropped: when the queue is full, handlers wait for room in it,
+ * which is counted so that a writer falling behind can be noticed. Events
+ * queued when the queue is closed are still written, and events arriving
+ * after it is closed are written by the caller.
+ *
+ * @param <E> the type of the events
+ */
+class AuditLogQueue<E> implements Runnable {
+  static final Logger LOG = LoggerFactory.getLogger(AuditLogQueue.class);
+
+  /** The maximum number of events taken off the queue at once. */
+  private static final int MAX_BATCH_SIZE = 1024;
+
+  private final BlockingQueue<E> pending;
+  private final Consumer<E> writer;
+  private final Thread thread;
+  /** The number of events which had to wait for room in the queue. */
+  private final LongAdder fullCount = new LongAdder();
+  /**
+   * Held shared while queuing an event and exclusively while closing, so
+   * that no event is queued once the writer thread may have stopped.
+   */
+  private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+  private volatile boolean running = true;
+
+  AuditLogQueue(int size, Consumer<E> writer) {
+    this.pending = new ArrayBlockingQueue<>(size);
+    this.writer = writer;
+    this.thread = new Thread(this, getClass().getSimpleName());
+    thread.setDaemon(true);
+  }
+
+  void start() {
+    thread.start();
+  }
+
+  /** Queue an event, waiting for room in the queue if it is full. */
+  void put(E event) {
+    closeLock.readLock().lock();
+    try {
+      if (running) {
+        if (!pending.offer(event)) {
+          fullCount.increment();
+          pending.put(event);
+        }
+        return;
+      }
+    } catch (InterruptedException e) {
+      // the handler is being stopped, do not lose the event
+      Thread.currentThread().interrupt();
+    } finally {
+      closeLock.readLock().unlock();
+    }
+    writer.accept(event);
+  }
+
+  /** @return the number of events waiting to be written. */
+  int size() {
+    return pending.size();
+  }
+
+  /** @return the number of events which had to wait for room. */
+  long getFullCount() {
+    return fullCount.sum();
+  }
+
+  @Override
+  public void run() {
+    final List<E> batch = new ArrayList<>(MAX_BATCH_SIZE);
+    try {
+      while (running) {
+        batch.add(pending.take());
+        pending.drainTo(batch, MAX_BATCH_SIZE - 1);
+        write(batch);
+      }
+    } catch (InterruptedException e) {
+      // stopping
+    }
+    while (pending.drainTo(batch, MAX_BATCH_SIZE) > 0) {
+      write(batch);
+    }
+  }
+
+  private void write(List<E> batch) {
+    for (E event : batch) {
+      try {
+        writer.accept(event);
+      } catch (RuntimeException e) {
+        LOG.error("Failed to write audit event {}", event, e);
+      }
+    }
+    batch.clear();
+  }
+
+  /** Stop the writer thread once the queued events are written. */
+  void close() {
+    // waits for the events being queued, which the thread still takes
+    closeLock.writeLock().lock();
+    try {
+      running = false;
+    } finally {
+      closeLock.writeLock().unlock();
+    }
+    thread.interrupt();
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    // events queued while the thread was exiting
+    for (E event; (event = pending.poll()) != null;) {
+      writer.accept(event);
+    }
+  }
+}
@@ -17,6 +17,7 @@
  */
 package org.apache.hadoop.hdfs.server.namenode;
 
+import org.apache.hadoop.fs.ContentSummary;
 import org.apache.hadoop.fs.StorageType;
 import org.apache.hadoop.hdfs.protocol.DSQuotaExceededException;
 import org.apache.hadoop.hdfs.protocol.HdfsConstants;
@@ -36,6 +37,24 @@ public final class DirectoryWithQuotaFeature implements INode.Feature {
 
   private QuotaCounts quota;
   private QuotaCounts usage;
+  /**
+   * The cached content summary of the directory, or null. It is set by
+   * readers holding the read lock, hence volatile.
+   */
+  private volatile CachedContentSummary cachedSummary;
+  /** Incremented whenever the cached content summary becomes invalid. */
+  private volatile long summaryVersion;
+
+  /** A content summary with the time it expires. */
+  private static final class CachedContentSummary {
+    private final ContentSummary summary;
+    private final long expiry;
+
+    CachedContentSummary(ContentSummary summary, long expiry) {
+      this.summary = summary;
+      this.expiry = expiry;
+    }
+  }
 
   public static class Builder {
     private QuotaCounts quota;
@@ -86,10 +105,12 @@ public final class DirectoryWithQuotaFeature implements INode.Feature {
   void setQuota(long nsQuota, long ssQuota) {
     this.quota.setNameSpace(nsQuota);
     this.quota.setStorageSpace(ssQuota);
+    invalidateContentSummary();
   }
 
   void setQuota(long quota, StorageType type) {
     this.quota.setTypeSpace(type, quota);
+    invalidateContentSummary();
   }
 
   /** Set storage type quota in a batch. (Only used by FSImage load)
@@ -98,6 +119,7 @@ public final class DirectoryWithQuotaFeature implements INode.Feature {
    */
   void setQuota(EnumCounters<StorageType> tsQuotas) {
     this.quota.setTypeSpaces(tsQuotas);
+    invalidateContentSummary();
   }
 
   /**
@@ -137,6 +159,7 @@ public final class DirectoryWithQuotaFeature implements INode.Feature {
    */
   public void addSpaceConsumed2Cache(QuotaCounts delta) {
     usage.add(delta);
+    invalidateContentSummary();
   }
 
   /** 
@@ -153,12 +176,46 @@ public final class DirectoryWithQuotaFeature implements INode.Feature {
     usage.setNameSpace(namespace);
     usage.setStorageSpace(storagespace);
     usage.setTypeSpaces(typespaces);
+    invalidateContentSummary();
   }
 
   void setSpaceConsumed(QuotaCounts c) {
     usage.setNameSpace(c.getNameSpace());
     usage.setStorageSpace(c.getStorageSpace());
     usage.setTypeSpaces(c.getTypeSpaces());
+    invalidateContentSummary();
+  }
+
+  /**
+   * @return the version of the cached content summary, to be passed to
+   *         {@link #cacheContentSummary} once the summary is computed.
+   */
+  long getContentSummaryVersion() {
+    return summaryVersion;
+  }
+
+  /** @return the cached content summary, or null if none is valid. */
+  ContentSummary getCachedContentSummary(long now) {
+    final CachedContentSummary cached = cachedSummary;
+    return cached != null && now < cached.expiry ? cached.summary : null;
+  }
+
+  /**
+   * Cache a content summary of the directory, unless the directory changed
+   * since the given version was obtained, e.g. while the computation
+   * yielded the lock.
+   */
+  void cacheContentSummary(ContentSummary summary, long version,
+      long expiry) {
+    if (version == summaryVersion) {
+      cachedSummary = new CachedContentSummary(summary, expiry);
+    }
+  }
+
+  /** Drop the cached content summary of the directory. */
+  void invalidateContentSummary() {
+    summaryVersion++;
+    cachedSummary = null;
   }
 
   /** @return the namespace and storagespace and typespace allowed. */
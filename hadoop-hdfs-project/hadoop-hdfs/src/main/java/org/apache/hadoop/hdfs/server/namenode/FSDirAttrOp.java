@@ -279,6 +279,7 @@ public class FSDirAttrOp {
     int snapshotId = iip.getLatestSnapshotId();
     long oldPerm = inode.getPermissionLong();
     inode.setPermission(permissions, snapshotId);
+    fsd.invalidateTraversePermissions(inode);
     return oldPerm != inode.getPermissionLong();
   }
 
@@ -295,6 +296,7 @@ public class FSDirAttrOp {
     if (groupname != null) {
       inode.setGroup(groupname, iip.getLatestSnapshotId());
     }
+    fsd.invalidateTraversePermissions(inode);
     return oldPerm != inode.getPermissionLong();
   }
 
@@ -468,6 +470,7 @@ public class FSDirAttrOp {
       throw new FileNotFoundException(iip.getPath()
           + " is not a file or directory");
     }
+    fsd.invalidateContentSummaries(iip);
   }
 
   private static void setDirStoragePolicy(
@@ -125,7 +125,7 @@ class FSDirMkdirOp {
   private static INodesInPath createParentDirectories(FSDirectory fsd,
       INodesInPath iip, PermissionStatus perm, boolean inheritPerms)
       throws IOException {
-    assert fsd.hasWriteLock();
+    assert fsd.hasWriteLock(iip.getPath());
     // this is the desired parent iip if the subsequent delta is 1.
     INodesInPath existing = iip.getExistingINodes();
     int missing = iip.length() - existing.length();
@@ -23,6 +23,7 @@ import org.apache.hadoop.util.Preconditions;
 import org.apache.hadoop.fs.ContentSummary;
 import org.apache.hadoop.fs.DirectoryListingStartAfterNotFoundException;
 import org.apache.hadoop.fs.FileEncryptionInfo;
+import org.apache.hadoop.fs.InvalidPathException;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.permission.FsAction;
 import org.apache.hadoop.fs.permission.FsPermission;
@@ -35,6 +36,7 @@ import org.apache.hadoop.hdfs.protocol.HdfsConstants;
 import org.apache.hadoop.hdfs.protocol.HdfsFileStatus;
 import org.apache.hadoop.hdfs.protocol.HdfsLocatedFileStatus;
 import org.apache.hadoop.hdfs.protocol.LocatedBlocks;
+import org.apache.hadoop.hdfs.protocol.RecursiveDirectoryListing;
 import org.apache.hadoop.hdfs.protocol.SnapshotException;
 import org.apache.hadoop.hdfs.server.blockmanagement.BlockManager;
 import org.apache.hadoop.hdfs.server.namenode.FSDirectory.DirOp;
@@ -42,11 +44,16 @@ import org.apache.hadoop.hdfs.server.namenode.snapshot.DirectorySnapshottableFea
 import org.apache.hadoop.hdfs.server.namenode.snapshot.Snapshot;
 import org.apache.hadoop.hdfs.util.ReadOnlyList;
 import org.apache.hadoop.security.AccessControlException;
+import org.apache.hadoop.util.Time;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Deque;
 import java.util.EnumSet;
+import java.util.List;
 
 import static org.apache.hadoop.util.Time.now;
 
@@ -81,6 +88,23 @@ class FSDirStatAndListingOp {
     return getListing(fsd, iip, startAfter, needLocation);
   }
 
+  static RecursiveDirectoryListing getRecursiveListingInt(FSDirectory fsd,
+      FSPermissionChecker pc, final String srcArg, byte[] cursor,
+      boolean needLocation) throws IOException {
+    final INodesInPath iip = fsd.resolvePath(pc, srcArg, DirOp.READ);
+    if (FSDirectory.isExactReservedName(iip.getPathComponents())
+        || iip.isDotSnapshotDir()) {
+      throw new InvalidPathException(srcArg,
+          "Recursive listing is not supported for this path");
+    }
+    if (fsd.isPermissionEnabled()) {
+      if (iip.getLastINode() != null && iip.getLastINode().isDirectory()) {
+        fsd.checkPathAccess(pc, iip, FsAction.READ_EXECUTE);
+      }
+    }
+    return getRecursiveListing(fsd, pc, iip, cursor, needLocation);
+  }
+
   /**
    * Get the file info for a specific file.
    * @param fsd The FS directory
@@ -261,26 +285,9 @@ class FSDirStatAndListingOp {
         listing[i] = createFileStatus(fsd, iip, child, childStoragePolicy,
             needLocation, false);
         listingCnt++;
-        if (listing[i] instanceof HdfsLocatedFileStatus) {
-          // Once we hit lsLimit locations, stop.
-          // This helps to prevent excessively large response payloads.
-          LocatedBlocks blks =
-              ((HdfsLocatedFileStatus) listing[i]).getLocatedBlocks();
-          if (blks != null) {
-            ErasureCodingPolicy ecPolicy = listing[i].getErasureCodingPolicy();
-            if (ecPolicy != null && !ecPolicy.isReplicationPolicy()) {
-              // Approximate #locations with locatedBlockCount() *
-              // internalBlocksNum.
-              locationBudget -= blks.locatedBlockCount() *
-                  (ecPolicy.getNumDataUnits() + ecPolicy.getNumParityUnits());
-            } else {
-              // Approximate #locations with locatedBlockCount() *
-              // replicationFactor.
-              locationBudget -=
-                  blks.locatedBlockCount() * listing[i].getReplication();
-            }
-          }
-        }
+        // Once we hit lsLimit locations, stop.
+        // This helps to prevent excessively large response payloads.
+        locationBudget -= getNumLocations(listing[i]);
       }
       // truncate return array if necessary
       if (listingCnt < numOfListing) {
@@ -293,6 +300,203 @@ class FSDirStatAndListingOp {
     }
   }
 
+  /**
+   * @return the approximate number of block locations in a file status.
+   */
+  private static int getNumLocations(HdfsFileStatus status) {
+    if (!(status instanceof HdfsLocatedFileStatus)) {
+      return 0;
+    }
+    LocatedBlocks blks = ((HdfsLocatedFileStatus) status).getLocatedBlocks();
+    if (blks == null) {
+      return 0;
+    }
+    ErasureCodingPolicy ecPolicy = status.getErasureCodingPolicy();
+    if (ecPolicy != null && !ecPolicy.isReplicationPolicy()) {
+      // Approximate #locations with locatedBlockCount() *
+      // internalBlocksNum.
+      return blks.locatedBlockCount() *
+          (ecPolicy.getNumDataUnits() + ecPolicy.getNumParityUnits());
+    }
+    // Approximate #locations with locatedBlockCount() *
+    // replicationFactor.
+    return blks.locatedBlockCount() * status.getReplication();
+  }
+
+  /**
+   * Get a partial recursive listing of the indicated directory. Entries are
+   * returned in depth-first order, each directory followed by its subtree,
+   * and are named by their path relative to the listed directory.
+   *
+   * The listing continues after the entry named by the cursor. Since the
+   * children of a directory are sorted by name, the position can be found
+   * again without any state kept on the namenode, even if the cursor entry
+   * or its ancestors were deleted in the meantime.
+   *
+   * We will stop when any of the following conditions is met:
+   * 1) recursiveLsLimit entries have been added
+   * 2) needLocation is true AND enough files have been added such
+   * that at least recursiveLsLimit block locations are in the response
+   *
+   * @param fsd FSDirectory
+   * @param pc the permission checker for the subdirectories
+   * @param iip the INodesInPath instance containing all the INodes along the
+   *            path
+   * @param cursor the relative path of the last entry already returned
+   * @param needLocation if block locations are returned
+   * @return a partial listing continuing after cursor
+   */
+  private static RecursiveDirectoryListing getRecursiveListing(
+      FSDirectory fsd, FSPermissionChecker pc, INodesInPath iip,
+      byte[] cursor, boolean needLocation) throws IOException {
+    fsd.readLock();
+    try {
+      final int snapshot = iip.getPathSnapshotId();
+      final INode targetNode = iip.getLastINode();
+      if (targetNode == null) {
+        return null;
+      }
+
+      byte parentStoragePolicy = targetNode.getStoragePolicyID();
+
+      if (!targetNode.isDirectory()) {
+        // return the file's status in the first batch. note that the iip
+        // already includes the target INode
+        final HdfsFileStatus[] listing = cursor.length == 0
+            ? new HdfsFileStatus[]{ createFileStatus(
+                fsd, iip, null, parentStoragePolicy, needLocation, false) }
+            : new HdfsFileStatus[0];
+        return new RecursiveDirectoryListing(listing, false,
+            HdfsFileStatus.EMPTY_NAME);
+      }
+
+      final Deque<ListingFrame> frames = new ArrayDeque<>();
+      ListingFrame frame = new ListingFrame(iip,
+          targetNode.asDirectory().getChildrenList(snapshot),
+          parentStoragePolicy, HdfsFileStatus.EMPTY_NAME);
+      frames.push(frame);
+      if (cursor.length > 0) {
+        // descend along the cursor as long as its directories still exist
+        for (byte[] name :
+            DFSUtil.bytes2byteArray(cursor, (byte) Path.SEPARATOR_CHAR)) {
+          INode child = frame.seekAfter(name);
+          if (child == null || !child.isDirectory()) {
+            break;
+          }
+          frame = descend(fsd, pc, frame, child, snapshot);
+          frames.push(frame);
+        }
+      }
+
+      final int limit = fsd.getRecursiveLsLimit();
+      int locationBudget = limit;
+      final List<HdfsFileStatus> listing = new ArrayList<>();
+      byte[] lastName = cursor;
+      while (!frames.isEmpty() && listing.size() < limit
+          && locationBudget > 0) {
+        frame = frames.peek();
+        if (!frame.hasNext()) {
+          frames.pop();
+          continue;
+        }
+        INode child = frame.next();
+        lastName = frame.getChildPath(child);
+        HdfsFileStatus status = createFileStatus(fsd, frame.iip, child,
+            lastName, frame.getChildStoragePolicy(child), needLocation,
+            false);
+        listing.add(status);
+        locationBudget -= getNumLocations(status);
+        if (child.isDirectory()) {
+          frames.push(descend(fsd, pc, frame, child, snapshot));
+        }
+      }
+      // drop the directories that are already fully listed
+      while (!frames.isEmpty() && !frames.peek().hasNext()) {
+        frames.pop();
+      }
+      return new RecursiveDirectoryListing(
+          listing.toArray(new HdfsFileStatus[listing.size()]),
+          !frames.isEmpty(), lastName);
+    } finally {
+      fsd.readUnlock();
+    }
+  }
+
+  /**
+   * Start listing a subdirectory, checking that it can be listed.
+   */
+  private static ListingFrame descend(FSDirectory fsd, FSPermissionChecker pc,
+      ListingFrame parent, INode child, int snapshot) throws IOException {
+    final INodesInPath childIip =
+        INodesInPath.append(parent.iip, child, child.getLocalNameBytes());
+    if (fsd.isPermissionEnabled()) {
+      fsd.checkPathAccess(pc, childIip, FsAction.READ_EXECUTE);
+    }
+    return new ListingFrame(childIip,
+        child.asDirectory().getChildrenList(snapshot),
+        parent.getChildStoragePolicy(child), parent.getChildPath(child));
+  }
+
+  /**
+   * A directory whose children are being returned by a recursive listing.
+   */
+  private static final class ListingFrame {
+    private final INodesInPath iip;
+    private final ReadOnlyList<INode> children;
+    private final byte storagePolicy;
+    /** The path of the directory relative to the listed directory. */
+    private final byte[] path;
+    private int nextChild = 0;
+
+    ListingFrame(INodesInPath iip, ReadOnlyList<INode> children,
+        byte storagePolicy, byte[] path) {
+      this.iip = iip;
+      this.children = children;
+      this.storagePolicy = storagePolicy;
+      this.path = path;
+    }
+
+    boolean hasNext() {
+      return nextChild < children.size();
+    }
+
+    INode next() {
+      return children.get(nextChild++);
+    }
+
+    /**
+     * Continue the listing after the given name.
+     * @return the child with the given name, or null if there is none
+     */
+    INode seekAfter(byte[] name) {
+      int i = ReadOnlyList.Util.binarySearch(children, name);
+      if (i < 0) {
+        nextChild = -i - 1;
+        return null;
+      }
+      nextChild = i + 1;
+      return children.get(i);
+    }
+
+    byte getChildStoragePolicy(INode child) {
+      return !child.isSymlink()
+          ? getStoragePolicyID(child.getLocalStoragePolicyID(), storagePolicy)
+          : storagePolicy;
+    }
+
+    byte[] getChildPath(INode child) {
+      final byte[] name = child.getLocalNameBytes();
+      if (path.length == 0) {
+        return name;
+      }
+      final byte[] childPath = new byte[path.length + 1 + name.length];
+      System.arraycopy(path, 0, childPath, 0, path.length);
+      childPath[path.length] = (byte) Path.SEPARATOR_CHAR;
+      System.arraycopy(name, 0, childPath, path.length + 1, name.length);
+      return childPath;
+    }
+  }
+
   /**
    * Get a listing of all the snapshots of a snapshottable directory
    */
@@ -411,13 +615,23 @@ class FSDirStatAndListingOp {
   private static HdfsFileStatus createFileStatus(
       FSDirectory fsd, INodesInPath iip, INode child, byte storagePolicy,
       boolean needLocation, boolean needBlockToken) throws IOException {
-    assert fsd.hasReadLock();
     // only directory listing sets the status name.
-    byte[] name = HdfsFileStatus.EMPTY_NAME;
+    return createFileStatus(fsd, iip, child,
+        child != null ? child.getLocalNameBytes() : HdfsFileStatus.EMPTY_NAME,
+        storagePolicy, needLocation, needBlockToken);
+  }
+
+  /**
+   * create a hdfs file status from an iip, with the given status name.
+   */
+  private static HdfsFileStatus createFileStatus(
+      FSDirectory fsd, INodesInPath iip, INode child, byte[] name,
+      byte storagePolicy, boolean needLocation, boolean needBlockToken)
+      throws IOException {
+    assert fsd.hasReadLock();
     if (child != null) {
-      name = child.getLocalNameBytes();
       // have to do this for EC and EZ lookups...
-      iip = INodesInPath.append(iip, child, name);
+      iip = INodesInPath.append(iip, child, child.getLocalNameBytes());
     }
 
     long size = 0;     // length is zero for directories
@@ -528,6 +742,17 @@ class FSDirStatAndListingOp {
         throw new FileNotFoundException("File does not exist: " + iip.getPath());
       }
       else {
+        final DirectoryWithQuotaFeature quota =
+            getContentSummaryCache(fsd, pc, iip);
+        long version = 0;
+        if (quota != null) {
+          ContentSummary cached =
+              quota.getCachedContentSummary(Time.monotonicNow());
+          if (cached != null) {
+            return cached;
+          }
+          version = quota.getContentSummaryVersion();
+        }
         // Make it relinquish locks everytime contentCountLimit entries are
         // processed. 0 means disabled. I.e. blocking for the entire duration.
         ContentSummaryComputationContext cscc =
@@ -536,6 +761,10 @@ class FSDirStatAndListingOp {
         ContentSummary cs = targetNode.computeAndConvertContentSummary(
             iip.getPathSnapshotId(), cscc);
         fsd.addYieldCount(cscc.getYieldCount());
+        if (quota != null) {
+          quota.cacheContentSummary(cs, version,
+              Time.monotonicNow() + fsd.getContentSummaryCacheTtlMs());
+        }
         return cs;
       }
     } finally {
@@ -543,6 +772,27 @@ class FSDirStatAndListingOp {
     }
   }
 
+  /**
+   * @return the quota feature caching the content summary of the target
+   *         directory, or null if its content summary must be computed.
+   *         Only the current state of a directory with quota is cached, and
+   *         only if computing it would not check permissions on the subtree.
+   */
+  private static DirectoryWithQuotaFeature getContentSummaryCache(
+      FSDirectory fsd, FSPermissionChecker pc, INodesInPath iip) {
+    final INode targetNode = iip.getLastINode();
+    if (fsd.getContentSummaryCacheTtlMs() <= 0
+        || !targetNode.isDirectory() || !targetNode.isQuotaSet()
+        || iip.getPathSnapshotId() != Snapshot.CURRENT_STATE_ID) {
+      return null;
+    }
+    if (fsd.isPermissionEnabled() && pc != null
+        && (!pc.isSuperUser() || pc.getAttributesProvider() != null)) {
+      return null;
+    }
+    return targetNode.asDirectory().getDirectoryWithQuotaFeature();
+  }
+
   static QuotaUsage getQuotaUsage(
       FSDirectory fsd, FSPermissionChecker pc, String src) throws IOException {
     final INodesInPath iip;
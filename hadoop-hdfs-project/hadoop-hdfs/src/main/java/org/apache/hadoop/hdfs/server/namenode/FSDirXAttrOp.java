@@ -203,6 +203,7 @@ public class FSDirXAttrOp {
       throws IOException {
     assert fsd.hasWriteLock();
     INode inode = FSDirectory.resolveLastINode(iip);
+    fsd.invalidateContentSummaries(iip);
     int snapshotId = iip.getLatestSnapshotId();
     List<XAttr> existingXAttrs = XAttrStorage.readINodeXAttrs(inode);
     List<XAttr> removedXAttrs = Lists.newArrayListWithCapacity(toRemove.size());
@@ -272,6 +273,7 @@ public class FSDirXAttrOp {
       throws IOException {
     assert fsd.hasWriteLock();
     INode inode = FSDirectory.resolveLastINode(iip);
+    fsd.invalidateContentSummaries(iip);
     List<XAttr> existingXAttrs = XAttrStorage.readINodeXAttrs(inode);
     List<XAttr> newXAttrs = setINodeXAttrs(fsd, existingXAttrs, xAttrs, flag);
     final boolean isFile = inode.isFile();
@@ -159,9 +159,18 @@ public class FSDirectory implements Closeable {
   private final int maxComponentLength;
   private final int maxDirItems;
   private final int lsLimit;  // max list limit
+  private final int recursiveLsLimit;
   private final int contentCountLimit; // max content summary counts per run
   private final long contentSleepMicroSec;
+  private final long contentSummaryCacheTtlMs;
   private final INodeMap inodeMap; // Synchronized by dirLock
+  /**
+   * Guards the state shared by concurrent partition writers, i.e. the inode
+   * map and the quota counts of directories above the partition roots.
+   * Holders of the global lock never need it since they exclude partition
+   * writers.
+   */
+  private final Object partitionSharedLock = new Object();
   private long yieldCount = 0; // keep track of lock yield count.
   private int quotaInitThreads;
 
@@ -185,6 +194,8 @@ public class FSDirectory implements Closeable {
   private final boolean aclsEnabled;
   /** Threshold to print a warning. */
   private final long accessControlEnforcerReportingThresholdMs;
+  /** The directories each user may traverse, null if disabled. */
+  private final TraversePermissionCache traversePermissionCache;
   /**
    * Support for POSIX ACL inheritance. Not final for testing purpose.
    */
@@ -269,15 +280,27 @@ public class FSDirectory implements Closeable {
   }
 
   void writeLock() {
-    assert namesystem.hasWriteLock() : "Should hold namesystem write lock";
+    assert hasWriteLock() : "Should hold namesystem write lock";
   }
 
   void writeUnlock() {
-    assert namesystem.hasWriteLock() : "Should hold namesystem write lock";
+    assert hasWriteLock() : "Should hold namesystem write lock";
   }
 
+  /**
+   * @return true if the current thread holds either the global write lock or
+   *         the write lock of the partition it is modifying.
+   */
   boolean hasWriteLock() {
-    return namesystem.hasWriteLock();
+    return namesystem.hasWriteLock() || namesystem.hasPartitionWriteLock();
+  }
+
+  /**
+   * @return true if the current thread holds either the global write lock or
+   *         the write lock of the partition owning src.
+   */
+  boolean hasWriteLock(String src) {
+    return namesystem.hasWriteLock(src);
   }
 
   boolean hasReadLock() {
@@ -321,7 +344,9 @@ public class FSDirectory implements Closeable {
   FSDirectory(FSNamesystem ns, Configuration conf) throws IOException {
     this.inodeId = new INodeId();
     rootDir = createRoot(ns);
-    inodeMap = INodeMap.newInstance(rootDir);
+    inodeMap = INodeMap.newInstance(rootDir, conf.getFloat(
+        DFSConfigKeys.DFS_NAMENODE_INODE_MAP_ALLOCATION_PERCENT,
+        DFSConfigKeys.DFS_NAMENODE_INODE_MAP_ALLOCATION_PERCENT_DEFAULT));
     this.isPermissionEnabled = conf.getBoolean(
       DFSConfigKeys.DFS_PERMISSIONS_ENABLED_KEY,
       DFSConfigKeys.DFS_PERMISSIONS_ENABLED_DEFAULT);
@@ -369,12 +394,21 @@ public class FSDirectory implements Closeable {
         DFSConfigKeys.DFS_LIST_LIMIT, DFSConfigKeys.DFS_LIST_LIMIT_DEFAULT);
     this.lsLimit = configuredLimit>0 ?
         configuredLimit : DFSConfigKeys.DFS_LIST_LIMIT_DEFAULT;
+    int configuredRecursiveLimit = conf.getInt(
+        DFSConfigKeys.DFS_NAMENODE_RECURSIVE_LISTING_LIMIT,
+        DFSConfigKeys.DFS_NAMENODE_RECURSIVE_LISTING_LIMIT_DEFAULT);
+    this.recursiveLsLimit = configuredRecursiveLimit > 0 ?
+        configuredRecursiveLimit :
+        DFSConfigKeys.DFS_NAMENODE_RECURSIVE_LISTING_LIMIT_DEFAULT;
     this.contentCountLimit = conf.getInt(
         DFSConfigKeys.DFS_CONTENT_SUMMARY_LIMIT_KEY,
         DFSConfigKeys.DFS_CONTENT_SUMMARY_LIMIT_DEFAULT);
     this.contentSleepMicroSec = conf.getLong(
         DFSConfigKeys.DFS_CONTENT_SUMMARY_SLEEP_MICROSEC_KEY,
         DFSConfigKeys.DFS_CONTENT_SUMMARY_SLEEP_MICROSEC_DEFAULT);
+    this.contentSummaryCacheTtlMs = conf.getLong(
+        DFSConfigKeys.DFS_CONTENT_SUMMARY_CACHE_TTL_MS_KEY,
+        DFSConfigKeys.DFS_CONTENT_SUMMARY_CACHE_TTL_MS_DEFAULT);
     
     // filesystem limits
     this.maxComponentLength = (int) conf.getLongBytes(
@@ -395,6 +429,14 @@ public class FSDirectory implements Closeable {
     this.accessControlEnforcerReportingThresholdMs = conf.getLong(
         DFS_NAMENODE_ACCESS_CONTROL_ENFORCER_REPORTING_THRESHOLD_MS_KEY,
         DFS_NAMENODE_ACCESS_CONTROL_ENFORCER_REPORTING_THRESHOLD_MS_DEFAULT);
+    final int traverseCacheUsers = conf.getInt(
+        DFSConfigKeys.DFS_NAMENODE_TRAVERSE_PERMISSION_CACHE_USERS_KEY,
+        DFSConfigKeys.DFS_NAMENODE_TRAVERSE_PERMISSION_CACHE_USERS_DEFAULT);
+    this.traversePermissionCache = traverseCacheUsers <= 0 ? null
+        : new TraversePermissionCache(traverseCacheUsers, conf.getInt(
+            DFSConfigKeys.DFS_NAMENODE_TRAVERSE_PERMISSION_CACHE_DIRECTORIES_KEY,
+            DFSConfigKeys
+                .DFS_NAMENODE_TRAVERSE_PERMISSION_CACHE_DIRECTORIES_DEFAULT));
 
     Preconditions.checkArgument(this.inodeXAttrsLimit >= 0,
         "Cannot set a negative limit on the number of xattrs per inode (%s).",
@@ -642,6 +684,10 @@ public class FSDirectory implements Closeable {
     return lsLimit;
   }
 
+  int getRecursiveLsLimit() {
+    return recursiveLsLimit;
+  }
+
   int getContentCountLimit() {
     return contentCountLimit;
   }
@@ -650,6 +696,31 @@ public class FSDirectory implements Closeable {
     return contentSleepMicroSec;
   }
 
+  long getContentSummaryCacheTtlMs() {
+    return contentSummaryCacheTtlMs;
+  }
+
+  /**
+   * Drop the cached content summaries of the directories with quota in the
+   * given path. Used for changes to a content summary that are not reflected
+   * in the quota usage of the directories.
+   */
+  public void invalidateContentSummaries(INodesInPath iip) {
+    if (contentSummaryCacheTtlMs <= 0) {
+      return;
+    }
+    for (int i = 0; i < iip.length(); i++) {
+      INode inode = iip.getINode(i);
+      if (inode != null && inode.isDirectory()) {
+        DirectoryWithQuotaFeature q =
+            inode.asDirectory().getDirectoryWithQuotaFeature();
+        if (q != null) {
+          q.invalidateContentSummary();
+        }
+      }
+    }
+  }
+
   int getInodeXAttrsLimit() {
     return inodeXAttrsLimit;
   }
@@ -1065,6 +1136,16 @@ public class FSDirectory implements Closeable {
     if (numOfINodes > iip.length()) {
       numOfINodes = iip.length();
     }
+    if (namesystem.hasPartitionWriteLock()) {
+      // ancestors above the partition root are shared with other partitions
+      synchronized (partitionSharedLock) {
+        if (checkQuota && !skipQuotaCheck) {
+          verifyQuota(iip, numOfINodes, counts, null);
+        }
+        unprotectedUpdateCount(iip, numOfINodes, counts);
+      }
+      return;
+    }
     if (checkQuota && !skipQuotaCheck) {
       verifyQuota(iip, numOfINodes, counts, null);
     }
@@ -1112,6 +1193,8 @@ public class FSDirectory implements Closeable {
     INodesInPath iip = inodes != null ? inodes :
         INodesInPath.fromINode(namesystem.getBlockCollection(completeBlk));
     INodeFile fileINode = iip.getLastINode().asFile();
+    // the length of the file changes even if the space consumed does not
+    invalidateContentSummaries(iip);
     // Adjust disk space consumption if required
     final long diff;
     final short replicationFactor;
@@ -1493,7 +1576,13 @@ public class FSDirectory implements Closeable {
    */
   public final void addToInodeMap(INode inode) {
     if (inode instanceof INodeWithAdditionalFields) {
-      inodeMap.put(inode);
+      if (namesystem.hasPartitionWriteLock()) {
+        synchronized (partitionSharedLock) {
+          inodeMap.put(inode);
+        }
+      } else {
+        inodeMap.put(inode);
+      }
       if (!inode.isSymlink()) {
         final XAttrFeature xaf = inode.getXAttrFeature();
         addEncryptionZone((INodeWithAdditionalFields) inode, xaf);
@@ -1575,6 +1664,11 @@ public class FSDirectory implements Closeable {
    * @return The inode associated with the given id
    */
   public INode getInode(long id) {
+    if (namesystem.hasPartitionWriteLock()) {
+      synchronized (partitionSharedLock) {
+        return inodeMap.get(id);
+      }
+    }
     return inodeMap.get(id);
   }
   
@@ -1598,6 +1692,10 @@ public class FSDirectory implements Closeable {
       addToInodeMap(rootDir);
       nameCache.reset();
       inodeId.setCurrentValue(INodeId.LAST_RESERVED_ID);
+      // inode ids are reused by the reloaded namespace
+      if (traversePermissionCache != null) {
+        traversePermissionCache.invalidate();
+      }
     } finally {
       writeUnlock();
     }
@@ -1854,6 +1952,19 @@ public class FSDirectory implements Closeable {
     return getINode(src, DirOp.WRITE);
   }
 
+  /**
+   * Check whether src resolves to an existing directory without following a
+   * symlink in any of its components.
+   */
+  boolean isDirectory(String src) {
+    try {
+      final INode inode = getINode(src, DirOp.READ_LINK);
+      return inode != null && inode.isDirectory();
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
   /**
    * Get {@link INode} associated with the file / directory.
    */
@@ -1878,7 +1989,19 @@ public class FSDirectory implements Closeable {
     return new FSPermissionChecker(
         fsOwner, superGroup, ugi, getUserFilteredAttributeProvider(ugi),
         useAuthorizationWithContextAPI,
-        accessControlEnforcerReportingThresholdMs);
+        accessControlEnforcerReportingThresholdMs, traversePermissionCache);
+  }
+
+  /**
+   * Drop the cached traverse permissions of the given inode if its owner,
+   * group, permission or ACL changed. Only directories are traversed, so
+   * changes of files do not affect the cache.
+   */
+  void invalidateTraversePermissions(INode inode) {
+    assert hasWriteLock();
+    if (traversePermissionCache != null && inode.isDirectory()) {
+      traversePermissionCache.invalidate(inode.getId());
+    }
   }
 
   void checkOwner(FSPermissionChecker pc, INodesInPath iip)
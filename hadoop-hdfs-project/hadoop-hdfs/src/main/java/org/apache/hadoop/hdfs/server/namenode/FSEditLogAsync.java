@@ -25,6 +25,7 @@ import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -57,6 +58,12 @@ class FSEditLogAsync extends FSEditLog implements Runnable {
 
   private long lastFull = 0;
 
+  // upper bound on delaying a sync to let more edits join the batch.
+  private final long groupCommitMaxWaitNanos;
+  // only accessed by syncing thread.
+  private long lastSyncNanos = 0;
+  private long batchStartNanos = 0;
+
   FSEditLogAsync(Configuration conf, NNStorage storage, List<URI> editsDirs) {
     super(conf, storage, editsDirs);
     // op instances cannot be shared due to queuing for background thread.
@@ -67,6 +74,10 @@ class FSEditLogAsync extends FSEditLog implements Runnable {
             DFS_NAMENODE_EDITS_ASYNC_LOGGING_PENDING_QUEUE_SIZE_DEFAULT);
 
     editPendingQ = new ArrayBlockingQueue<>(editPendingQSize);
+    groupCommitMaxWaitNanos = TimeUnit.MILLISECONDS.toNanos(conf.getLong(
+        DFSConfigKeys.DFS_NAMENODE_EDITS_ASYNC_LOGGING_GROUP_COMMIT_MAX_WAIT_MS,
+        DFSConfigKeys.
+            DFS_NAMENODE_EDITS_ASYNC_LOGGING_GROUP_COMMIT_MAX_WAIT_MS_DEFAULT));
   }
 
   private boolean isSyncThreadAlive() {
@@ -238,7 +249,31 @@ class FSEditLogAsync extends FSEditLog implements Runnable {
 
   private Edit dequeueEdit() throws InterruptedException {
     // only block for next edit if no pending syncs.
-    return syncWaitQ.isEmpty() ? editPendingQ.take() : editPendingQ.poll();
+    if (syncWaitQ.isEmpty()) {
+      return editPendingQ.take();
+    }
+    Edit edit = editPendingQ.poll();
+    if (edit == null && groupCommitMaxWaitNanos > 0) {
+      edit = waitForGroupCommit();
+    }
+    return edit;
+  }
+
+  // the queue ran dry with edits pending a sync.  a sync costs about as much
+  // as the last one, so briefly wait for more edits to share it.  the wait
+  // for a batch is bounded by the last sync duration and the configured max,
+  // so an idle or fast log is not delayed.
+  private Edit waitForGroupCommit() throws InterruptedException {
+    long budget = Math.min(groupCommitMaxWaitNanos, lastSyncNanos);
+    long remaining = budget - (Time.monotonicNowNanos() - batchStartNanos);
+    if (remaining <= 0) {
+      return null;
+    }
+    long start = Time.monotonicNowNanos();
+    Edit edit = editPendingQ.poll(remaining, TimeUnit.NANOSECONDS);
+    NameNode.getNameNodeMetrics().addGroupCommitWait(
+        TimeUnit.NANOSECONDS.toMillis(Time.monotonicNowNanos() - start));
+    return edit;
   }
 
   @Override
@@ -251,6 +286,9 @@ class FSEditLogAsync extends FSEditLog implements Runnable {
         if (edit != null) {
           // sync if requested by edit log.
           doSync = edit.logEdit();
+          if (syncWaitQ.isEmpty()) {
+            batchStartNanos = Time.monotonicNowNanos();
+          }
           syncWaitQ.add(edit);
           metrics.setPendingEditsCount(editPendingQ.size() + 1);
         } else {
@@ -262,11 +300,13 @@ class FSEditLogAsync extends FSEditLog implements Runnable {
           // normally edit log exceptions cause the NN to terminate, but tests
           // relying on ExitUtil.terminate need to see the exception.
           RuntimeException syncEx = null;
+          long syncStart = Time.monotonicNowNanos();
           try {
             logSync(getLastWrittenTxId());
           } catch (RuntimeException ex) {
             syncEx = ex;
           }
+          lastSyncNanos = Time.monotonicNowNanos() - syncStart;
           while ((edit = syncWaitQ.poll()) != null) {
             edit.logSyncNotify(syncEx);
           }
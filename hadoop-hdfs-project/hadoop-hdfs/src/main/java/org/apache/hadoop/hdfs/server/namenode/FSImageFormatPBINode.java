@@ -18,17 +18,21 @@
 
 package org.apache.hadoop.hdfs.server.namenode;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -423,6 +427,8 @@ public final class FSImageFormatPBINode {
       CountDownLatch latch = new CountDownLatch(sections.size());
       AtomicInteger totalLoaded = new AtomicInteger(0);
       final List<IOException> exceptions = Collections.synchronizedList(new ArrayList<>());
+      final Counter counter = prog.getCounter(Phase.LOADING_FSIMAGE,
+          currentStep);
 
       for (int i=0; i < sections.size(); i++) {
         FileSummary.Section s = sections.get(i);
@@ -433,9 +439,9 @@ public final class FSImageFormatPBINode {
         }
         service.submit(() -> {
           try {
-            totalLoaded.addAndGet(loadINodesInSection(ins, null));
-            prog.setCount(Phase.LOADING_FSIMAGE, currentStep,
-                totalLoaded.get());
+            // The counter is atomic, so the sub-sections can share it and
+            // report progress as each inode is loaded.
+            totalLoaded.addAndGet(loadINodesInSection(ins, counter));
           } catch (Exception e) {
             LOG.error("An exception occurred loading INodes in parallel", e);
             exceptions.add(new IOException(e));
@@ -805,6 +811,12 @@ public final class FSImageFormatPBINode {
       INodeSection s = b.build();
       s.writeDelimitedTo(out);
 
+      ExecutorService service = parent.getParallelExecutor();
+      if (service != null) {
+        serializeINodeSubSectionsInParallel(out, service);
+        return;
+      }
+
       int i = 0;
       Iterator<INodeWithAdditionalFields> iter = inodesMap.getMapIterator();
       while (iter.hasNext()) {
@@ -824,6 +836,77 @@ public final class FSImageFormatPBINode {
           FSImageFormatProtobuf.SectionName.INODE_SUB);
     }
 
+    /**
+     * Serialize the inodes of each INODE_SUB sub-section on the given
+     * executor, and write the results to the image in iteration order. The
+     * resulting image is identical to one written by a single thread.
+     */
+    private void serializeINodeSubSectionsInParallel(OutputStream out,
+        ExecutorService service) throws IOException {
+      final int inodesPerSubSection = parent.getInodesPerSubSection();
+      final int maxPending = parent.getMaxPendingSubSections();
+      final ArrayDeque<Future<byte[]>> pending = new ArrayDeque<>();
+      try {
+        int i = 0;
+        ArrayList<INode> batch = new ArrayList<>();
+        Iterator<INodeWithAdditionalFields> iter =
+            fsn.dir.getINodeMap().getMapIterator();
+        while (iter.hasNext()) {
+          batch.add(iter.next());
+          ++i;
+          if (i % FSImageFormatProtobuf.Saver.CHECK_CANCEL_INTERVAL == 0) {
+            context.checkCancelled();
+          }
+          if (batch.size() == inodesPerSubSection) {
+            pending.add(submitINodeSubSection(service, batch));
+            batch = new ArrayList<>();
+            if (pending.size() >= maxPending) {
+              writeINodeSubSection(out, pending.poll());
+            }
+          }
+        }
+        if (!batch.isEmpty()) {
+          pending.add(submitINodeSubSection(service, batch));
+        }
+        while (!pending.isEmpty()) {
+          writeINodeSubSection(out, pending.poll());
+        }
+      } finally {
+        for (Future<byte[]> f : pending) {
+          f.cancel(true);
+        }
+      }
+      parent.commitSectionAndSubSection(summary,
+          FSImageFormatProtobuf.SectionName.INODE,
+          FSImageFormatProtobuf.SectionName.INODE_SUB);
+    }
+
+    private Future<byte[]> submitINodeSubSection(ExecutorService service,
+        final ArrayList<INode> inodes) {
+      return service.submit(() -> {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        for (INode n : inodes) {
+          save(buf, n);
+        }
+        return buf.toByteArray();
+      });
+    }
+
+    private void writeINodeSubSection(OutputStream out, Future<byte[]> f)
+        throws IOException {
+      try {
+        out.write(f.get());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted serializing INode sub-section", e);
+      } catch (ExecutionException e) {
+        throw new IOException("Failed to serialize INode sub-section",
+            e.getCause());
+      }
+      parent.commitSubSection(summary,
+          FSImageFormatProtobuf.SectionName.INODE_SUB);
+    }
+
     void serializeFilesUCSection(OutputStream out) throws IOException {
       Collection<Long> filesWithUC = fsn.getLeaseManager()
               .getINodeIdWithLeases();
@@ -340,14 +340,7 @@ public final class FSImageFormatProtobuf {
      * @return ExecutorServie with the correct number of threads
      */
     private ExecutorService getParallelExecutorService() {
-      int threads = conf.getInt(DFSConfigKeys.DFS_IMAGE_PARALLEL_THREADS_KEY,
-          DFSConfigKeys.DFS_IMAGE_PARALLEL_THREADS_DEFAULT);
-      if (threads < 1) {
-        LOG.warn("Parallel is enabled and {} is set to {}. Setting to the " +
-            "default value {}", DFSConfigKeys.DFS_IMAGE_PARALLEL_THREADS_KEY,
-            threads, DFSConfigKeys.DFS_IMAGE_PARALLEL_THREADS_DEFAULT);
-        threads = DFSConfigKeys.DFS_IMAGE_PARALLEL_THREADS_DEFAULT;
-      }
+      int threads = getParallelThreads(conf);
       ExecutorService executorService = Executors.newFixedThreadPool(
           threads);
       LOG.info("The fsimage will be loaded in parallel using {} threads",
@@ -599,6 +592,22 @@ public final class FSImageFormatProtobuf {
     return loadInParallel;
   }
 
+  /**
+   * @return the number of threads to use for parallel image loading and
+   *         saving. If it is set to less than 1, the default is returned.
+   */
+  private static int getParallelThreads(Configuration conf) {
+    int threads = conf.getInt(DFSConfigKeys.DFS_IMAGE_PARALLEL_THREADS_KEY,
+        DFSConfigKeys.DFS_IMAGE_PARALLEL_THREADS_DEFAULT);
+    if (threads < 1) {
+      LOG.warn("Parallel is enabled and {} is set to {}. Setting to the " +
+          "default value {}", DFSConfigKeys.DFS_IMAGE_PARALLEL_THREADS_KEY,
+          threads, DFSConfigKeys.DFS_IMAGE_PARALLEL_THREADS_DEFAULT);
+      threads = DFSConfigKeys.DFS_IMAGE_PARALLEL_THREADS_DEFAULT;
+    }
+    return threads;
+  }
+
   public static void initParallelLoad(Configuration conf) {
     enableParallelLoad =
         conf.getBoolean(DFSConfigKeys.DFS_IMAGE_PARALLEL_LOAD_KEY,
@@ -617,6 +626,8 @@ public final class FSImageFormatProtobuf {
     public static final int CHECK_CANCEL_INTERVAL = 4096;
     private boolean writeSubSections = false;
     private int inodesPerSubSection = Integer.MAX_VALUE;
+    // Serializes sub-sections concurrently, null if saving in serial.
+    private ExecutorService parallelExecutor;
 
     private final SaveNamespaceContext context;
     private final SaverContext saverContext;
@@ -653,6 +664,22 @@ public final class FSImageFormatProtobuf {
       return inodesPerSubSection;
     }
 
+    /**
+     * @return the executor used to serialize sub-sections in parallel, or
+     *         null if the image is saved by a single thread.
+     */
+    public ExecutorService getParallelExecutor() {
+      return parallelExecutor;
+    }
+
+    /**
+     * @return the maximum number of serialized sub-sections that may be
+     *         buffered in memory waiting to be written to the image.
+     */
+    public int getMaxPendingSubSections() {
+      return 2 * getParallelThreads(conf);
+    }
+
     /**
      * Commit the length and offset of a fsimage section to the summary index,
      * including the sub section, which will be committed before the section is
@@ -738,6 +765,10 @@ public final class FSImageFormatProtobuf {
             (numErrors > 0 ? (" with" + numErrors + " errors") : ""));
         return numErrors;
       } finally {
+        if (parallelExecutor != null) {
+          parallelExecutor.shutdownNow();
+          parallelExecutor = null;
+        }
         fout.close();
       }
     }
@@ -777,6 +808,12 @@ public final class FSImageFormatProtobuf {
           // Calculate the inodes per section rounded up to the nearest int
           inodesPerSubSection = (inodeCount + targetSections - 1) /
               targetSections;
+          int threads = getParallelThreads(conf);
+          if (threads > 1) {
+            parallelExecutor = Executors.newFixedThreadPool(threads);
+            LOG.info("The fsimage sub-sections will be serialized in " +
+                "parallel using {} threads", threads);
+          }
         }
       } else {
         writeSubSections = false;
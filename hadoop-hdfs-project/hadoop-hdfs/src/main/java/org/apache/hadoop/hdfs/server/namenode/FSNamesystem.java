@@ -245,6 +245,7 @@ import org.apache.hadoop.hdfs.protocol.LastBlockWithStatus;
 import org.apache.hadoop.hdfs.protocol.LocatedBlock;
 import org.apache.hadoop.hdfs.protocol.LocatedBlocks;
 import org.apache.hadoop.hdfs.protocol.RecoveryInProgressException;
+import org.apache.hadoop.hdfs.protocol.RecursiveDirectoryListing;
 import org.apache.hadoop.hdfs.protocol.RollingUpgradeException;
 import org.apache.hadoop.hdfs.protocol.RollingUpgradeInfo;
 import org.apache.hadoop.hdfs.protocol.SnapshotAccessControlException;
@@ -1082,7 +1083,9 @@ public class FSNamesystem implements Namesystem, FSNamesystemMBean,
   private static void checkForAsyncLogEnabledByOldConfigs(Configuration conf) {
     // dfs.namenode.audit.log.async is no longer in use. Use log4j properties instead.
     if (conf.getBoolean("dfs.namenode.audit.log.async", false)) {
-      LOG.warn("Use log4j properties to enable async log for audit logs. "
+      LOG.warn("Use log4j properties or "
+          + DFSConfigKeys.DFS_NAMENODE_AUDIT_LOG_QUEUE_SIZE_KEY
+          + " to enable async log for audit logs. "
           + "dfs.namenode.audit.log.async is no longer in use.");
     }
   }
@@ -1838,10 +1841,114 @@ public class FSNamesystem implements Namesystem, FSNamesystemMBean,
     this.fsLock.writeUnlock(opName, lockReportInfoSupplier);
   }
 
+  /**
+   * Acquire the lock protecting a create or mkdirs of src. If partitioned
+   * locking is enabled and the partition root of src is an existing
+   * directory, only that partition is locked exclusively; otherwise the
+   * global write lock is taken.
+   *
+   * @param src the path being written
+   * @return the locked partition, or {@link FSNamesystemLock#GLOBAL_PARTITION}
+   *         if the global write lock is held
+   */
+  int writeLockForPath(String src) {
+    final String partitionRoot = fsLock.getPartitionRoot(src);
+    if (partitionRoot != null) {
+      final int partition = fsLock.getPartition(partitionRoot);
+      fsLock.writeLockPartition(partition);
+      // A partition root is only created or removed under the global write
+      // lock, so it can not change while the partition lock is held.
+      if (dir.isDirectory(partitionRoot)) {
+        return partition;
+      }
+      fsLock.writeUnlockPartition(partition, FSNamesystemLock.OP_NAME_OTHER);
+    }
+    writeLock();
+    return FSNamesystemLock.GLOBAL_PARTITION;
+  }
+
+  /**
+   * Release a lock acquired by {@link #writeLockForPath(String)}.
+   */
+  void writeUnlockForPath(int partition, String opName,
+      Supplier<String> lockReportInfoSupplier) {
+    if (partition == FSNamesystemLock.GLOBAL_PARTITION) {
+      writeUnlock(opName, lockReportInfoSupplier);
+    } else {
+      fsLock.writeUnlockPartition(partition, opName);
+    }
+  }
+
+  /**
+   * Acquire the lock protecting a read of src. If partitioned locking is
+   * enabled and src lies strictly below a partition root, only that partition
+   * is locked in shared mode; otherwise the read lock of all partitions is
+   * taken. The read must not touch inodes outside of the partition.
+   *
+   * @param src the path being read
+   * @return the locked partition, or {@link FSNamesystemLock#GLOBAL_PARTITION}
+   *         if the global read lock is held
+   */
+  int readLockForPath(String src) {
+    final String partitionRoot = fsLock.getPartitionRoot(src);
+    if (partitionRoot == null) {
+      readLock();
+      return FSNamesystemLock.GLOBAL_PARTITION;
+    }
+    final int partition = fsLock.getPartition(partitionRoot);
+    fsLock.readLockPartition(partition);
+    return partition;
+  }
+
+  /**
+   * Release a lock acquired by {@link #readLockForPath(String)}.
+   */
+  void readUnlockForPath(int partition, String opName,
+      Supplier<String> lockReportInfoSupplier) {
+    if (partition == FSNamesystemLock.GLOBAL_PARTITION) {
+      readUnlock(opName, lockReportInfoSupplier);
+    } else {
+      fsLock.readUnlockPartition(partition, opName, lockReportInfoSupplier);
+    }
+  }
+
+  /**
+   * Trade a partition lock acquired by {@link #writeLockForPath(String)} for
+   * the global write lock, for operations which turn out to touch state
+   * outside of the partition. Callers must re-resolve their paths since the
+   * namespace may change while no lock is held.
+   *
+   * @return {@link FSNamesystemLock#GLOBAL_PARTITION}
+   */
+  int escalateToGlobalWriteLock(int partition, String opName) {
+    if (partition != FSNamesystemLock.GLOBAL_PARTITION) {
+      fsLock.writeUnlockPartition(partition, opName);
+      writeLock();
+    }
+    return FSNamesystemLock.GLOBAL_PARTITION;
+  }
+
   @Override
   public boolean hasWriteLock() {
     return this.fsLock.isWriteLockedByCurrentThread();
   }
+
+  /**
+   * @return true if the current thread holds a partition write lock.
+   */
+  public boolean hasPartitionWriteLock() {
+    return this.fsLock.isPartitionWriteLockedByCurrentThread();
+  }
+
+  /**
+   * @param src absolute path of an inode
+   * @return true if the current thread holds the global write lock or the
+   *         write lock of the partition owning src.
+   */
+  public boolean hasWriteLock(String src) {
+    return hasWriteLock() ||
+        this.fsLock.isPartitionWriteLockedByCurrentThread(src);
+  }
   @Override
   public boolean hasReadLock() {
     return this.fsLock.getReadHoldCount() > 0 || hasWriteLock();
@@ -1919,6 +2026,18 @@ public class FSNamesystem implements Namesystem, FSNamesystemMBean,
       } finally {
         IOUtils.cleanupWithLogger(LOG, dir);
         IOUtils.cleanupWithLogger(LOG, fsImage);
+        closeAuditLoggers();
+      }
+    }
+  }
+
+  private void closeAuditLoggers() {
+    if (auditLoggers == null) {
+      return;
+    }
+    for (AuditLogger logger : auditLoggers) {
+      if (logger instanceof FSNamesystemAuditLogger) {
+        ((FSNamesystemAuditLogger) logger).close();
       }
     }
   }
@@ -2762,13 +2881,30 @@ public class FSNamesystem implements Namesystem, FSNamesystemMBean,
     checkOperation(OperationCategory.WRITE);
     final FSPermissionChecker pc = getPermissionChecker();
     FSPermissionChecker.setOperationType(null);
-    writeLock();
+    // Overwrites delete blocks and encryption zones drop the lock to
+    // generate keys, so neither can run under a partition lock.
+    int partition = FSNamesystemLock.GLOBAL_PARTITION;
+    if (provider == null && !flag.contains(CreateFlag.OVERWRITE)) {
+      partition = writeLockForPath(src);
+    } else {
+      writeLock();
+    }
     try {
       checkOperation(OperationCategory.WRITE);
       checkNameNodeSafeMode("Cannot create file" + src);
 
       iip = FSDirWriteFileOp.resolvePathForStartFile(
           dir, pc, src, flag, createParent);
+      if (partition != FSNamesystemLock.GLOBAL_PARTITION &&
+          iip.getLastINode() != null) {
+        // Creating over an existing file may recover its lease, which
+        // updates block state outside of the partition.
+        partition = escalateToGlobalWriteLock(partition, "create");
+        checkOperation(OperationCategory.WRITE);
+        checkNameNodeSafeMode("Cannot create file" + src);
+        iip = FSDirWriteFileOp.resolvePathForStartFile(
+            dir, pc, src, flag, createParent);
+      }
 
       if (blockSize < minBlockSize) {
         throw new IOException("Specified block size " + blockSize +
@@ -2824,7 +2960,8 @@ public class FSNamesystem implements Namesystem, FSNamesystemMBean,
         dir.writeUnlock();
       }
     } finally {
-      writeUnlock("create", getLockReportInfoSupplier(src, null, stat));
+      writeUnlockForPath(partition, "create",
+          getLockReportInfoSupplier(src, null, stat));
       // There might be transactions logged while trying to recover the lease.
       // They need to be sync'ed even when an exception was thrown.
       if (!skipSync) {
@@ -3463,13 +3600,14 @@ public class FSNamesystem implements Namesystem, FSNamesystemMBean,
     final FSPermissionChecker pc = getPermissionChecker();
     FSPermissionChecker.setOperationType(operationName);
     try {
-      readLock();
+      final int partition = readLockForPath(src);
       try {
         checkOperation(OperationCategory.READ);
         stat = FSDirStatAndListingOp.getFileInfo(
             dir, pc, src, resolveLink, needLocation, needBlockToken);
       } finally {
-        readUnlock(operationName, getLockReportInfoSupplier(src));
+        readUnlockForPath(partition, operationName,
+            getLockReportInfoSupplier(src));
       }
     } catch (AccessControlException e) {
       logAuditEvent(false, operationName, src);
@@ -3493,12 +3631,13 @@ public class FSNamesystem implements Namesystem, FSNamesystemMBean,
     FSPermissionChecker.setOperationType(operationName);
     boolean success = false;
     try {
-      readLock();
+      final int partition = readLockForPath(src);
       try {
         checkOperation(OperationCategory.READ);
         success = FSDirStatAndListingOp.isFileClosed(dir, pc, src);
       } finally {
-        readUnlock(operationName, getLockReportInfoSupplier(src));
+        readUnlockForPath(partition, operationName,
+            getLockReportInfoSupplier(src));
       }
     } catch (AccessControlException e) {
       logAuditEvent(false, operationName, src);
@@ -3521,14 +3660,14 @@ public class FSNamesystem implements Namesystem, FSNamesystemMBean,
     final FSPermissionChecker pc = getPermissionChecker();
     FSPermissionChecker.setOperationType(operationName);
     try {
-      writeLock();
+      final int partition = writeLockForPath(src);
       try {
         checkOperation(OperationCategory.WRITE);
         checkNameNodeSafeMode("Cannot create directory " + src);
         auditStat = FSDirMkdirOp.mkdirs(this, pc, src, permissions,
             createParent);
       } finally {
-        writeUnlock(operationName,
+        writeUnlockForPath(partition, operationName,
             getLockReportInfoSupplier(src, null, auditStat));
       }
     } catch (AccessControlException e) {
@@ -3677,6 +3816,7 @@ public class FSNamesystem implements Namesystem, FSNamesystemMBean,
       if (lastBlockLength > 0) {
         pendingFile.getFileUnderConstructionFeature().updateLengthOfLastBlock(
             pendingFile, lastBlockLength);
+        dir.invalidateContentSummaries(iip);
       }
       FSDirWriteFileOp.persistBlocks(dir, src, pendingFile, false);
     } finally {
@@ -4173,10 +4313,54 @@ public class FSNamesystem implements Namesystem, FSNamesystemMBean,
     final FSPermissionChecker pc = getPermissionChecker();
     FSPermissionChecker.setOperationType(operationName);
     try {
-      readLock();
+      final int partition = readLockForPath(src);
       try {
         checkOperation(NameNode.OperationCategory.READ);
         dl = getListingInt(dir, pc, src, startAfter, needLocation);
+      } finally {
+        readUnlockForPath(partition, operationName,
+            getLockReportInfoSupplier(src));
+      }
+    } catch (AccessControlException e) {
+      logAuditEvent(false, operationName, src);
+      throw e;
+    }
+    if (dl != null && needLocation && isObserver()) {
+      for (HdfsFileStatus fs : dl.getPartialListing()) {
+        if (fs instanceof HdfsLocatedFileStatus) {
+          LocatedBlocks lbs = ((HdfsLocatedFileStatus) fs).getLocatedBlocks();
+          checkBlockLocationsWhenObserver(lbs, fs.toString());
+        }
+      }
+    }
+    logAuditEvent(true, operationName, src);
+    return dl;
+  }
+
+  /**
+   * Get a partial recursive listing of a directory.
+   *
+   * @param src the directory name
+   * @param cursor the relative path of the last entry already returned
+   * @param needLocation if blockLocations need to be returned
+   * @return a partial listing continuing after cursor
+   *
+   * @throws AccessControlException if access is denied
+   * @throws UnresolvedLinkException if symbolic link is encountered
+   * @throws IOException if other I/O error occurred
+   */
+  RecursiveDirectoryListing getRecursiveListing(String src, byte[] cursor,
+      boolean needLocation) throws IOException {
+    checkOperation(OperationCategory.READ);
+    final String operationName = "listStatus";
+    RecursiveDirectoryListing dl = null;
+    final FSPermissionChecker pc = getPermissionChecker();
+    FSPermissionChecker.setOperationType(operationName);
+    try {
+      readLock();
+      try {
+        checkOperation(NameNode.OperationCategory.READ);
+        dl = getRecursiveListingInt(dir, pc, src, cursor, needLocation);
       } finally {
         readUnlock(operationName, getLockReportInfoSupplier(src));
       }
@@ -4926,6 +5110,31 @@ public class FSNamesystem implements Namesystem, FSNamesystemMBean,
     return fsLock.getNumOfWriteLockLongHold();
   }
 
+  @Metric({"AuditLogQueueSize",
+      "Number of audit events waiting to be written"})
+  public int getAuditLogQueueSize() {
+    int size = 0;
+    for (AuditLogger logger : auditLoggers) {
+      if (logger instanceof FSNamesystemAuditLogger) {
+        size += ((FSNamesystemAuditLogger) logger).getQueueSize();
+      }
+    }
+    return size;
+  }
+
+  @Metric(value = {"AuditLogQueueFullCount", "The number of audit events " +
+          "which waited for room in the audit log queue"},
+          type = Metric.Type.COUNTER)
+  public long getAuditLogQueueFullCount() {
+    long count = 0;
+    for (AuditLogger logger : auditLoggers) {
+      if (logger instanceof FSNamesystemAuditLogger) {
+        count += ((FSNamesystemAuditLogger) logger).getQueueFullCount();
+      }
+    }
+    return count;
+  }
+
   int getNumberOfDatanodes(DatanodeReportType type) {
     readLock();
     try {
@@ -8777,6 +8986,8 @@ public class FSNamesystem implements Namesystem, FSNamesystemMBean,
    */
   @VisibleForTesting
   static class FSNamesystemAuditLogger extends DefaultAuditLogger {
+    /** Formats and writes the events off the handler threads, or null. */
+    private AuditLogQueue<AuditEvent> queue;
 
     @Override
     public void initialize(Configuration conf) {
@@ -8795,6 +9006,15 @@ public class FSNamesystem implements Namesystem, FSNamesystemMBean,
 
       debugCmdSet.addAll(Arrays.asList(conf.getTrimmedStrings(
           DFSConfigKeys.DFS_NAMENODE_AUDIT_LOG_DEBUG_CMDLIST)));
+
+      final int queueSize = conf.getInt(
+          DFSConfigKeys.DFS_NAMENODE_AUDIT_LOG_QUEUE_SIZE_KEY,
+          DFSConfigKeys.DFS_NAMENODE_AUDIT_LOG_QUEUE_SIZE_DEFAULT);
+      if (queueSize > 0) {
+        queue = new AuditLogQueue<>(queueSize,
+            e -> logAuditMessage(e.format(this, STRING_BUILDER.get())));
+        queue.start();
+      }
     }
 
     @Override
@@ -8805,62 +9025,27 @@ public class FSNamesystem implements Namesystem, FSNamesystemMBean,
 
       if (AUDIT_LOG.isDebugEnabled() ||
           (AUDIT_LOG.isInfoEnabled() && !debugCmdSet.contains(cmd))) {
-        final StringBuilder sb = STRING_BUILDER.get();
-        src = escapeJava(src);
-        dst = escapeJava(dst);
-        sb.setLength(0);
-        String ipAddr = addr != null ? "/" + addr.getHostAddress() : "null";
-        sb.append("allowed=").append(succeeded).append("\t")
-            .append("ugi=").append(userName).append("\t")
-            .append("ip=").append(ipAddr).append("\t")
-            .append("cmd=").append(cmd).append("\t")
-            .append("src=").append(src).append("\t")
-            .append("dst=").append(dst).append("\t");
-        if (null == status) {
-          sb.append("perm=null");
-        } else {
-          sb.append("perm=")
-              .append(status.getOwner()).append(":")
-              .append(status.getGroup()).append(":")
-              .append(status.getPermission());
-        }
-        if (logTokenTrackingId) {
-          sb.append("\t").append("trackingId=");
-          String trackingId = null;
-          if (ugi != null && dtSecretManager != null
-              && ugi.getAuthenticationMethod() == AuthenticationMethod.TOKEN) {
-            for (TokenIdentifier tid: ugi.getTokenIdentifiers()) {
-              if (tid instanceof DelegationTokenIdentifier) {
-                DelegationTokenIdentifier dtid =
-                    (DelegationTokenIdentifier)tid;
-                trackingId = dtSecretManager.getTokenTrackingId(dtid);
-                break;
-              }
+        String trackingId = null;
+        if (logTokenTrackingId && ugi != null && dtSecretManager != null
+            && ugi.getAuthenticationMethod() == AuthenticationMethod.TOKEN) {
+          for (TokenIdentifier tid: ugi.getTokenIdentifiers()) {
+            if (tid instanceof DelegationTokenIdentifier) {
+              DelegationTokenIdentifier dtid =
+                  (DelegationTokenIdentifier)tid;
+              trackingId = dtSecretManager.getTokenTrackingId(dtid);
+              break;
             }
           }
-          sb.append(trackingId);
         }
-        sb.append("\t").append("proto=")
-            .append(Server.getProtocol());
-        if (isCallerContextEnabled &&
-            callerContext != null &&
-            callerContext.isContextValid()) {
-          sb.append("\t").append("callerContext=");
-          String context = escapeJava(callerContext.getContext());
-          if (context.length() > callerContextMaxLen) {
-            sb.append(context, 0, callerContextMaxLen);
-          } else {
-            sb.append(context);
-          }
-          if (callerContext.getSignature() != null &&
-              callerContext.getSignature().length > 0 &&
-              callerContext.getSignature().length <= callerSignatureMaxLen) {
-            sb.append(":")
-                .append(escapeJava(new String(callerContext.getSignature(),
-                CallerContext.SIGNATURE_ENCODING)));
-          }
+        // the protocol is only known on the handler thread
+        final AuditEvent event = new AuditEvent(succeeded, userName, addr,
+            cmd, src, dst, status, trackingId, Server.getProtocol(),
+            callerContext);
+        if (queue != null) {
+          queue.put(event);
+        } else {
+          logAuditMessage(event.format(this, STRING_BUILDER.get()));
         }
-        logAuditMessage(sb.toString());
       }
     }
 
@@ -8876,6 +9061,101 @@ public class FSNamesystem implements Namesystem, FSNamesystemMBean,
     public void logAuditMessage(String message) {
       AUDIT_LOG.info(message);
     }
+
+    /** @return the number of events waiting to be written. */
+    int getQueueSize() {
+      return queue == null ? 0 : queue.size();
+    }
+
+    /** @return the number of events which waited for room in the queue. */
+    long getQueueFullCount() {
+      return queue == null ? 0 : queue.getFullCount();
+    }
+
+    /** Write the queued events and stop the writer thread, if any. */
+    void close() {
+      if (queue != null) {
+        queue.close();
+      }
+    }
+  }
+
+  /** The fields of an audit event, as captured on the handler thread. */
+  private static final class AuditEvent {
+    private final boolean succeeded;
+    private final String userName;
+    private final InetAddress addr;
+    private final String cmd;
+    private final String src;
+    private final String dst;
+    private final FileStatus status;
+    private final String trackingId;
+    private final String protocol;
+    private final CallerContext callerContext;
+
+    private AuditEvent(boolean succeeded, String userName, InetAddress addr,
+        String cmd, String src, String dst, FileStatus status,
+        String trackingId, String protocol, CallerContext callerContext) {
+      this.succeeded = succeeded;
+      this.userName = userName;
+      this.addr = addr;
+      this.cmd = cmd;
+      this.src = src;
+      this.dst = dst;
+      this.status = status;
+      this.trackingId = trackingId;
+      this.protocol = protocol;
+      this.callerContext = callerContext;
+    }
+
+    /** @return the audit log line of the event. */
+    private String format(FSNamesystemAuditLogger logger, StringBuilder sb) {
+      sb.setLength(0);
+      String ipAddr = addr != null ? "/" + addr.getHostAddress() : "null";
+      sb.append("allowed=").append(succeeded).append("\t")
+          .append("ugi=").append(userName).append("\t")
+          .append("ip=").append(ipAddr).append("\t")
+          .append("cmd=").append(cmd).append("\t")
+          .append("src=").append(escapeJava(src)).append("\t")
+          .append("dst=").append(escapeJava(dst)).append("\t");
+      if (null == status) {
+        sb.append("perm=null");
+      } else {
+        sb.append("perm=")
+            .append(status.getOwner()).append(":")
+            .append(status.getGroup()).append(":")
+            .append(status.getPermission());
+      }
+      if (logger.logTokenTrackingId) {
+        sb.append("\t").append("trackingId=").append(trackingId);
+      }
+      sb.append("\t").append("proto=").append(protocol);
+      if (logger.isCallerContextEnabled &&
+          callerContext != null &&
+          callerContext.isContextValid()) {
+        sb.append("\t").append("callerContext=");
+        String context = escapeJava(callerContext.getContext());
+        if (context.length() > logger.callerContextMaxLen) {
+          sb.append(context, 0, logger.callerContextMaxLen);
+        } else {
+          sb.append(context);
+        }
+        if (callerContext.getSignature() != null &&
+            callerContext.getSignature().length > 0 &&
+            callerContext.getSignature().length <=
+                logger.callerSignatureMaxLen) {
+          sb.append(":")
+              .append(escapeJava(new String(callerContext.getSignature(),
+              CallerContext.SIGNATURE_ENCODING)));
+        }
+      }
+      return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+      return cmd + " " + src + " by " + userName;
+    }
   }
 
   /**
@@ -29,9 +29,11 @@ import java.util.function.Supplier;
 
 import org.apache.hadoop.classification.VisibleForTesting;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hdfs.protocol.HdfsConstants;
 import org.apache.hadoop.ipc.Server;
 import org.apache.hadoop.log.LogThrottlingHelper;
 import org.apache.hadoop.metrics2.lib.MutableRatesWithAggregation;
+import org.apache.hadoop.util.Preconditions;
 import org.apache.hadoop.util.StringUtils;
 import org.apache.hadoop.util.Time;
 import org.apache.hadoop.util.Timer;
@@ -40,6 +42,12 @@ import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_LOCK_SUPPRESS_WARNING_INT
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_LOCK_SUPPRESS_WARNING_INTERVAL_KEY;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_FSLOCK_FAIR_DEFAULT;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_FSLOCK_FAIR_KEY;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_FSLOCK_PARTITIONED_DEPTH_DEFAULT;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_FSLOCK_PARTITIONED_DEPTH_KEY;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_FSLOCK_PARTITIONED_ENABLED_DEFAULT;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_FSLOCK_PARTITIONED_ENABLED_KEY;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_FSLOCK_PARTITIONED_NUM_DEFAULT;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_FSLOCK_PARTITIONED_NUM_KEY;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_LOCK_DETAILED_METRICS_DEFAULT;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_LOCK_DETAILED_METRICS_KEY;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_READ_LOCK_REPORTING_THRESHOLD_MS_DEFAULT;
@@ -63,11 +71,35 @@ import static org.apache.hadoop.log.LogThrottlingHelper.LogAction;
  * most recent snapshot will be lost due to the use of
  * {@link MutableRatesWithAggregation}. However since threads are re-used
  * between operations this should not generally be an issue.
+ *
+ * If {@link org.apache.hadoop.hdfs.DFSConfigKeys#DFS_NAMENODE_FSLOCK_PARTITIONED_ENABLED_KEY}
+ * is true, the namespace is additionally split into partitions rooted at the
+ * directories of a configured depth. A partition writer holds the coarse lock
+ * in shared mode plus the exclusive lock of its partition, so writers of
+ * different partitions run concurrently. Readers taking the coarse read lock
+ * also take every partition lock in shared mode, and writers taking the coarse
+ * write lock exclude partition writers, so neither observes a partition in the
+ * middle of an update. Readers of a single path below a partition root may
+ * instead take only the shared lock of that partition.
  */
 class FSNamesystemLock {
+  /** Partition index used when the global write lock is held. */
+  static final int GLOBAL_PARTITION = -1;
+
   @VisibleForTesting
   protected ReentrantReadWriteLock coarseLock;
 
+  /** Partition locks, or null if partitioned locking is disabled. */
+  private final ReentrantReadWriteLock[] partitionLocks;
+  /** Depth of the directories which act as partition roots. */
+  private final int partitionDepth;
+  /** Time stamp of the outermost partition write lock of this thread. */
+  private final ThreadLocal<Long> partitionLockHeldTimeStampNanos =
+      new ThreadLocal<>();
+  /** Whether the outermost read lock of this thread holds all partitions. */
+  private final ThreadLocal<Boolean> allPartitionsReadLocked =
+      new ThreadLocal<>();
+
   private final boolean metricsEnabled;
   private final MutableRatesWithAggregation detailedHoldTimeMetrics;
   private final Timer timer;
@@ -160,6 +192,28 @@ class FSNamesystemLock {
     FSNamesystem.LOG.info("Detailed lock hold time metrics enabled: " +
         this.metricsEnabled);
     this.detailedHoldTimeMetrics = detailedHoldTimeMetrics;
+
+    if (conf.getBoolean(DFS_NAMENODE_FSLOCK_PARTITIONED_ENABLED_KEY,
+        DFS_NAMENODE_FSLOCK_PARTITIONED_ENABLED_DEFAULT)) {
+      int numPartitions = conf.getInt(DFS_NAMENODE_FSLOCK_PARTITIONED_NUM_KEY,
+          DFS_NAMENODE_FSLOCK_PARTITIONED_NUM_DEFAULT);
+      this.partitionDepth = conf.getInt(
+          DFS_NAMENODE_FSLOCK_PARTITIONED_DEPTH_KEY,
+          DFS_NAMENODE_FSLOCK_PARTITIONED_DEPTH_DEFAULT);
+      Preconditions.checkArgument(numPartitions > 0,
+          "%s must be positive", DFS_NAMENODE_FSLOCK_PARTITIONED_NUM_KEY);
+      Preconditions.checkArgument(partitionDepth > 0,
+          "%s must be positive", DFS_NAMENODE_FSLOCK_PARTITIONED_DEPTH_KEY);
+      this.partitionLocks = new ReentrantReadWriteLock[numPartitions];
+      for (int i = 0; i < numPartitions; i++) {
+        partitionLocks[i] = new ReentrantReadWriteLock(fair);
+      }
+      FSNamesystem.LOG.info("Partitioned fsLock enabled with {} partitions" +
+          " rooted at depth {}", numPartitions, partitionDepth);
+    } else {
+      this.partitionLocks = null;
+      this.partitionDepth = 0;
+    }
   }
 
   public void readLock() {
@@ -184,6 +238,10 @@ class FSNamesystemLock {
     final long readLockIntervalNanos =
         timer.monotonicNowNanos() - readLockHeldTimeStampNanos.get();
     final long currentTimeMs = timer.now();
+    if (needReport && allPartitionsReadLocked.get() != null) {
+      allPartitionsReadLocked.remove();
+      unlockPartitionsForRead(partitionLocks.length);
+    }
     coarseLock.readLock().unlock();
 
     if (needReport) {
@@ -348,6 +406,135 @@ class FSNamesystemLock {
     }
   }
 
+  /**
+   * Returns the root of the partition owning src, i.e. the ancestor of src at
+   * the configured partition depth.
+   *
+   * @param src absolute path of the inode being written
+   * @return the partition root, or null if partitioned locking is disabled or
+   *         src does not lie strictly below a partition root
+   */
+  String getPartitionRoot(String src) {
+    if (partitionLocks == null || src == null || !src.startsWith("/") ||
+        FSDirectory.isReservedName(src)) {
+      return null;
+    }
+    int depth = 0;
+    int start = 1;
+    for (int i = 1; i < src.length(); i++) {
+      if (src.charAt(i) != '/') {
+        continue;
+      }
+      if (i - start == HdfsConstants.DOT_SNAPSHOT_DIR.length() &&
+          src.startsWith(HdfsConstants.DOT_SNAPSHOT_DIR, start)) {
+        return null;
+      }
+      if (++depth == partitionDepth) {
+        return i + 1 < src.length() ? src.substring(0, i) : null;
+      }
+      start = i + 1;
+    }
+    return null;
+  }
+
+  /**
+   * @param partitionRoot a partition root returned by
+   *        {@link #getPartitionRoot(String)}
+   * @return the index of the partition lock guarding partitionRoot
+   */
+  int getPartition(String partitionRoot) {
+    return (partitionRoot.hashCode() & Integer.MAX_VALUE) %
+        partitionLocks.length;
+  }
+
+  /**
+   * Acquire the exclusive lock of a partition together with the shared coarse
+   * lock. Writers of other partitions are not blocked.
+   */
+  public void writeLockPartition(int partition) {
+    long startNanos = timer.monotonicNowNanos();
+    coarseLock.readLock().lock();
+    partitionLocks[partition].writeLock().lock();
+    long now = timer.monotonicNowNanos();
+    updateProcessingDetails(Timing.LOCKWAIT, now - startNanos);
+    if (partitionLocks[partition].getWriteHoldCount() == 1) {
+      partitionLockHeldTimeStampNanos.set(now);
+    }
+  }
+
+  /**
+   * Release a lock acquired by {@link #writeLockPartition(int)}.
+   *
+   * @param partition the partition index
+   * @param opName Operation name.
+   */
+  public void writeUnlockPartition(int partition, String opName) {
+    final ReentrantReadWriteLock lock = partitionLocks[partition];
+    final boolean needReport = lock.getWriteHoldCount() == 1;
+    final Long heldTimeStampNanos = partitionLockHeldTimeStampNanos.get();
+    lock.writeLock().unlock();
+    coarseLock.readLock().unlock();
+    if (needReport && heldTimeStampNanos != null) {
+      partitionLockHeldTimeStampNanos.remove();
+      addMetric(opName,
+          timer.monotonicNowNanos() - heldTimeStampNanos, true);
+    }
+  }
+
+  /**
+   * Acquire the shared lock of a partition together with the shared coarse
+   * lock. Only writers of the same partition and global writers are blocked.
+   */
+  public void readLockPartition(int partition) {
+    long startNanos = timer.monotonicNowNanos();
+    coarseLock.readLock().lock();
+    partitionLocks[partition].readLock().lock();
+    updateLockWait(startNanos, false);
+  }
+
+  /**
+   * Release a lock acquired by {@link #readLockPartition(int)}.
+   *
+   * @param partition the partition index
+   * @param opName Operation name.
+   * @param lockReportInfoSupplier supplier used to report a long hold
+   */
+  public void readUnlockPartition(int partition, String opName,
+      Supplier<String> lockReportInfoSupplier) {
+    partitionLocks[partition].readLock().unlock();
+    readUnlock(opName, lockReportInfoSupplier);
+  }
+
+  /**
+   * @param src absolute path of an inode
+   * @return true if the current thread holds the exclusive lock of the
+   *         partition owning src.
+   */
+  public boolean isPartitionWriteLockedByCurrentThread(String src) {
+    final String partitionRoot = getPartitionRoot(src);
+    return partitionRoot != null && partitionLocks[getPartition(
+        partitionRoot)].isWriteLockedByCurrentThread();
+  }
+
+  /**
+   * @return true if the current thread holds the exclusive lock of any
+   *         partition.
+   */
+  public boolean isPartitionWriteLockedByCurrentThread() {
+    if (partitionLocks != null) {
+      for (ReentrantReadWriteLock lock : partitionLocks) {
+        if (lock.isWriteLockedByCurrentThread()) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  boolean isPartitioned() {
+    return partitionLocks != null;
+  }
+
   public int getReadHoldCount() {
     return coarseLock.getReadHoldCount();
   }
@@ -420,6 +607,12 @@ class FSNamesystemLock {
       coarseLock.writeLock().lock();
     } else {
       coarseLock.readLock().lock();
+      if (needsPartitionReadLocks()) {
+        for (ReentrantReadWriteLock lock : partitionLocks) {
+          lock.readLock().lock();
+        }
+        allPartitionsReadLocked.set(Boolean.TRUE);
+      }
     }
     updateLockWait(startNanos, isWrite);
   }
@@ -431,10 +624,41 @@ class FSNamesystemLock {
       coarseLock.writeLock().lockInterruptibly();
     } else {
       coarseLock.readLock().lockInterruptibly();
+      if (needsPartitionReadLocks()) {
+        int locked = 0;
+        try {
+          for (; locked < partitionLocks.length; locked++) {
+            partitionLocks[locked].readLock().lockInterruptibly();
+          }
+        } catch (InterruptedException e) {
+          unlockPartitionsForRead(locked);
+          coarseLock.readLock().unlock();
+          throw e;
+        }
+        allPartitionsReadLocked.set(Boolean.TRUE);
+      }
     }
     updateLockWait(startNanos, isWrite);
   }
 
+  /**
+   * A reader only needs the partition locks for its outermost read lock, and
+   * not at all if it already excludes partition writers by holding the write
+   * lock or a partition lock. Nested read locks of a thread holding a single
+   * partition in shared mode stay within that partition.
+   */
+  private boolean needsPartitionReadLocks() {
+    return partitionLocks != null && coarseLock.getReadHoldCount() == 1 &&
+        !coarseLock.isWriteLockedByCurrentThread() &&
+        !isPartitionWriteLockedByCurrentThread();
+  }
+
+  private void unlockPartitionsForRead(int count) {
+    for (int i = count - 1; i >= 0; i--) {
+      partitionLocks[i].readLock().unlock();
+    }
+  }
+
   private void updateLockWait(long startNanos, boolean isWrite) {
     long now = timer.monotonicNowNanos();
     updateProcessingDetails(Timing.LOCKWAIT, now - startNanos);
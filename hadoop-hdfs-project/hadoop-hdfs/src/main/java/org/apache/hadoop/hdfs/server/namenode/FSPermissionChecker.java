@@ -32,7 +32,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.apache.hadoop.fs.FSExceptionMessages;
 import org.apache.hadoop.fs.ParentNotDirectoryException;
-import org.apache.hadoop.fs.permission.AclEntryScope;
+import org.apache.hadoop.fs.permission.AclEntry;
 import org.apache.hadoop.fs.permission.AclEntryType;
 import org.apache.hadoop.fs.permission.FsAction;
 import org.apache.hadoop.fs.permission.FsPermission;
@@ -91,6 +91,8 @@ public class FSPermissionChecker implements AccessControlEnforcer {
   private final INodeAttributeProvider attributeProvider;
   private final boolean authorizeWithContext;
   private final long accessControlEnforcerReportingThresholdMs;
+  /** The directories the caller may traverse, null if not cached. */
+  private final TraversePermissionCache.UserEntry traverseCache;
 
   private static ThreadLocal<String> operationType = new ThreadLocal<>();
 
@@ -105,6 +107,17 @@ public class FSPermissionChecker implements AccessControlEnforcer {
       INodeAttributeProvider attributeProvider,
       boolean useAuthorizationWithContextAPI,
       long accessControlEnforcerReportingThresholdMs) {
+    this(fsOwner, supergroup, callerUgi, attributeProvider,
+        useAuthorizationWithContextAPI,
+        accessControlEnforcerReportingThresholdMs, null);
+  }
+
+  protected FSPermissionChecker(String fsOwner, String supergroup,
+      UserGroupInformation callerUgi,
+      INodeAttributeProvider attributeProvider,
+      boolean useAuthorizationWithContextAPI,
+      long accessControlEnforcerReportingThresholdMs,
+      TraversePermissionCache traversePermissionCache) {
     this.fsOwner = fsOwner;
     this.supergroup = supergroup;
     this.callerUgi = callerUgi;
@@ -124,6 +137,9 @@ public class FSPermissionChecker implements AccessControlEnforcer {
     }
     this.accessControlEnforcerReportingThresholdMs
         = accessControlEnforcerReportingThresholdMs;
+    // the super user never checks traverse permissions
+    this.traverseCache = traversePermissionCache == null || isSuper ? null
+        : traversePermissionCache.get(user, groups);
   }
 
   private String checkAccessControlEnforcerSlowness(
@@ -574,7 +590,16 @@ public class FSPermissionChecker implements AccessControlEnforcer {
           UnresolvedPathException, ParentNotDirectoryException {
     for (int i=0; i <= last; i++) {
       checkIsDirectory(inodes[i], components, i);
+      // the cached results only hold for the current attributes of inodes
+      final boolean cacheable = traverseCache != null && inodes[i] != null
+          && inodeAttrs[i] == inodes[i];
+      if (cacheable && traverseCache.canTraverse(inodes[i].getId())) {
+        continue;
+      }
       check(inodeAttrs, components, i, FsAction.EXECUTE);
+      if (cacheable) {
+        traverseCache.addTraversable(inodes[i].getId());
+      }
     }
   }
 
@@ -671,11 +696,11 @@ public class FSPermissionChecker implements AccessControlEnforcer {
     }
     final FsPermission mode = inode.getFsPermission();
     final AclFeature aclFeature = inode.getAclFeature();
-    if (aclFeature != null && aclFeature.getEntriesSize() > 0) {
+    if (aclFeature != null) {
       // It's possible that the inode has a default ACL but no access ACL.
-      int firstEntry = aclFeature.getEntryAt(0);
-      if (AclEntryStatusFormat.getScope(firstEntry) == AclEntryScope.ACCESS) {
-        return hasAclPermission(inode, access, mode, aclFeature);
+      AclEntry[] aclEntries = aclFeature.getAccessEntries();
+      if (aclEntries.length > 0) {
+        return hasAclPermission(inode, access, mode, aclEntries);
       }
     }
     final FsAction checkAction;
@@ -708,11 +733,11 @@ public class FSPermissionChecker implements AccessControlEnforcer {
    * @param inode INodeAttributes accessed inode
    * @param access FsAction requested permission
    * @param mode FsPermission mode from inode
-   * @param aclFeature AclFeature of inode
+   * @param aclEntries decoded access entries of the inode's AclFeature
    * @throws AccessControlException if the ACL denies permission
    */
   private boolean hasAclPermission(INodeAttributes inode,
-      FsAction access, FsPermission mode, AclFeature aclFeature) {
+      FsAction access, FsPermission mode, AclEntry[] aclEntries) {
     boolean foundMatch = false;
 
     // Use owner entry from permission bits if user is owner.
@@ -725,19 +750,14 @@ public class FSPermissionChecker implements AccessControlEnforcer {
 
     // Check named user and group entries if user was not denied by owner entry.
     if (!foundMatch) {
-      for (int pos = 0, entry; pos < aclFeature.getEntriesSize(); pos++) {
-        entry = aclFeature.getEntryAt(pos);
-        if (AclEntryStatusFormat.getScope(entry) == AclEntryScope.DEFAULT) {
-          break;
-        }
-        AclEntryType type = AclEntryStatusFormat.getType(entry);
-        String name = AclEntryStatusFormat.getName(entry);
+      for (AclEntry entry : aclEntries) {
+        AclEntryType type = entry.getType();
+        String name = entry.getName();
         if (type == AclEntryType.USER) {
           // Use named user entry with mask from permission bits applied if user
           // matches name.
           if (getUser().equals(name)) {
-            FsAction masked = AclEntryStatusFormat.getPermission(entry).and(
-                mode.getGroupAction());
+            FsAction masked = entry.getPermission().and(mode.getGroupAction());
             if (masked.implies(access)) {
               return true;
             }
@@ -751,8 +771,7 @@ public class FSPermissionChecker implements AccessControlEnforcer {
           // it doesn't matter which is chosen, so exit early after first match.
           String group = name == null ? inode.getGroupName() : name;
           if (isMemberOfGroup(group)) {
-            FsAction masked = AclEntryStatusFormat.getPermission(entry).and(
-                mode.getGroupAction());
+            FsAction masked = entry.getPermission().and(mode.getGroupAction());
             if (masked.implies(access)) {
               return true;
             }
@@ -19,8 +19,6 @@ package org.apache.hadoop.hdfs.server.namenode;
 
 import java.util.Iterator;
 
-import org.apache.hadoop.fs.permission.FsPermission;
-import org.apache.hadoop.fs.permission.PermissionStatus;
 import org.apache.hadoop.hdfs.protocol.HdfsConstants;
 import org.apache.hadoop.hdfs.server.blockmanagement.BlockStoragePolicySuite;
 import org.apache.hadoop.util.GSet;
@@ -34,9 +32,13 @@ import org.apache.hadoop.util.Preconditions;
  */
 public class INodeMap {
   
-  static INodeMap newInstance(INodeDirectory rootDir) {
-    // Compute the map capacity by allocating 1% of total memory
-    int capacity = LightWeightGSet.computeCapacity(1, "INodeMap");
+  /**
+   * @param rootDir the root inode, added to the new map
+   * @param percentage the percentage of the Java heap to allocate to the map
+   *        index, see {@link LightWeightGSet#computeCapacity(double, String)}
+   */
+  static INodeMap newInstance(INodeDirectory rootDir, float percentage) {
+    int capacity = LightWeightGSet.computeCapacity(percentage, "INodeMap");
     GSet<INode, INodeWithAdditionalFields> map =
         new LightWeightGSet<>(capacity);
     map.put(rootDir);
@@ -88,54 +90,61 @@ public class INodeMap {
    *         such {@link INode} in the map.
    */
   public INode get(long id) {
-    INode inode = new INodeWithAdditionalFields(id, null, new PermissionStatus(
-        "", "", new FsPermission((short) 0)), 0, 0) {
-      
-      @Override
-      void recordModification(int latestSnapshotId) {
-      }
-      
-      @Override
-      public void destroyAndCollectBlocks(ReclaimContext reclaimContext) {
-        // Nothing to do
-      }
-
-      @Override
-      public QuotaCounts computeQuotaUsage(
-          BlockStoragePolicySuite bsps, byte blockStoragePolicyId,
-          boolean useCache, int lastSnapshotId) {
-        return null;
-      }
-
-      @Override
-      public ContentSummaryComputationContext computeContentSummary(
-          int snapshotId, ContentSummaryComputationContext summary) {
-        return null;
-      }
-      
-      @Override
-      public void cleanSubtree(
-          ReclaimContext reclaimContext, int snapshotId, int priorSnapshotId) {
-      }
-
-      @Override
-      public byte getStoragePolicyID(){
-        return HdfsConstants.BLOCK_STORAGE_POLICY_ID_UNSPECIFIED;
-      }
-
-      @Override
-      public byte getLocalStoragePolicyID() {
-        return HdfsConstants.BLOCK_STORAGE_POLICY_ID_UNSPECIFIED;
-      }
-    };
-      
-    return map.get(inode);
+    return map.get(new INodeKey(id));
   }
-  
+
   /**
    * Clear the {@link #map}
    */
   public void clear() {
     map.clear();
   }
+
+  /**
+   * A lookup key for {@link #get(long)}. Only its id is ever read, so unlike
+   * a real inode it needs no permission status, which would otherwise be
+   * resolved through the serial number maps on every lookup.
+   */
+  private static final class INodeKey extends INodeWithAdditionalFields {
+    INodeKey(long id) {
+      super(id);
+    }
+
+    @Override
+    void recordModification(int latestSnapshotId) {
+    }
+
+    @Override
+    public void destroyAndCollectBlocks(ReclaimContext reclaimContext) {
+      // Nothing to do
+    }
+
+    @Override
+    public QuotaCounts computeQuotaUsage(
+        BlockStoragePolicySuite bsps, byte blockStoragePolicyId,
+        boolean useCache, int lastSnapshotId) {
+      return null;
+    }
+
+    @Override
+    public ContentSummaryComputationContext computeContentSummary(
+        int snapshotId, ContentSummaryComputationContext summary) {
+      return null;
+    }
+
+    @Override
+    public void cleanSubtree(
+        ReclaimContext reclaimContext, int snapshotId, int priorSnapshotId) {
+    }
+
+    @Override
+    public byte getStoragePolicyID(){
+      return HdfsConstants.BLOCK_STORAGE_POLICY_ID_UNSPECIFIED;
+    }
+
+    @Override
+    public byte getLocalStoragePolicyID() {
+      return HdfsConstants.BLOCK_STORAGE_POLICY_ID_UNSPECIFIED;
+    }
+  }
 }
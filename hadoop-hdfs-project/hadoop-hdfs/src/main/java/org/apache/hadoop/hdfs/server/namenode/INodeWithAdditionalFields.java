@@ -139,6 +139,14 @@ public abstract class INodeWithAdditionalFields extends INode
         modificationTime, accessTime);
   }
   
+  /**
+   * Create an inode carrying nothing but its id. Only meant to be used as a
+   * lookup key, see {@link INodeMap#get(long)}.
+   */
+  INodeWithAdditionalFields(long id) {
+    this(null, id, null, 0L, 0L, 0L);
+  }
+
   /** @param other Other node to be copied */
   INodeWithAdditionalFields(INodeWithAdditionalFields other) {
     this(other.getParentReference() != null ? other.getParentReference()
@@ -127,6 +127,7 @@ import org.apache.hadoop.hdfs.protocol.OpenFilesIterator.OpenFilesType;
 import org.apache.hadoop.hdfs.protocol.QuotaByStorageTypeExceededException;
 import org.apache.hadoop.hdfs.protocol.QuotaExceededException;
 import org.apache.hadoop.hdfs.protocol.RecoveryInProgressException;
+import org.apache.hadoop.hdfs.protocol.RecursiveDirectoryListing;
 import org.apache.hadoop.hdfs.protocol.ReplicatedBlockStats;
 import org.apache.hadoop.hdfs.protocol.XAttrNotFoundException;
 import org.apache.hadoop.hdfs.protocol.ZoneReencryptionStatus;
@@ -1222,6 +1223,19 @@ public class NameNodeRpcServer implements NamenodeProtocols {
     return batchedListing;
   }
 
+  @Override // ClientProtocol
+  public RecursiveDirectoryListing getRecursiveListing(String src,
+      byte[] cursor, boolean needLocation) throws IOException {
+    checkNNStartup();
+    RecursiveDirectoryListing files = namesystem.getRecursiveListing(
+        src, cursor, needLocation);
+    if (files != null) {
+      metrics.incrGetListingOps();
+      metrics.incrFilesInGetListingOps(files.getPartialListing().length);
+    }
+    return files;
+  }
+
   @Override // ClientProtocol
   public HdfsFileStatus getFileInfo(String src) throws IOException {
     checkNNStartup();
@@ -1639,7 +1653,12 @@ public class NameNodeRpcServer implements NamenodeProtocols {
     final BlockManager bm = namesystem.getBlockManager(); 
     boolean noStaleStorages = false;
     try {
-      if (bm.checkBlockReportLease(context, nodeReg)) {
+      if (!bm.checkBlockReportLease(context, nodeReg)) {
+        throw new InvalidBlockReportLeaseException(context.getReportId(), context.getLeaseId());
+      } else if (bm.isParallelBlockReportDiffEnabled()) {
+        noStaleStorages = bm.runBlockOp(() ->
+            bm.processReports(nodeReg, reports, context));
+      } else {
         for (int r = 0; r < reports.length; r++) {
           final BlockListAsLongs blocks = reports[r].getBlocks();
           //
@@ -1652,8 +1671,6 @@ public class NameNodeRpcServer implements NamenodeProtocols {
             bm.processReport(nodeReg, reports[index].getStorage(),
                 blocks, context));
         }
-      } else {
-        throw new InvalidBlockReportLeaseException(context.getReportId(), context.getLeaseId());
       }
     } catch (UnregisteredNodeException une) {
       LOG.warn("Datanode {} is attempting to report but not register yet.",
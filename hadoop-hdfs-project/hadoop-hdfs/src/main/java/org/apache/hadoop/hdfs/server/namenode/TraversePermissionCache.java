@@ -0,0 +1,136 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hadoop.thirdparty.com.google.common.cache.Cache;
+import org.apache.hadoop.thirdparty.com.google.common.cache.CacheBuilder;
+import org.apache.hadoop.thirdparty.com.google.common.cache.RemovalListener;
+
+/**
+ * Caches, per user, the directories that the user was allowed to traverse,
+ * so that the ancestors of a path are not checked again on every call.
+ *
+ * Whether a user may traverse a directory only depends on the groups of the
+ * user and on the owner, group, permission and ACL of the directory itself.
+ * The cached directories of a user are thus dropped when the groups of the
+ * user change, and a directory is dropped for all the users by
+ * {@link #invalidate(long)}, which must be called whenever any of these
+ * attributes change on it. {@link #invalidate()} drops everything, for when
+ * inode ids are reused. Only the current attributes of the
+ * inodes are cached; attributes of snapshot copies or from an
+ * {@link INodeAttributeProvider} are always checked.
+ *
+ * Lookups and additions run under the namesystem read lock, and
+ * invalidations under the write lock, so a result cannot be recorded across
+ * an invalidation. Entries evicted from the cache are disabled, since a
+ * permission checker may still hold them but invalidations no longer reach
+ * them.
+ */
+class TraversePermissionCache {
+  private final Cache<String, UserEntry> users;
+  private final int maxDirectoriesPerUser;
+  /** Incremented on every invalidation. */
+  private final AtomicLong epoch = new AtomicLong();
+
+  TraversePermissionCache(int maxUsers, int maxDirectoriesPerUser) {
+    this.users = CacheBuilder.newBuilder().maximumSize(maxUsers)
+        .removalListener((RemovalListener<String, UserEntry>)
+            n -> n.getValue().disable())
+        .build();
+    this.maxDirectoriesPerUser = maxDirectoriesPerUser;
+  }
+
+  /** Drop the cached directories of all the users. */
+  void invalidate() {
+    epoch.incrementAndGet();
+  }
+
+  /** Drop the given directory from the cached directories of all the users. */
+  void invalidate(long inodeId) {
+    for (UserEntry entry : users.asMap().values()) {
+      entry.generation.inodeIds.remove(inodeId);
+    }
+  }
+
+  /**
+   * @return the cached directories of the given user, empty if the user
+   * was not cached or had different groups.
+   */
+  UserEntry get(String user, Collection<String> groups) {
+    UserEntry entry = users.getIfPresent(user);
+    if (entry == null || !entry.groups.equals(groups)) {
+      entry = new UserEntry(groups);
+      users.put(user, entry);
+    }
+    return entry;
+  }
+
+  /** The directories one user with the given groups may traverse. */
+  final class UserEntry {
+    private final Collection<String> groups;
+    private volatile Generation generation = new Generation(epoch.get());
+    private volatile boolean disabled;
+
+    private UserEntry(Collection<String> groups) {
+      this.groups = groups;
+    }
+
+    /** @return true if the user was allowed to traverse the directory. */
+    boolean canTraverse(long inodeId) {
+      Generation g = generation;
+      return !disabled && g.epoch == epoch.get()
+          && g.inodeIds.contains(inodeId);
+    }
+
+    /** Record that the user is allowed to traverse the directory. */
+    void addTraversable(long inodeId) {
+      if (disabled) {
+        return;
+      }
+      final long current = epoch.get();
+      Generation g = generation;
+      if (g.epoch != current) {
+        // concurrent readers may replace it too; losing an entry is harmless
+        g = new Generation(current);
+        generation = g;
+      }
+      if (g.inodeIds.size() < maxDirectoriesPerUser) {
+        g.inodeIds.add(inodeId);
+      }
+    }
+
+    private void disable() {
+      disabled = true;
+    }
+  }
+
+  /** The directories cached since an invalidation. */
+  private static final class Generation {
+    private final long epoch;
+    private final Set<Long> inodeIds = ConcurrentHashMap.newKeySet();
+
+    private Generation(long epoch) {
+      this.epoch = epoch;
+    }
+  }
+}
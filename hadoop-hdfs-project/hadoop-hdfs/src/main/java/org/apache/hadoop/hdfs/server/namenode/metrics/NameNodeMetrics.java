@@ -122,6 +122,8 @@ public class NameNodeMetrics {
 
   @Metric("Journal transactions") MutableRate transactions;
   @Metric("Journal syncs") MutableRate syncs;
+  @Metric("Time the async edit log delayed a sync to grow its batch")
+  MutableRate groupCommitWait;
   final MutableQuantiles[] syncsQuantiles;
   @Metric("Journal transactions batched in sync")
   MutableCounterLong transactionsBatchedInSync;
@@ -130,6 +132,10 @@ public class NameNodeMetrics {
   @Metric("Number of blockReports from individual storages")
   MutableRate storageBlockReport;
   final MutableQuantiles[] storageBlockReportQuantiles;
+  @Metric("Time diffing block reports from individual storages in parallel")
+  MutableRate storageBlockReportDiff;
+  @Metric("Time applying diffed block reports under the write lock")
+  MutableRate storageBlockReportApply;
   @Metric("Cache report") MutableRate cacheReport;
   final MutableQuantiles[] cacheReportQuantiles;
   @Metric("Generate EDEK time") private MutableRate generateEDEKTime;
@@ -395,6 +401,10 @@ public class NameNodeMetrics {
     }
   }
 
+  public void addGroupCommitWait(long elapsed) {
+    groupCommitWait.add(elapsed);
+  }
+
   public void setFsImageLoadTime(long elapsed) {
     fsImageLoadTime.set((int) elapsed);
   }
@@ -406,6 +416,14 @@ public class NameNodeMetrics {
     }
   }
 
+  public void addStorageBlockReportDiff(long latency) {
+    storageBlockReportDiff.add(latency);
+  }
+
+  public void addStorageBlockReportApply(long latency) {
+    storageBlockReportApply.add(latency);
+  }
+
   public void addCacheBlockReport(long latency) {
     cacheReport.add(latency);
     for (MutableQuantiles q : cacheReportQuantiles) {
@@ -341,6 +341,10 @@ public class DirectorySnapshottableFeature extends DirectoryWithSnapshotFeature
    *           as the no of entries exceeded the snapshotdiffentry limit. -1
    *           indicates, the snapshotdiff computation needs to start right
    *           from the startPath provided.
+   * @param snapshotDiffReportEntriesLimit
+   *           the maximum number of entries to return.
+   * @param inodeLimit
+   *           the maximum number of inodes to visit, 0 for no limit.
    *
    * @return The difference between the start/end points.
    * @throws SnapshotException If there is no snapshot matching the starting
@@ -350,7 +354,8 @@ public class DirectorySnapshottableFeature extends DirectoryWithSnapshotFeature
   SnapshotDiffListingInfo computeDiff(final INodeDirectory snapshotRootDir,
       final INodeDirectory snapshotDiffScopeDir, final String from,
       final String to, byte[] startPath, int index,
-      int snapshotDiffReportEntriesLimit) throws SnapshotException {
+      int snapshotDiffReportEntriesLimit, int inodeLimit)
+      throws SnapshotException {
     Preconditions.checkArgument(
         snapshotDiffScopeDir.isDescendantOfSnapshotRoot(snapshotRootDir));
     Snapshot fromSnapshot = getSnapshotByName(snapshotRootDir, from);
@@ -362,7 +367,8 @@ public class DirectorySnapshottableFeature extends DirectoryWithSnapshotFeature
     }
     SnapshotDiffListingInfo diffs =
         new SnapshotDiffListingInfo(snapshotRootDir, snapshotDiffScopeDir,
-            fromSnapshot, toSnapshot, snapshotDiffReportEntriesLimit);
+            fromSnapshot, toSnapshot, snapshotDiffReportEntriesLimit,
+            inodeLimit);
     diffs.setLastIndex(index);
     computeDiffRecursively(snapshotDiffScopeDir, snapshotDiffScopeDir,
         new ArrayList<byte[]>(), diffs, resumePath, 0, toProcess);
@@ -484,32 +490,40 @@ public class DirectorySnapshottableFeature extends DirectoryWithSnapshotFeature
         && Arrays.equals(resume[resume.length - 1], node.getLocalNameBytes())) {
       processFlag = true;
     }
+    if (processFlag && !diffReport.visit(relativePath)) {
+      return false;
+    }
 
     if (node.isDirectory()) {
       final ChildrenDiff diff = new ChildrenDiff();
       INodeDirectory dir = node.asDirectory();
-      if (processFlag) {
-        DirectoryWithSnapshotFeature sf = dir.getDirectoryWithSnapshotFeature();
-        if (sf != null) {
-          boolean change =
-              sf.computeDiffBetweenSnapshots(earlier, later, diff, dir);
-          if (change) {
-            if (!diffReport.addDirDiff(dir.getId(), relativePath, diff)) {
-              return false;
-            }
+      DirectoryWithSnapshotFeature sf = dir.getDirectoryWithSnapshotFeature();
+      if (sf != null) {
+        boolean change =
+            sf.computeDiffBetweenSnapshots(earlier, later, diff, dir);
+        // An ancestor of the resume path was reported by an earlier call,
+        // but its deleted children must still be skipped below.
+        if (change && processFlag) {
+          if (!diffReport.addDirDiff(dir.getId(), relativePath, diff)) {
+            return false;
           }
         }
       }
 
       ReadOnlyList<INode> children = dir.getChildrenList(earlier.getId());
-      boolean iterate = false;
-      for (INode child : children) {
-        final byte[] name = child.getLocalNameBytes();
-        if (!processFlag && !iterate && !Arrays.equals(resume[level], name)) {
-          continue;
+      int start = 0;
+      if (!processFlag) {
+        // The children are sorted by name, so look up the child on the path
+        // to resume from instead of scanning the children before it.
+        start = ReadOnlyList.Util.binarySearch(children, resume[level]);
+        if (start < 0) {
+          return true;
         }
-        iterate = true;
-        level = level + 1;
+      }
+      level = level + 1;
+      for (int i = start; i < children.size(); i++) {
+        final INode child = children.get(i);
+        final byte[] name = child.getLocalNameBytes();
         boolean toProcess = !diff.containsDeleted(name);
         if (!toProcess && child instanceof INodeReference.WithName) {
           byte[][] renameTargetPath = findRenameTargetPath(snapshotDir,
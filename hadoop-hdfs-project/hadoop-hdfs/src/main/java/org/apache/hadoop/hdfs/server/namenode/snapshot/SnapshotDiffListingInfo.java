@@ -39,6 +39,9 @@ import org.apache.hadoop.util.ChunkedArrayList;
 
 class SnapshotDiffListingInfo {
   private final int maxEntries;
+  /** The maximum number of inodes to visit, 0 for no limit. */
+  private final int maxINodes;
+  private int visitedINodes = 0;
 
   /** The root directory of the snapshots. */
   private final INodeDirectory snapshotRoot;
@@ -71,7 +74,7 @@ class SnapshotDiffListingInfo {
 
   SnapshotDiffListingInfo(INodeDirectory snapshotRootDir,
       INodeDirectory snapshotDiffScopeDir, Snapshot start, Snapshot end,
-      int snapshotDiffReportLimit) {
+      int snapshotDiffReportLimit, int inodeLimit) {
     Preconditions.checkArgument(
         snapshotRootDir.isSnapshottable() && snapshotDiffScopeDir
             .isDescendantOfSnapshotRoot(snapshotRootDir));
@@ -80,6 +83,26 @@ class SnapshotDiffListingInfo {
     this.from = start;
     this.to = end;
     this.maxEntries = snapshotDiffReportLimit;
+    this.maxINodes = inodeLimit;
+  }
+
+  /**
+   * Count a visit of the inode at the given path, unless too many inodes
+   * were visited already. The report then stops before the inode, so that
+   * the next call resumes from it and the lock is not held for the whole
+   * traversal of a large tree. The scope directory itself, with an empty
+   * path, and a directory whose created or deleted list is being resumed
+   * are always visited, so that every call makes progress.
+   * @return false if the inode should not be visited.
+   */
+  boolean visit(byte[][] path) {
+    if (maxINodes > 0 && visitedINodes >= maxINodes && path.length > 0
+        && lastIndex == -1) {
+      setLastPath(path);
+      return false;
+    }
+    visitedINodes++;
+    return true;
   }
 
   boolean addDirDiff(long dirId, byte[][] parent, ChildrenDiff diff) {
@@ -125,6 +125,11 @@ public class SnapshotManager implements SnapshotStatsMXBean {
    * directory.
    */
   private final boolean snapshotDiffAllowSnapRootDescendant;
+  /**
+   * The maximum number of inodes a snapshot diff listing call visits before
+   * returning a partial report, or 0 for no limit.
+   */
+  private final int snapshotDiffListingINodeLimit;
 
   private final AtomicInteger numSnapshots = new AtomicInteger();
   private static final int SNAPSHOT_ID_BIT_WIDTH = 28;
@@ -152,6 +157,9 @@ public class SnapshotManager implements SnapshotStatsMXBean {
         DFSConfigKeys.DFS_NAMENODE_SNAPSHOT_DIFF_ALLOW_SNAP_ROOT_DESCENDANT,
         DFSConfigKeys.
             DFS_NAMENODE_SNAPSHOT_DIFF_ALLOW_SNAP_ROOT_DESCENDANT_DEFAULT);
+    this.snapshotDiffListingINodeLimit = conf.getInt(
+        DFSConfigKeys.DFS_NAMENODE_SNAPSHOT_DIFF_LISTING_INODE_LIMIT,
+        DFSConfigKeys.DFS_NAMENODE_SNAPSHOT_DIFF_LISTING_INODE_LIMIT_DEFAULT);
     this.maxSnapshotLimit = conf.getInt(
         DFSConfigKeys.
             DFS_NAMENODE_SNAPSHOT_MAX_LIMIT,
@@ -258,6 +266,7 @@ public class SnapshotManager implements SnapshotStatsMXBean {
       d.addSnapshottableFeature();
     }
     addSnapshottable(d);
+    fsdir.invalidateContentSummaries(iip);
   }
   
   /** Add the given snapshottable directory to {@link #snapshottables}. */
@@ -304,6 +313,7 @@ public class SnapshotManager implements SnapshotStatsMXBean {
       d.removeSnapshottableFeature();
     }
     removeSnapshottable(d);
+    fsdir.invalidateContentSummaries(iip);
   }
 
   /**
@@ -467,6 +477,7 @@ public class SnapshotManager implements SnapshotStatsMXBean {
     //create success, update id
     snapshotCounter++;
     numSnapshots.getAndIncrement();
+    fsdir.invalidateContentSummaries(iip);
     return Snapshot.getSnapshotPath(snapshotRoot, snapshotName);
   }
 
@@ -508,6 +519,7 @@ public class SnapshotManager implements SnapshotStatsMXBean {
   public void deleteSnapshot(final INodesInPath iip, final String snapshotName,
       INode.ReclaimContext reclaimContext, long now) throws IOException {
     final INodeDirectory srcRoot = getSnapshottableRoot(iip);
+    fsdir.invalidateContentSummaries(iip);
     if (isSnapshotDeletionOrdered()) {
       final DirectorySnapshottableFeature snapshottable
           = srcRoot.getDirectorySnapshottableFeature();
@@ -745,7 +757,8 @@ public class SnapshotManager implements SnapshotStatsMXBean {
     final SnapshotDiffListingInfo diffs =
         snapshotRootDir.getDirectorySnapshottableFeature()
             .computeDiff(snapshotRootDir, snapshotDescendantDir, from, to,
-                startPath, index, snapshotDiffReportLimit);
+                startPath, index, snapshotDiffReportLimit,
+                snapshotDiffListingINodeLimit);
     return diffs != null ? diffs.generateReport() :
         new SnapshotDiffReportListing();
   }
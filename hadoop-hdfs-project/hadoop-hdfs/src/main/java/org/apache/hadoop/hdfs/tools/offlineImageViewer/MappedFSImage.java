@@ -0,0 +1,145 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.tools.offlineImageViewer;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hdfs.server.namenode.FSImageUtil;
+import org.apache.hadoop.hdfs.server.namenode.FsImageProto.FileSummary;
+import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.util.LimitInputStream;
+
+/**
+ * Provides input streams over the sections of a protobuf-based fsimage by
+ * memory mapping them. The section offsets come from the {@link FileSummary},
+ * so each section can be decoded on demand and by several threads at once,
+ * without seeking a shared channel or copying the data through an
+ * intermediate buffer.
+ *
+ * A single mapping cannot exceed {@link Integer#MAX_VALUE} bytes, so larger
+ * sections are read through a buffered stream instead. Images written with
+ * sub-sections keep each sub-section small enough to be mapped.
+ */
+final class MappedFSImage implements Closeable {
+  private final File file;
+  private final FileInputStream fin;
+  private final FileChannel channel;
+  private final String codec;
+  private final Configuration conf;
+
+  MappedFSImage(File file, FileSummary summary, Configuration conf)
+      throws IOException {
+    this.file = file;
+    this.fin = new FileInputStream(file);
+    this.channel = fin.getChannel();
+    this.codec = summary.getCodec();
+    this.conf = conf;
+  }
+
+  /**
+   * Return an InputStream for the given section, decompressed with the
+   * codec of the image if there is one. The returned streams are
+   * independent of each other and may be used by different threads. Callers
+   * must close the stream, which releases the file it may have opened.
+   * @param section The FileSummary.Section containing the offset and length
+   * @return An InputStream for the given section
+   * @throws IOException
+   */
+  InputStream getInputStreamForSection(FileSummary.Section section)
+      throws IOException {
+    InputStream in;
+    if (section.getLength() <= Integer.MAX_VALUE) {
+      in = new ByteBufferInputStream(channel.map(FileChannel.MapMode.READ_ONLY,
+          section.getOffset(), section.getLength()));
+    } else {
+      // channel of RandomAccessFile is not thread safe, use a new stream
+      FileInputStream sectionIn = new FileInputStream(file);
+      try {
+        sectionIn.getChannel().position(section.getOffset());
+      } catch (IOException e) {
+        sectionIn.close();
+        throw e;
+      }
+      in = new BufferedInputStream(new LimitInputStream(sectionIn,
+          section.getLength()));
+    }
+    try {
+      return FSImageUtil.wrapInputStreamForCompression(conf, codec, in);
+    } catch (IOException e) {
+      IOUtils.closeStream(in);
+      throw e;
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    // Mapped regions stay valid after the channel is closed, and are
+    // released once the streams using them are garbage collected.
+    fin.close();
+  }
+
+  /**
+   * An InputStream reading the remaining bytes of a ByteBuffer. It is not
+   * thread safe; each section stream owns its buffer.
+   */
+  private static final class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer buffer;
+
+    ByteBufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if (len == 0) {
+        return 0;
+      }
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      int n = Math.min(len, buffer.remaining());
+      buffer.get(b, off, n);
+      return n;
+    }
+
+    @Override
+    public long skip(long n) {
+      int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+      buffer.position(buffer.position() + skipped);
+      return skipped;
+    }
+
+    @Override
+    public int available() {
+      return buffer.remaining();
+    }
+  }
+}
@@ -17,7 +17,6 @@
  */
 package org.apache.hadoop.hdfs.tools.offlineImageViewer;
 
-import java.io.BufferedInputStream;
 import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
@@ -66,7 +65,6 @@ import org.apache.hadoop.hdfs.server.namenode.INodeId;
 import org.apache.hadoop.hdfs.server.namenode.SerialNumberManager;
 import org.apache.hadoop.io.IOUtils;
 import org.apache.hadoop.io.WritableUtils;
-import org.apache.hadoop.util.LimitInputStream;
 import org.apache.hadoop.util.Lists;
 import org.apache.hadoop.util.Time;
 
@@ -104,6 +102,10 @@ import static org.apache.hadoop.hdfs.server.common.HdfsServerConstants.XATTR_ERA
  * stores all metadata in memory (O(n) memory) while
  * {@link LevelDBMetadataMap} stores metadata in LevelDB on disk (O(1) memory).
  * User can choose between them based on the time/space tradeoffs.
+ *
+ * The sections are read through a {@link MappedFSImage}. If more than one
+ * thread is configured and the image contains sub-sections, both phases
+ * decode the sub-sections in parallel.
  */
 abstract class PBImageTextWriter implements Closeable {
   private static final Logger LOG =
@@ -258,7 +260,7 @@ abstract class PBImageTextWriter implements Closeable {
     }
 
     @Override
-    public void putDirChild(long parentId, long childId) {
+    public synchronized void putDirChild(long parentId, long childId) {
       Dir parent = getOrCreateCorrupted(parentId);
       Dir child = getOrCreateCorrupted(childId);
       child.setParent(parent);
@@ -267,7 +269,7 @@ abstract class PBImageTextWriter implements Closeable {
     }
 
     @Override
-    public void putDir(INode p) {
+    public synchronized void putDir(INode p) {
       Preconditions.checkState(!dirMap.containsKey(p.getId()));
       Dir dir = new Dir(p.getId(), p.getName().toStringUtf8());
       dirMap.put(p.getId(), dir);
@@ -437,12 +439,13 @@ abstract class PBImageTextWriter implements Closeable {
     }
 
     @Override
-    public void putDirChild(long parentId, long childId) throws IOException {
+    public synchronized void putDirChild(long parentId, long childId)
+        throws IOException {
       dirChildMap.put(toBytes(childId), toBytes(parentId));
     }
 
     @Override
-    public void putDir(INode dir) throws IOException {
+    public synchronized void putDir(INode dir) throws IOException {
       Preconditions.checkArgument(dir.hasDirectory(),
           "INode %s (%s) is not a directory.", dir.getId(), dir.getName());
       dirMap.put(toBytes(dir.getId()), toBytes(dir.getName().toStringUtf8()));
@@ -511,7 +514,6 @@ abstract class PBImageTextWriter implements Closeable {
   private final PrintStream out;
   private MetadataMap metadataMap = null;
   private String delimiter;
-  private File filename;
   private int numThreads;
   private String parallelOutputFile;
 
@@ -592,7 +594,7 @@ abstract class PBImageTextWriter implements Closeable {
   abstract protected void afterOutput() throws IOException;
 
   public void visit(String filePath) throws IOException {
-    filename = new File(filePath);
+    File filename = new File(filePath);
     RandomAccessFile file = new RandomAccessFile(filePath, "r");
     Configuration conf = new Configuration();
     if (!FSImageUtil.checkFileFormat(file)) {
@@ -601,8 +603,7 @@ abstract class PBImageTextWriter implements Closeable {
 
     FileSummary summary = FSImageUtil.loadSummary(file);
 
-    try (FileInputStream fin = new FileInputStream(file.getFD())) {
-      InputStream is;
+    try (MappedFSImage image = new MappedFSImage(filename, summary, conf)) {
       ArrayList<FileSummary.Section> sections =
           Lists.newArrayList(summary.getSectionsList());
       Collections.sort(sections,
@@ -626,10 +627,6 @@ abstract class PBImageTextWriter implements Closeable {
 
       ImmutableList<Long> refIdList = null;
       for (FileSummary.Section section : sections) {
-        fin.getChannel().position(section.getOffset());
-        is = FSImageUtil.wrapInputStreamForCompression(conf,
-            summary.getCodec(), new BufferedInputStream(new LimitInputStream(
-                fin, section.getLength())));
         SectionName sectionName = SectionName.fromString(section.getName());
         if (sectionName == null) {
           throw new IOException("Unrecognized section " + section.getName());
@@ -637,23 +634,29 @@ abstract class PBImageTextWriter implements Closeable {
         switch (sectionName) {
         case STRING_TABLE:
           LOG.info("Loading string table");
-          stringTable = FSImageLoader.loadStringTable(is);
+          try (InputStream is = image.getInputStreamForSection(section)) {
+            stringTable = FSImageLoader.loadStringTable(is);
+          }
           break;
         case INODE_REFERENCE:
           // Load INodeReference so that all INodes can be processed.
           // Snapshots are not handled and will just be ignored for now.
           LOG.info("Loading inode references");
-          refIdList = FSImageLoader.loadINodeReferenceSection(is);
+          try (InputStream is = image.getInputStreamForSection(section)) {
+            refIdList = FSImageLoader.loadINodeReferenceSection(is);
+          }
           break;
         default:
           break;
         }
       }
 
-      loadDirectories(fin, sections, summary, conf);
-      loadINodeDirSection(fin, sections, summary, conf, refIdList);
+      loadDirectories(image, sections);
+      loadINodeDirSection(image, sections, refIdList);
       metadataMap.sync();
-      output(conf, summary, fin, sections);
+      output(image, sections);
+    } finally {
+      file.close();
     }
   }
 
@@ -670,37 +673,32 @@ abstract class PBImageTextWriter implements Closeable {
     return metadataMap.getParentId(id);
   }
 
-  private void output(Configuration conf, FileSummary summary,
-      FileInputStream fin, ArrayList<FileSummary.Section> sections)
-      throws IOException {
+  private void output(MappedFSImage image,
+      ArrayList<FileSummary.Section> sections) throws IOException {
     ArrayList<FileSummary.Section> allINodeSubSections =
-        getINodeSubSections(sections);
+        getSubSectionsOfName(sections, SectionName.INODE_SUB);
     if (numThreads > 1 && !parallelOutputFile.equals("-") &&
         allINodeSubSections.size() > 1) {
-      outputInParallel(conf, summary, allINodeSubSections);
+      outputInParallel(image, allINodeSubSections);
     } else {
       LOG.info("Serial output due to threads num: {}, parallel output file: {}, " +
           "subSections: {}.", numThreads, parallelOutputFile, allINodeSubSections.size());
-      outputInSerial(conf, summary, fin, sections);
+      outputInSerial(image, sections);
     }
   }
 
-  private void outputInSerial(Configuration conf, FileSummary summary,
-      FileInputStream fin, ArrayList<FileSummary.Section> sections)
-      throws IOException {
-    InputStream is;
+  private void outputInSerial(MappedFSImage image,
+      ArrayList<FileSummary.Section> sections) throws IOException {
     long startTime = Time.monotonicNow();
     serialOutStream().println(getHeader());
     for (FileSummary.Section section : sections) {
       if (SectionName.fromString(section.getName()) == SectionName.INODE) {
-        fin.getChannel().position(section.getOffset());
-        is = FSImageUtil.wrapInputStreamForCompression(conf,
-            summary.getCodec(), new BufferedInputStream(new LimitInputStream(
-                fin, section.getLength())));
-        INodeSection s = INodeSection.parseDelimitedFrom(is);
-        LOG.info("Found {} INodes in the INode section", s.getNumInodes());
-        int count = outputINodes(is, serialOutStream());
-        LOG.info("Outputted {} INodes.", count);
+        try (InputStream is = image.getInputStreamForSection(section)) {
+          INodeSection s = INodeSection.parseDelimitedFrom(is);
+          LOG.info("Found {} INodes in the INode section", s.getNumInodes());
+          int count = outputINodes(is, serialOutStream());
+          LOG.info("Outputted {} INodes.", count);
+        }
       }
     }
     afterOutput();
@@ -714,7 +712,7 @@ abstract class PBImageTextWriter implements Closeable {
    * output parsed results of each section to tmp file in order.
    * STEP2: Merge tmp files.
    */
-  private void outputInParallel(Configuration conf, FileSummary summary,
+  private void outputInParallel(MappedFSImage image,
       ArrayList<FileSummary.Section> subSections)
       throws IOException {
     int nThreads = Integer.min(numThreads, subSections.size());
@@ -725,7 +723,6 @@ abstract class PBImageTextWriter implements Closeable {
     ExecutorService executorService = Executors.newFixedThreadPool(nThreads);
     AtomicLong expectedINodes = new AtomicLong(0);
     AtomicLong totalParsed = new AtomicLong(0);
-    String codec = summary.getCodec();
     String[] paths = new String[subSections.size()];
 
     for (int i = 0; i < subSections.size(); i++) {
@@ -736,7 +733,7 @@ abstract class PBImageTextWriter implements Closeable {
         InputStream is = null;
         try (PrintStream outStream = new PrintStream(paths[index], "UTF-8")) {
           long startTime = Time.monotonicNow();
-          is = getInputStreamForSection(subSections.get(index), codec, conf);
+          is = image.getInputStreamForSection(subSections.get(index));
           if (index == 0) {
             // The first iNode section has a header which must be processed first
             INodeSection s = INodeSection.parseDelimitedFrom(is);
@@ -796,46 +793,117 @@ abstract class PBImageTextWriter implements Closeable {
   }
 
   /** Load the directories in the INode section. */
-  private void loadDirectories(
-      FileInputStream fin, List<FileSummary.Section> sections,
-      FileSummary summary, Configuration conf)
-      throws IOException {
+  private void loadDirectories(MappedFSImage image,
+      ArrayList<FileSummary.Section> sections) throws IOException {
     LOG.info("Loading directories");
     long startTime = Time.monotonicNow();
-    for (FileSummary.Section section : sections) {
-      if (SectionName.fromString(section.getName())
-          == SectionName.INODE) {
-        fin.getChannel().position(section.getOffset());
-        InputStream is = FSImageUtil.wrapInputStreamForCompression(conf,
-            summary.getCodec(), new BufferedInputStream(new LimitInputStream(
-                fin, section.getLength())));
-        loadDirectoriesInINodeSection(is);
+    ArrayList<FileSummary.Section> subSections =
+        getSubSectionsOfName(sections, SectionName.INODE_SUB);
+    if (numThreads > 1 && subSections.size() > 1) {
+      final AtomicInteger numDirs = new AtomicInteger(0);
+      processInParallel(image, subSections, (index, is) -> {
+        if (index == 0) {
+          // The first iNode section has a header which must be skipped
+          INodeSection.parseDelimitedFrom(is);
+        }
+        while (true) {
+          INode p = INode.parseDelimitedFrom(is);
+          if (p == null) {
+            break;
+          }
+          checkNode(p, numDirs);
+        }
+      });
+      LOG.info("Found {} directories in INode section.", numDirs);
+    } else {
+      for (FileSummary.Section section : sections) {
+        if (SectionName.fromString(section.getName())
+            == SectionName.INODE) {
+          try (InputStream is = image.getInputStreamForSection(section)) {
+            loadDirectoriesInINodeSection(is);
+          }
+        }
       }
     }
     long timeTaken = Time.monotonicNow() - startTime;
     LOG.info("Finished loading directories in {}ms", timeTaken);
   }
 
-  private void loadINodeDirSection(
-      FileInputStream fin, List<FileSummary.Section> sections,
-      FileSummary summary, Configuration conf, List<Long> refIdList)
+  private void loadINodeDirSection(MappedFSImage image,
+      ArrayList<FileSummary.Section> sections, List<Long> refIdList)
       throws IOException {
     LOG.info("Loading INode directory section.");
     long startTime = Time.monotonicNow();
-    for (FileSummary.Section section : sections) {
-      if (SectionName.fromString(section.getName())
-          == SectionName.INODE_DIR) {
-        fin.getChannel().position(section.getOffset());
-        InputStream is = FSImageUtil.wrapInputStreamForCompression(conf,
-            summary.getCodec(), new BufferedInputStream(
-                new LimitInputStream(fin, section.getLength())));
-        buildNamespace(is, refIdList);
+    ArrayList<FileSummary.Section> subSections =
+        getSubSectionsOfName(sections, SectionName.INODE_DIR_SUB);
+    if (numThreads > 1 && subSections.size() > 1) {
+      processInParallel(image, subSections,
+          (index, is) -> buildNamespace(is, refIdList));
+    } else {
+      for (FileSummary.Section section : sections) {
+        if (SectionName.fromString(section.getName())
+            == SectionName.INODE_DIR) {
+          try (InputStream is = image.getInputStreamForSection(section)) {
+            buildNamespace(is, refIdList);
+          }
+        }
       }
     }
     long timeTaken = Time.monotonicNow() - startTime;
     LOG.info("Finished loading INode directory section in {}ms", timeTaken);
   }
 
+  /**
+   * Processes a sub-section of the image.
+   */
+  @FunctionalInterface
+  private interface SubSectionProcessor {
+    void process(int index, InputStream is) throws IOException;
+  }
+
+  /**
+   * Decode the given sub-sections concurrently with up to {@link #numThreads}
+   * threads, and wait for all of them to be processed. The metadata map
+   * serializes the updates made by the processors.
+   */
+  private void processInParallel(MappedFSImage image,
+      ArrayList<FileSummary.Section> subSections,
+      SubSectionProcessor processor) throws IOException {
+    int nThreads = Integer.min(numThreads, subSections.size());
+    LOG.info("Processing {} sub-sections using {} threads",
+        subSections.size(), nThreads);
+    final CopyOnWriteArrayList<IOException> exceptions =
+        new CopyOnWriteArrayList<>();
+    CountDownLatch latch = new CountDownLatch(subSections.size());
+    ExecutorService executorService = Executors.newFixedThreadPool(nThreads);
+    try {
+      for (int i = 0; i < subSections.size(); i++) {
+        final int index = i;
+        executorService.submit(() -> {
+          try (InputStream is =
+              image.getInputStreamForSection(subSections.get(index))) {
+            processor.process(index, is);
+          } catch (Exception e) {
+            exceptions.add(new IOException(e));
+          } finally {
+            latch.countDown();
+          }
+        });
+      }
+      latch.await();
+    } catch (InterruptedException e) {
+      LOG.error("Interrupted waiting for countdown latch", e);
+      throw new IOException(e);
+    } finally {
+      executorService.shutdown();
+    }
+    if (exceptions.size() != 0) {
+      LOG.error("Failed to process sub-sections, {} exception(s) occurred.",
+          exceptions.size());
+      throw exceptions.get(0);
+    }
+  }
+
   /**
    * Checks the inode (saves if directory), and counts them. Can be overridden
    * if additional steps are taken when iterating through INodeSection.
@@ -905,8 +973,8 @@ abstract class PBImageTextWriter implements Closeable {
       throws IOException {
     long ignored = 0;
     long ignoredSnapshots = 0;
-    // As the input stream is a LimitInputStream, the reading will stop when
-    // EOF is encountered at the end of the stream.
+    // As the input stream is limited to the section, the reading will stop
+    // when EOF is encountered at the end of the stream.
     int count = 0;
     while (true) {
       INode p = INode.parseDelimitedFrom(in);
@@ -960,47 +1028,19 @@ abstract class PBImageTextWriter implements Closeable {
     return HdfsConstants.BLOCK_STORAGE_POLICY_ID_UNSPECIFIED;
   }
 
-  private ArrayList<FileSummary.Section> getINodeSubSections(
-      ArrayList<FileSummary.Section> sections) {
+  private ArrayList<FileSummary.Section> getSubSectionsOfName(
+      ArrayList<FileSummary.Section> sections, SectionName name) {
     ArrayList<FileSummary.Section> subSections = new ArrayList<>();
     Iterator<FileSummary.Section> iter = sections.iterator();
     while (iter.hasNext()) {
       FileSummary.Section s = iter.next();
-      if (SectionName.fromString(s.getName()) == SectionName.INODE_SUB) {
+      if (SectionName.fromString(s.getName()) == name) {
         subSections.add(s);
       }
     }
     return subSections;
   }
 
-  /**
-   * Given a FSImage FileSummary.section, return a LimitInput stream set to
-   * the starting position of the section and limited to the section length.
-   * @param section The FileSummary.Section containing the offset and length
-   * @param compressionCodec The compression codec in use, if any
-   * @return An InputStream for the given section
-   * @throws IOException
-   */
-  private InputStream getInputStreamForSection(FileSummary.Section section,
-      String compressionCodec, Configuration conf)
-      throws IOException {
-    // channel of RandomAccessFile is not thread safe, use File
-    FileInputStream fin = new FileInputStream(filename);
-    try {
-      FileChannel channel = fin.getChannel();
-      channel.position(section.getOffset());
-      InputStream in = new BufferedInputStream(new LimitInputStream(fin,
-          section.getLength()));
-
-      in = FSImageUtil.wrapInputStreamForCompression(conf,
-          compressionCodec, in);
-      return in;
-    } catch (IOException e) {
-      fin.close();
-      throw e;
-    }
-  }
-
   /**
    * @param srcPaths Source files of contents to be merged
    * @param resultPath Merged file path
@@ -0,0 +1,287 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.util;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.TreeMap;
+
+/**
+ * A compressed set of longs, iterated in ascending order.
+ *
+ * The values are split into chunks of 2^16 consecutive values, keyed by
+ * their high 48 bits. A chunk stores the low 16 bits of its values in a
+ * sorted array while it has few of them, and in a bitmap of 8KB once it has
+ * more than {@link #ARRAY_MAX} of them. Dense ranges of values, such as
+ * sequentially allocated block ids, thus take about one bit per value
+ * instead of an object per value.
+ *
+ * This class does not support concurrent modification of the set while
+ * iterating it, nor removal through the iterator.
+ *
+ * This class is not thread safe.
+ */
+public class LongBitmap implements Iterable<Long> {
+  /** Number of low bits of a value stored in its chunk. */
+  private static final int CHUNK_BITS = 16;
+  private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+  private static final int BITMAP_WORDS = (1 << CHUNK_BITS) / Long.SIZE;
+  /** A chunk with more values than this is stored as a bitmap. */
+  static final int ARRAY_MAX = 4096;
+  /** A bitmap chunk with fewer values than this is stored as an array. */
+  static final int BITMAP_MIN = ARRAY_MAX / 2;
+
+  /** Chunks keyed by the high bits of their values. */
+  private final TreeMap<Long, Chunk> chunks = new TreeMap<>();
+  private long size;
+  private int modification;
+
+  /**
+   * The values of one chunk, either as a sorted array or as a bitmap,
+   * depending on how many there are.
+   */
+  private static final class Chunk {
+    /** The sorted low bits of the values, or null if stored as a bitmap. */
+    private char[] array = new char[4];
+    /** The bitmap of the values, or null if stored as an array. */
+    private long[] bitmap;
+    private int cardinality;
+
+    boolean contains(int low) {
+      if (bitmap != null) {
+        return (bitmap[low >>> 6] & (1L << low)) != 0;
+      }
+      return Arrays.binarySearch(array, 0, cardinality, (char) low) >= 0;
+    }
+
+    boolean add(int low) {
+      if (bitmap != null) {
+        long before = bitmap[low >>> 6];
+        bitmap[low >>> 6] |= 1L << low;
+        if (before == bitmap[low >>> 6]) {
+          return false;
+        }
+        cardinality++;
+        return true;
+      }
+      int i = Arrays.binarySearch(array, 0, cardinality, (char) low);
+      if (i >= 0) {
+        return false;
+      }
+      if (cardinality == ARRAY_MAX) {
+        toBitmap();
+        return add(low);
+      }
+      i = -i - 1;
+      if (cardinality == array.length) {
+        array = Arrays.copyOf(array, Math.min(array.length * 2, ARRAY_MAX));
+      }
+      System.arraycopy(array, i, array, i + 1, cardinality - i);
+      array[i] = (char) low;
+      cardinality++;
+      return true;
+    }
+
+    boolean remove(int low) {
+      if (bitmap != null) {
+        long before = bitmap[low >>> 6];
+        bitmap[low >>> 6] &= ~(1L << low);
+        if (before == bitmap[low >>> 6]) {
+          return false;
+        }
+        if (--cardinality < BITMAP_MIN) {
+          toArray();
+        }
+        return true;
+      }
+      int i = Arrays.binarySearch(array, 0, cardinality, (char) low);
+      if (i < 0) {
+        return false;
+      }
+      System.arraycopy(array, i + 1, array, i, cardinality - i - 1);
+      cardinality--;
+      return true;
+    }
+
+    /**
+     * @return the smallest value of the chunk not lower than the given one,
+     * or -1 if there is none.
+     */
+    int next(int from) {
+      if (bitmap != null) {
+        int word = from >>> 6;
+        if (word >= BITMAP_WORDS) {
+          return -1;
+        }
+        long bits = bitmap[word] & (-1L << from);
+        while (bits == 0) {
+          if (++word == BITMAP_WORDS) {
+            return -1;
+          }
+          bits = bitmap[word];
+        }
+        return word * Long.SIZE + Long.numberOfTrailingZeros(bits);
+      }
+      int i = Arrays.binarySearch(array, 0, cardinality, (char) from);
+      if (i < 0) {
+        i = -i - 1;
+      }
+      return i < cardinality ? array[i] : -1;
+    }
+
+    private void toBitmap() {
+      bitmap = new long[BITMAP_WORDS];
+      for (int i = 0; i < cardinality; i++) {
+        bitmap[array[i] >>> 6] |= 1L << array[i];
+      }
+      array = null;
+    }
+
+    private void toArray() {
+      array = new char[Math.max(4, cardinality)];
+      int n = 0;
+      for (int word = 0; word < BITMAP_WORDS; word++) {
+        long bits = bitmap[word];
+        while (bits != 0) {
+          array[n++] = (char) (word * Long.SIZE
+              + Long.numberOfTrailingZeros(bits));
+          bits &= bits - 1;
+        }
+      }
+      bitmap = null;
+    }
+  }
+
+  /** @return true if the set contains the given value. */
+  public boolean contains(long value) {
+    Chunk chunk = chunks.get(value >> CHUNK_BITS);
+    return chunk != null && chunk.contains((int) value & CHUNK_MASK);
+  }
+
+  /**
+   * Add a value to the set.
+   * @return true if the value was not already in the set.
+   */
+  public boolean add(long value) {
+    Chunk chunk = chunks.computeIfAbsent(value >> CHUNK_BITS, k -> new Chunk());
+    if (!chunk.add((int) value & CHUNK_MASK)) {
+      return false;
+    }
+    size++;
+    modification++;
+    return true;
+  }
+
+  /**
+   * Remove a value from the set.
+   * @return true if the value was in the set.
+   */
+  public boolean remove(long value) {
+    Long key = value >> CHUNK_BITS;
+    Chunk chunk = chunks.get(key);
+    if (chunk == null || !chunk.remove((int) value & CHUNK_MASK)) {
+      return false;
+    }
+    if (chunk.cardinality == 0) {
+      chunks.remove(key);
+    }
+    size--;
+    modification++;
+    return true;
+  }
+
+  /** @return the number of values in the set. */
+  public long size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /** Remove all the values from the set. */
+  public void clear() {
+    chunks.clear();
+    size = 0;
+    modification++;
+  }
+
+  /** @return an iterator over all the values, in ascending order. */
+  @Override
+  public PrimitiveIterator.OfLong iterator() {
+    return iterator(Long.MIN_VALUE);
+  }
+
+  /**
+   * @return an iterator over the values not lower than the given one, in
+   * ascending order.
+   */
+  public PrimitiveIterator.OfLong iterator(long from) {
+    return new LongBitmapIterator(from);
+  }
+
+  private final class LongBitmapIterator implements PrimitiveIterator.OfLong {
+    private final Iterator<Map.Entry<Long, Chunk>> chunkIterator;
+    private final int expectedModification = modification;
+    private Map.Entry<Long, Chunk> chunk;
+    /** The low bits to look for the next value from, in the chunk. */
+    private int from;
+    /** The low bits of the next value in the chunk, or -1 if unknown. */
+    private int next = -1;
+
+    private LongBitmapIterator(long start) {
+      chunkIterator =
+          chunks.tailMap(start >> CHUNK_BITS, true).entrySet().iterator();
+      if (chunkIterator.hasNext()) {
+        chunk = chunkIterator.next();
+        from = chunk.getKey() == start >> CHUNK_BITS
+            ? (int) start & CHUNK_MASK : 0;
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (modification != expectedModification) {
+        throw new ConcurrentModificationException();
+      }
+      while (next < 0 && chunk != null) {
+        next = from <= CHUNK_MASK ? chunk.getValue().next(from) : -1;
+        if (next < 0) {
+          chunk = chunkIterator.hasNext() ? chunkIterator.next() : null;
+          from = 0;
+        }
+      }
+      return next >= 0;
+    }
+
+    @Override
+    public long nextLong() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      long value = (chunk.getKey() << CHUNK_BITS) | next;
+      from = next + 1;
+      next = -1;
+      return value;
+    }
+  }
+}
@@ -18,24 +18,33 @@
 package org.apache.hadoop.hdfs;
 
 import static org.apache.hadoop.hdfs.client.HdfsClientConfigKeys.DFS_CLIENT_READ_USE_CACHE_PRIORITY;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ExecutionException;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileRange;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.StorageType;
+import org.apache.hadoop.fs.StreamCapabilities;
 import org.apache.hadoop.hdfs.client.HdfsClientConfigKeys;
 import org.apache.hadoop.hdfs.protocol.DatanodeID;
 import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
@@ -287,4 +296,53 @@ public class TestDFSInputStream {
       cluster.shutdown();
     }
   }
+
+  @Test(timeout=60000)
+  public void testReadVectored() throws Exception {
+    Configuration conf = new Configuration();
+    conf.setLong(DFSConfigKeys.DFS_BLOCK_SIZE_KEY, 4096);
+    MiniDFSCluster cluster =
+        new MiniDFSCluster.Builder(conf).numDataNodes(1).build();
+    try {
+      DistributedFileSystem fs = cluster.getFileSystem();
+      Path file = new Path("/testReadVectored");
+      byte[] data = new byte[5 * 4096];
+      new Random(12345L).nextBytes(data);
+      try (FSDataOutputStream out = fs.create(file)) {
+        out.write(data);
+      }
+
+      List<FileRange> ranges = new ArrayList<>();
+      // merged with the next range
+      ranges.add(FileRange.createFileRange(100, 200));
+      ranges.add(FileRange.createFileRange(350, 100));
+      // across blocks
+      ranges.add(FileRange.createFileRange(4000, 300));
+      ranges.add(FileRange.createFileRange(10000, 5000));
+      ranges.add(FileRange.createFileRange(data.length - 10, 10));
+      FileRange pastEnd = FileRange.createFileRange(data.length - 5, 10);
+      List<FileRange> allRanges = new ArrayList<>(ranges);
+      allRanges.add(pastEnd);
+      try (FSDataInputStream in = fs.open(file)) {
+        assertTrue(in.hasCapability(StreamCapabilities.VECTOREDIO));
+        in.readVectored(allRanges, ByteBuffer::allocate);
+        for (FileRange range : ranges) {
+          ByteBuffer buf = range.getData().get();
+          assertEquals(range.getLength(), buf.remaining());
+          byte[] actual = new byte[range.getLength()];
+          buf.get(actual);
+          assertArrayEquals(Arrays.copyOfRange(data, (int) range.getOffset(),
+              (int) range.getOffset() + range.getLength()), actual);
+        }
+        try {
+          pastEnd.getData().get();
+          fail("read past the end of the file");
+        } catch (ExecutionException e) {
+          assertTrue(e.getCause() instanceof EOFException);
+        }
+      }
+    } finally {
+      cluster.shutdown();
+    }
+  }
 }
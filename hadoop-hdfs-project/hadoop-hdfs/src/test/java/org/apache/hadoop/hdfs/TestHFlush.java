@@ -24,17 +24,22 @@ import static org.junit.Assert.assertTrue;
 import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.util.EnumSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FSDataOutputStream;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hdfs.client.HdfsClientConfigKeys;
+import org.apache.hadoop.hdfs.client.HdfsDataOutputStream;
 import org.apache.hadoop.hdfs.client.HdfsDataOutputStream.SyncFlag;
 import org.apache.hadoop.hdfs.protocol.LocatedBlocks;
 import org.apache.hadoop.hdfs.server.datanode.DataNode;
 import org.apache.hadoop.io.IOUtils;
 import org.apache.hadoop.test.GenericTestUtils;
+import org.apache.hadoop.test.LambdaTestUtils;
 import org.junit.Test;
 import org.slf4j.event.Level;
 
@@ -503,4 +508,106 @@ public class TestHFlush {
       cluster.shutdown();
     }
   }
+
+  /**
+   * Test that asynchronous hflush and hsync of many streams make the data
+   * visible, and update the length in the NameNode if requested.
+   */
+  @Test(timeout = 120000)
+  public void testHFlushAsync() throws Exception {
+    final int numFiles = 50;
+    final int fileLen = 1000;
+    byte[] fileContents = AppendTestUtil.initBuffer(2 * fileLen);
+    Configuration conf = new HdfsConfiguration();
+    conf.setInt(HdfsClientConfigKeys.Write.ASYNC_FLUSH_THREADPOOL_SIZE_KEY, 2);
+    MiniDFSCluster cluster =
+        new MiniDFSCluster.Builder(conf).numDataNodes(2).build();
+    try {
+      DistributedFileSystem fs = cluster.getFileSystem();
+      HdfsDataOutputStream[] streams = new HdfsDataOutputStream[numFiles];
+      CompletableFuture<?>[] futures = new CompletableFuture<?>[numFiles];
+      for (int i = 0; i < numFiles; i++) {
+        streams[i] = (HdfsDataOutputStream) AppendTestUtil.createFile(fs,
+            new Path("/hflush-async-" + i), 2);
+        streams[i].write(fileContents, 0, fileLen);
+        futures[i] = streams[i].hflushAsync();
+      }
+      CompletableFuture.allOf(futures).get();
+      for (int i = 0; i < numFiles; i++) {
+        AppendTestUtil.checkFullFile(fs, new Path("/hflush-async-" + i),
+            fileLen, fileContents, "Failed to hflush asynchronously", false);
+      }
+
+      for (int i = 0; i < numFiles; i++) {
+        streams[i].write(fileContents, fileLen, fileLen);
+        futures[i] =
+            streams[i].hsyncAsync(EnumSet.of(SyncFlag.UPDATE_LENGTH));
+      }
+      CompletableFuture.allOf(futures).get();
+      for (int i = 0; i < numFiles; i++) {
+        Path path = new Path("/hflush-async-" + i);
+        assertEquals(2 * fileLen, fs.getFileStatus(path).getLen());
+        AppendTestUtil.checkFullFile(fs, path, 2 * fileLen, fileContents,
+            "Failed to hsync asynchronously", false);
+        streams[i].close();
+      }
+
+      // a closed stream fails the flush
+      LambdaTestUtils.intercept(ExecutionException.class,
+          () -> streams[0].hflushAsync().get());
+    } finally {
+      cluster.shutdown();
+    }
+  }
+
+  /**
+   * Test that overlapping asynchronous hsyncs of a stream update the length
+   * in the NameNode in order, even if the first update is delayed.
+   */
+  @Test(timeout = 120000)
+  public void testHSyncAsyncInOrder() throws Exception {
+    final int fileLen = 1000;
+    byte[] fileContents = AppendTestUtil.initBuffer(2 * fileLen);
+    Configuration conf = new HdfsConfiguration();
+    conf.setInt(HdfsClientConfigKeys.Write.ASYNC_FLUSH_THREADPOOL_SIZE_KEY, 2);
+    MiniDFSCluster cluster =
+        new MiniDFSCluster.Builder(conf).numDataNodes(2).build();
+    DFSClientFaultInjector old = DFSClientFaultInjector.get();
+    try {
+      final AtomicBoolean delayed = new AtomicBoolean();
+      DFSClientFaultInjector.set(new DFSClientFaultInjector() {
+        @Override
+        public void delayBeforeFsync() {
+          if (delayed.compareAndSet(false, true)) {
+            try {
+              Thread.sleep(1000);
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+          }
+        }
+      });
+      DistributedFileSystem fs = cluster.getFileSystem();
+      Path path = new Path("/hsync-async-order");
+      HdfsDataOutputStream out =
+          (HdfsDataOutputStream) AppendTestUtil.createFile(fs, path, 2);
+      out.write(fileContents, 0, fileLen);
+      CompletableFuture<Void> first =
+          out.hsyncAsync(EnumSet.of(SyncFlag.UPDATE_LENGTH));
+      out.write(fileContents, fileLen, fileLen);
+      CompletableFuture<Void> second =
+          out.hsyncAsync(EnumSet.of(SyncFlag.UPDATE_LENGTH));
+
+      second.get();
+      assertTrue(delayed.get());
+      // the delayed first hsync completed before the second one
+      assertTrue(first.isDone());
+      first.get();
+      assertEquals(2 * fileLen, fs.getFileStatus(path).getLen());
+      out.close();
+    } finally {
+      DFSClientFaultInjector.set(old);
+      cluster.shutdown();
+    }
+  }
 }
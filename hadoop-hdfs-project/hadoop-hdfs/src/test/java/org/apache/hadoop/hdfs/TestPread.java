@@ -25,6 +25,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
@@ -770,6 +771,90 @@ public class TestPread {
     }
   }
 
+  /**
+   * Test that adaptive hedged reads avoid a datanode which was slow recently,
+   * hedge based on the recent latencies, and count the wins and losses of
+   * each datanode.
+   */
+  @Test(timeout = 60000)
+  public void testAdaptiveHedgedRead() throws Exception {
+    Configuration conf = new Configuration();
+    conf.setInt(HdfsClientConfigKeys.HedgedRead.THREADPOOL_SIZE_KEY, 5);
+    conf.setLong(HdfsClientConfigKeys.HedgedRead.THRESHOLD_MILLIS_KEY,
+        60000);
+    conf.setBoolean(HdfsClientConfigKeys.HedgedRead.ADAPTIVE_ENABLED_KEY,
+        true);
+    conf.setDouble(HdfsClientConfigKeys.HedgedRead.ADAPTIVE_PERCENTILE_KEY,
+        50);
+    // don't share the latencies with the clients of the other tests
+    conf.set(HdfsClientConfigKeys.DFS_CLIENT_CONTEXT,
+        "testAdaptiveHedgedRead");
+    DFSClientFaultInjector old = DFSClientFaultInjector.get();
+    final AtomicInteger reads = new AtomicInteger();
+    try (MiniDFSCluster cluster =
+             new MiniDFSCluster.Builder(conf).numDataNodes(3).build()) {
+      DistributedFileSystem fileSys = cluster.getFileSystem();
+      DFSClient dfsClient = fileSys.getClient();
+      DatanodeLatencyTracker tracker =
+          dfsClient.getClientContext().getDatanodeLatencyTracker();
+      DFSHedgedReadMetrics metrics = dfsClient.getHedgedReadMetrics();
+      Path file = new Path("/adaptiveHedgedRead.dat");
+      DFSTestUtil.createFile(fileSys, file, blockSize, (short) 3, seed);
+
+      try (DFSInputStream in = dfsClient.open(file.toString())) {
+        LocatedBlock block = in.getBlockAt(0);
+        DatanodeInfo[] nodes = block.getLocations();
+        assertEquals(3, nodes.length);
+        // no latency yet
+        assertEquals(60000, in.getHedgedReadThresholdMillis());
+        assertEquals(nodes[0], in.getBestNodeDNAddrPair(block, null).info);
+
+        for (int i = 0; i < 20; i++) {
+          tracker.addLatency(nodes[0], 1000);
+          tracker.addLatency(nodes[1], 1);
+          tracker.addLatency(nodes[2], 1);
+        }
+        assertEquals(1, in.getHedgedReadThresholdMillis());
+        assertEquals(nodes[1], in.getBestNodeDNAddrPair(block, null).info);
+        // the slow datanode is still read if it is the only one left
+        assertEquals(nodes[0], in.getBestNodeDNAddrPair(block,
+            Arrays.asList(nodes[1], nodes[2])).info);
+
+        // delay the first read so that the read is hedged
+        DFSClientFaultInjector.set(new DFSClientFaultInjector() {
+          @Override
+          public void readFromDatanodeDelay() {
+            if (reads.getAndIncrement() == 0) {
+              try {
+                Thread.sleep(500);
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+            }
+          }
+        });
+        long wins = getCount(metrics.getHedgedReadWinsPerNode(), nodes[2]);
+        long losses =
+            getCount(metrics.getHedgedReadLossesPerNode(), nodes[1]);
+        byte[] buf = new byte[1024];
+        assertEquals(buf.length, in.read(0, buf, 0, buf.length));
+        assertEquals(wins + 1,
+            getCount(metrics.getHedgedReadWinsPerNode(), nodes[2]));
+        assertEquals(losses + 1,
+            getCount(metrics.getHedgedReadLossesPerNode(), nodes[1]));
+        // the latency of the losing read is recorded once it completes
+        GenericTestUtils.waitFor(
+            () -> tracker.getPercentile(nodes[1], 100) >= 500, 10, 10000);
+      }
+    } finally {
+      DFSClientFaultInjector.set(old);
+    }
+  }
+
+  private static long getCount(Map<String, Long> counts, DatanodeInfo node) {
+    return counts.getOrDefault(node.getXferAddr(), 0L);
+  }
+
   public static void main(String[] args) throws Exception {
     new TestPread().testPreadDFS();
   }
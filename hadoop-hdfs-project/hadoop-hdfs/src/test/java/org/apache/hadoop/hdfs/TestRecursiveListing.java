@@ -0,0 +1,220 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hdfs;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.LocatedFileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.hdfs.protocol.HdfsFileStatus;
+import org.apache.hadoop.hdfs.protocol.RecursiveDirectoryListing;
+import org.apache.hadoop.security.AccessControlException;
+import org.apache.hadoop.security.UserGroupInformation;
+import org.apache.hadoop.test.LambdaTestUtils;
+import org.apache.hadoop.util.Lists;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.FileNotFoundException;
+import java.security.PrivilegedExceptionAction;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the recursive listing API.
+ */
+public class TestRecursiveListing {
+
+  private static final int LIMIT = 7;
+  private static final int FIRST_LEVEL_DIRS = 3;
+  private static final int SECOND_LEVEL_DIRS = 2;
+  private static final int FILES_PER_DIR = 4;
+  private static final Path ROOT = new Path("/tree");
+  private static final Path DATA_FILE_PATH = new Path(ROOT, "datafile");
+
+  private static MiniDFSCluster cluster;
+  private static DistributedFileSystem dfs;
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setInt(DFSConfigKeys.DFS_NAMENODE_RECURSIVE_LISTING_LIMIT, LIMIT);
+    cluster = new MiniDFSCluster.Builder(conf)
+        .numDataNodes(1)
+        .build();
+    dfs = cluster.getFileSystem();
+    for (int i = 0; i < FIRST_LEVEL_DIRS; i++) {
+      for (int j = 0; j < SECOND_LEVEL_DIRS; j++) {
+        Path dir = new Path(ROOT, "dir" + i + "/subdir" + j);
+        dfs.mkdirs(dir);
+        for (int k = 0; k < FILES_PER_DIR; k++) {
+          dfs.create(new Path(dir, "file" + k), (short)1).close();
+        }
+      }
+    }
+    dfs.mkdirs(new Path(ROOT, "emptydir"));
+    DFSTestUtil.createFile(dfs, DATA_FILE_PATH, 1024, (short)1, 0L);
+  }
+
+  @AfterClass
+  public static void afterClass() {
+    if (cluster != null) {
+      cluster.shutdown();
+    }
+  }
+
+  /**
+   * Walk the tree with one listStatus call per directory.
+   */
+  private static void walk(Path dir, List<Path> paths) throws Exception {
+    for (FileStatus status : dfs.listStatus(dir)) {
+      paths.add(status.getPath());
+      if (status.isDirectory()) {
+        walk(status.getPath(), paths);
+      }
+    }
+  }
+
+  private static <T extends FileStatus> List<T> toList(
+      RemoteIterator<T> it) throws Exception {
+    List<T> statuses = Lists.newArrayList();
+    while (it.hasNext()) {
+      statuses.add(it.next());
+    }
+    return statuses;
+  }
+
+  @Test
+  public void testListTree() throws Exception {
+    List<Path> expected = Lists.newArrayList();
+    walk(ROOT, expected);
+    List<FileStatus> statuses =
+        toList(dfs.recursiveListStatusIterator(ROOT));
+    assertEquals(expected.size(), statuses.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.get(i), statuses.get(i).getPath());
+      assertEquals(dfs.getFileStatus(expected.get(i)), statuses.get(i));
+    }
+
+    // every batch but the last one is full
+    int batches = 0;
+    int entries = 0;
+    byte[] cursor = HdfsFileStatus.EMPTY_NAME;
+    RecursiveDirectoryListing listing;
+    do {
+      listing = dfs.getClient().recursiveListPaths(
+          ROOT.toString(), cursor, false);
+      batches++;
+      entries += listing.getPartialListing().length;
+      cursor = listing.getCursor();
+      if (listing.hasMore()) {
+        assertEquals(LIMIT, listing.getPartialListing().length);
+      }
+    } while (listing.hasMore());
+    assertEquals(expected.size(), entries);
+    assertEquals((expected.size() + LIMIT - 1) / LIMIT, batches);
+  }
+
+  @Test
+  public void testListLocated() throws Exception {
+    List<LocatedFileStatus> statuses =
+        toList(dfs.recursiveListLocatedStatusIterator(ROOT));
+    boolean found = false;
+    for (LocatedFileStatus status : statuses) {
+      if (status.getPath().toUri().getPath().equals(
+          DATA_FILE_PATH.toString())) {
+        assertEquals(1, status.getBlockLocations().length);
+        found = true;
+      }
+    }
+    assertTrue(found);
+  }
+
+  @Test
+  public void testListFile() throws Exception {
+    List<FileStatus> statuses =
+        toList(dfs.recursiveListStatusIterator(DATA_FILE_PATH));
+    assertEquals(1, statuses.size());
+    assertEquals(dfs.getFileStatus(DATA_FILE_PATH), statuses.get(0));
+  }
+
+  @Test
+  public void testListNonExistent() throws Exception {
+    LambdaTestUtils.intercept(FileNotFoundException.class,
+        () -> dfs.recursiveListStatusIterator(new Path("/nonexistent")));
+  }
+
+  @Test
+  public void testResumeAfterCursorDeleted() throws Exception {
+    final Path dir = new Path("/resume");
+    for (int i = 0; i < 3; i++) {
+      for (int j = 0; j < 3; j++) {
+        dfs.create(new Path(dir, "d" + i + "/f" + j), (short)1).close();
+      }
+    }
+    // d0, d0/f0, d0/f1, d0/f2, d1, d1/f0, d1/f1
+    RecursiveDirectoryListing listing =
+        dfs.getClient().recursiveListPaths(dir.toString(),
+            HdfsFileStatus.EMPTY_NAME, false);
+    assertEquals(LIMIT, listing.getPartialListing().length);
+    assertEquals("d1/f1", DFSUtilClient.bytes2String(listing.getCursor()));
+    assertTrue(listing.hasMore());
+
+    // the listing continues after the cursor even if it no longer exists
+    dfs.delete(new Path(dir, "d1"), true);
+    listing = dfs.getClient().recursiveListPaths(dir.toString(),
+        listing.getCursor(), false);
+    assertFalse(listing.hasMore());
+    HdfsFileStatus[] rest = listing.getPartialListing();
+    assertEquals(4, rest.length);
+    assertEquals("d2", rest[0].getLocalName());
+    assertEquals("d2/f0", rest[1].getLocalName());
+    assertEquals("d2/f2", rest[3].getLocalName());
+    dfs.delete(dir, true);
+  }
+
+  @Test
+  public void testSubdirPermission() throws Exception {
+    final Path dir = new Path("/perms");
+    final Path noPerms = new Path(dir, "noperms");
+    dfs.mkdirs(noPerms);
+    dfs.setPermission(dir, new FsPermission(0777));
+    dfs.setPermission(noPerms, new FsPermission(0000));
+    UserGroupInformation ugi = UserGroupInformation.createUserForTesting(
+        "otheruser", new String[] {"othergroup"});
+    ugi.doAs((PrivilegedExceptionAction<Void>) () -> {
+      DistributedFileSystem fs = (DistributedFileSystem)
+          DistributedFileSystem.newInstance(dfs.getUri(), dfs.getConf());
+      try {
+        LambdaTestUtils.intercept(AccessControlException.class,
+            () -> toList(fs.recursiveListStatusIterator(dir)));
+      } finally {
+        fs.close();
+      }
+      return null;
+    });
+    dfs.delete(dir, true);
+  }
+}
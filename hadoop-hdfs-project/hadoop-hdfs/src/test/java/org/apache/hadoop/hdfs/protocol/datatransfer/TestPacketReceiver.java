@@ -77,6 +77,24 @@ public class TestPacketReceiver {
     pr.close();
   }
   
+  @Test
+  public void testRecycleHeapBuffer() throws IOException {
+    final byte[] data = AppendTestUtil.initBuffer(100);
+    final byte[] packet = prepareFakePacket(data, new byte[10]);
+
+    PacketReceiver pr = new PacketReceiver(false);
+    pr.receiveNextPacket(new ByteArrayInputStream(packet));
+    assertArrayEquals(data, remainingAsArray(pr.getDataSlice()));
+    pr.close();
+
+    // the next receiver may reuse the buffer of the closed one, the pool
+    // only keeps it while it is reachable
+    PacketReceiver next = new PacketReceiver(false);
+    next.receiveNextPacket(new ByteArrayInputStream(packet));
+    assertArrayEquals(data, remainingAsArray(next.getDataSlice()));
+    next.close();
+  }
+
   private void doTestReceiveAndMirror(PacketReceiver pr,
       int dataLen, int checksumsLen) throws IOException {
     final byte[] DATA = AppendTestUtil.initBuffer(dataLen);
@@ -18,14 +18,18 @@
 
 package org.apache.hadoop.hdfs.server.blockmanagement;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.hadoop.hdfs.StripedFileTestUtil;
 import org.apache.hadoop.hdfs.protocol.Block;
 import org.apache.hadoop.hdfs.protocol.ErasureCodingPolicy;
+import org.junit.Assume;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
@@ -42,15 +46,31 @@ import static org.junit.Assert.fail;
 public class TestLowRedundancyBlockQueues {
 
   private final ErasureCodingPolicy ecPolicy;
+  private final boolean useBitmap;
   private static AtomicLong mockINodeId = new AtomicLong(0);
+  /** The generated blocks by id, for the queues keeping only ids. */
+  private final Map<Long, BlockInfo> blocksMap = new HashMap<>();
 
-  public TestLowRedundancyBlockQueues(ErasureCodingPolicy policy) {
+  public TestLowRedundancyBlockQueues(ErasureCodingPolicy policy,
+      boolean useBitmap) {
     ecPolicy = policy;
+    this.useBitmap = useBitmap;
   }
 
-  @Parameterized.Parameters(name = "{index}: {0}")
+  @Parameterized.Parameters(name = "{index}: {0}, bitmap={1}")
   public static Collection<Object[]> policies() {
-    return StripedFileTestUtil.getECPolicies();
+    List<Object[]> params = new ArrayList<>();
+    for (Object[] policy : StripedFileTestUtil.getECPolicies()) {
+      params.add(new Object[] {policy[0], false});
+      params.add(new Object[] {policy[0], true});
+    }
+    return params;
+  }
+
+  private LowRedundancyBlocks newQueues() {
+    return useBitmap
+        ? new LowRedundancyBlocks(blocksMap::get)
+        : new LowRedundancyBlocks();
   }
 
   private BlockInfo genBlockInfo(long id) {
@@ -62,12 +82,14 @@ public class TestLowRedundancyBlockQueues {
     if (!isCorruptBlock) {
       bInfo.setBlockCollectionId(mockINodeId.incrementAndGet());
     }
+    blocksMap.put(id, bInfo);
     return bInfo;
   }
 
   private BlockInfo genStripedBlockInfo(long id, long numBytes) {
     BlockInfoStriped sblk =  new BlockInfoStriped(new Block(id), ecPolicy);
     sblk.setNumBytes(numBytes);
+    blocksMap.put(id, sblk);
     return sblk;
   }
 
@@ -111,7 +133,7 @@ public class TestLowRedundancyBlockQueues {
   @Test
   public void testDeletedBlocks() throws Exception {
     int numBlocks = 5;
-    LowRedundancyBlocks queues = new LowRedundancyBlocks();
+    LowRedundancyBlocks queues = newQueues();
     // create 5 blockinfos. The first one is corrupt.
     for (int ind = 0; ind < numBlocks; ind++) {
       BlockInfo blockInfo = genBlockInfo(ind, ind == 0);
@@ -138,9 +160,41 @@ public class TestLowRedundancyBlockQueues {
     assertEquals(1, blocks.get(2).get(0).getBlockId());
   }
 
+  /**
+   * Queues keeping only block ids return the blocks in id order, resuming
+   * after the last returned id, and skip blocks which no longer exist.
+   */
+  @Test
+  public void testBitmapQueueOrder() throws Throwable {
+    Assume.assumeTrue(useBitmap);
+    LowRedundancyBlocks queues = newQueues();
+    for (long id : new long[] {5, 1, 3}) {
+      queues.add(genBlockInfo(id), 2, 0, 0, 3);
+    }
+    List<List<BlockInfo>> blocks = queues.chooseLowRedundancyBlocks(2, false);
+    assertEquals(2, blocks.get(2).size());
+    assertEquals(1, blocks.get(2).get(0).getBlockId());
+    assertEquals(3, blocks.get(2).get(1).getBlockId());
+
+    // a block added before the bookmark waits for the next round
+    queues.add(genBlockInfo(2), 2, 0, 0, 3);
+    assertEquals(4, queues.size());
+    // the id of a deleted block is dropped once the bookmark reaches it
+    blocksMap.remove(5L);
+    blocks = queues.chooseLowRedundancyBlocks(2, false);
+    assertEquals(0, blocks.get(2).size());
+    assertEquals(3, queues.size());
+    assertEquals(3, queues.getLowRedundancyBlocks());
+    blocks = queues.chooseLowRedundancyBlocks(3, false);
+    assertEquals(3, blocks.get(2).size());
+    assertEquals(1, blocks.get(2).get(0).getBlockId());
+    assertEquals(2, blocks.get(2).get(1).getBlockId());
+    assertEquals(3, blocks.get(2).get(2).getBlockId());
+  }
+
   @Test
   public void testQueuePositionCanBeReset() throws Throwable {
-    LowRedundancyBlocks queues = new LowRedundancyBlocks();
+    LowRedundancyBlocks queues = newQueues();
     for (int i=0; i< 4; i++) {
       BlockInfo block = genBlockInfo(i);
       queues.add(block, 2, 0, 0, 3);
@@ -171,7 +225,7 @@ public class TestLowRedundancyBlockQueues {
    */
   @Test
   public void testBlockPriorities() throws Throwable {
-    LowRedundancyBlocks queues = new LowRedundancyBlocks();
+    LowRedundancyBlocks queues = newQueues();
     BlockInfo block1 = genBlockInfo(1);
     BlockInfo block2 = genBlockInfo(2);
     BlockInfo block_very_low_redundancy = genBlockInfo(3);
@@ -225,7 +279,7 @@ public class TestLowRedundancyBlockQueues {
 
   @Test
   public void testRemoveWithWrongPriority() {
-    final LowRedundancyBlocks queues = new LowRedundancyBlocks();
+    final LowRedundancyBlocks queues = newQueues();
     final BlockInfo corruptBlock = genBlockInfo(1);
     assertAdded(queues, corruptBlock, 0, 0, 3);
     assertInLevel(queues, corruptBlock,
@@ -250,7 +304,7 @@ public class TestLowRedundancyBlockQueues {
       throws Throwable {
     int groupSize = dataBlkNum + parityBlkNum;
     long numBytes = ecPolicy.getCellSize() * dataBlkNum;
-    LowRedundancyBlocks queues = new LowRedundancyBlocks();
+    LowRedundancyBlocks queues = newQueues();
     int numUR = 0;
     int numCorrupt = 0;
 
@@ -324,7 +378,7 @@ public class TestLowRedundancyBlockQueues {
 
   @Test
   public void testRemoveBlockInManyQueues() {
-    LowRedundancyBlocks neededReconstruction = new LowRedundancyBlocks();
+    LowRedundancyBlocks neededReconstruction = newQueues();
     BlockInfo block = new BlockInfoContiguous(new Block(), (short)1024);
     neededReconstruction.add(block, 2, 0, 1, 3);
     neededReconstruction.add(block, 0, 0, 0, 3);
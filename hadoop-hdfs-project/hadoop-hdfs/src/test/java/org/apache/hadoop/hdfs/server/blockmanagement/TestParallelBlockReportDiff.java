@@ -0,0 +1,116 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.blockmanagement;
+
+import static org.apache.hadoop.test.MetricsAsserts.getLongCounter;
+import static org.apache.hadoop.test.MetricsAsserts.getMetrics;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DFSTestUtil;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
+import org.apache.hadoop.hdfs.protocol.LocatedBlock;
+import org.apache.hadoop.hdfs.server.datanode.DataNode;
+import org.apache.hadoop.hdfs.server.namenode.FSNamesystem;
+import org.apache.hadoop.test.GenericTestUtils;
+import org.junit.Test;
+
+/**
+ * Tests full block reports processed with
+ * {@link DFSConfigKeys#DFS_NAMENODE_BLOCKREPORT_DIFF_THREADS_KEY} set.
+ */
+public class TestParallelBlockReportDiff {
+  private static final String NN_METRICS = "NameNodeActivity";
+  private static final int BLOCK_SIZE = 1024;
+  private static final int NUM_BLOCKS = 8;
+
+  @Test(timeout = 120000)
+  public void testParallelBlockReportDiff() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setInt(DFSConfigKeys.DFS_NAMENODE_BLOCKREPORT_DIFF_THREADS_KEY, 2);
+    conf.setLong(DFSConfigKeys.DFS_NAMENODE_MIN_BLOCK_SIZE_KEY, 0);
+    try (MiniDFSCluster cluster = new MiniDFSCluster.Builder(conf)
+        .numDataNodes(1).storagesPerDatanode(2).build()) {
+      cluster.waitActive();
+      FSNamesystem fsn = cluster.getNamesystem();
+      BlockManager bm = fsn.getBlockManager();
+      DistributedFileSystem fs = cluster.getFileSystem();
+      Path file = new Path("/file");
+      DFSTestUtil.createFile(fs, file, BLOCK_SIZE, NUM_BLOCKS * BLOCK_SIZE,
+          BLOCK_SIZE, (short) 1, 0L);
+      List<LocatedBlock> blocks = DFSTestUtil.getAllBlocks(fs, file);
+      assertEquals(NUM_BLOCKS, blocks.size());
+
+      DataNode dn = cluster.getDataNodes().get(0);
+      DatanodeDescriptor node =
+          bm.getDatanodeManager().getDatanode(dn.getDatanodeId());
+      // the initial block reports are not diffed
+      assertEquals(0, getCounter("StorageBlockReportDiffNumOps"));
+
+      // a replica missing from the blocks map is added back by the report
+      BlockInfo stored =
+          bm.getStoredBlock(blocks.get(0).getBlock().getLocalBlock());
+      fsn.writeLock();
+      try {
+        bm.removeStoredBlock(stored, node);
+      } finally {
+        fsn.writeUnlock();
+      }
+      assertEquals(0, stored.numNodes());
+
+      // a replica unknown to the NameNode is invalidated
+      ExtendedBlock b = blocks.get(NUM_BLOCKS - 1).getBlock();
+      final ExtendedBlock unknown = new ExtendedBlock(b.getBlockPoolId(),
+          b.getBlockId() + 1000, BLOCK_SIZE, b.getGenerationStamp());
+      cluster.getFsDatasetTestUtils(dn).createFinalizedReplica(unknown);
+
+      cluster.triggerBlockReports();
+      GenericTestUtils.waitFor(
+          () -> getCounter("StorageBlockReportDiffNumOps") == 2, 100, 10000);
+      assertEquals(2, getCounter("StorageBlockReportApplyNumOps"));
+
+      assertEquals(1, stored.numNodes());
+      for (LocatedBlock lb : blocks) {
+        assertEquals(1,
+            bm.getStoredBlock(lb.getBlock().getLocalBlock()).numNodes());
+      }
+      assertEquals(NUM_BLOCKS, node.numBlocks());
+      GenericTestUtils.waitFor(() -> {
+        try {
+          return dn.getFSDataset().getStoredBlock(unknown.getBlockPoolId(),
+              unknown.getBlockId()) == null;
+        } catch (Exception e) {
+          return false;
+        }
+      }, 100, 30000);
+      assertTrue(DFSTestUtil.readFile(fs, file).length() > 0);
+    }
+  }
+
+  private static long getCounter(String name) {
+    return getLongCounter(name, getMetrics(NN_METRICS));
+  }
+}
@@ -19,6 +19,7 @@ package org.apache.hadoop.hdfs.server.datanode;
 
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_BLOCK_SCANNER_SKIP_RECENT_ACCESSED;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_BLOCK_SCANNER_VOLUME_JOIN_TIMEOUT_MSEC_KEY;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_BLOCK_SCANNER_VOLUME_THREADS_KEY;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_DATANODE_SCAN_PERIOD_HOURS_KEY;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_BLOCK_SCANNER_VOLUME_BYTES_PER_SECOND;
 import static org.apache.hadoop.hdfs.server.datanode.BlockScanner.Conf.INTERNAL_DFS_DATANODE_SCAN_PERIOD_MS;
@@ -377,8 +378,14 @@ public class TestBlockScanner {
   }
 
   private void testScanAllBlocksImpl(final boolean rescan) throws Exception {
+    testScanAllBlocksImpl(rescan, 1);
+  }
+
+  private void testScanAllBlocksImpl(final boolean rescan, int numThreads)
+      throws Exception {
     Configuration conf = new Configuration();
     conf.setLong(DFS_BLOCK_SCANNER_VOLUME_BYTES_PER_SECOND, 1048576L);
+    conf.setInt(DFS_BLOCK_SCANNER_VOLUME_THREADS_KEY, numThreads);
     if (rescan) {
       conf.setLong(INTERNAL_DFS_DATANODE_SCAN_PERIOD_MS, 100L);
     } else {
@@ -432,6 +439,8 @@ public class TestBlockScanner {
       Statistics stats = ctx.blockScanner.getVolumeStats(
           ctx.volumes.get(0).getStorageID());
       assertEquals(5 * NUM_EXPECTED_BLOCKS, stats.bytesScannedInPastHour);
+      assertEquals(5 * NUM_EXPECTED_BLOCKS, stats.bytesScannedInCurrentPeriod);
+      assertTrue(stats.bytesInCurrentPeriod >= 5 * NUM_EXPECTED_BLOCKS);
       assertEquals(NUM_EXPECTED_BLOCKS, stats.blocksScannedSinceRestart);
       assertEquals(NUM_EXPECTED_BLOCKS, stats.blocksScannedInCurrentPeriod);
       assertEquals(0, stats.scanErrorsSinceRestart);
@@ -458,6 +467,14 @@ public class TestBlockScanner {
     testScanAllBlocksImpl(true);
   }
 
+  /**
+   * Test scanning all blocks with several verifier threads.
+   */
+  @Test(timeout=60000)
+  public void testScanAllBlocksWithThreads() throws Exception {
+    testScanAllBlocksImpl(false, 4);
+  }
+
   /**
    * Test that we don't scan too many blocks per second.
    */
@@ -725,6 +742,21 @@ public class TestBlockScanner {
         calculateShouldScan("test", 100000L, 365000000L, 0, 60));
   }
 
+  @Test(timeout=120000)
+  public void testCalculateBytesPerSec() throws Exception {
+    // An idle datanode scans at the target rate.
+    assertEquals(1000, VolumeScanner.calculateBytesPerSec(1000, 0, 4));
+
+    // Two active transfers per volume divide the rate by three.
+    assertEquals(333, VolumeScanner.calculateBytesPerSec(1000, 8, 4));
+
+    // The rate is divided by 16 at most.
+    assertEquals(62, VolumeScanner.calculateBytesPerSec(1000, 1000, 1));
+
+    // The scanner still makes progress at very low rates.
+    assertEquals(1, VolumeScanner.calculateBytesPerSec(1, 1000, 0));
+  }
+
   /**
    * Test that we can mark certain blocks as suspect, and get them quickly
    * rescanned that way.  See HDFS-7686 and HDFS-7548.
@@ -19,11 +19,19 @@ package org.apache.hadoop.hdfs.server.datanode;
 
 import org.apache.hadoop.hdfs.server.common.AutoCloseDataSetLock;
 import org.apache.hadoop.hdfs.server.common.DataNodeLockManager.LockLevel;
+import org.apache.hadoop.hdfs.server.datanode.metrics.DataNodeMetrics;
+import org.apache.hadoop.test.GenericTestUtils;
 import org.junit.Before;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 
 public class TestDataSetLockManager {
   private DataSetLockManager manager;
@@ -89,4 +97,29 @@ public class TestDataSetLockManager {
     Exception lastException = manager.getLastException();
     assertEquals(lastException.getMessage(), "lock Leak");
   }
+
+  @Test(timeout = 5000)
+  public void testLockWaitMetrics() throws Exception {
+    DataNodeMetrics metrics = mock(DataNodeMetrics.class);
+    manager.setMetrics(metrics);
+    manager.addLock(LockLevel.VOLUME, "BPtest", "Volumetest");
+
+    // uncontended locks are not recorded
+    manager.readLock(LockLevel.VOLUME, "BPtest", "Volumetest").close();
+    verify(metrics, never()).addLockWaitNanos(any(), anyLong());
+
+    AutoCloseDataSetLock lock =
+        manager.writeLock(LockLevel.VOLUME, "BPtest", "Volumetest");
+    Thread t = new Thread(() -> manager.readLock(
+        LockLevel.VOLUME, "BPtest", "Volumetest").close());
+    t.start();
+    // the reader waits for the writer
+    GenericTestUtils.waitFor(() -> t.getState() == Thread.State.WAITING,
+        10, 5000);
+    lock.close();
+    t.join();
+    verify(metrics).addLockWaitNanos(eq(LockLevel.VOLUME), anyLong());
+    verify(metrics, never()).addLockWaitNanos(eq(LockLevel.BLOCK_POOl),
+        anyLong());
+  }
 }
@@ -36,6 +36,7 @@ import java.net.URI;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
@@ -563,6 +564,74 @@ public class TestDirectoryScanner {
     }
   }
 
+  @Test(timeout = 600000)
+  public void testIncrementalScan() throws Exception {
+    Configuration conf = getConfiguration();
+    conf.setBoolean(
+        DFSConfigKeys.DFS_DATANODE_DIRECTORYSCAN_INCREMENTAL_ENABLED_KEY, true);
+    // the datanode must not poll the journals itself
+    conf.setTimeDuration(DFSConfigKeys.DFS_DATANODE_DIRECTORYSCAN_INTERVAL_KEY,
+        -1, TimeUnit.SECONDS);
+    cluster = new MiniDFSCluster.Builder(conf).build();
+    Configuration scannerConf = new Configuration(conf);
+    scannerConf.setTimeDuration(
+        DFSConfigKeys.DFS_DATANODE_DIRECTORYSCAN_INTERVAL_KEY,
+        1, TimeUnit.SECONDS);
+    // sweep a single block directory per scan
+    scannerConf.setTimeDuration(
+        DFSConfigKeys.DFS_DATANODE_DIRECTORYSCAN_FULL_SWEEP_INTERVAL_KEY,
+        DatanodeUtil.NUM_BLOCK_DIRS, TimeUnit.SECONDS);
+    try {
+      cluster.waitActive();
+      bpid = cluster.getNamesystem().getBlockPoolId();
+      fds = DataNodeTestUtils.getFSDataset(cluster.getDataNodes().get(0));
+      client = cluster.getFileSystem().getClient();
+
+      // all the blocks are in the first block directory, never swept here
+      createFile(GenericTestUtils.getMethodName(), BLOCK_LENGTH * 5, false);
+      scanner = new DirectoryScanner(fds, scannerConf);
+      scanner.setRetainDiffs(true);
+      scanner.sweepCursor = DatanodeUtil.NUM_BLOCK_DIRS / 2;
+
+      // the first scan lists everything, as the journals are new
+      scan(5, 0, 0, 0, 0, 0);
+      // nothing changed since
+      scan(0, 0, 0, 0, 0, 0);
+
+      // files removed behind the back of the datanode wait for the sweep
+      long blockId = deleteBlockFile();
+      scan(0, 0, 0, 0, 0, 0);
+
+      // a new replica in the same directory has it scanned again
+      createFile(GenericTestUtils.getMethodName() + "2", BLOCK_LENGTH, false);
+      scan(6, 1, 0, 1, 0, 0);
+      verifyDeletion(blockId);
+      scan(0, 0, 0, 0, 0, 0);
+      scanner.shutdown();
+      scanner = null;
+
+      // the modified directories are kept across restarts until scanned
+      createFile(GenericTestUtils.getMethodName() + "3", BLOCK_LENGTH, false);
+      assertTrue(cluster.restartDataNode(0, true));
+      cluster.waitActive();
+      fds = DataNodeTestUtils.getFSDataset(cluster.getDataNodes().get(0));
+      try (FsVolumeReferences volumes = fds.getFsVolumeReferences()) {
+        BitSet modified = new BitSet();
+        for (FsVolumeSpi volume : volumes) {
+          modified.or(volume.pollModifiedBlockDirs(bpid));
+        }
+        assertEquals(1, modified.cardinality());
+        assertTrue(modified.get(0));
+      }
+    } finally {
+      if (scanner != null) {
+        scanner.shutdown();
+        scanner = null;
+      }
+      cluster.shutdown();
+    }
+  }
+
   @Test(timeout = 600000)
   public void testDirectoryScanner() throws Exception {
     // Run the test with and without parallel scanning
@@ -0,0 +1,110 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.datanode;
+
+import static org.apache.hadoop.hdfs.client.HdfsClientConfigKeys.DFS_CLIENT_CONTEXT;
+import static org.apache.hadoop.hdfs.client.HdfsClientConfigKeys.DFS_CLIENT_MAX_BLOCK_ACQUIRE_FAILURES_KEY;
+import static org.apache.hadoop.hdfs.client.HdfsClientConfigKeys.DFS_CLIENT_SOCKET_CACHE_EXPIRY_MSEC_KEY;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.ClientContext;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DFSTestUtil;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hdfs.PeerCache;
+import org.apache.hadoop.hdfs.net.Peer;
+import org.apache.hadoop.test.GenericTestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests reusing sockets with
+ * {@link DFSConfigKeys#DFS_DATANODE_SOCKET_REUSE_KEEPALIVE_SELECTOR_ENABLED_KEY}
+ * enabled.
+ */
+public class TestIdlePeerSelector {
+  private static final Path TEST_FILE = new Path("/test");
+  private static final int KEEPALIVE_TIMEOUT = 2000;
+
+  private final Configuration conf = new HdfsConfiguration();
+  private MiniDFSCluster cluster;
+  private DataNode dn;
+
+  @Before
+  public void setUp() throws Exception {
+    conf.setBoolean(
+        DFSConfigKeys.DFS_DATANODE_SOCKET_REUSE_KEEPALIVE_SELECTOR_ENABLED_KEY,
+        true);
+    conf.setInt(DFSConfigKeys.DFS_DATANODE_SOCKET_REUSE_KEEPALIVE_KEY,
+        KEEPALIVE_TIMEOUT);
+    conf.setInt(DFS_CLIENT_MAX_BLOCK_ACQUIRE_FAILURES_KEY, 0);
+    cluster = new MiniDFSCluster.Builder(conf).numDataNodes(1).build();
+    cluster.waitActive();
+    dn = cluster.getDataNodes().get(0);
+  }
+
+  @After
+  public void tearDown() {
+    if (cluster != null) {
+      cluster.shutdown();
+      cluster = null;
+    }
+  }
+
+  @Test(timeout = 60000)
+  public void testParkedSocketIsReused() throws Exception {
+    Configuration clientConf = new Configuration(conf);
+    clientConf.setLong(DFS_CLIENT_SOCKET_CACHE_EXPIRY_MSEC_KEY, 60000L);
+    clientConf.set(DFS_CLIENT_CONTEXT, "testParkedSocketIsReused");
+    FileSystem fs = FileSystem.newInstance(cluster.getURI(), clientConf);
+    PeerCache peerCache = ClientContext.getFromConf(clientConf).getPeerCache();
+    final IdlePeerSelector selector = dn.getXferServer().getIdlePeerSelector();
+    assertNotNull(selector);
+
+    DFSTestUtil.createFile(fs, TEST_FILE, 4096, (short) 1, 0L);
+    final byte[] expected = DFSTestUtil.readFileBuffer(fs, TEST_FILE);
+    for (int i = 0; i < 5; i++) {
+      // the socket waits for the next read without an xceiver thread
+      GenericTestUtils.waitFor(() -> selector.getNumParked() == 1
+          && dn.getXferServer().getNumPeers() == 0, 10, 10000);
+      // the server still tracks the parked peer for shutdown
+      assertEquals(1, dn.getXferServer().getNumParkedPeers());
+      assertEquals(1, dn.getXferServer().getNumPeersXceiver());
+      assertEquals(1, peerCache.size());
+      assertArrayEquals(expected, DFSTestUtil.readFileBuffer(fs, TEST_FILE));
+    }
+
+    // the datanode closes the parked socket after the keepalive timeout
+    GenericTestUtils.waitFor(() -> selector.getNumParked() == 0, 100,
+        3 * KEEPALIVE_TIMEOUT);
+    assertEquals(0, dn.getXferServer().getNumParkedPeers());
+    assertEquals(0, dn.getXferServer().getNumPeersXceiver());
+    Peer peer = peerCache.get(dn.getDatanodeId(), false);
+    assertNotNull(peer);
+    assertEquals(-1, peer.getInputStream().read());
+    peer.close();
+    fs.close();
+  }
+}
@@ -20,7 +20,9 @@ package org.apache.hadoop.hdfs.server.datanode.fsdataset.impl;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.file.Files;
 import java.util.Random;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FSDataOutputStream;
@@ -32,13 +34,17 @@ import org.apache.hadoop.hdfs.HdfsConfiguration;
 import org.apache.hadoop.hdfs.MiniDFSCluster;
 import org.apache.hadoop.hdfs.client.HdfsClientConfigKeys;
 import org.apache.hadoop.hdfs.protocol.Block;
+import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
 import org.apache.hadoop.hdfs.server.common.HdfsServerConstants.ReplicaState;
 import org.apache.hadoop.hdfs.server.datanode.DataNode;
 import org.apache.hadoop.hdfs.server.datanode.DataNodeFaultInjector;
 import org.apache.hadoop.hdfs.server.datanode.DataNodeTestUtils;
+import org.apache.hadoop.hdfs.server.datanode.DataStorage;
+import org.apache.hadoop.hdfs.server.datanode.DatanodeUtil;
 import org.apache.hadoop.hdfs.server.datanode.ReplicaInfo;
 import org.apache.hadoop.hdfs.server.datanode.fsdataset.FsDatasetSpi;
 import org.apache.hadoop.hdfs.server.datanode.fsdataset.FsVolumeSpi;
+import org.apache.hadoop.hdfs.server.protocol.BlockRecoveryCommand.RecoveringBlock;
 import org.apache.hadoop.io.IOUtils;
 import org.apache.hadoop.util.Time;
 import org.junit.Assert;
@@ -144,6 +150,133 @@ public class TestDatanodeRestart {
     return (FsDatasetImpl)DataNodeTestUtils.getFSDataset(dn);
   }
 
+  // test finalized replicas are loaded from the replica index after the
+  // replica cache file is lost
+  @Test(timeout = 120000)
+  public void testReplicaIndex() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setTimeDuration(
+        DFSConfigKeys.DFS_DATANODE_REPLICA_INDEX_CHECKPOINT_INTERVAL_KEY,
+        1, TimeUnit.DAYS);
+    MiniDFSCluster cluster = new MiniDFSCluster.Builder(conf)
+        .numDataNodes(1).storagesPerDatanode(1).build();
+    try {
+      cluster.waitActive();
+      FileSystem fs = cluster.getFileSystem();
+      String bpid = cluster.getNamesystem().getBlockPoolId();
+      DFSTestUtil.createFile(fs, new Path("/a"), 1024L, (short) 1, 0L);
+      ExtendedBlock a = DFSTestUtil.getFirstBlock(fs, new Path("/a"));
+      // the directories modified before a checkpoint are only dropped from
+      // the journal by the next one
+      dataset(cluster.getDataNodes().get(0)).saveReplicaIndexes();
+      dataset(cluster.getDataNodes().get(0)).saveReplicaIndexes();
+
+      // a replica added after the checkpoint
+      DFSTestUtil.createFile(fs, new Path("/b"), 1024L, (short) 1, 0L);
+      ExtendedBlock b = DFSTestUtil.getFirstBlock(fs, new Path("/b"));
+      // a replica the datanode did not record, in another block directory
+      long orphanId = a.getBlockId() + (3 << 16);
+      File orphanDir = DatanodeUtil.idToBlockDir(
+          getBlockPoolSlice(cluster, bpid).getFinalizedDir(), orphanId);
+      Assert.assertTrue(orphanDir.mkdirs());
+      Files.copy(cluster.getBlockFile(0, a).toPath(),
+          new File(orphanDir, Block.BLOCK_FILE_PREFIX + orphanId).toPath());
+      Files.copy(cluster.getBlockMetadataFile(0, a).toPath(),
+          new File(orphanDir, DatanodeUtil.getMetaName(
+              Block.BLOCK_FILE_PREFIX + orphanId,
+              a.getGenerationStamp())).toPath());
+
+      restartWithoutReplicaCache(cluster, bpid);
+      FsDatasetImpl dataset = dataset(cluster.getDataNodes().get(0));
+      Assert.assertNotNull(dataset.fetchReplicaInfo(bpid, a.getBlockId()));
+      Assert.assertNotNull(dataset.fetchReplicaInfo(bpid, b.getBlockId()));
+      Assert.assertNull(dataset.fetchReplicaInfo(bpid, orphanId));
+
+      // a corrupt index falls back to listing all the directories
+      File index = new File(getBlockPoolSlice(cluster, bpid).getDirectory(),
+          DataStorage.STORAGE_DIR_CURRENT + File.separator
+              + BlockPoolSlice.REPLICA_INDEX_FILE);
+      try (RandomAccessFile raf = new RandomAccessFile(index, "rw")) {
+        raf.seek(raf.length() - 1);
+        int last = raf.read();
+        raf.seek(raf.length() - 1);
+        raf.write(last ^ 0xFF);
+      }
+      restartWithoutReplicaCache(cluster, bpid);
+      dataset = dataset(cluster.getDataNodes().get(0));
+      Assert.assertNotNull(dataset.fetchReplicaInfo(bpid, a.getBlockId()));
+      Assert.assertNotNull(dataset.fetchReplicaInfo(bpid, b.getBlockId()));
+      Assert.assertNotNull(dataset.fetchReplicaInfo(bpid, orphanId));
+    } finally {
+      cluster.shutdown();
+    }
+  }
+
+  // test finalized replicas updated in place by block recovery are not
+  // loaded from a stale replica index
+  @Test(timeout = 120000)
+  public void testReplicaIndexAfterRecovery() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setTimeDuration(
+        DFSConfigKeys.DFS_DATANODE_REPLICA_INDEX_CHECKPOINT_INTERVAL_KEY,
+        1, TimeUnit.DAYS);
+    MiniDFSCluster cluster = new MiniDFSCluster.Builder(conf)
+        .numDataNodes(1).storagesPerDatanode(1).build();
+    try {
+      cluster.waitActive();
+      FileSystem fs = cluster.getFileSystem();
+      String bpid = cluster.getNamesystem().getBlockPoolId();
+      DFSTestUtil.createFile(fs, new Path("/a"), 1024L, (short) 1, 0L);
+      DFSTestUtil.createFile(fs, new Path("/b"), 1024L, (short) 1, 0L);
+      ExtendedBlock a = DFSTestUtil.getFirstBlock(fs, new Path("/a"));
+      ExtendedBlock b = DFSTestUtil.getFirstBlock(fs, new Path("/b"));
+      FsDatasetImpl dataset = dataset(cluster.getDataNodes().get(0));
+      dataset.saveReplicaIndexes();
+      dataset.saveReplicaIndexes();
+
+      // bump the generation stamp of a finalized replica
+      final long gsA = a.getGenerationStamp() + 100;
+      dataset.recoverClose(a, gsA, a.getNumBytes());
+      // truncate a finalized replica in place
+      final long gsB = b.getGenerationStamp() + 100;
+      dataset.initReplicaRecovery(new RecoveringBlock(b, null, gsB));
+      dataset.updateReplicaUnderRecovery(b, gsB, b.getBlockId(), 512L);
+
+      restartWithoutReplicaCache(cluster, bpid);
+      dataset = dataset(cluster.getDataNodes().get(0));
+      ReplicaInfo replica = dataset.fetchReplicaInfo(bpid, a.getBlockId());
+      Assert.assertEquals(gsA, replica.getGenerationStamp());
+      Assert.assertEquals(1024L, replica.getNumBytes());
+      Assert.assertTrue(replica.metadataExists());
+      replica = dataset.fetchReplicaInfo(bpid, b.getBlockId());
+      Assert.assertEquals(gsB, replica.getGenerationStamp());
+      Assert.assertEquals(512L, replica.getNumBytes());
+      Assert.assertTrue(replica.metadataExists());
+    } finally {
+      cluster.shutdown();
+    }
+  }
+
+  private static BlockPoolSlice getBlockPoolSlice(MiniDFSCluster cluster,
+      String bpid) throws IOException {
+    FsDatasetImpl dataset = dataset(cluster.getDataNodes().get(0));
+    try (FsDatasetSpi.FsVolumeReferences volumes =
+             dataset.getFsVolumeReferences()) {
+      return ((FsVolumeImpl) volumes.get(0)).getBlockPoolSlice(bpid);
+    }
+  }
+
+  private static void restartWithoutReplicaCache(MiniDFSCluster cluster,
+      String bpid) throws IOException {
+    BlockPoolSlice bp = getBlockPoolSlice(cluster, bpid);
+    MiniDFSCluster.DataNodeProperties dnProp = cluster.stopDataNode(0);
+    File replicaCache = new File(bp.getDirectory(),
+        DataStorage.STORAGE_DIR_CURRENT + File.separator + "replicas");
+    Assert.assertTrue(replicaCache.delete());
+    Assert.assertTrue(cluster.restartDataNode(dnProp, true));
+    cluster.waitActive();
+  }
+
   @Test
   public void testWaitForRegistrationOnRestart() throws Exception {
     Configuration conf = new HdfsConfiguration();
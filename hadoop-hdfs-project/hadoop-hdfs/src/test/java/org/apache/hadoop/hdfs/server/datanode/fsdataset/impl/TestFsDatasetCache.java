@@ -21,6 +21,7 @@ import net.jcip.annotations.NotThreadSafe;
 import org.apache.hadoop.hdfs.server.protocol.SlowDiskReports;
 import static org.apache.hadoop.test.MetricsAsserts.getMetrics;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
@@ -48,6 +49,7 @@ import org.apache.hadoop.fs.RemoteIterator;
 import org.apache.hadoop.ha.HAServiceProtocol.HAServiceState;
 import org.apache.hadoop.hdfs.client.impl.BlockReaderTestUtil;
 import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.ExtendedBlockId;
 import org.apache.hadoop.hdfs.DFSTestUtil;
 import org.apache.hadoop.hdfs.DistributedFileSystem;
 import org.apache.hadoop.hdfs.HdfsConfiguration;
@@ -634,4 +636,107 @@ public class TestFsDatasetCache {
 
     dfs.removeCacheDirective(shortCacheDirectiveId);
   }
+
+  @Test(timeout=60000)
+  public void testHotBlockCache() throws Exception {
+    // Restart the datanode with room for two hot blocks
+    cluster.shutdown();
+    conf.setLong(DFSConfigKeys.DFS_DATANODE_HOT_BLOCK_CACHE_CAPACITY_KEY,
+        2 * BLOCK_SIZE);
+    cluster = new MiniDFSCluster.Builder(conf).numDataNodes(1).build();
+    cluster.waitActive();
+    fs = cluster.getFileSystem();
+    dn = cluster.getDataNodes().get(0);
+    fsd = dn.getFSDataset();
+    final String bpid = cluster.getNamesystem().getBlockPoolId();
+
+    final Path warmFile = new Path("/warmFile");
+    final Path hotFile = new Path("/hotFile");
+    DFSTestUtil.createFile(fs, warmFile, 2 * BLOCK_SIZE, (short)1, 0xFADE);
+    DFSTestUtil.createFile(fs, hotFile, BLOCK_SIZE, (short)1, 0xBEEF);
+
+    // Blocks are admitted on their second read, while there is room
+    DFSTestUtil.readFileBuffer(fs, warmFile);
+    DFSTestUtil.verifyExpectedCacheUsage(0, 0, fsd);
+    DFSTestUtil.readFileBuffer(fs, warmFile);
+    DFSTestUtil.verifyExpectedCacheUsage(2 * BLOCK_SIZE, 2, fsd);
+    DFSTestUtil.readFileBuffer(fs, warmFile);
+    // Hot blocks are not reported to the namenode
+    assertTrue(fsd.getCacheReport(bpid).isEmpty());
+
+    // A block only evicts the least recently read block once it was read
+    // more often
+    for (int i = 0; i < 3; i++) {
+      DFSTestUtil.readFileBuffer(fs, hotFile);
+    }
+    MetricsRecordBuilder dnMetrics = getMetrics(dn.getMetrics().name());
+    MetricsAsserts.assertCounter("HotBlockCacheEvictions", 0L, dnMetrics);
+    DFSTestUtil.readFileBuffer(fs, hotFile);
+    dnMetrics = getMetrics(dn.getMetrics().name());
+    MetricsAsserts.assertCounter("HotBlockCacheHits", 2L, dnMetrics);
+    MetricsAsserts.assertCounter("HotBlockCacheMisses", 8L, dnMetrics);
+    MetricsAsserts.assertCounter("HotBlockCacheEvictions", 1L, dnMetrics);
+    final HotBlockCache hotBlockCache =
+        ((FsDatasetImpl) fsd).cacheManager.getHotBlockCache();
+    final ExtendedBlock hotBlock = DFSTestUtil.getFirstBlock(fs, hotFile);
+    assertTrue(hotBlockCache.contains(
+        new ExtendedBlockId(hotBlock.getBlockId(), bpid)));
+    assertEquals(2 * BLOCK_SIZE, hotBlockCache.getUsed());
+    DFSTestUtil.verifyExpectedCacheUsage(2 * BLOCK_SIZE, 2, fsd);
+
+    // Deleted blocks are uncached
+    fs.delete(warmFile, false);
+    fs.delete(hotFile, false);
+    DFSTestUtil.verifyExpectedCacheUsage(0, 0, fsd);
+    GenericTestUtils.waitFor(() -> hotBlockCache.getUsed() == 0, 100, 10000);
+  }
+
+  @Test(timeout=60000)
+  public void testHotBlockCacheSkipsDirectiveCachedBlocks() throws Exception {
+    // Restart the datanode with room for one hot block
+    cluster.shutdown();
+    conf.setLong(DFSConfigKeys.DFS_DATANODE_HOT_BLOCK_CACHE_CAPACITY_KEY,
+        BLOCK_SIZE);
+    cluster = new MiniDFSCluster.Builder(conf).numDataNodes(1).build();
+    cluster.waitActive();
+    fs = cluster.getFileSystem();
+    dn = cluster.getDataNodes().get(0);
+    fsd = dn.getFSDataset();
+    final String bpid = cluster.getNamesystem().getBlockPoolId();
+
+    final Path hotFile = new Path("/hotFile");
+    final Path directiveFile = new Path("/directiveFile");
+    DFSTestUtil.createFile(fs, hotFile, BLOCK_SIZE, (short)1, 0xBEEF);
+    DFSTestUtil.createFile(fs, directiveFile, BLOCK_SIZE, (short)1, 0xFADE);
+    final DistributedFileSystem dfs = cluster.getFileSystem();
+    dfs.addCachePool(new CachePoolInfo("pool"));
+    dfs.addCacheDirective(new CacheDirectiveInfo.Builder()
+        .setPool("pool").setPath(directiveFile).setReplication((short)1)
+        .build());
+    DFSTestUtil.verifyExpectedCacheUsage(BLOCK_SIZE, 1, fsd);
+
+    DFSTestUtil.readFileBuffer(fs, hotFile);
+    DFSTestUtil.readFileBuffer(fs, hotFile);
+    DFSTestUtil.verifyExpectedCacheUsage(2 * BLOCK_SIZE, 2, fsd);
+
+    // Reading the directive cached block more often than the hot block must
+    // not evict the hot block
+    for (int i = 0; i < 5; i++) {
+      DFSTestUtil.readFileBuffer(fs, directiveFile);
+    }
+    MetricsRecordBuilder dnMetrics = getMetrics(dn.getMetrics().name());
+    MetricsAsserts.assertCounter("HotBlockCacheEvictions", 0L, dnMetrics);
+    final HotBlockCache hotBlockCache =
+        ((FsDatasetImpl) fsd).cacheManager.getHotBlockCache();
+    final ExtendedBlock hotBlock = DFSTestUtil.getFirstBlock(fs, hotFile);
+    final ExtendedBlock directiveBlock =
+        DFSTestUtil.getFirstBlock(fs, directiveFile);
+    assertTrue(hotBlockCache.contains(
+        new ExtendedBlockId(hotBlock.getBlockId(), bpid)));
+    assertFalse(hotBlockCache.contains(
+        new ExtendedBlockId(directiveBlock.getBlockId(), bpid)));
+    assertEquals(BLOCK_SIZE, hotBlockCache.getUsed());
+    DFSTestUtil.verifyExpectedCacheUsage(2 * BLOCK_SIZE, 2, fsd);
+    assertEquals(1, fsd.getCacheReport(bpid).size());
+  }
 }
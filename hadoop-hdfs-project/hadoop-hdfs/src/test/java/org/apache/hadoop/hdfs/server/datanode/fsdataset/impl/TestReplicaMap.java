@@ -17,12 +17,19 @@
  */
 package org.apache.hadoop.hdfs.server.datanode.fsdataset.impl;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.util.HashSet;
+import java.util.Set;
+
 import org.apache.hadoop.hdfs.protocol.Block;
+import org.apache.hadoop.hdfs.server.common.NoLockManager;
 import org.apache.hadoop.hdfs.server.datanode.FinalizedReplica;
+import org.apache.hadoop.hdfs.server.datanode.ReplicaInfo;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -130,4 +137,44 @@ public class TestReplicaMap {
     assertNull(map.get(bpid, 1234));
     assertNotNull(map.get(bpid, 5678));
   }
+
+  @Test
+  public void testStripes() {
+    ReplicaMap striped = new ReplicaMap(new NoLockManager(), 4);
+    // striped block ids are negative
+    for (long id = -10; id < 90; id++) {
+      striped.add(bpid, new FinalizedReplica(new Block(id, 1, 1), null, null));
+    }
+    assertEquals(100, striped.size(bpid));
+    assertEquals(100, striped.replicas(bpid).size());
+    for (long id = -10; id < 90; id++) {
+      assertNotNull(striped.get(bpid, id));
+    }
+
+    // remove the even ids through the iterator
+    striped.replicas(bpid, it -> {
+      while (it.hasNext()) {
+        if (it.next().getBlockId() % 2 == 0) {
+          it.remove();
+        }
+      }
+    });
+    assertEquals(50, striped.size(bpid));
+    assertNull(striped.get(bpid, 0));
+
+    Set<Long> seen = new HashSet<>();
+    striped.replicasByStripe(bpid, it -> {
+      while (it.hasNext()) {
+        assertTrue(seen.add(it.next().getBlockId()));
+      }
+    });
+    assertEquals(50, seen.size());
+    for (ReplicaInfo replica : striped.replicas(bpid)) {
+      assertTrue(seen.contains(replica.getBlockId()));
+    }
+
+    // merging into a map with a different number of stripes
+    map.mergeAll(striped);
+    assertEquals(51, map.size(bpid));
+  }
 }
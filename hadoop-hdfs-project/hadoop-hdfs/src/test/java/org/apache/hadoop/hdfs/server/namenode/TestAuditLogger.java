@@ -55,6 +55,7 @@ import java.net.InetAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.regex.Pattern;
 
 import static org.apache.hadoop.fs.CommonConfigurationKeysPublic.HADOOP_CALLER_CONTEXT_ENABLED_KEY;
@@ -70,6 +71,7 @@ import static org.apache.hadoop.fs.permission.FsAction.EXECUTE;
 import static org.apache.hadoop.fs.permission.FsAction.READ_EXECUTE;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_ACLS_ENABLED_KEY;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_AUDIT_LOGGERS_KEY;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_AUDIT_LOG_QUEUE_SIZE_KEY;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_AUDIT_LOG_WITH_REMOTE_PORT_KEY;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.NNTOP_ENABLED_KEY;
 import static org.junit.Assert.assertEquals;
@@ -628,6 +630,65 @@ public class TestAuditLogger {
     }
   }
 
+  /**
+   * Test that events queued for the audit log thread are all written, with
+   * the protocol of the handler thread.
+   */
+  @Test(timeout = 60000)
+  public void testAuditLogQueue() throws Exception {
+    final int numOps = 50;
+    Configuration conf = new HdfsConfiguration();
+    conf.setInt(DFS_NAMENODE_AUDIT_LOG_QUEUE_SIZE_KEY, 4);
+    MiniDFSCluster cluster = new MiniDFSCluster.Builder(conf).build();
+    LogCapturer auditLog = LogCapturer.captureLogs(FSNamesystem.AUDIT_LOG);
+    try {
+      cluster.waitClusterUp();
+      FileSystem fs = cluster.getFileSystem();
+      for (int i = 0; i < numOps; i++) {
+        fs.setTimes(new Path("/"), i, i);
+      }
+    } finally {
+      // the queued events are written on shutdown
+      cluster.shutdown();
+    }
+    String[] lines = auditLog.getOutput().trim().split("\\R");
+    assertEquals(numOps, lines.length);
+    for (String line : lines) {
+      assertTrue(line, AUDIT_PATTERN.matcher(line).matches());
+      assertTrue(line, line.contains("cmd=setTimes"));
+      assertTrue(line, line.endsWith("proto=rpc"));
+    }
+  }
+
+  /**
+   * Test that no event is lost when the audit log queue is closed while
+   * handlers are still queuing events.
+   */
+  @Test(timeout = 60000)
+  public void testAuditLogQueueCloseWhilePutting() throws Exception {
+    final int numThreads = 8;
+    final int numEvents = 10000;
+    final LongAdder written = new LongAdder();
+    final AuditLogQueue<Integer> queue =
+        new AuditLogQueue<>(4, event -> written.increment());
+    queue.start();
+    Thread[] threads = new Thread[numThreads];
+    for (int i = 0; i < numThreads; i++) {
+      threads[i] = new Thread(() -> {
+        for (int j = 0; j < numEvents; j++) {
+          queue.put(j);
+        }
+      });
+      threads[i].start();
+    }
+    queue.close();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(numThreads * numEvents, written.sum());
+    assertEquals(0, queue.size());
+  }
+
   public static class DummyAuditLogger implements AuditLogger {
 
     static boolean initialized;
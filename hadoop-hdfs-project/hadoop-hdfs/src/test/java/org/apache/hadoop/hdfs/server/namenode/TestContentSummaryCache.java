@@ -0,0 +1,145 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.ContentSummary;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DFSTestUtil;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hdfs.protocol.HdfsConstants;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests the content summary cache of directories with quota, enabled by
+ * {@link DFSConfigKeys#DFS_CONTENT_SUMMARY_CACHE_TTL_MS_KEY}.
+ */
+public class TestContentSummaryCache {
+  private static final short REPLICATION = 1;
+  private static final long BLOCK_SIZE = 1024;
+
+  private final Path dir = new Path("/q");
+  private MiniDFSCluster cluster;
+  private DistributedFileSystem fs;
+  private FSNamesystem fsn;
+
+  @Before
+  public void setUp() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setLong(DFSConfigKeys.DFS_CONTENT_SUMMARY_CACHE_TTL_MS_KEY,
+        3600 * 1000L);
+    conf.setLong(DFSConfigKeys.DFS_BLOCK_SIZE_KEY, BLOCK_SIZE);
+    cluster = new MiniDFSCluster.Builder(conf).numDataNodes(REPLICATION)
+        .build();
+    cluster.waitActive();
+    fs = cluster.getFileSystem();
+    fsn = cluster.getNamesystem();
+    fs.mkdirs(dir);
+    fs.setQuota(dir, 1000, HdfsConstants.QUOTA_DONT_SET);
+  }
+
+  @After
+  public void tearDown() {
+    if (cluster != null) {
+      cluster.shutdown();
+      cluster = null;
+    }
+  }
+
+  /**
+   * Returns the content summary, checking that it is served from the cache
+   * when asked again.
+   */
+  private ContentSummary getCachedSummary() throws Exception {
+    ContentSummary summary = fsn.getContentSummary(dir.toString());
+    assertSame(summary, fsn.getContentSummary(dir.toString()));
+    return summary;
+  }
+
+  @Test(timeout = 60000)
+  public void testNamespaceChangesInvalidate() throws Exception {
+    ContentSummary summary = getCachedSummary();
+    assertEquals(1, summary.getDirectoryCount());
+    assertEquals(0, summary.getFileCount());
+
+    fs.mkdirs(new Path(dir, "a/b"));
+    summary = getCachedSummary();
+    assertEquals(3, summary.getDirectoryCount());
+
+    DFSTestUtil.createFile(fs, new Path(dir, "a/f"), 3 * BLOCK_SIZE,
+        REPLICATION, 0L);
+    summary = getCachedSummary();
+    assertEquals(1, summary.getFileCount());
+    assertEquals(3 * BLOCK_SIZE, summary.getLength());
+
+    fs.delete(new Path(dir, "a/b"), true);
+    summary = getCachedSummary();
+    assertEquals(2, summary.getDirectoryCount());
+
+    fs.rename(new Path(dir, "a/f"), new Path("/f"));
+    summary = getCachedSummary();
+    assertEquals(0, summary.getFileCount());
+    assertEquals(0, summary.getLength());
+  }
+
+  @Test(timeout = 60000)
+  public void testOpenFileInvalidates() throws Exception {
+    final Path file = new Path(dir, "f");
+    try (FSDataOutputStream out = fs.create(file)) {
+      ContentSummary before = getCachedSummary();
+      out.write(new byte[(int) BLOCK_SIZE / 2]);
+      out.hsync();
+      ContentSummary after = getCachedSummary();
+      assertNotSame(before, after);
+      assertEquals(BLOCK_SIZE / 2, after.getLength());
+    }
+    assertEquals(BLOCK_SIZE / 2, getCachedSummary().getLength());
+  }
+
+  @Test(timeout = 60000)
+  public void testAttributeChangesInvalidate() throws Exception {
+    ContentSummary summary = getCachedSummary();
+
+    fs.allowSnapshot(dir);
+    fs.createSnapshot(dir, "s0");
+    ContentSummary next = getCachedSummary();
+    assertNotSame(summary, next);
+    summary = next;
+
+    fs.deleteSnapshot(dir, "s0");
+    next = getCachedSummary();
+    assertNotSame(summary, next);
+    summary = next;
+
+    fs.setStoragePolicy(dir, HdfsConstants.COLD_STORAGE_POLICY_NAME);
+    assertNotSame(summary, getCachedSummary());
+
+    fs.setQuota(dir, 2000, HdfsConstants.QUOTA_DONT_SET);
+    assertEquals(2000, getCachedSummary().getQuota());
+  }
+}
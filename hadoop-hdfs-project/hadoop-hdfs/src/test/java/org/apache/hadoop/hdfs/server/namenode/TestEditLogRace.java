@@ -227,8 +227,24 @@ public class TestEditLogRace {
    */
   @Test
   public void testEditLogRolling() throws Exception {
-    // start a cluster 
+    testEditLogRolling(getConf());
+  }
+
+  /**
+   * Tests rolling edit logs while transactions are ongoing and the async
+   * edit log delays syncs to grow its batches.
+   */
+  @Test
+  public void testEditLogRollingWithGroupCommit() throws Exception {
     Configuration conf = getConf();
+    conf.setLong(
+        DFSConfigKeys.DFS_NAMENODE_EDITS_ASYNC_LOGGING_GROUP_COMMIT_MAX_WAIT_MS,
+        10);
+    testEditLogRolling(conf);
+  }
+
+  private void testEditLogRolling(Configuration conf) throws Exception {
+    // start a cluster 
     final MiniDFSCluster cluster =
         new MiniDFSCluster.Builder(conf).numDataNodes(NUM_DATA_NODES).build();
     FileSystem fileSys = null;
@@ -51,6 +51,8 @@ import org.slf4j.LoggerFactory;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -143,6 +145,21 @@ public class TestFSDirectory {
     }
   }
   
+  @Test
+  public void testGetInodeById() throws Exception {
+    final INode inode = fsdir.getINode(file3.toString());
+    assertSame(inode, fsdir.getInode(inode.getId()));
+    assertSame(fsdir.getRoot(), fsdir.getInode(INodeId.ROOT_INODE_ID));
+    assertNull(fsdir.getInode(INodeId.LAST_RESERVED_ID));
+
+    INodeMap map = INodeMap.newInstance(fsdir.getRoot(), 0.001f);
+    assertSame(fsdir.getRoot(), map.get(INodeId.ROOT_INODE_ID));
+    map.put(inode);
+    assertSame(inode, map.get(inode.getId()));
+    map.remove(inode);
+    assertNull(map.get(inode.getId()));
+  }
+
   @Test
   public void testSkipQuotaCheck() throws Exception {
     try {
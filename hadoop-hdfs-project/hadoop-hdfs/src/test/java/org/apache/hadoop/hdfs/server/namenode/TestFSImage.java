@@ -1119,6 +1119,52 @@ public class TestFSImage {
     }
   }
 
+  @Test
+  public void testParallelSaveMatchesSerialSave() throws IOException {
+    Configuration conf = new Configuration();
+    MiniDFSCluster cluster = null;
+    try {
+      // The image is loaded and saved with a single thread first
+      conf.set(DFSConfigKeys.DFS_IMAGE_PARALLEL_THREADS_KEY, "1");
+      cluster = createAndLoadParallelFSImage(conf);
+      DistributedFileSystem fs = cluster.getFileSystem();
+      fs.setSafeMode(SafeModeAction.ENTER);
+      fs.saveNamespace();
+      fs.setSafeMode(SafeModeAction.LEAVE);
+      ArrayList<Section> serialSections = Lists.newArrayList(
+          FSImageTestUtil.getLatestImageSummary(cluster).getSectionsList());
+
+      // Restart so the image is saved using the parallel serializer
+      cluster.getConfiguration(0).set(
+          DFSConfigKeys.DFS_IMAGE_PARALLEL_THREADS_KEY, "4");
+      cluster.restartNameNode();
+      cluster.waitActive();
+      fs = cluster.getFileSystem();
+      fs.setSafeMode(SafeModeAction.ENTER);
+      fs.saveNamespace();
+      fs.setSafeMode(SafeModeAction.LEAVE);
+      ArrayList<Section> parallelSections = Lists.newArrayList(
+          FSImageTestUtil.getLatestImageSummary(cluster).getSectionsList());
+
+      ArrayList<Section> serialSubSections =
+          getSubSectionsOfName(serialSections, SectionName.INODE_SUB);
+      ArrayList<Section> parallelSubSections =
+          getSubSectionsOfName(parallelSections, SectionName.INODE_SUB);
+      assertEquals(4, parallelSubSections.size());
+      assertEquals(serialSubSections.size(), parallelSubSections.size());
+      for (int i = 0; i < serialSubSections.size(); i++) {
+        assertEquals(serialSubSections.get(i).getLength(),
+            parallelSubSections.get(i).getLength());
+      }
+      ensureSubSectionsAlignWithParent(parallelSubSections,
+          getSubSectionsOfName(parallelSections, SectionName.INODE).get(0));
+    } finally {
+      if (cluster != null) {
+        cluster.shutdown();
+      }
+    }
+  }
+
   @Test
   public void testNoParallelSectionsWithCompressionEnabled()
       throws IOException {
@@ -35,6 +35,7 @@ import java.io.IOException;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.regex.Pattern;
@@ -43,6 +44,9 @@ import org.slf4j.event.Level;
 
 import static org.junit.Assert.*;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_FSLOCK_FAIR_KEY;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_FSLOCK_PARTITIONED_DEPTH_KEY;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_FSLOCK_PARTITIONED_ENABLED_KEY;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_FSLOCK_PARTITIONED_NUM_KEY;
 import static org.apache.hadoop.test.MetricsAsserts.assertCounter;
 import static org.apache.hadoop.test.MetricsAsserts.assertGauge;
 
@@ -445,4 +449,197 @@ public class TestFSNamesystemLock {
         "Number of suppressed write-lock reports:"));
   }
 
-}
\ No newline at end of file
+  @Test
+  public void testPartitionRoot() {
+    Configuration conf = new Configuration();
+    FSNamesystemLock fsnLock = new FSNamesystemLock(conf, null);
+    assertFalse(fsnLock.isPartitioned());
+    assertNull(fsnLock.getPartitionRoot("/user/alice/file"));
+
+    conf.setBoolean(DFS_NAMENODE_FSLOCK_PARTITIONED_ENABLED_KEY, true);
+    conf.setInt(DFS_NAMENODE_FSLOCK_PARTITIONED_DEPTH_KEY, 2);
+    fsnLock = new FSNamesystemLock(conf, null);
+    assertTrue(fsnLock.isPartitioned());
+    assertEquals("/user/alice", fsnLock.getPartitionRoot("/user/alice/file"));
+    assertEquals("/user/alice",
+        fsnLock.getPartitionRoot("/user/alice/dir/file"));
+    assertNull(fsnLock.getPartitionRoot("/user/alice"));
+    assertNull(fsnLock.getPartitionRoot("/user/alice/"));
+    assertNull(fsnLock.getPartitionRoot("/user"));
+    assertNull(fsnLock.getPartitionRoot("/"));
+    assertNull(fsnLock.getPartitionRoot("/user/.snapshot/file"));
+    assertNull(fsnLock.getPartitionRoot("/.reserved/.inodes/1001/file"));
+  }
+
+  @Test(timeout = 30000)
+  public void testPartitionWriteLocks() throws Exception {
+    Configuration conf = new Configuration();
+    conf.setBoolean(DFS_NAMENODE_FSLOCK_PARTITIONED_ENABLED_KEY, true);
+    conf.setInt(DFS_NAMENODE_FSLOCK_PARTITIONED_NUM_KEY, 2);
+    final FSNamesystemLock fsnLock = new FSNamesystemLock(conf, null);
+    ExecutorService helper = Executors.newSingleThreadExecutor();
+    try {
+      fsnLock.writeLockPartition(0);
+      assertTrue(fsnLock.isPartitionWriteLockedByCurrentThread());
+      assertFalse(fsnLock.isWriteLockedByCurrentThread());
+
+      // a writer of another partition is not blocked
+      assertTrue(helper.submit(() -> {
+        fsnLock.writeLockPartition(1);
+        boolean locked = fsnLock.isPartitionWriteLockedByCurrentThread();
+        fsnLock.writeUnlockPartition(1, "test");
+        return locked;
+      }).get());
+
+      // readers and global writers wait for the partition writer
+      Future<?> reader = helper.submit(() -> {
+        fsnLock.readLock();
+        fsnLock.readUnlock();
+      });
+      Thread.sleep(100);
+      assertFalse(reader.isDone());
+      fsnLock.writeUnlockPartition(0, "test");
+      reader.get();
+      assertFalse(fsnLock.isPartitionWriteLockedByCurrentThread());
+
+      // a partition writer waits for readers
+      fsnLock.readLock();
+      Future<?> writer = helper.submit(() -> {
+        fsnLock.writeLockPartition(1);
+        fsnLock.writeUnlockPartition(1, "test");
+      });
+      Thread.sleep(100);
+      assertFalse(writer.isDone());
+      fsnLock.readUnlock();
+      writer.get();
+
+      // nested read locks inside a partition write lock do not deadlock
+      fsnLock.writeLockPartition(1);
+      fsnLock.readLock();
+      assertEquals(2, fsnLock.getReadHoldCount());
+      fsnLock.readUnlock();
+      fsnLock.writeUnlockPartition(1, "test");
+      assertEquals(0, fsnLock.getReadHoldCount());
+    } finally {
+      helper.shutdownNow();
+    }
+  }
+
+  @Test(timeout = 30000)
+  public void testPartitionReadLocks() throws Exception {
+    Configuration conf = new Configuration();
+    conf.setBoolean(DFS_NAMENODE_FSLOCK_PARTITIONED_ENABLED_KEY, true);
+    conf.setInt(DFS_NAMENODE_FSLOCK_PARTITIONED_NUM_KEY, 2);
+    final FSNamesystemLock fsnLock = new FSNamesystemLock(conf, null);
+    ExecutorService helper = Executors.newSingleThreadExecutor();
+    try {
+      fsnLock.readLockPartition(0);
+      assertEquals(1, fsnLock.getReadHoldCount());
+
+      // a writer of another partition is not blocked by the reader
+      assertTrue(helper.submit(() -> {
+        fsnLock.writeLockPartition(1);
+        fsnLock.writeUnlockPartition(1, "test");
+        return true;
+      }).get());
+
+      // a writer of the same partition waits for the reader
+      Future<?> writer = helper.submit(() -> {
+        fsnLock.writeLockPartition(0);
+        fsnLock.writeUnlockPartition(0, "test");
+      });
+      Thread.sleep(100);
+      assertFalse(writer.isDone());
+
+      // nested read locks stay within the partition
+      fsnLock.readLock();
+      assertEquals(2, fsnLock.getReadHoldCount());
+      fsnLock.readUnlock();
+      fsnLock.readUnlockPartition(0, "test", null);
+      writer.get();
+      assertEquals(0, fsnLock.getReadHoldCount());
+
+      // a global reader still takes every partition
+      fsnLock.readLock();
+      writer = helper.submit(() -> {
+        fsnLock.writeLockPartition(1);
+        fsnLock.writeUnlockPartition(1, "test");
+      });
+      Thread.sleep(100);
+      assertFalse(writer.isDone());
+      fsnLock.readUnlock();
+      writer.get();
+    } finally {
+      helper.shutdownNow();
+    }
+  }
+
+  /**
+   * Measures the time a fixed number of writers holding the lock for a fixed
+   * interval need with the global write lock and with partition write locks.
+   * Writers of different partitions must overlap.
+   */
+  @Test(timeout = 60000)
+  public void testPartitionWriteLockContention() throws Exception {
+    final int numThreads = 4;
+    final int opsPerThread = 25;
+    final long holdMs = 4;
+    Configuration conf = new Configuration();
+    conf.setBoolean(DFS_NAMENODE_FSLOCK_PARTITIONED_ENABLED_KEY, true);
+    conf.setInt(DFS_NAMENODE_FSLOCK_PARTITIONED_NUM_KEY, numThreads);
+    final FSNamesystemLock fsnLock = new FSNamesystemLock(conf, null);
+
+    final long globalMs = measureWriters(fsnLock, numThreads, opsPerThread,
+        holdMs, false);
+    final long partitionedMs = measureWriters(fsnLock, numThreads,
+        opsPerThread, holdMs, true);
+    FSNamesystem.LOG.info("{} writers x {} ops holding the lock for {}ms:" +
+        " global {}ms, partitioned {}ms", numThreads, opsPerThread, holdMs,
+        globalMs, partitionedMs);
+    // fully serialized writers need at least numThreads * opsPerThread * holdMs
+    assertTrue(globalMs >= numThreads * opsPerThread * holdMs);
+    assertTrue("partitioned writers did not run concurrently",
+        partitionedMs * 2 < globalMs);
+  }
+
+  private static long measureWriters(final FSNamesystemLock fsnLock,
+      int numThreads, final int opsPerThread, final long holdMs,
+      final boolean partitioned) throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+    final CountDownLatch start = new CountDownLatch(1);
+    try {
+      Future<?>[] futures = new Future<?>[numThreads];
+      for (int i = 0; i < numThreads; i++) {
+        final int partition = i;
+        futures[i] = executor.submit(() -> {
+          start.await();
+          for (int j = 0; j < opsPerThread; j++) {
+            if (partitioned) {
+              fsnLock.writeLockPartition(partition);
+            } else {
+              fsnLock.writeLock();
+            }
+            try {
+              Thread.sleep(holdMs);
+            } finally {
+              if (partitioned) {
+                fsnLock.writeUnlockPartition(partition, "test");
+              } else {
+                fsnLock.writeUnlock();
+              }
+            }
+          }
+          return null;
+        });
+      }
+      final long startMs = Time.monotonicNow();
+      start.countDown();
+      for (Future<?> f : futures) {
+        f.get();
+      }
+      return Time.monotonicNow() - startMs;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
@@ -187,4 +187,28 @@ public class TestNNThroughputBenchmark {
               "blockReport", "-datanodes", "3", "-reports", "2"});
     }
   }
+
+  /**
+   * This test runs the create and mkdirs benchmarks of
+   * {@link NNThroughputBenchmark} with partitioned namesystem locking, so
+   * that concurrent writers of different subtrees only lock their partition.
+   */
+  @Test(timeout = 120000)
+  public void testNNThroughputWithPartitionedLock() throws Exception {
+    final Configuration conf = new HdfsConfiguration();
+    conf.setInt(DFSConfigKeys.DFS_BLOCK_SIZE_KEY, 16);
+    conf.setBoolean(
+        DFSConfigKeys.DFS_NAMENODE_FSLOCK_PARTITIONED_ENABLED_KEY, true);
+    conf.setInt(DFSConfigKeys.DFS_NAMENODE_FSLOCK_PARTITIONED_DEPTH_KEY, 3);
+    File nameDir = new File(MiniDFSCluster.getBaseDirectory(), "name");
+    conf.set(DFSConfigKeys.DFS_NAMENODE_NAME_DIR_KEY,
+        nameDir.getAbsolutePath());
+    DFSTestUtil.formatNameNode(conf);
+    // each run points the configuration at the NameNode it started
+    final Configuration mkdirsConf = new HdfsConfiguration(conf);
+    NNThroughputBenchmark.runBenchmark(conf, new String[] {"-op", "create",
+        "-threads", "8", "-files", "2000", "-filesPerDir", "4", "-close"});
+    NNThroughputBenchmark.runBenchmark(mkdirsConf, new String[] {"-op",
+        "mkdirs", "-threads", "8", "-dirs", "2000", "-dirsPerDir", "4"});
+  }
 }
@@ -0,0 +1,134 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.ContentSummary;
+import org.apache.hadoop.fs.FileAlreadyExistsException;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DFSTestUtil;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hdfs.protocol.HdfsConstants;
+import org.apache.hadoop.test.LambdaTestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests namespace operations with
+ * {@link DFSConfigKeys#DFS_NAMENODE_FSLOCK_PARTITIONED_ENABLED_KEY} enabled.
+ */
+public class TestPartitionedNamesystemLock {
+  private static final int NUM_PARTITIONS = 4;
+  private static final int NUM_THREADS = 8;
+  private static final int OPS_PER_THREAD = 50;
+
+  private MiniDFSCluster cluster;
+  private DistributedFileSystem fs;
+
+  @Before
+  public void setUp() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setBoolean(
+        DFSConfigKeys.DFS_NAMENODE_FSLOCK_PARTITIONED_ENABLED_KEY, true);
+    conf.setInt(DFSConfigKeys.DFS_NAMENODE_FSLOCK_PARTITIONED_NUM_KEY,
+        NUM_PARTITIONS);
+    cluster = new MiniDFSCluster.Builder(conf).numDataNodes(1).build();
+    cluster.waitActive();
+    fs = cluster.getFileSystem();
+  }
+
+  @After
+  public void tearDown() {
+    if (cluster != null) {
+      cluster.shutdown();
+      cluster = null;
+    }
+  }
+
+  /**
+   * Concurrent creates and mkdirs in different partitions must keep the quota
+   * counts of the shared ancestors consistent, and concurrent reads within a
+   * partition must see its writes.
+   */
+  @Test(timeout = 120000)
+  public void testConcurrentWritesInPartitions() throws Exception {
+    final Path user = new Path("/user");
+    fs.mkdirs(user);
+    fs.setQuota(user, 1000000, HdfsConstants.QUOTA_DONT_SET);
+    for (int i = 0; i < NUM_THREADS; i++) {
+      fs.mkdirs(new Path(user, "u" + i));
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(NUM_THREADS);
+    try {
+      List<Future<Void>> futures = new ArrayList<>();
+      for (int i = 0; i < NUM_THREADS; i++) {
+        final Path home = new Path(user, "u" + i);
+        futures.add(executor.submit(() -> {
+          for (int j = 0; j < OPS_PER_THREAD; j++) {
+            assertTrue(fs.mkdirs(new Path(home, "d" + j + "/sub")));
+            DFSTestUtil.createFile(fs, new Path(home, "f" + j), 1, (short) 1,
+                0L);
+            // reads below the partition root only lock its partition
+            assertTrue(fs.getFileStatus(new Path(home, "f" + j)).isFile());
+            assertEquals(1,
+                fs.listStatus(new Path(home, "d" + j)).length);
+          }
+          return null;
+        }));
+      }
+      for (Future<Void> f : futures) {
+        f.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    // each thread created 2 directories and 1 file per iteration
+    final long expectedDirs = 1 + NUM_THREADS * (1 + 2 * OPS_PER_THREAD);
+    final long expectedFiles = NUM_THREADS * OPS_PER_THREAD;
+    ContentSummary summary = fs.getContentSummary(user);
+    assertEquals(expectedDirs, summary.getDirectoryCount());
+    assertEquals(expectedFiles, summary.getFileCount());
+    assertEquals(expectedDirs + expectedFiles,
+        fs.getQuotaUsage(user).getFileAndDirectoryCount());
+
+    // creating over an existing file escalates to the global lock
+    LambdaTestUtils.intercept(FileAlreadyExistsException.class,
+        () -> fs.create(new Path(user, "u0/f0"), false));
+
+    // the namespace must survive a restart unchanged
+    cluster.restartNameNode();
+    fs = cluster.getFileSystem();
+    assertEquals(expectedDirs + expectedFiles,
+        fs.getQuotaUsage(user).getFileAndDirectoryCount());
+  }
+}
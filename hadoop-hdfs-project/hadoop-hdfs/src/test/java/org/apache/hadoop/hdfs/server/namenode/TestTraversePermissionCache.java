@@ -0,0 +1,158 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import static org.apache.hadoop.fs.permission.AclEntryScope.ACCESS;
+import static org.apache.hadoop.fs.permission.AclEntryType.GROUP;
+import static org.apache.hadoop.fs.permission.AclEntryType.OTHER;
+import static org.apache.hadoop.fs.permission.AclEntryType.USER;
+import static org.apache.hadoop.fs.permission.FsAction.ALL;
+import static org.apache.hadoop.fs.permission.FsAction.NONE;
+import static org.apache.hadoop.fs.permission.FsAction.READ_EXECUTE;
+import static org.apache.hadoop.hdfs.server.namenode.AclTestHelpers.aclEntry;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.security.PrivilegedExceptionAction;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DFSTestUtil;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.security.AccessControlException;
+import org.apache.hadoop.security.UserGroupInformation;
+import org.apache.hadoop.test.LambdaTestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that the traverse permissions cached with
+ * {@link DFSConfigKeys#DFS_NAMENODE_TRAVERSE_PERMISSION_CACHE_USERS_KEY} are
+ * dropped when the attributes of an ancestor change.
+ */
+public class TestTraversePermissionCache {
+  private static final Path ANCESTOR = new Path("/a/b/c");
+  private static final Path FILE = new Path("/a/b/c/d/e/file");
+  private static final UserGroupInformation BRUCE =
+      UserGroupInformation.createUserForTesting("bruce", new String[] {});
+
+  private MiniDFSCluster cluster;
+  private DistributedFileSystem fs;
+  private FileSystem bruceFs;
+
+  @Before
+  public void setUp() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setInt(
+        DFSConfigKeys.DFS_NAMENODE_TRAVERSE_PERMISSION_CACHE_USERS_KEY, 16);
+    conf.setBoolean(DFSConfigKeys.DFS_NAMENODE_ACLS_ENABLED_KEY, true);
+    cluster = new MiniDFSCluster.Builder(conf).numDataNodes(1).build();
+    cluster.waitActive();
+    fs = cluster.getFileSystem();
+    DFSTestUtil.createFile(fs, FILE, 1, (short) 1, 0L);
+    bruceFs = BRUCE.doAs((PrivilegedExceptionAction<FileSystem>)
+        () -> FileSystem.newInstance(fs.getUri(), conf));
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    if (bruceFs != null) {
+      bruceFs.close();
+    }
+    if (cluster != null) {
+      cluster.shutdown();
+      cluster = null;
+    }
+  }
+
+  @Test(timeout = 120000)
+  public void testPermissionChange() throws Exception {
+    assertTraverseAllowed();
+    fs.setPermission(ANCESTOR, new FsPermission((short) 0700));
+    assertTraverseDenied();
+    fs.setPermission(ANCESTOR, new FsPermission((short) 0755));
+    assertTraverseAllowed();
+  }
+
+  @Test(timeout = 120000)
+  public void testOwnerChange() throws Exception {
+    fs.setPermission(ANCESTOR, new FsPermission((short) 0700));
+    fs.setOwner(ANCESTOR, "bruce", null);
+    assertTraverseAllowed();
+    fs.setOwner(ANCESTOR, "clark", null);
+    assertTraverseDenied();
+  }
+
+  @Test(timeout = 120000)
+  public void testAclChange() throws Exception {
+    assertTraverseAllowed();
+    fs.modifyAclEntries(ANCESTOR,
+        Arrays.asList(aclEntry(ACCESS, USER, "bruce", NONE)));
+    assertTraverseDenied();
+    fs.removeAcl(ANCESTOR);
+    assertTraverseAllowed();
+    fs.setAcl(ANCESTOR, Arrays.asList(
+        aclEntry(ACCESS, USER, ALL),
+        aclEntry(ACCESS, USER, "bruce", NONE),
+        aclEntry(ACCESS, GROUP, READ_EXECUTE),
+        aclEntry(ACCESS, OTHER, READ_EXECUTE)));
+    assertTraverseDenied();
+    fs.removeAclEntries(ANCESTOR,
+        Arrays.asList(aclEntry(ACCESS, USER, "bruce")));
+    assertTraverseAllowed();
+  }
+
+  @Test
+  public void testInvalidateDirectory() {
+    TraversePermissionCache cache = new TraversePermissionCache(1, 16);
+    TraversePermissionCache.UserEntry entry =
+        cache.get("bruce", Collections.emptyList());
+    entry.addTraversable(1001);
+    entry.addTraversable(1002);
+    cache.invalidate(1001);
+    assertFalse(entry.canTraverse(1001));
+    assertTrue(entry.canTraverse(1002));
+    cache.invalidate();
+    assertFalse(entry.canTraverse(1002));
+
+    // an evicted entry no longer sees invalidations, so it must not be used
+    entry.addTraversable(1002);
+    cache.get("clark", Collections.emptyList());
+    assertFalse(entry.canTraverse(1002));
+  }
+
+  private void assertTraverseAllowed() throws Exception {
+    // the second call is served from the cache
+    for (int i = 0; i < 2; i++) {
+      bruceFs.getFileStatus(FILE);
+    }
+  }
+
+  private void assertTraverseDenied() throws Exception {
+    LambdaTestUtils.intercept(AccessControlException.class,
+        () -> bruceFs.getFileStatus(FILE));
+  }
+}
@@ -22,6 +22,7 @@ import static org.apache.hadoop.hdfs.server.namenode.NameNodeAdapter.getServiceS
 import static org.apache.hadoop.hdfs.server.namenode.ha.ObserverReadProxyProvider.*;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
@@ -32,6 +33,7 @@ import static org.mockito.Mockito.doAnswer;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.lang.reflect.Proxy;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
@@ -54,6 +56,7 @@ import org.apache.hadoop.ha.HAServiceProtocol.HAServiceState;
 import org.apache.hadoop.ha.ServiceFailedException;
 import org.apache.hadoop.hdfs.DFSTestUtil;
 import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.client.HdfsClientConfigKeys;
 import org.apache.hadoop.hdfs.MiniDFSCluster;
 import org.apache.hadoop.hdfs.protocol.Block;
 import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
@@ -68,6 +71,7 @@ import org.apache.hadoop.hdfs.server.namenode.NameNodeAdapter;
 import org.apache.hadoop.hdfs.server.namenode.NameNodeRpcServer;
 import org.apache.hadoop.hdfs.server.namenode.TestFsck;
 import org.apache.hadoop.hdfs.tools.GetGroups;
+import org.apache.hadoop.io.retry.RetryInvocationHandler;
 import org.apache.hadoop.ipc.ObserverRetryOnActiveException;
 import org.apache.hadoop.ipc.metrics.RpcMetrics;
 import org.apache.hadoop.test.GenericTestUtils;
@@ -693,6 +697,57 @@ public class TestObserverNode {
         HATestUtil.isSentToAnyOfNameNodes(fs, dfsCluster, nnIdx));
   }
 
+  @Test
+  public void testFileInfoCache() throws Exception {
+    Configuration cacheConf = new Configuration(conf);
+    cacheConf.setTimeDuration(
+        HdfsClientConfigKeys.Failover.OBSERVER_FILE_INFO_CACHE_STALENESS_KEY,
+        1, TimeUnit.HOURS);
+    cacheConf.setBoolean("fs.hdfs.impl.disable.cache", true);
+    DistributedFileSystem cacheFs = HATestUtil.configureObserverReadFs(
+        dfsCluster, cacheConf, ObserverReadProxyProvider.class, true);
+    try {
+      ObserverReadProxyProvider<?> provider = (ObserverReadProxyProvider<?>)
+          ((RetryInvocationHandler<?>) Proxy.getInvocationHandler(
+              cacheFs.getClient().getNamenode())).getProxyProvider();
+      FileInfoCache cache = provider.getFileInfoCache();
+      dfs.mkdirs(testPath, new FsPermission((short) 0755));
+      dfsCluster.rollEditLogAndTail(0);
+
+      FileStatus status = cacheFs.getFileStatus(testPath);
+      assertNotNull(provider.getLastProxy());
+      assertEquals(1, cache.size());
+
+      // changes made by other clients are hidden for the staleness period
+      dfs.setPermission(testPath, new FsPermission((short) 0700));
+      dfsCluster.rollEditLogAndTail(0);
+      assertEquals(status.getPermission(),
+          cacheFs.getFileStatus(testPath).getPermission());
+      assertNull(provider.getLastProxy());
+
+      // calls which do not change the namespace keep the cache
+      cacheFs.getClient().getNamenode().renewLease(
+          cacheFs.getClient().getClientName(), null);
+      assertEquals(1, cache.size());
+
+      // but the client always sees its own writes
+      cacheFs.setPermission(testPath, new FsPermission((short) 0750));
+      assertEquals(0, cache.size());
+      assertEquals(new FsPermission((short) 0750),
+          cacheFs.getFileStatus(testPath).getPermission());
+      assertNotNull(provider.getLastProxy());
+
+      // and a missing file is not cached
+      Path missing = new Path(testPath, "missing");
+      LambdaTestUtils.intercept(FileNotFoundException.class,
+          () -> cacheFs.getFileStatus(missing));
+      cacheFs.create(missing, (short) 1).close();
+      assertTrue(cacheFs.getFileStatus(missing).isFile());
+    } finally {
+      cacheFs.close();
+    }
+  }
+
   private void assertSentTo(int nnIdx) throws IOException {
     assertTrue("Request was not sent to the expected namenode " + nnIdx,
         HATestUtil.isSentToAnyOfNameNodes(dfs, dfsCluster, nnIdx));
@@ -1631,6 +1631,48 @@ public class TestSnapshotDiffReport {
     }
   }
 
+  /**
+   * Tests that a diff listing limited by the number of visited inodes
+   * returns partial reports, which add up to the whole diff.
+   */
+  @Test(timeout = 60000)
+  public void testDiffReportWithINodeLimit() throws Exception {
+    final Path root = new Path("/inodeLimit");
+    for (int i = 0; i < 4; i++) {
+      for (int j = 0; j < 5; j++) {
+        DFSTestUtil.createFile(hdfs, new Path(root, "d" + i + "/f" + j),
+            BLOCKSIZE, REPLICATION, SEED);
+      }
+    }
+    hdfs.allowSnapshot(root);
+    hdfs.createSnapshot(root, "s0");
+    hdfs.delete(new Path(root, "d0/f1"), false);
+    DFSTestUtil.createFile(hdfs, new Path(root, "d1/f9"), BLOCKSIZE,
+        REPLICATION, SEED);
+    hdfs.setReplication(new Path(root, "d2/f2"), (short) (REPLICATION + 1));
+    hdfs.rename(new Path(root, "d3/f4"), new Path(root, "d0/f8"));
+    hdfs.createSnapshot(root, "s1");
+    final List<DiffReportEntry> expected =
+        hdfs.getSnapshotDiffReport(root, "s0", "s1").getDiffList();
+    assertEquals(7, expected.size());
+
+    cluster.getConfiguration(0).setInt(
+        DFSConfigKeys.DFS_NAMENODE_SNAPSHOT_DIFF_LISTING_INODE_LIMIT, 2);
+    cluster.restartNameNode(true);
+    hdfs = cluster.getFileSystem();
+
+    // the first call stops in the first child of the root
+    SnapshotDiffReportListing listing =
+        hdfs.getSnapshotDiffReportListing(root, "s0", "s1", "", -1);
+    assertEquals("d0/f0", DFSUtil.bytes2String(listing.getLastPath()));
+    assertEquals(-1, listing.getLastIndex());
+
+    final List<DiffReportEntry> actual =
+        hdfs.getSnapshotDiffReport(root, "s0", "s1").getDiffList();
+    assertEquals(expected.size(), actual.size());
+    assertTrue(actual.containsAll(expected));
+  }
+
   private void assertDiff(Path root, Path foo, Path bar,
       String from, String to) throws Exception {
     final String barDiff = diff(bar, from, to);
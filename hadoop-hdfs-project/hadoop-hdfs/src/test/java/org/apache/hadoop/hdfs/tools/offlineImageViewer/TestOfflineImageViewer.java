@@ -33,6 +33,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.PrintStream;
 import java.io.PrintWriter;
@@ -80,6 +81,7 @@ import org.apache.hadoop.hdfs.protocol.ErasureCodingPolicyState;
 import org.apache.hadoop.hdfs.protocol.SystemErasureCodingPolicies;
 import org.apache.hadoop.hdfs.protocol.proto.HdfsProtos;
 import org.apache.hadoop.hdfs.server.namenode.FSImageTestUtil;
+import org.apache.hadoop.hdfs.server.namenode.FSImageUtil;
 import org.apache.hadoop.hdfs.server.namenode.FsImageProto;
 import org.apache.hadoop.hdfs.server.namenode.INodeFile;
 import org.apache.hadoop.hdfs.server.namenode.NameNodeLayoutVersion;
@@ -135,6 +137,7 @@ import static org.apache.hadoop.hdfs.tools.offlineImageViewer.PBImageXmlWriter.E
 import static org.apache.hadoop.hdfs.tools.offlineImageViewer.PBImageXmlWriter.ERASURE_CODING_SECTION_SCHEMA;
 import static org.apache.hadoop.hdfs.tools.offlineImageViewer.PBImageXmlWriter.ERASURE_CODING_SECTION_SCHEMA_CODEC_NAME;
 import static org.apache.hadoop.hdfs.tools.offlineImageViewer.PBImageXmlWriter.ERASURE_CODING_SECTION_SCHEMA_OPTION;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -808,6 +811,29 @@ public class TestOfflineImageViewer {
         + "/parallel-delimited.db");
   }
 
+  @Test
+  public void testMappedFSImageSections() throws IOException {
+    try (RandomAccessFile file = new RandomAccessFile(originalFsimage, "r")) {
+      FsImageProto.FileSummary summary = FSImageUtil.loadSummary(file);
+      try (MappedFSImage image = new MappedFSImage(originalFsimage, summary,
+          new Configuration())) {
+        for (FsImageProto.FileSummary.Section section :
+            summary.getSectionsList()) {
+          byte[] expected = new byte[(int) section.getLength()];
+          file.seek(section.getOffset());
+          file.readFully(expected);
+
+          byte[] actual = new byte[expected.length];
+          try (InputStream in = image.getInputStreamForSection(section)) {
+            IOUtils.readFully(in, actual, 0, actual.length);
+            assertEquals(-1, in.read());
+          }
+          assertArrayEquals(section.getName(), expected, actual);
+        }
+      }
+    }
+  }
+
   @Test
   public void testCorruptionOutputEntryBuilder() throws IOException {
     PBImageCorruptionDetector corrDetector =
@@ -0,0 +1,120 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+/** Test {@link LongBitmap}. */
+public class TestLongBitmap {
+
+  private static void assertSameValues(TreeSet<Long> expected,
+      LongBitmap actual, long from) {
+    List<Long> values = new ArrayList<>();
+    for (PrimitiveIterator.OfLong it = actual.iterator(from); it.hasNext();) {
+      values.add(it.nextLong());
+    }
+    assertEquals(new ArrayList<>(expected.tailSet(from)), values);
+  }
+
+  @Test
+  public void testRandomOperations() {
+    final long seed = System.nanoTime();
+    final Random random = new Random(seed);
+    final TreeSet<Long> expected = new TreeSet<>();
+    final LongBitmap bitmap = new LongBitmap();
+    // values around a few bases, so that chunks get both sparse and dense
+    final long[] bases = {Long.MIN_VALUE, -1L << 20, 0, 1L << 30,
+        Long.MAX_VALUE - (1 << 17)};
+    for (int i = 0; i < 200000; i++) {
+      long value = bases[random.nextInt(bases.length)]
+          + random.nextInt(1 << (random.nextBoolean() ? 13 : 17));
+      if (random.nextInt(3) == 0) {
+        assertEquals("seed=" + seed, expected.remove(value),
+            bitmap.remove(value));
+      } else {
+        assertEquals("seed=" + seed, expected.add(value), bitmap.add(value));
+      }
+    }
+    assertEquals(expected.size(), bitmap.size());
+    for (long value : expected) {
+      assertTrue(bitmap.contains(value));
+    }
+    assertSameValues(expected, bitmap, Long.MIN_VALUE);
+    for (int i = 0; i < 100; i++) {
+      long from = bases[random.nextInt(bases.length)]
+          + random.nextInt(1 << 17);
+      assertSameValues(expected, bitmap, from);
+    }
+  }
+
+  @Test
+  public void testDenseChunk() {
+    final LongBitmap bitmap = new LongBitmap();
+    final int n = 3 * LongBitmap.ARRAY_MAX;
+    for (long i = 0; i < n; i++) {
+      assertTrue(bitmap.add(i * 2));
+      assertFalse(bitmap.add(i * 2));
+    }
+    assertEquals(n, bitmap.size());
+    assertFalse(bitmap.contains(1));
+    // remove down to a sparse chunk again
+    for (long i = 0; i < n - 10; i++) {
+      assertTrue(bitmap.remove(i * 2));
+      assertFalse(bitmap.remove(i * 2));
+    }
+    assertEquals(10, bitmap.size());
+    PrimitiveIterator.OfLong it = bitmap.iterator();
+    for (long i = n - 10; i < n; i++) {
+      assertEquals(i * 2, it.nextLong());
+    }
+    assertFalse(it.hasNext());
+
+    bitmap.clear();
+    assertTrue(bitmap.isEmpty());
+    assertFalse(bitmap.iterator().hasNext());
+  }
+
+  @Test
+  public void testConcurrentModification() {
+    final LongBitmap bitmap = new LongBitmap();
+    bitmap.add(1);
+    bitmap.add(2);
+    Iterator<Long> it = bitmap.iterator();
+    it.next();
+    bitmap.add(3);
+    try {
+      it.next();
+      fail("Expected ConcurrentModificationException");
+    } catch (ConcurrentModificationException e) {
+      // expected
+    }
+  }
+}